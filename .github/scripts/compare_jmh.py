@@ -0,0 +1,55 @@
+# Compares two JMH JSON result files and exits with 1 when a benchmark got slower
+# than the threshold (fraction) allows. A missing baseline passes.
+import json
+import os
+import sys
+
+
+def load(path):
+    with open(path) as f:
+        results = {}
+        for entry in json.load(f):
+            params = ",".join(f"{k}={v}" for k, v in sorted(entry.get("params", {}).items()))
+            key = f"{entry['benchmark']}({params})" if params else entry["benchmark"]
+            results[key] = (entry["mode"], entry["primaryMetric"]["score"])
+        return results
+
+
+def main():
+    baseline_path, current_path, threshold = sys.argv[1], sys.argv[2], float(sys.argv[3])
+
+    if not os.path.exists(baseline_path):
+        print(f"No baseline at {baseline_path}, skipping comparison")
+        return 0
+
+    baseline = load(baseline_path)
+    current = load(current_path)
+
+    regressions = []
+    for key, (mode, score) in sorted(current.items()):
+        if key not in baseline:
+            print(f"{key}: {score:.3f} (new)")
+            continue
+
+        base = baseline[key][1]
+        if base == 0:
+            continue
+
+        # Throughput modes regress when the score drops, time modes when it grows
+        change = (base - score) / base if mode == "thrpt" else (score - base) / base
+        print(f"{key}: {base:.3f} -> {score:.3f} ({change:+.1%} slower)")
+
+        if change > threshold:
+            regressions.append(key)
+
+    if regressions:
+        print(f"Regressed by more than {threshold:.0%}:")
+        for key in regressions:
+            print(f"  {key}")
+        return 1
+
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
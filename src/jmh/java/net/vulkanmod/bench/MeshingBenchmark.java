@@ -0,0 +1,63 @@
+package net.vulkanmod.bench;
+
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import net.vulkanmod.render.PipelineManager;
+import net.vulkanmod.render.vertex.CustomVertexFormat;
+import net.vulkanmod.render.vertex.TerrainBufferBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+//Section meshing into TerrainBufferBuilder, the vertices counter gives vertices/s.
+//COMPRESSED measures the CompressedVertexBuilder encode path, sorted adds the translucent quad sort
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MeshingBenchmark {
+
+    @Param({ "COMPRESSED", "DEFAULT" })
+    public String format;
+
+    @Param({ "0.1", "0.5" })
+    public float density;
+
+    @Param({ "false", "true" })
+    public boolean sorted;
+
+    private VertexFormat vertexFormat;
+    private SyntheticSection section;
+    private TerrainBufferBuilder builder;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long vertices;
+    }
+
+    @Setup
+    public void setup() {
+        this.vertexFormat = this.format.equals("COMPRESSED") ? CustomVertexFormat.COMPRESSED_TERRAIN : DefaultVertexFormat.BLOCK;
+
+        //The builder picks its vertex encoder from the terrain format
+        PipelineManager.setTerrainVertexFormat(this.vertexFormat);
+        this.builder = new TerrainBufferBuilder(262144);
+        this.section = new SyntheticSection(42L, this.density);
+    }
+
+    @Benchmark
+    public void buildSection(Counters counters, Blackhole blackhole) {
+        this.builder.begin(VertexFormat.Mode.QUADS, this.vertexFormat);
+        this.section.emit(this.builder);
+
+        if(this.sorted)
+            this.builder.setQuadSortOrigin(8.5f, 24.0f, 3.5f);
+
+        TerrainBufferBuilder.RenderedBuffer renderedBuffer = this.builder.end();
+        counters.vertices += renderedBuffer.drawState().vertexCount();
+
+        blackhole.consume(renderedBuffer.vertexBuffer());
+        renderedBuffer.release();
+    }
+}
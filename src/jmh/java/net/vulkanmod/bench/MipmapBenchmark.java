@@ -0,0 +1,54 @@
+package net.vulkanmod.bench;
+
+import net.vulkanmod.render.texture.MipmapKernel;
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Transparency scan and first mip level of a square atlas, one in 8 pixels is fully transparent
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MipmapBenchmark {
+
+    @Param({ "4096", "8192" })
+    public int size;
+
+    private long srcPtr;
+    private long dstPtr;
+
+    @Setup
+    public void setup() {
+        this.srcPtr = MemoryUtil.nmemAlloc((long) this.size * this.size * 4L);
+        this.dstPtr = MemoryUtil.nmemAlloc((long) this.size * this.size);
+
+        Random random = new Random(42L);
+        for(long i = 0; i < (long) this.size * this.size; ++i) {
+            int value = random.nextInt();
+            if(random.nextInt(8) == 0)
+                value &= 0x00FFFFFF;
+
+            MemoryUtil.memPutInt(this.srcPtr + i * 4L, value);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        MemoryUtil.nmemFree(this.srcPtr);
+        MemoryUtil.nmemFree(this.dstPtr);
+    }
+
+    @Benchmark
+    public int scanTransparency() {
+        return MipmapKernel.scanTransparency(this.srcPtr, this.size, this.size);
+    }
+
+    @Benchmark
+    public long downsample() {
+        int avg = MipmapKernel.scanTransparency(this.srcPtr, this.size, this.size);
+        MipmapKernel.downsample(this.srcPtr, this.dstPtr, this.size >> 1, this.size >> 1, avg);
+        return this.dstPtr;
+    }
+}
@@ -0,0 +1,68 @@
+package net.vulkanmod.bench;
+
+import net.vulkanmod.render.util.SortUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//SortUtil throughput on quad distances, n is the quad count of a translucent layer.
+//Indices are reset on each call since merge and quick sort take them as input
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SortBenchmark {
+
+    @Param({ "256", "4096", "32768" })
+    public int n;
+
+    private float[] distances;
+    private int[] indices;
+    private int[] keys;
+    private int[] tmpIndices;
+    private int[] tmpKeys;
+    private final int[] histogram = new int[1024];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+
+        this.distances = new float[this.n];
+        for(int i = 0; i < this.n; ++i) {
+            this.distances[i] = random.nextFloat() * 256.0f * 256.0f;
+        }
+
+        this.indices = new int[this.n];
+        this.keys = new int[this.n];
+        this.tmpIndices = new int[this.n];
+        this.tmpKeys = new int[this.n];
+    }
+
+    private void resetIndices() {
+        for(int i = 0; i < this.n; ++i) {
+            this.indices[i] = i;
+        }
+    }
+
+    @Benchmark
+    public int[] mergeSort() {
+        resetIndices();
+        //The support array must start as a copy of the indices
+        System.arraycopy(this.indices, 0, this.tmpIndices, 0, this.n);
+        SortUtil.mergeSort(this.indices, this.distances, 0, this.n, this.tmpIndices);
+        return this.indices;
+    }
+
+    @Benchmark
+    public int[] quickSort() {
+        resetIndices();
+        SortUtil.quickSort(this.indices, this.distances, 0, this.n);
+        return this.indices;
+    }
+
+    @Benchmark
+    public int[] radixSort() {
+        SortUtil.radixSortDescending(this.distances, this.indices, this.keys, this.tmpIndices, this.tmpKeys, this.histogram, this.n);
+        return this.indices;
+    }
+}
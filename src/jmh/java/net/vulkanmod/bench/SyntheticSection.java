@@ -0,0 +1,85 @@
+package net.vulkanmod.bench;
+
+import net.vulkanmod.render.vertex.TerrainBufferBuilder;
+
+import java.util.Random;
+
+//Seeded 16^3 block volume, emits one quad per solid face next to air like the section compiler does for full cubes
+public class SyntheticSection {
+    private static final int SIZE = 16;
+
+    //Face corners (x, y, z) and normal per direction: down, up, north, south, west, east
+    private static final float[][] CORNERS = {
+            { 0,0,1, 0,0,0, 1,0,0, 1,0,1 },
+            { 0,1,0, 0,1,1, 1,1,1, 1,1,0 },
+            { 1,1,0, 1,0,0, 0,0,0, 0,1,0 },
+            { 0,1,1, 0,0,1, 1,0,1, 1,1,1 },
+            { 0,1,0, 0,0,0, 0,0,1, 0,1,1 },
+            { 1,1,1, 1,0,1, 1,0,0, 1,1,0 }
+    };
+    private static final int[][] NORMALS = {
+            { 0,-1,0 }, { 0,1,0 }, { 0,0,-1 }, { 0,0,1 }, { -1,0,0 }, { 1,0,0 }
+    };
+    private static final float[] SHADE = { 0.5f, 1.0f, 0.8f, 0.8f, 0.6f, 0.6f };
+
+    private final boolean[] solid = new boolean[SIZE * SIZE * SIZE];
+    private final float[] u = new float[SIZE * SIZE * SIZE];
+    private final float[] v = new float[SIZE * SIZE * SIZE];
+    private final int[] light = new int[SIZE * SIZE * SIZE];
+
+    public SyntheticSection(long seed, float density) {
+        Random random = new Random(seed);
+
+        for(int i = 0; i < this.solid.length; ++i) {
+            this.solid[i] = random.nextFloat() < density;
+
+            //Random 16x16 sprite in a 1024x1024 atlas
+            this.u[i] = random.nextInt(64) / 64.0f;
+            this.v[i] = random.nextInt(64) / 64.0f;
+            this.light[i] = random.nextInt(16) << 20 | random.nextInt(16) << 4;
+        }
+    }
+
+    private boolean isSolid(int x, int y, int z) {
+        if(x < 0 || y < 0 || z < 0 || x >= SIZE || y >= SIZE || z >= SIZE)
+            return false;
+
+        return this.solid[index(x, y, z)];
+    }
+
+    private static int index(int x, int y, int z) {
+        return (y * SIZE + z) * SIZE + x;
+    }
+
+    public void emit(TerrainBufferBuilder builder) {
+        final float spriteSize = 1.0f / 64.0f;
+
+        for(int y = 0; y < SIZE; ++y) {
+            for(int z = 0; z < SIZE; ++z) {
+                for(int x = 0; x < SIZE; ++x) {
+                    int i = index(x, y, z);
+                    if(!this.solid[i])
+                        continue;
+
+                    for(int dir = 0; dir < 6; ++dir) {
+                        int[] normal = NORMALS[dir];
+                        if(isSolid(x + normal[0], y + normal[1], z + normal[2]))
+                            continue;
+
+                        float[] corners = CORNERS[dir];
+                        float shade = SHADE[dir];
+
+                        for(int c = 0; c < 4; ++c) {
+                            float u0 = this.u[i] + ((c == 2 || c == 3) ? spriteSize : 0.0f);
+                            float v0 = this.v[i] + ((c == 1 || c == 2) ? spriteSize : 0.0f);
+
+                            builder.vertex(x + corners[c * 3], y + corners[c * 3 + 1], z + corners[c * 3 + 2],
+                                    shade, shade, shade, 1.0f, u0, v0, 0, this.light[i],
+                                    normal[0], normal[1], normal[2]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
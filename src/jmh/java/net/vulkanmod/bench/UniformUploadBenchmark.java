@@ -0,0 +1,200 @@
+package net.vulkanmod.bench;
+
+import net.vulkanmod.vulkan.shader.descriptor.UBO;
+import net.vulkanmod.vulkan.shader.layout.AlignedStruct;
+import net.vulkanmod.vulkan.shader.layout.Uniform;
+import net.vulkanmod.vulkan.util.MappedBuffer;
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//A frame of draws replayed through UBO.upload into a host memory stand-in for UniformBuffers.
+//changeRate is the share of draws whose model view matrix differs from the previous draw, the others take the equals path
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UniformUploadBenchmark {
+    private static final int FRAMES = 8;
+    private static final int DRAWS = 512;
+    private static final int MAT4_BYTES = 64;
+
+    @Param({ "0.0", "0.1", "0.5", "1.0" })
+    public float changeRate;
+
+    private HostUniformBuffers uniformBuffers;
+    private UBO ubo;
+
+    private MappedBuffer modelView;
+    private MappedBuffer projection;
+    private MappedBuffer colorModulator;
+    private MappedBuffer fogStart;
+
+    //Model view matrix of every draw of the replayed frames
+    private long states;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        AlignedStruct.Builder builder = new AlignedStruct.Builder();
+        builder.addUniformInfo("mat4", "ModelViewMat");
+        builder.addUniformInfo("mat4", "ProjMat");
+        builder.addUniformInfo("vec4", "ColorModulator");
+        builder.addUniformInfo("float", "FogStart");
+        this.ubo = builder.buildUBO(0, 0);
+
+        this.modelView = new MappedBuffer(MAT4_BYTES);
+        this.projection = new MappedBuffer(MAT4_BYTES);
+        this.colorModulator = new MappedBuffer(16);
+        this.fogStart = new MappedBuffer(4);
+
+        for(Uniform uniform : this.ubo.getUniforms()) {
+            switch (uniform.getName()) {
+                case "ModelViewMat" -> uniform.setSupplier(() -> this.modelView);
+                case "ProjMat" -> uniform.setSupplier(() -> this.projection);
+                case "ColorModulator" -> uniform.setSupplier(() -> this.colorModulator);
+                case "FogStart" -> uniform.setSupplier(() -> this.fogStart);
+            }
+        }
+
+        Random random = new Random(42L);
+        for(int i = 0; i < 16; ++i) {
+            this.projection.putFloat(i * 4, random.nextFloat());
+        }
+        for(int i = 0; i < 4; ++i) {
+            this.colorModulator.putFloat(i * 4, 1.0f);
+        }
+        this.fogStart.putFloat(0, 96.0f);
+
+        this.states = MemoryUtil.nmemAlloc((long) FRAMES * DRAWS * MAT4_BYTES);
+        for(int i = 0; i < FRAMES * DRAWS; ++i) {
+            long ptr = this.states + (long) i * MAT4_BYTES;
+
+            if(i == 0 || random.nextFloat() < this.changeRate) {
+                for(int j = 0; j < 16; ++j) {
+                    MemoryUtil.memPutFloat(ptr + j * 4, random.nextFloat());
+                }
+            }
+            else {
+                MemoryUtil.memCopy(ptr - MAT4_BYTES, ptr, MAT4_BYTES);
+            }
+        }
+
+        this.uniformBuffers = new HostUniformBuffers(64 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.ubo.free();
+        this.uniformBuffers.free();
+        MemoryUtil.nmemFree(this.states);
+
+        MemoryUtil.memFree(this.modelView.buffer);
+        MemoryUtil.memFree(this.projection.buffer);
+        MemoryUtil.memFree(this.colorModulator.buffer);
+        MemoryUtil.memFree(this.fogStart.buffer);
+    }
+
+    @Benchmark
+    public int frame(Counters counters) {
+        int frame = this.frame & 1;
+        long frameStates = this.states + (long) (this.frame % FRAMES) * DRAWS * MAT4_BYTES;
+        this.frame++;
+
+        this.uniformBuffers.reset();
+
+        int offsets = 0;
+        for(int i = 0; i < DRAWS; ++i) {
+            MemoryUtil.memCopy(frameStates + (long) i * MAT4_BYTES, this.modelView.ptr, MAT4_BYTES);
+            offsets += this.ubo.upload(this.uniformBuffers, frame);
+        }
+
+        counters.bytesWritten += this.uniformBuffers.getUsedBytes();
+        counters.uploads += this.uniformBuffers.uploads;
+        return offsets;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        //Uniform buffer bytes used per frame, aligned blocks included
+        public long bytesWritten;
+        public long uploads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytesWritten = 0;
+            this.uploads = 0;
+        }
+    }
+
+    //UniformBuffers with host memory in place of the device buffers, same alignment, growth and epoch rules
+    static class HostUniformBuffers implements UBO.Target {
+        private static final int ALIGNMENT = 256;
+
+        private final long[] pointers = new long[2];
+        private int bufferSize;
+        private int usedBytes;
+        private long epoch;
+        int uploads;
+
+        HostUniformBuffers(int size) {
+            this.bufferSize = size;
+
+            for(int i = 0; i < this.pointers.length; ++i) {
+                this.pointers[i] = MemoryUtil.nmemAlloc(size);
+            }
+        }
+
+        void reset() {
+            this.usedBytes = 0;
+            this.uploads = 0;
+            this.epoch++;
+        }
+
+        @Override
+        public long getEpoch() {
+            return this.epoch;
+        }
+
+        @Override
+        public int alignSize(int size) {
+            return (size + ALIGNMENT - 1) & -ALIGNMENT;
+        }
+
+        @Override
+        public void checkCapacity(int size) {
+            if(size <= this.bufferSize - this.usedBytes)
+                return;
+
+            this.bufferSize = (this.bufferSize + size) * 2;
+            for(int i = 0; i < this.pointers.length; ++i) {
+                this.pointers[i] = MemoryUtil.nmemRealloc(this.pointers[i], this.bufferSize);
+            }
+            this.epoch++;
+        }
+
+        @Override
+        public int getUsedBytes() {
+            return this.usedBytes;
+        }
+
+        @Override
+        public long getPointer(int frame) {
+            return this.pointers[frame] + this.usedBytes;
+        }
+
+        @Override
+        public void updateOffset(int alignedSize) {
+            this.usedBytes += alignedSize;
+            this.uploads++;
+        }
+
+        void free() {
+            for(long ptr : this.pointers) {
+                MemoryUtil.nmemFree(ptr);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package net.vulkanmod.bench;
+
+import com.mojang.blaze3d.vertex.VertexFormat;
+import net.vulkanmod.render.PipelineManager;
+import net.vulkanmod.render.chunk.build.UploadBuffer;
+import net.vulkanmod.render.vertex.CustomVertexFormat;
+import net.vulkanmod.render.vertex.TerrainBufferBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//Copy of a built section layer into pooled UploadBuffer storage, sorted layers also copy their index buffer
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UploadBufferBenchmark {
+
+    @Param({ "0.1", "0.5" })
+    public float density;
+
+    @Param({ "false", "true" })
+    public boolean sorted;
+
+    private TerrainBufferBuilder builder;
+    private TerrainBufferBuilder.RenderedBuffer renderedBuffer;
+
+    @Setup
+    public void setup() {
+        PipelineManager.setTerrainVertexFormat(CustomVertexFormat.COMPRESSED_TERRAIN);
+        this.builder = new TerrainBufferBuilder(262144);
+
+        this.builder.begin(VertexFormat.Mode.QUADS, CustomVertexFormat.COMPRESSED_TERRAIN);
+        new SyntheticSection(42L, this.density).emit(this.builder);
+
+        if(this.sorted)
+            this.builder.setQuadSortOrigin(8.5f, 24.0f, 3.5f);
+
+        this.renderedBuffer = this.builder.end();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.renderedBuffer.release();
+    }
+
+    @Benchmark
+    public UploadBuffer copy() {
+        UploadBuffer uploadBuffer = new UploadBuffer(this.renderedBuffer);
+        uploadBuffer.release();
+        return uploadBuffer;
+    }
+}
@@ -0,0 +1,307 @@
+package net.vulkanmod.render.chunk;
+
+import org.joml.FrustumIntersection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Full visibility BFS from the camera section, over SectionGraph and over a copy of the RenderSection object graph it replaced.
+//Both follow WorldRenderer.addNode, direction change rule included, over the same synthetic world:
+//random section visibility, empty sections and a frustum cone towards +z.
+//Lives in the render.chunk package to reach the SectionGraph arrays, as WorldRenderer does
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SectionGraphBenchmark {
+    private static final int HEIGHT = 24;
+    private static final int MAX_DIRECTION_CHANGES = 2;
+
+    @Param({ "12", "24", "32" })
+    public int renderDistance;
+
+    private int width;
+    private int startIndex;
+
+    private SectionGraph graph;
+    private byte[] frustumStates;
+    private int[] indexQueue;
+
+    private LegacySection[] sections;
+    private LegacySection[] sectionQueue;
+
+    private short lastFrame;
+
+    @Setup
+    public void setup() {
+        this.width = this.renderDistance * 2 + 1;
+        int size = this.width * HEIGHT * this.width;
+
+        this.graph = new SectionGraph(this.width, HEIGHT);
+        this.frustumStates = new byte[size];
+        this.indexQueue = new int[size];
+
+        this.sections = new LegacySection[size];
+        this.sectionQueue = new LegacySection[size];
+
+        Random random = new Random(42L);
+        int center = this.renderDistance;
+        int cameraY = 12;
+
+        //Same allocation order as the old SectionGrid
+        for(int x = 0; x < this.width; ++x) {
+            for(int y = 0; y < HEIGHT; ++y) {
+                for(int z = 0; z < this.width; ++z) {
+                    int index = getIndex(x, y, z);
+
+                    //Open sections see through every face pair, the others through a random subset
+                    long visibility = random.nextInt(4) != 0 ? -1L : random.nextLong();
+                    boolean empty = random.nextInt(10) < 4;
+
+                    int dx = Math.abs(x - center);
+                    int dz = z - center;
+                    byte frustumState = (byte) (dx < dz - 1 ? FrustumIntersection.INSIDE
+                            : dx <= dz + 1 ? FrustumIntersection.INTERSECT : FrustumIntersection.PLANE_NX);
+                    if(x == center && y == cameraY && z == center)
+                        frustumState = (byte) FrustumIntersection.INTERSECT;
+
+                    this.graph.visibility[index] = visibility;
+                    this.graph.completelyEmpty[index] = empty;
+                    this.frustumStates[index] = frustumState;
+
+                    LegacySection section = new LegacySection();
+                    section.visibility = visibility;
+                    section.completelyEmpty = empty;
+                    section.frustumState = frustumState;
+                    this.sections[index] = section;
+                }
+            }
+        }
+
+        for(int x = 0; x < this.width; ++x) {
+            for(int y = 0; y < HEIGHT; ++y) {
+                for(int z = 0; z < this.width; ++z) {
+                    LegacySection section = this.sections[getIndex(x, y, z)];
+                    section.neighbours[0] = y > 0 ? this.sections[getIndex(x, y - 1, z)] : null;
+                    section.neighbours[1] = y < HEIGHT - 1 ? this.sections[getIndex(x, y + 1, z)] : null;
+                    section.neighbours[2] = z > 0 ? this.sections[getIndex(x, y, z - 1)] : null;
+                    section.neighbours[3] = z < this.width - 1 ? this.sections[getIndex(x, y, z + 1)] : null;
+                    section.neighbours[4] = x > 0 ? this.sections[getIndex(x - 1, y, z)] : null;
+                    section.neighbours[5] = x < this.width - 1 ? this.sections[getIndex(x + 1, y, z)] : null;
+                }
+            }
+        }
+
+        this.startIndex = getIndex(center, cameraY, center);
+
+        int visited = this.sectionGraph();
+        int legacyVisited = this.legacyGraph();
+        if(visited != legacyVisited)
+            throw new RuntimeException("Traversals differ: %d and %d visited sections".formatted(visited, legacyVisited));
+    }
+
+    //-1 is the stamp of never visited sections
+    private short nextFrame() {
+        if(++this.lastFrame == -1)
+            ++this.lastFrame;
+        return this.lastFrame;
+    }
+
+    private int getIndex(int x, int y, int z) {
+        return (z * HEIGHT + y) * this.width + x;
+    }
+
+    //WorldRenderer queues the RenderSection of the index, here the index itself is queued
+    @Benchmark
+    public int sectionGraph() {
+        SectionGraph graph = this.graph;
+        int[] queue = this.indexQueue;
+        int head = 0, tail = 0;
+
+        short frame = this.nextFrame();
+        graph.setGraphInfo(this.startIndex, SectionGraph.NO_DIRECTION, (byte) 0);
+        graph.lastFrame[this.startIndex] = frame;
+        queue[tail++] = this.startIndex;
+
+        while(head < tail) {
+            int index = queue[head++];
+
+            if(graph.directionChanges[index] > MAX_DIRECTION_CHANGES)
+                continue;
+
+            for(int direction = 0; direction < 6; ++direction) {
+                int relativeIndex = graph.getNeighbour(index, direction);
+
+                if(relativeIndex != -1 && !graph.hasDirection(index, direction ^ 1)) {
+
+                    if(graph.hasMainDirection(index)) {
+                        if(!graph.visibilityBetween(index, graph.mainDir[index] ^ 1, direction))
+                            continue;
+                    }
+
+                    if(this.frustumStates[relativeIndex] >= 0)
+                        continue;
+
+                    if(graph.lastFrame[relativeIndex] == frame) {
+                        int d = graph.mainDir[index] != direction && !graph.completelyEmpty[index] ?
+                                graph.directionChanges[index] + 1 : graph.directionChanges[index];
+
+                        graph.addDir(relativeIndex, direction);
+
+                        if(d < graph.directionChanges[relativeIndex])
+                            graph.directionChanges[relativeIndex] = (byte) d;
+
+                        continue;
+                    }
+
+                    graph.lastFrame[relativeIndex] = frame;
+
+                    graph.setGraphInfo(relativeIndex, direction, (byte) (graph.step[index] + 1));
+                    graph.setDirections(relativeIndex, graph.directions[index], direction);
+                    queue[tail++] = relativeIndex;
+
+                    graph.directionChanges[relativeIndex] = graph.nextDirectionChanges(index, direction);
+                }
+            }
+        }
+
+        return tail;
+    }
+
+    @Benchmark
+    public int legacyGraph() {
+        LegacySection[] queue = this.sectionQueue;
+        int head = 0, tail = 0;
+
+        short frame = this.nextFrame();
+        LegacySection start = this.sections[this.startIndex];
+        start.setGraphInfo(null, (byte) 0);
+        start.setLastFrame(frame);
+        queue[tail++] = start;
+
+        while(head < tail) {
+            LegacySection section = queue[head++];
+
+            if(section.directionChanges > MAX_DIRECTION_CHANGES)
+                continue;
+
+            for(LegacyDirection direction : LegacyDirection.VALUES) {
+                LegacySection relativeSection = section.getNeighbour(direction);
+
+                if(relativeSection != null && !section.hasDirection(direction.getOpposite())) {
+
+                    if(section.hasMainDirection()) {
+                        if(!section.visibilityBetween(section.mainDir.getOpposite(), direction))
+                            continue;
+                    }
+
+                    if(relativeSection.frustumState >= 0)
+                        continue;
+
+                    if(relativeSection.getLastFrame() == frame) {
+                        int d = section.mainDir != direction && !section.completelyEmpty ?
+                                section.directionChanges + 1 : section.directionChanges;
+
+                        relativeSection.addDir(direction);
+
+                        relativeSection.directionChanges = d < relativeSection.directionChanges ? (byte) d : relativeSection.directionChanges;
+
+                        continue;
+                    }
+
+                    relativeSection.setLastFrame(frame);
+
+                    relativeSection.setGraphInfo(direction, (byte) (section.step + 1));
+                    relativeSection.setDirections(section.directions, direction);
+                    queue[tail++] = relativeSection;
+
+                    byte d;
+                    if((section.sourceDirs & (1 << direction.ordinal())) == 0 && !section.completelyEmpty)
+                        d = section.step > 4 ? (byte) (section.directionChanges + 1) : 0;
+                    else
+                        d = section.directionChanges;
+
+                    relativeSection.directionChanges = d;
+                }
+            }
+        }
+
+        return tail;
+    }
+
+    //Ordinals match net.minecraft.core.Direction
+    enum LegacyDirection {
+        DOWN, UP, NORTH, SOUTH, WEST, EAST;
+
+        static final LegacyDirection[] VALUES = values();
+
+        LegacyDirection getOpposite() {
+            return VALUES[this.ordinal() ^ 1];
+        }
+    }
+
+    //Graph fields and neighbour links of RenderSection before SectionGraph, the placeholders keep its footprint
+    static class LegacySection {
+        private final LegacySection[] neighbours = new LegacySection[6];
+        private short lastFrame = -1;
+        private short lastFrame2 = -1;
+
+        private final Object compileStatus = new Object();
+        private final Object[] drawParametersArray = new Object[] {
+                new long[4], new long[4], new long[4], new long[4], new long[4]
+        };
+
+        boolean completelyEmpty;
+        long visibility;
+        byte frustumState;
+
+        LegacyDirection mainDir;
+        byte directions;
+        byte step;
+        byte directionChanges;
+        byte sourceDirs;
+
+        void setGraphInfo(LegacyDirection from, byte step) {
+            this.mainDir = from;
+            this.sourceDirs = (byte) (from != null ? 1 << from.ordinal() : 0);
+
+            this.step = step;
+            this.directions = 0;
+            this.directionChanges = 0;
+        }
+
+        void addDir(LegacyDirection direction) {
+            if(this.sourceDirs == 0)
+                return;
+            this.sourceDirs |= 1 << direction.ordinal();
+        }
+
+        void setDirections(byte directions, LegacyDirection direction) {
+            this.directions = (byte) (this.directions | directions | 1 << direction.ordinal());
+        }
+
+        boolean hasDirection(LegacyDirection direction) {
+            return (this.directions & 1 << direction.ordinal()) > 0;
+        }
+
+        boolean hasMainDirection() {
+            return this.sourceDirs != 0;
+        }
+
+        LegacySection getNeighbour(LegacyDirection direction) {
+            return this.neighbours[direction.ordinal()];
+        }
+
+        boolean visibilityBetween(LegacyDirection dir1, LegacyDirection dir2) {
+            return (this.visibility & (1L << ((dir1.ordinal() << 3) + dir2.ordinal()))) != 0;
+        }
+
+        void setLastFrame(short i) {
+            this.lastFrame = i;
+        }
+
+        short getLastFrame() {
+            return this.lastFrame;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.loader.api.FabricLoader;
 import net.vulkanmod.config.Config;
 import net.vulkanmod.config.VideoResolution;
+import net.vulkanmod.render.profiling.Profiler2;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -34,6 +35,9 @@ public class Initializer implements ClientModInitializer {
 
 		CONFIG = loadConfig(configPath);
 
+		if(CONFIG.profilerExport)
+			Profiler2.setActive(true);
+
 	}
 
 	private static Config loadConfig(Path path) {
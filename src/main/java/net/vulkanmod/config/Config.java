@@ -18,10 +18,17 @@ public class Config {
     public boolean guiOptimizations = false;
     public int advCulling = 2;
     public boolean indirectDraw = false;
+    public boolean gpuCulling = false;
+    public boolean incrementalCulling = false;
 
     public boolean perRenderTypeAreaBuffers = false;
+    public boolean sharedAreaBuffers = false;
+    public boolean defragAreaBuffers = false;
     public boolean uniqueOpaqueLayer = true;
     public boolean entityCulling = true;
+    public boolean profilerExport = false;
+    public int textureUploadBudget = 64;
+    public int vertexBufferShrinkFrames = 300;
     public int device = -1;
 
     private static Path path;
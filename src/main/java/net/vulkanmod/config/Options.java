@@ -5,6 +5,8 @@ import net.minecraft.client.*;
 import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.network.chat.Component;
 import net.vulkanmod.Initializer;
+import net.vulkanmod.render.profiling.Profiler2;
+import net.vulkanmod.render.profiling.ProfilerOverlay;
 import net.vulkanmod.vulkan.DeviceManager;
 import net.vulkanmod.vulkan.Renderer;
 
@@ -205,6 +207,13 @@ public class Options {
                         Use a culling algorithm that might improve performance by
                         reducing the number of non visible chunk sections rendered.
                         """)),
+                new SwitchOption("Incremental Culling",
+                        value -> config.incrementalCulling = value,
+                        () -> config.incrementalCulling)
+                        .setTooltip(Component.nullToEmpty("""
+                        Reuses the previous visible sections while the camera
+                        stays in the same section, re-checking only the ones
+                        near the frustum border.""")),
                 new SwitchOption("Entity Culling",
                         value -> config.entityCulling = value,
                         () -> config.entityCulling)
@@ -216,6 +225,16 @@ public class Options {
                         .setTooltip(Component.nullToEmpty("""
                         Reduces CPU overhead but increases GPU overhead.
                         Enabling it might help in CPU limited systems.""")),
+                new SwitchOption("GPU Culling",
+                        value -> {
+                            config.gpuCulling = value;
+                            Minecraft.getInstance().levelRenderer.allChanged();
+                        },
+                        () -> config.gpuCulling)
+                        .setTooltip(Component.nullToEmpty("""
+                        Builds the opaque chunk draw lists on the GPU,
+                        culling sections with a compute shader.
+                        Requires Indirect Draw support.""")),
                 new SwitchOption("Low VRAM Mode",
                         value -> {
                             config.perRenderTypeAreaBuffers = value;
@@ -225,6 +244,39 @@ public class Options {
                         Reduces VRAM usage by approx 20%
                         May Increase/Decrease FPS: Depends on GPU architecture
                         (Can boost performance on Old Nvidia cards)""")),
+                new SwitchOption("Shared Chunk Buffers",
+                        value -> {
+                            config.sharedAreaBuffers = value;
+                            Minecraft.getInstance().levelRenderer.allChanged();
+                        },
+                        () -> config.sharedAreaBuffers).setTooltip(Component.nullToEmpty("""
+                        Stores all chunk areas in shared buffers
+                        Draws each chunk layer with a single call""")),
+                new SwitchOption("Defragment Chunk Buffers",
+                        value -> config.defragAreaBuffers = value,
+                        () -> config.defragAreaBuffers).setTooltip(Component.nullToEmpty("""
+                        Compacts chunk buffers in the background
+                        Reduces chunk buffer reallocations on long sessions""")),
+                new RangeOption("Texture Upload Budget", 0, 256, 16,
+                        value -> value == 0 ? "Unlimited" : value + " MB",
+                        value -> config.textureUploadBudget = value,
+                        () -> config.textureUploadBudget).setTooltip(Component.nullToEmpty("""
+                        Max texture data uploaded per frame
+                        Spreads large resource reloads over several frames""")),
+                new RangeOption("Vertex Buffer Shrink Delay", 0, 1200, 60,
+                        value -> value == 0 ? "Off" : value + " frames",
+                        value -> config.vertexBufferShrinkFrames = value,
+                        () -> config.vertexBufferShrinkFrames).setTooltip(Component.nullToEmpty("""
+                        Frames of low immediate mode vertex usage
+                        before the per frame vertex buffers shrink back""")),
+                new SwitchOption("Export Profiler Data",
+                        value -> {
+                            config.profilerExport = value;
+                            Profiler2.setActive(ProfilerOverlay.shouldRender);
+                        },
+                        () -> config.profilerExport).setTooltip(Component.nullToEmpty("""
+                        Writes frame time percentiles every 5 seconds
+                        to logs/vulkanmod-profiler.jsonl""")),
                 new CyclingOption<>("Device selector",
                         IntStream.range(-1, DeviceManager.suitableDevices.size()).boxed().toArray(Integer[]::new),
                         value -> {
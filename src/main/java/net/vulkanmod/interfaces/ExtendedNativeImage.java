@@ -0,0 +1,9 @@
+package net.vulkanmod.interfaces;
+
+public interface ExtendedNativeImage {
+
+    long getPixelsPtr();
+
+    //Swaps BGRA swap chain data to RGBA and makes it opaque, safe to call off the render thread
+    void convertReadback();
+}
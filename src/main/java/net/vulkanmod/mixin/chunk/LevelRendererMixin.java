@@ -2,8 +2,6 @@ package net.vulkanmod.mixin.chunk;
 
 import com.mojang.blaze3d.vertex.PoseStack;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.objects.Object2ReferenceOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.minecraft.client.Camera;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
@@ -20,7 +18,8 @@ import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.phys.Vec3;
 import net.vulkanmod.Initializer;
 import net.vulkanmod.render.chunk.WorldRenderer;
-import net.vulkanmod.vulkan.util.Pair;
+import net.vulkanmod.render.profiling.AllocationMeter;
+import net.vulkanmod.render.util.ClassGroupedPairs;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Matrix4f;
 import org.spongepowered.asm.mixin.*;
@@ -56,8 +55,9 @@ public abstract class LevelRendererMixin {
 
     private WorldRenderer worldRenderer;
 
+    //Entities grouped by class, lists are kept between frames and only cleared to avoid per frame allocations
     @Unique
-    private Object2ReferenceOpenHashMap<Class<? extends Entity>, ObjectArrayList<Pair<Entity, MultiBufferSource>>> entitiesMap = new Object2ReferenceOpenHashMap<>();
+    private final ClassGroupedPairs<Entity, MultiBufferSource> entityGroups = new ClassGroupedPairs<>();
 
     @Inject(method = "<init>", at = @At("RETURN"))
     private void init(Minecraft minecraft, EntityRenderDispatcher entityRenderDispatcher, BlockEntityRenderDispatcher blockEntityRenderDispatcher, RenderBuffers renderBuffers, CallbackInfo ci) {
@@ -88,7 +88,7 @@ public abstract class LevelRendererMixin {
     private void setupRender(Camera camera, Frustum frustum, boolean isCapturedFrustum, boolean spectator) {
         this.worldRenderer.setupRenderer(camera, frustum, isCapturedFrustum, spectator);
 
-        entitiesMap.clear();
+        this.entityGroups.clear();
     }
 
     /**
@@ -200,19 +200,13 @@ public abstract class LevelRendererMixin {
             double i = Mth.lerp(g, entity.yOld, entity.getY());
             double j = Mth.lerp(g, entity.zOld, entity.getZ());
             float k = Mth.lerp(g, entity.yRotO, entity.getYRot());
+            AllocationMeter.begin(AllocationMeter.ENTITIES);
             this.entityRenderDispatcher.render(entity, h - d, i - e, j - f, k, g, poseStack, multiBufferSource, this.entityRenderDispatcher.getPackedLightCoords(entity, g));
+            AllocationMeter.end(AllocationMeter.ENTITIES);
             return;
         }
 
-        var entityClass = entity.getClass();
-        var list = this.entitiesMap.get(entityClass);
-
-        if(list == null) {
-            list = new ObjectArrayList<>();
-            this.entitiesMap.put(entityClass, list);
-        }
-
-        list.add(new Pair<>(entity, multiBufferSource));
+        this.entityGroups.add(entity, multiBufferSource);
 
     }
 
@@ -226,10 +220,14 @@ public abstract class LevelRendererMixin {
 
         Vec3 cameraPos = WorldRenderer.getCameraPos();
 
-        for(var list : this.entitiesMap.values()) {
-            for(var pair : list) {
-                Entity entity = pair.first;
-                MultiBufferSource multiBufferSource = pair.second;
+        AllocationMeter.begin(AllocationMeter.ENTITIES);
+        for(int c = 0; c < this.entityGroups.groupCount(); ++c) {
+            var list = this.entityGroups.getFirsts(c);
+            var bufferSources = this.entityGroups.getSeconds(c);
+
+            for(int n = 0; n < list.size(); ++n) {
+                Entity entity = list.get(n);
+                MultiBufferSource multiBufferSource = bufferSources.get(n);
 
                 double h = Mth.lerp(partialTicks, entity.xOld, entity.getX());
                 double i = Mth.lerp(partialTicks, entity.yOld, entity.getY());
@@ -238,6 +236,7 @@ public abstract class LevelRendererMixin {
                 this.entityRenderDispatcher.render(entity, h - cameraPos.x, i - cameraPos.y, j - cameraPos.z, k, partialTicks, poseStack, multiBufferSource, this.entityRenderDispatcher.getPackedLightCoords(entity, partialTicks));
             }
         }
+        AllocationMeter.end(AllocationMeter.ENTITIES);
     }
 
     @Redirect(method = "renderWorldBorder", at=@At(value = "INVOKE", target = "Lnet/minecraft/client/renderer/GameRenderer;getDepthFar()F"))
@@ -5,6 +5,7 @@ import net.minecraft.client.gui.Gui;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.DebugScreenOverlay;
 import net.minecraft.client.renderer.entity.ItemRenderer;
+import net.vulkanmod.render.profiling.AllocationMeter;
 import net.vulkanmod.render.profiling.ProfilerOverlay;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
@@ -23,6 +24,16 @@ public class GuiMixin {
         ProfilerOverlay.createInstance(minecraft);
     }
 
+    @Inject(method = "render", at = @At("HEAD"))
+    private void beginGuiAllocations(GuiGraphics guiGraphics, float f, CallbackInfo ci) {
+        AllocationMeter.begin(AllocationMeter.GUI);
+    }
+
+    @Inject(method = "render", at = @At("RETURN"))
+    private void endGuiAllocations(GuiGraphics guiGraphics, float f, CallbackInfo ci) {
+        AllocationMeter.end(AllocationMeter.GUI);
+    }
+
     @Inject(method = "render", at = @At(value = "INVOKE",
             target = "Lnet/minecraft/client/gui/Gui;renderEffects(Lnet/minecraft/client/gui/GuiGraphics;)V", shift = At.Shift.AFTER))
     private void renderProfilerOverlay(GuiGraphics guiGraphics, float f, CallbackInfo ci) {
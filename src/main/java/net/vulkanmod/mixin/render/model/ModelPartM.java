@@ -36,7 +36,8 @@ public class ModelPartM {
 
         int packedColor = VertexUtil.packColor(r, g, b, a);
 
-        for (ModelPart.Cube cube : this.cubes) {
+        for (int c = 0; c < this.cubes.size(); ++c) {
+            ModelPart.Cube cube = this.cubes.get(c);
             ModelPartCubeMixed cubeMixed = (ModelPartCubeMixed)(cube);
             CubeModel cubeModel = cubeMixed.getCubeModel();
 
@@ -46,11 +47,10 @@ public class ModelPartM {
             cubeModel.transformVertices(matrix4f);
 
             for (ModelPart.Polygon polygon : polygons) {
-                Vector3f vector3f = matrix3f.transform(new Vector3f(polygon.normal));
 //                float l = vector3f.x();
 //                float m = vector3f.y();
 //                float n = vector3f.z();
-                int packedNormal = VertexUtil.packNormal(vector3f.x(), vector3f.y(), vector3f.z());
+                int packedNormal = VertexUtil.packNormal(matrix3f, polygon.normal);
 
                 ModelPart.Vertex[] vertices = polygon.vertices;
 //                int var20 = vertices.length;
@@ -10,7 +10,9 @@ import net.vulkanmod.interfaces.ExtendedRenderTarget;
 import net.vulkanmod.vulkan.Renderer;
 import net.vulkanmod.vulkan.framebuffer.Framebuffer;
 import net.vulkanmod.vulkan.framebuffer.RenderPass;
+import net.vulkanmod.vulkan.texture.TextureUploadBatcher;
 import net.vulkanmod.vulkan.texture.VTextureSelector;
+import net.vulkanmod.vulkan.texture.VulkanImage;
 import net.vulkanmod.vulkan.util.DrawUtil;
 import org.lwjgl.opengl.GL30;
 import org.lwjgl.system.MemoryStack;
@@ -105,9 +107,11 @@ public abstract class RenderTargetMixin implements ExtendedRenderTarget {
 
         GlTexture.bindTexture(this.colorTextureId);
 
+        VulkanImage image = GlTexture.getBoundTexture().getVulkanImage();
+        TextureUploadBatcher.frameLayoutChange(image);
+
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            GlTexture.getBoundTexture().getVulkanImage()
-                    .readOnlyLayout(stack, Renderer.getCommandBuffer());
+            image.readOnlyLayout(stack, Renderer.getCommandBuffer());
         }
     }
 
@@ -3,7 +3,6 @@ package net.vulkanmod.mixin.texture;
 import com.mojang.blaze3d.platform.NativeImage;
 import net.minecraft.client.renderer.texture.SpriteContents;
 import net.vulkanmod.render.texture.SpriteUtil;
-import net.vulkanmod.vulkan.texture.VTextureSelector;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -16,7 +15,5 @@ public class MSpriteContents {
     private void checkUpload(int i, int j, int k, int l, NativeImage[] nativeImages, CallbackInfo ci) {
         if(!SpriteUtil.shouldUpload())
             ci.cancel();
-
-        SpriteUtil.addTransitionedLayout(VTextureSelector.getBoundTexture(0));
     }
 }
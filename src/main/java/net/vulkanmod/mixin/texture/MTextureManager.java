@@ -5,8 +5,6 @@ import net.minecraft.client.renderer.texture.MissingTextureAtlasSprite;
 import net.minecraft.client.renderer.texture.TextureManager;
 import net.minecraft.client.renderer.texture.Tickable;
 import net.minecraft.resources.ResourceLocation;
-import net.vulkanmod.render.texture.SpriteUtil;
-import net.vulkanmod.vulkan.DeviceManager;
 import net.vulkanmod.vulkan.Renderer;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
@@ -32,17 +30,10 @@ public abstract class MTextureManager {
         if(Renderer.skipRendering)
             return;
 
-        //Debug D
-        if(SpriteUtil.shouldUpload())
-            DeviceManager.getGraphicsQueue().startRecording();
+        //Animated sprite uploads are recorded in the frame upload batch (TextureUploadBatcher)
         for (Tickable tickable : this.tickableTextures) {
             tickable.tick();
         }
-        if(SpriteUtil.shouldUpload()) {
-            SpriteUtil.transitionLayouts(DeviceManager.getGraphicsQueue().getCommandBuffer().getHandle());
-            DeviceManager.getGraphicsQueue().endRecordingAndSubmit();
-//            Synchronization.INSTANCE.waitFences();
-        }
     }
 
     /**
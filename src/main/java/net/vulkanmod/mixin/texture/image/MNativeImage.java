@@ -2,6 +2,7 @@ package net.vulkanmod.mixin.texture.image;
 
 import com.mojang.blaze3d.platform.NativeImage;
 import com.mojang.blaze3d.systems.RenderSystem;
+import net.vulkanmod.interfaces.ExtendedNativeImage;
 import net.vulkanmod.vulkan.Vulkan;
 import net.vulkanmod.vulkan.texture.ImageUtil;
 import net.vulkanmod.vulkan.texture.VTextureSelector;
@@ -20,7 +21,7 @@ import java.nio.ByteBuffer;
 import java.util.Locale;
 
 @Mixin(NativeImage.class)
-public abstract class MNativeImage {
+public abstract class MNativeImage implements ExtendedNativeImage {
 
     @Shadow private long pixels;
     @Shadow private long size;
@@ -83,20 +84,34 @@ public abstract class MNativeImage {
         ImageUtil.downloadTexture(VTextureSelector.getBoundTexture(0), this.pixels);
 
         if (removeAlpha && this.format.hasAlpha()) {
-            if (this.format != NativeImage.Format.RGBA) {
-                throw new IllegalArgumentException(String.format(Locale.ROOT, "getPixelRGBA only works on RGBA images; have %s", this.format));
-            }
+            this.convertReadback();
+        }
+    }
+
+    @Override
+    public long getPixelsPtr() {
+        this.checkAllocated();
+        return this.pixels;
+    }
+
+    @Override
+    public void convertReadback() {
+        if (!this.format.hasAlpha())
+            return;
+
+        if (this.format != NativeImage.Format.RGBA) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT, "getPixelRGBA only works on RGBA images; have %s", this.format));
+        }
 
-            for (long l = 0; l < this.width * this.height * 4L; l+=4) {
-                int v =  MemoryUtil.memGetInt(this.pixels + l);
+        for (long l = 0; l < this.width * this.height * 4L; l+=4) {
+            int v =  MemoryUtil.memGetInt(this.pixels + l);
 
-                //TODO
-                if(Vulkan.getSwapChain().isBGRAformat)
-                    v = ColorUtil.BGRAtoRGBA(v);
+            //TODO
+            if(Vulkan.getSwapChain().isBGRAformat)
+                v = ColorUtil.BGRAtoRGBA(v);
 
-                v = v | 255 << this.format.alphaOffset();
-                MemoryUtil.memPutInt(this.pixels + l, v);
-            }
+            v = v | 255 << this.format.alphaOffset();
+            MemoryUtil.memPutInt(this.pixels + l, v);
         }
 
     }
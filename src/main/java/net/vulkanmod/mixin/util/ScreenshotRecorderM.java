@@ -2,14 +2,35 @@ package net.vulkanmod.mixin.util;
 
 import com.mojang.blaze3d.pipeline.RenderTarget;
 import com.mojang.blaze3d.platform.NativeImage;
+import net.minecraft.ChatFormatting;
+import net.minecraft.Util;
 import net.minecraft.client.Screenshot;
+import net.minecraft.network.chat.ClickEvent;
+import net.minecraft.network.chat.Component;
 import net.vulkanmod.gl.GlTexture;
+import net.vulkanmod.interfaces.ExtendedNativeImage;
+import net.vulkanmod.vulkan.texture.ImageReadback;
+import net.vulkanmod.vulkan.texture.VTextureSelector;
+import org.lwjgl.system.MemoryUtil;
+import org.slf4j.Logger;
+import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Overwrite;
+import org.spongepowered.asm.mixin.Shadow;
+
+import java.io.File;
+import java.util.function.Consumer;
 
 @Mixin(Screenshot.class)
 public class ScreenshotRecorderM {
 
+    @Shadow @Final private static Logger LOGGER;
+
+    @Shadow
+    private static File getFile(File file) {
+        return null;
+    }
+
     /**
      * @author
      */
@@ -32,4 +53,39 @@ public class ScreenshotRecorderM {
         //nativeimage.flipY();
         return nativeimage;
     }
+
+    /**
+     * @author
+     * @reason Read back without waiting on the GPU, the copy is picked up on a later frame
+     */
+    @Overwrite
+    private static void _grab(File gameDirectory, String screenshotName, RenderTarget target, Consumer<Component> messageConsumer) {
+        File directory = new File(gameDirectory, "screenshots");
+        directory.mkdir();
+        File file = screenshotName == null ? getFile(directory) : new File(directory, screenshotName);
+
+        GlTexture.bindTexture(target.getColorTextureId());
+
+        ImageReadback.readAsync(VTextureSelector.getBoundTexture(0), (ptr, width, height) -> {
+            NativeImage nativeImage = new NativeImage(width, height, false);
+            MemoryUtil.memCopy(ptr, ((ExtendedNativeImage) (Object) nativeImage).getPixelsPtr(), (long) width * height * 4L);
+
+            //Color conversion and encoding off the render thread
+            Util.ioPool().execute(() -> {
+                try {
+                    ((ExtendedNativeImage) (Object) nativeImage).convertReadback();
+                    nativeImage.writeToFile(file);
+
+                    Component component = Component.literal(file.getName()).withStyle(ChatFormatting.UNDERLINE)
+                            .withStyle(style -> style.withClickEvent(new ClickEvent(ClickEvent.Action.OPEN_FILE, file.getAbsolutePath())));
+                    messageConsumer.accept(Component.translatable("screenshot.success", component));
+                } catch (Exception e) {
+                    LOGGER.warn("Couldn't save screenshot", e);
+                    messageConsumer.accept(Component.translatable("screenshot.failure", e.getMessage()));
+                } finally {
+                    nativeImage.close();
+                }
+            });
+        });
+    }
 }
@@ -17,8 +17,10 @@ import java.nio.ByteBuffer;
 
 @Environment(EnvType.CLIENT)
 public class VBO {
-    private VertexBuffer vertexBuffer;
-    private IndexBuffer indexBuffer;
+    //Ranges of the shared pools, an upload frees the previous ones
+    private BufferPool.Allocation vertexAllocation;
+    private BufferPool.Allocation indexAllocation;
+    private AutoIndexBuffer autoIndexBuffer;
 
     private int indexCount;
     private int vertexCount;
@@ -46,16 +48,20 @@ public class VBO {
     private void configureVertexFormat(BufferBuilder.DrawState parameters, ByteBuffer data) {
         if (!parameters.indexOnly()) {
 
-            if(vertexBuffer != null)
-                this.vertexBuffer.freeBuffer();
+            if(vertexAllocation != null)
+                this.vertexAllocation.free();
 
-            this.vertexBuffer = new VertexBuffer(data.remaining(), MemoryType.GPU_MEM);
-            vertexBuffer.copyToVertexBuffer(parameters.format().getVertexSize(), parameters.vertexCount(), data);
+            this.vertexAllocation = data.remaining() > 0 ? BufferPool.VERTICES.upload(data) : null;
 
         }
     }
 
     private void configureIndexBuffer(BufferBuilder.DrawState parameters, ByteBuffer data) {
+        if(indexAllocation != null) {
+            this.indexAllocation.free();
+            this.indexAllocation = null;
+        }
+
         if (parameters.sequentialIndex()) {
 
             AutoIndexBuffer autoIndexBuffer;
@@ -73,23 +79,18 @@ public class VBO {
                 default -> throw new IllegalStateException("Unexpected draw mode:" + this.mode);
             }
 
-            if(indexBuffer != null && !this.autoIndexed)
-                indexBuffer.freeBuffer();
-
-            if(autoIndexBuffer != null) {
+            if(autoIndexBuffer != null)
                 autoIndexBuffer.checkCapacity(vertexCount);
-                indexBuffer = autoIndexBuffer.getIndexBuffer();
-            }
+
+            this.autoIndexBuffer = autoIndexBuffer;
 
             this.autoIndexed = true;
 
         }
         else {
-            if(indexBuffer != null)
-                this.indexBuffer.freeBuffer();
-            this.indexBuffer = new IndexBuffer(data.remaining(), MemoryType.GPU_MEM);
-//            this.indexBuffer = new AsyncIndexBuffer(data.remaining());
-            indexBuffer.copyBuffer(data);
+            this.indexAllocation = data.remaining() > 0 ? BufferPool.INDICES.upload(data) : null;
+            this.autoIndexBuffer = null;
+            this.autoIndexed = false;
         }
 
     }
@@ -117,10 +118,7 @@ public class VBO {
                 renderer.uploadAndBindUBOs(pipeline, shouldUpdate);
             }
 
-            if(indexBuffer != null)
-                Renderer.getDrawer().drawIndexed(vertexBuffer, indexBuffer, indexCount);
-            else
-                Renderer.getDrawer().draw(vertexBuffer, vertexCount);
+            this.draw();
 
             VRenderSystem.applyMVP(RenderSystem.getModelViewMatrix(), RenderSystem.getProjectionMatrix());
 
@@ -131,18 +129,40 @@ public class VBO {
         if (this.indexCount != 0) {
 
             RenderSystem.assertOnRenderThread();
-            Renderer.getDrawer().drawIndexed(vertexBuffer, indexBuffer, indexCount);
+            this.draw();
+        }
+    }
+
+    private void draw() {
+        if(this.vertexAllocation == null)
+            return;
+
+        long vertexBuffer = this.vertexAllocation.getBufferId();
+        int vertexOffset = this.vertexAllocation.getOffset();
+
+        if(this.indexAllocation != null)
+            Renderer.getDrawer().drawIndexed(vertexBuffer, vertexOffset, this.indexAllocation.getBufferId(), this.indexAllocation.getOffset(), indexCount);
+        else if(this.autoIndexBuffer != null) {
+            //Fetched on draw, the shared index buffer is replaced when it grows
+            IndexBuffer indexBuffer = this.autoIndexBuffer.getIndexBuffer();
+            Renderer.getDrawer().drawIndexed(vertexBuffer, vertexOffset, indexBuffer.getId(), indexBuffer.getOffset(), indexCount);
         }
+        else
+            Renderer.getDrawer().draw(vertexBuffer, vertexOffset, vertexCount);
     }
 
     public void close() {
         if(vertexCount <= 0) return;
-        vertexBuffer.freeBuffer();
-        vertexBuffer = null;
-        if(!autoIndexed) {
-            indexBuffer.freeBuffer();
-            indexBuffer = null;
+
+        if(vertexAllocation != null) {
+            vertexAllocation.free();
+            vertexAllocation = null;
+        }
+        if(indexAllocation != null) {
+            indexAllocation.free();
+            indexAllocation = null;
         }
+        autoIndexBuffer = null;
 
         this.vertexCount = 0;
         this.indexCount = 0;
@@ -1,25 +1,52 @@
 package net.vulkanmod.render.chunk;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectSortedMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectRBTreeSet;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
 import net.vulkanmod.render.chunk.util.Util;
-import net.vulkanmod.vulkan.DeviceManager;
 import net.vulkanmod.vulkan.memory.*;
 
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
+import java.util.Comparator;
 
 import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_VERTEX_BUFFER_BIT;
 
 public class AreaBuffer {
+    //Defragment only if at least this much space is free and the largest free segment holds less than half of it
+    private static final int DEFRAG_MIN_FREE = 262144;
+
+    private static final Comparator<Segment> SIZE_COMPARATOR = (s1, s2) -> {
+        int c = Integer.compare(s1.size, s2.size);
+        return c != 0 ? c : Integer.compare(s1.offset, s2.offset);
+    };
+
+    //Upload segments mirror the offset of their used segment
+    private static final Comparator<Segment> DESCENDING_OFFSET_COMPARATOR = (s1, s2) -> Integer.compare(s2.offset, s1.offset);
+
     private final MemoryType memoryType;
     private final int usage;
 
-    private final LinkedList<Segment> freeSegments = new LinkedList<>();
+    //Free segments are indexed both by size (best fit lookup) and by offset (coalescing of neighbours)
+    private final ObjectRBTreeSet<Segment> freeSegmentsBySize = new ObjectRBTreeSet<>(SIZE_COMPARATOR);
+    private final Int2ObjectRBTreeMap<Segment> freeSegmentsByOffset = new Int2ObjectRBTreeMap<>();
     private final Reference2ReferenceOpenHashMap<Segment, Segment> usedSegments = new Reference2ReferenceOpenHashMap<>();
 
+    private final Segment searchKey = new Segment(0, 0);
+
+    //Scratch list of the upload segments considered by defragment
+    private final ObjectArrayList<Segment> defragSegments = new ObjectArrayList<>();
+    //Set when the last defragment moved nothing, cleared by any change of the free segments
+    private boolean defragStalled;
+
     private final int elementSize;
 
+    //Uploads always target buffer, draws use drawBuffer until pending growth copies retired
     private Buffer buffer;
+    private Buffer drawBuffer;
+    private int pendingGrowths;
+    private boolean released;
 
     int size;
     int used;
@@ -31,9 +58,10 @@ public class AreaBuffer {
         this.memoryType = MemoryType.GPU_MEM;
 
         this.buffer = this.allocateBuffer(size);
+        this.drawBuffer = this.buffer;
         this.size = size;
 
-        freeSegments.add(new Segment(0, size));
+        this.addFreeSegment(0, size);
     }
 
     private Buffer allocateBuffer(int size) {
@@ -62,7 +90,7 @@ public class AreaBuffer {
         Segment segment = findSegment(size);
 
         if(segment.size - size > 0) {
-            freeSegments.add(new Segment(segment.offset + size, segment.size - size));
+            this.addFreeSegment(segment.offset + size, segment.size - size);
         }
 
         usedSegments.put(uploadSegment, new Segment(segment.offset, size));
@@ -73,35 +101,33 @@ public class AreaBuffer {
         uploadSegment.offset = segment.offset;
         uploadSegment.size = size;
         uploadSegment.status = Segment.PENDING_BIT;
+        uploadSegment.moved = false;
 
         this.used += size;
 
     }
 
     public Segment findSegment(int size) {
-        Segment segment = null;
-        int i = 0;
-        int idx = 0;
-        int t = Integer.MAX_VALUE;
-        for(Segment segment1 : freeSegments) {
-
-            if(segment1.size >= size && segment1.size < t) {
-                segment = segment1;
-                t = segment1.size;
-                idx = i;
-            }
-            ++i;
-        }
+        Segment segment = this.findFreeSegment(size);
 
         if(segment == null) {
             return this.reallocate(size);
         }
 
-        freeSegments.remove(idx);
+        this.removeFreeSegment(segment);
 
         return segment;
     }
 
+    //Smallest free segment that fits, lowest offset on ties
+    private Segment findFreeSegment(int size) {
+        this.searchKey.offset = Integer.MIN_VALUE;
+        this.searchKey.size = size;
+
+        var iterator = this.freeSegmentsBySize.iterator(this.searchKey);
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
     public Segment reallocate(int uploadSize) {
         int oldSize = this.size;
         int increment = this.size >> 1;
@@ -117,21 +143,43 @@ public class AreaBuffer {
         int newSize = oldSize + increment;
 
         Buffer buffer = this.allocateBuffer(newSize);
+        Buffer previous = this.buffer;
 
-        AreaUploadManager.INSTANCE.submitUploads();
-        AreaUploadManager.INSTANCE.waitAllUploads();
-
-        //Sync upload
-        DeviceManager.getTransferQueue().uploadBufferImmediate(this.buffer.getId(), 0, buffer.getId(), 0, this.buffer.getBufferSize());
-        this.buffer.freeBuffer();
+        //The old buffer is no longer written so it can still be drawn while the copy is in flight
+        AreaUploadManager.INSTANCE.copyBufferAsync(previous.getId(), buffer.getId(), previous.getBufferSize(),
+                () -> this.onGrowthCompleted(previous));
         this.buffer = buffer;
+        this.pendingGrowths++;
 
         this.size = newSize;
 
         int offset = Util.align(oldSize, elementSize);
 
-        Segment segment = new Segment(offset, increment);
-        return segment;
+        //Merge with the free segment at the end of the old buffer, if any
+        Segment tail = this.getPrecedingFreeSegment(oldSize);
+        if(tail != null) {
+            this.removeFreeSegment(tail);
+            return new Segment(tail.offset, newSize - tail.offset);
+        }
+
+        return new Segment(offset, newSize - offset);
+    }
+
+    private synchronized void onGrowthCompleted(Buffer previous) {
+        this.pendingGrowths--;
+
+        //Intermediate buffer of consecutive growths
+        if(previous != this.drawBuffer)
+            previous.freeBuffer();
+
+        if(this.pendingGrowths == 0 && !this.released && this.drawBuffer != this.buffer) {
+            this.drawBuffer.freeBuffer();
+            this.drawBuffer = this.buffer;
+        }
+    }
+
+    public synchronized boolean isGrowthPending() {
+        return this.pendingGrowths > 0;
     }
 
     public synchronized void setSegmentFree(Segment uploadSegment) {
@@ -140,16 +188,133 @@ public class AreaBuffer {
         if(segment == null)
             return;
 
-        this.freeSegments.add(segment);
+        this.addFreeSegment(segment.offset, segment.size);
         this.used -= segment.size;
     }
 
+    /**
+     * Moves used segments from the end of the buffer into free holes found before them,
+     * copying their content on the GPU. Moved upload segments are flagged so their owners can
+     * refresh cached offsets; old ranges are released only once in flight frames stopped using them.
+     * @return moved bytes
+     */
+    public synchronized int defragment(int maxBytes) {
+        //Moved offsets would be applied before the draw buffer is swapped
+        if(this.pendingGrowths > 0 || this.defragStalled)
+            return 0;
+
+        int free = this.size - this.used;
+        if(free < DEFRAG_MIN_FREE || this.freeSegmentsBySize.isEmpty())
+            return 0;
+
+        if(this.freeSegmentsBySize.last().size >= free >> 1)
+            return 0;
+
+        ObjectArrayList<Segment> uploadSegments = this.defragSegments;
+        boolean skipped = false;
+        for(Segment uploadSegment : this.usedSegments.keySet()) {
+            //Skip segments still being uploaded
+            if(uploadSegment.isReady())
+                uploadSegments.add(uploadSegment);
+            else
+                skipped = true;
+        }
+        uploadSegments.sort(DESCENDING_OFFSET_COMPARATOR);
+
+        long bufferId = this.buffer.getId();
+        int moved = 0;
+
+        for(int i = 0; i < uploadSegments.size() && moved < maxBytes; ++i) {
+            Segment uploadSegment = uploadSegments.get(i);
+            Segment segment = this.usedSegments.get(uploadSegment);
+
+            Segment freeSegment = this.findFreeSegment(segment.size);
+            if(freeSegment == null || freeSegment.offset > segment.offset)
+                continue;
+
+            this.removeFreeSegment(freeSegment);
+            if(freeSegment.size - segment.size > 0) {
+                this.addFreeSegment(freeSegment.offset + segment.size, freeSegment.size - segment.size);
+            }
+
+            AreaUploadManager.INSTANCE.copyAsync(uploadSegment, bufferId, segment.offset, freeSegment.offset, segment.size);
+
+            Segment newSegment = new Segment(freeSegment.offset, segment.size);
+            this.usedSegments.put(uploadSegment, newSegment);
+
+            uploadSegment.offset = newSegment.offset;
+            uploadSegment.status = Segment.PENDING_BIT;
+            uploadSegment.moved = true;
+
+            MemoryManager.getInstance().addFrameOp(() -> this.releaseMovedSegment(segment));
+
+            moved += segment.size;
+        }
+
+        uploadSegments.clear();
+
+        //Segments still uploading may become movable without any change of the free segments
+        if(moved == 0 && !skipped)
+            this.defragStalled = true;
+
+        return moved;
+    }
+
+    private synchronized void releaseMovedSegment(Segment segment) {
+        this.addFreeSegment(segment.offset, segment.size);
+    }
+
+    private void addFreeSegment(int offset, int size) {
+        Segment previous = this.getPrecedingFreeSegment(offset);
+        if(previous != null) {
+            this.removeFreeSegment(previous);
+            offset = previous.offset;
+            size += previous.size;
+        }
+
+        Segment next = this.freeSegmentsByOffset.get(offset + size);
+        if(next != null) {
+            this.removeFreeSegment(next);
+            size += next.size;
+        }
+
+        Segment segment = new Segment(offset, size);
+        this.freeSegmentsBySize.add(segment);
+        this.freeSegmentsByOffset.put(offset, segment);
+        this.defragStalled = false;
+    }
+
+    private void removeFreeSegment(Segment segment) {
+        this.defragStalled = false;
+        this.freeSegmentsBySize.remove(segment);
+        this.freeSegmentsByOffset.remove(segment.offset);
+    }
+
+    //Free segment ending exactly at offset
+    private Segment getPrecedingFreeSegment(int offset) {
+        Int2ObjectSortedMap<Segment> head = this.freeSegmentsByOffset.headMap(offset);
+        if(head.isEmpty())
+            return null;
+
+        Segment segment = head.get(head.lastIntKey());
+        return segment.offset + segment.size == offset ? segment : null;
+    }
+
+    public int getFreeSegmentsCount() {
+        return this.freeSegmentsBySize.size();
+    }
+
+    //Buffer to bind for drawing
     public long getId() {
-        return this.buffer.getId();
+        return this.drawBuffer.getId();
     }
 
-    public void freeBuffer() {
+    public synchronized void freeBuffer() {
         this.buffer.freeBuffer();
+        if(this.drawBuffer != this.buffer)
+            this.drawBuffer.freeBuffer();
+
+        this.released = true;
 //        this.globalBuffer.freeSubAllocation(subAllocation);
     }
 
@@ -159,6 +324,7 @@ public class AreaBuffer {
 
         int offset, size;
         byte status;
+        boolean moved;
 
         public Segment() {
             reset();
@@ -174,6 +340,7 @@ public class AreaBuffer {
             this.offset = -1;
             this.size = -1;
             this.status = 0;
+            this.moved = false;
         }
 
         public int getOffset() {
@@ -0,0 +1,123 @@
+package net.vulkanmod.render.chunk;
+
+import org.joml.FrustumIntersection;
+import org.joml.Vector3i;
+
+//Classifies a range of areas level by level (area, octants, sub cubes) testing every level's boxes in one batch,
+//same results as ChunkArea.updateFrustum
+class AreaFrustumBatch {
+    static final int MAX_AREAS = 64;
+
+    private static final int AREA_WIDTH = 8 << 4;
+
+    private Level current = new Level(MAX_AREAS * 64);
+    private Level next = new Level(MAX_AREAS * 64);
+
+    //Writes results into each area inFrustum and sets frustumChanged bits of the given range
+    void classify(VFrustum frustum, ChunkArea[] chunkAreas, int from, int to, int[] frustumChanged) {
+        if(to - from > MAX_AREAS)
+            throw new IllegalArgumentException("Too many areas: " + (to - from));
+
+        double camX = frustum.getCamX();
+        double camY = frustum.getCamY();
+        double camZ = frustum.getCamZ();
+
+        Level level = this.current;
+        level.count = 0;
+
+        for(int i = from; i < to; ++i) {
+            Vector3i position = chunkAreas[i].position();
+            level.add(i, 0, position.x(), position.y(), position.z(), AREA_WIDTH, camX, camY, camZ);
+        }
+
+        int size = AREA_WIDTH;
+        //Number of inFrustum entries covered by a box of the current level
+        int span = 64;
+
+        while(level.count > 0) {
+            frustum.intersectAabs(level.minX, level.minY, level.minZ, level.maxX, level.maxY, level.maxZ, level.results, level.count);
+
+            Level next = this.next;
+            next.count = 0;
+
+            int childSize = size >> 1;
+            int childSpan = span >> 3;
+
+            for(int i = 0; i < level.count; ++i) {
+                byte result = level.results[i];
+                int area = level.areas[i];
+                int slot = level.slots[i];
+
+                if(result == FrustumIntersection.INTERSECT && span > 1) {
+                    int x = level.x[i], y = level.y[i], z = level.z[i];
+
+                    for(int c = 0; c < 8; ++c) {
+                        next.add(area, slot + c * childSpan,
+                                x + ((c >> 2) & 1) * childSize, y + ((c >> 1) & 1) * childSize, z + (c & 1) * childSize,
+                                childSize, camX, camY, camZ);
+                    }
+                }
+                else {
+                    byte[] inFrustum = chunkAreas[area].inFrustum();
+                    boolean changed = false;
+
+                    for(int j = slot; j < slot + span; ++j) {
+                        changed |= inFrustum[j] != result;
+                        inFrustum[j] = result;
+                    }
+
+                    if(changed)
+                        frustumChanged[area >> 5] |= 1 << (area & 31);
+                }
+            }
+
+            this.next = level;
+            this.current = next;
+            level = next;
+
+            size = childSize;
+            span = childSpan;
+        }
+    }
+
+    private static class Level {
+        int count;
+
+        final int[] areas, slots;
+        final int[] x, y, z;
+        final float[] minX, minY, minZ, maxX, maxY, maxZ;
+        final byte[] results;
+
+        Level(int capacity) {
+            this.areas = new int[capacity];
+            this.slots = new int[capacity];
+            this.x = new int[capacity];
+            this.y = new int[capacity];
+            this.z = new int[capacity];
+            this.minX = new float[capacity];
+            this.minY = new float[capacity];
+            this.minZ = new float[capacity];
+            this.maxX = new float[capacity];
+            this.maxY = new float[capacity];
+            this.maxZ = new float[capacity];
+            this.results = new byte[capacity];
+        }
+
+        void add(int area, int slot, int x, int y, int z, int size, double camX, double camY, double camZ) {
+            int i = this.count++;
+
+            this.areas[i] = area;
+            this.slots[i] = slot;
+            this.x[i] = x;
+            this.y[i] = y;
+            this.z[i] = z;
+
+            this.minX[i] = (float) (x - camX);
+            this.minY[i] = (float) (y - camY);
+            this.minZ[i] = (float) (z - camZ);
+            this.maxX[i] = (float) (x + size - camX);
+            this.maxY[i] = (float) (y + size - camY);
+            this.maxZ[i] = (float) (z + size - camZ);
+        }
+    }
+}
@@ -27,59 +27,97 @@ public class AreaUploadManager {
     Queue queue = DeviceManager.getTransferQueue();
 
     ObjectArrayList<AreaBuffer.Segment>[] recordedUploads;
+    ObjectArrayList<Runnable>[] completionCallbacks;
     CommandPool.CommandBuffer[] commandBuffers;
 
     LongOpenHashSet dstBuffers = new LongOpenHashSet();
+    private final StagingBuffer.Region stagingRegion = new StagingBuffer.Region();
 
     int currentFrame;
 
     public void init() {
         this.commandBuffers = new CommandPool.CommandBuffer[FRAME_NUM];
         this.recordedUploads = new ObjectArrayList[FRAME_NUM];
+        this.completionCallbacks = new ObjectArrayList[FRAME_NUM];
 
         for (int i = 0; i < FRAME_NUM; i++) {
             this.recordedUploads[i] = new ObjectArrayList<>();
+            this.completionCallbacks[i] = new ObjectArrayList<>();
         }
     }
 
     public synchronized void submitUploads() {
-        if(this.recordedUploads[this.currentFrame].isEmpty())
+        if(this.recordedUploads[this.currentFrame].isEmpty() && this.completionCallbacks[this.currentFrame].isEmpty())
             return;
 
         queue.submitCommands(this.commandBuffers[currentFrame]);
     }
 
     public void uploadAsync(AreaBuffer.Segment uploadSegment, long bufferId, long dstOffset, long bufferSize, ByteBuffer src) {
+        VkCommandBuffer commandBuffer = this.getCommandBuffer();
 
+        StagingBuffer.Region region = this.stagingRegion;
+        Vulkan.getStagingBuffer().copyBuffer(region, (int) bufferSize, src);
+
+        this.addBarrierIfNeeded(commandBuffer, bufferId);
+
+        TransferQueue.uploadBufferCmd(commandBuffer, region.bufferId(), region.offset(), bufferId, dstOffset, bufferSize);
+
+        this.recordedUploads[this.currentFrame].add(uploadSegment);
+    }
+
+    //Copy between two ranges of the same buffer, used to move segments when defragmenting
+    public void copyAsync(AreaBuffer.Segment uploadSegment, long bufferId, long srcOffset, long dstOffset, long size) {
+        VkCommandBuffer commandBuffer = this.getCommandBuffer();
+
+        this.addBarrierIfNeeded(commandBuffer, bufferId);
+
+        TransferQueue.uploadBufferCmd(commandBuffer, bufferId, srcOffset, bufferId, dstOffset, size);
+
+        this.recordedUploads[this.currentFrame].add(uploadSegment);
+    }
+
+    //Whole buffer copy ordered after every previously submitted transfer, onComplete runs once the copy retired
+    public void copyBufferAsync(long srcBuffer, long dstBuffer, long size, Runnable onComplete) {
+        VkCommandBuffer commandBuffer = this.getCommandBuffer();
+
+        this.addBarrier(commandBuffer);
+        dstBuffers.clear();
+        dstBuffers.add(dstBuffer);
+
+        TransferQueue.uploadBufferCmd(commandBuffer, srcBuffer, 0, dstBuffer, 0, size);
+
+        this.completionCallbacks[this.currentFrame].add(onComplete);
+    }
+
+    private VkCommandBuffer getCommandBuffer() {
         if(commandBuffers[currentFrame] == null)
             this.commandBuffers[currentFrame] = queue.beginCommands();
 
-        VkCommandBuffer commandBuffer = commandBuffers[currentFrame].getHandle();
-
-        StagingBuffer stagingBuffer = Vulkan.getStagingBuffer();
-        stagingBuffer.copyBuffer((int) bufferSize, src);
+        return commandBuffers[currentFrame].getHandle();
+    }
 
+    private void addBarrierIfNeeded(VkCommandBuffer commandBuffer, long bufferId) {
         if(!dstBuffers.add(bufferId)) {
-            try (MemoryStack stack = MemoryStack.stackPush()) {
-                VkMemoryBarrier.Buffer barrier = VkMemoryBarrier.calloc(1, stack);
-                barrier.sType$Default();
-                barrier.srcAccessMask(VK_ACCESS_TRANSFER_WRITE_BIT);
-                barrier.dstAccessMask(VK_ACCESS_TRANSFER_WRITE_BIT);
-
-                vkCmdPipelineBarrier(commandBuffer,
-                        VK_PIPELINE_STAGE_TRANSFER_BIT, VK_PIPELINE_STAGE_TRANSFER_BIT,
-                        0,
-                        barrier,
-                        null,
-                        null);
-            }
-
+            this.addBarrier(commandBuffer);
             dstBuffers.clear();
         }
+    }
 
-        TransferQueue.uploadBufferCmd(commandBuffer, stagingBuffer.getId(), stagingBuffer.getOffset(), bufferId, dstOffset, bufferSize);
-
-        this.recordedUploads[this.currentFrame].add(uploadSegment);
+    private void addBarrier(VkCommandBuffer commandBuffer) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkMemoryBarrier.Buffer barrier = VkMemoryBarrier.calloc(1, stack);
+            barrier.sType$Default();
+            barrier.srcAccessMask(VK_ACCESS_TRANSFER_WRITE_BIT);
+            barrier.dstAccessMask(VK_ACCESS_TRANSFER_WRITE_BIT | VK_ACCESS_TRANSFER_READ_BIT);
+
+            vkCmdPipelineBarrier(commandBuffer,
+                    VK_PIPELINE_STAGE_TRANSFER_BIT, VK_PIPELINE_STAGE_TRANSFER_BIT,
+                    0,
+                    barrier,
+                    null,
+                    null);
+        }
     }
 
     public void updateFrame() {
@@ -93,15 +131,20 @@ public class AreaUploadManager {
         CommandPool.CommandBuffer commandBuffer = commandBuffers[frame];
         if(commandBuffer == null)
             return;
-        Synchronization.waitFence(commandBuffers[frame].getFence());
+        commandBuffer.waitCompletion();
 
         for(AreaBuffer.Segment uploadSegment : this.recordedUploads[frame]) {
             uploadSegment.setReady();
         }
 
+        for(Runnable callback : this.completionCallbacks[frame]) {
+            callback.run();
+        }
+
         this.commandBuffers[frame].reset();
         this.commandBuffers[frame] = null;
         this.recordedUploads[frame].clear();
+        this.completionCallbacks[frame].clear();
     }
 
     public synchronized void waitAllUploads() {
@@ -14,15 +14,17 @@ import java.util.Map;
 public record ChunkArea(int index, byte[] inFrustum, Vector3i position, DrawBuffers drawBuffers, EnumMap<TerrainRenderType, StaticQueue<DrawBuffers.DrawParameters>> sectionQueues) {
 
 
-    public ChunkArea(int i, Vector3i origin, int minHeight) {
-        this(i, new byte[64], origin, new DrawBuffers(i, origin, minHeight), new EnumMap<>(TerrainRenderType.class));
+    public ChunkArea(int i, Vector3i origin, int minHeight, SharedAreaBuffers sharedBuffers) {
+        this(i, new byte[64], origin, new DrawBuffers(i, origin, minHeight, sharedBuffers), new EnumMap<>(TerrainRenderType.class));
         for (TerrainRenderType renderType : TerrainRenderType.VALUES) {
             sectionQueues.put(renderType, new StaticQueue<>(512));
         }
     }
 
-    public void updateFrustum(VFrustum frustum) {
+    //Returns true if the classification of any sub cube changed
+    public boolean updateFrustum(VFrustum frustum) {
         //TODO: maybe move to an aux class
+        boolean changed = false;
         int frustumResult = frustum.cubeInFrustum(this.position.x(), this.position.y(), this.position.z(),
                 this.position.x() + (8 << 4) , this.position.y() + (8 << 4), this.position.z() + (8 << 4));
 
@@ -62,6 +64,7 @@ public record ChunkArea(int index, byte[] inFrustum, Vector3i position, DrawBuff
 
                                         int idx = beginIdx + (x2 << 2) + (y2 << 1) + z2;
 
+                                        changed |= this.inFrustum[idx] != (byte) frustumResult;
                                         this.inFrustum[idx] = (byte) frustumResult;
                                     }
 
@@ -72,6 +75,7 @@ public record ChunkArea(int index, byte[] inFrustum, Vector3i position, DrawBuff
                             int end = beginIdx + 8;
 
                             for(int i = beginIdx; i < end; ++i) {
+                                changed |= this.inFrustum[i] != (byte) frustumResult;
                                 this.inFrustum[i] = (byte) frustumResult;
                             }
                         }
@@ -80,9 +84,14 @@ public record ChunkArea(int index, byte[] inFrustum, Vector3i position, DrawBuff
                 }
             }
         } else {
+            for(int i = 0; i < this.inFrustum.length; ++i) {
+                changed |= this.inFrustum[i] != (byte) frustumResult;
+            }
+
             Arrays.fill(inFrustum, (byte) frustumResult);
         }
 
+        return changed;
     }
 
     public byte getFrustumIndex(BlockPos pos) {
@@ -122,7 +131,9 @@ public record ChunkArea(int index, byte[] inFrustum, Vector3i position, DrawBuff
 
     public void addSections(RenderSection section) {
         for(var t : section.getCompiledSection().renderTypes) {
-            this.sectionQueues.get(t).add(section.getDrawParameters(t));
+            DrawBuffers.DrawParameters drawParameters = section.getDrawParameters(t);
+            drawParameters.updateMovedOffsets();
+            this.sectionQueues.get(t).add(drawParameters);
         }
     }
 
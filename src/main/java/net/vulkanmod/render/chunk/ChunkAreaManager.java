@@ -1,10 +1,14 @@
 package net.vulkanmod.render.chunk;
 
 import net.minecraft.util.Mth;
+import net.vulkanmod.Initializer;
+import net.vulkanmod.render.chunk.build.TaskDispatcher;
 import net.vulkanmod.render.chunk.util.CircularIntList;
 import net.vulkanmod.render.chunk.util.Util;
 import org.joml.Vector3i;
 
+import java.util.Arrays;
+
 public class ChunkAreaManager {
     static final int WIDTH = 8;
     static final int HEIGHT = 8;
@@ -18,6 +22,19 @@ public class ChunkAreaManager {
     final int ySize;
     final int minHeight;
     final ChunkArea[] chunkAreasArr;
+    final int[] frustumChanged;
+    //Null unless sharedAreaBuffers is enabled
+    final SharedAreaBuffers sharedBuffers;
+
+    private static final ThreadLocal<AreaFrustumBatch> FRUSTUM_BATCH = ThreadLocal.withInitial(AreaFrustumBatch::new);
+
+    //Frustum classification slices, created once and run on the chunk build workers
+    private final TaskDispatcher.FrameTasks frustumTasks;
+    private VFrustum frustum;
+
+    //Bounds the per frame cost when most areas have nothing to move
+    private static final int DEFRAG_AREAS_PER_CALL = 16;
+    private int defragIndex;
 
     int prevX;
     int prevZ;
@@ -39,13 +56,24 @@ public class ChunkAreaManager {
 
         this.size = xzSize * ySize * xzSize;
         this.chunkAreasArr = new ChunkArea[size];
+        this.frustumChanged = new int[(int) Math.ceil((float)size / Integer.SIZE)];
+        this.sharedBuffers = Initializer.CONFIG.sharedAreaBuffers ? new SharedAreaBuffers() : null;
+
+        //Slices are multiples of 32 areas so each one owns whole frustumChanged words
+        int slices = (this.size + AreaFrustumBatch.MAX_AREAS - 1) / AreaFrustumBatch.MAX_AREAS;
+        Runnable[] tasks = new Runnable[slices];
+        for(int i = 0; i < slices; ++i) {
+            final int slice = i;
+            tasks[i] = () -> this.classifyAreas(this.frustum, slice);
+        }
+        this.frustumTasks = new TaskDispatcher.FrameTasks(tasks);
 
         for(int j = 0; j < this.xzSize; ++j) {
             for(int k = 0; k < this.ySize; ++k) {
                 for(int l = 0; l < this.xzSize; ++l) {
                     int i1 = this.getAreaIndex(j, k, l);
                     Vector3i vector3i = new Vector3i(j << BASE_SH_XZ + 4, k << BASE_SH_Y + 4, l << BASE_SH_XZ + 4);
-                    this.chunkAreasArr[i1] = new ChunkArea(i1, vector3i, minHeight);
+                    this.chunkAreasArr[i1] = new ChunkArea(i1, vector3i, minHeight, this.sharedBuffers);
                 }
             }
         }
@@ -171,11 +199,56 @@ public class ChunkAreaManager {
         return chunkArea;
     }
 
-    public void updateFrustumVisibility(VFrustum frustum) {
+    public void updateFrustumVisibility(VFrustum frustum, TaskDispatcher taskDispatcher) {
+        Arrays.fill(this.frustumChanged, 0);
+
+        if(this.chunkAreasArr.length <= AreaFrustumBatch.MAX_AREAS) {
+            this.classifyAreas(frustum, 0);
+            return;
+        }
+
+        this.frustum = frustum;
+        taskDispatcher.runFrameTasks(this.frustumTasks);
+        this.frustum = null;
+    }
+
+    private void classifyAreas(VFrustum frustum, int slice) {
+        int from = slice * AreaFrustumBatch.MAX_AREAS;
+        int to = Math.min(from + AreaFrustumBatch.MAX_AREAS, this.chunkAreasArr.length);
+
+        FRUSTUM_BATCH.get().classify(frustum, this.chunkAreasArr, from, to, this.frustumChanged);
+    }
+
+    public boolean isFrustumChanged(int index) {
+        return (this.frustumChanged[index >> 5] & (1 << (index & 31))) != 0;
+    }
+
+    //Defragments the buffers of at most one area per call, out of at most DEFRAG_AREAS_PER_CALL scanned ones.
+    //Returns true if any segment was moved
+    public boolean defragmentBuffers(int maxBytes) {
+        if(this.sharedBuffers != null)
+            return this.defragmentSharedBuffers(maxBytes);
+
+        int areas = Math.min(DEFRAG_AREAS_PER_CALL, this.chunkAreasArr.length);
+        for(int i = 0; i < areas; ++i) {
+            ChunkArea chunkArea = this.chunkAreasArr[this.defragIndex];
+            this.defragIndex = (this.defragIndex + 1) % this.chunkAreasArr.length;
 
+            if(chunkArea.drawBuffers().defragment(maxBytes) > 0)
+                return true;
+        }
+
+        return false;
+    }
+
+    private boolean defragmentSharedBuffers(int maxBytes) {
+        //Pending parameters would overwrite moved offsets
         for(ChunkArea chunkArea : this.chunkAreasArr) {
-            chunkArea.updateFrustum(frustum);
+            if(chunkArea.drawBuffers().hasPendingUpdates())
+                return false;
         }
+
+        return this.sharedBuffers.defragment(maxBytes) > 0;
     }
 
     public void resetQueues() {
@@ -192,6 +265,9 @@ public class ChunkAreaManager {
         for(ChunkArea chunkArea : this.chunkAreasArr) {
             chunkArea.releaseBuffers();
         }
+
+        if(this.sharedBuffers != null)
+            this.sharedBuffers.releaseBuffers();
     }
 
 }
@@ -1,5 +1,6 @@
 package net.vulkanmod.render.chunk;
 
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.vulkanmod.Initializer;
 import net.vulkanmod.render.PipelineManager;
 import net.vulkanmod.render.chunk.build.UploadBuffer;
@@ -9,49 +10,56 @@ import net.vulkanmod.vulkan.Renderer;
 import net.vulkanmod.vulkan.VRenderSystem;
 import net.vulkanmod.vulkan.memory.IndirectBuffer;
 import net.vulkanmod.vulkan.shader.Pipeline;
-import org.joml.Matrix4f;
 import org.joml.Vector3i;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.vulkan.VkCommandBuffer;
 
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
 import java.util.EnumMap;
 
 import static org.lwjgl.vulkan.VK10.*;
 
 public class DrawBuffers {
 
-    private static final int VERTEX_SIZE = PipelineManager.TERRAIN_VERTEX_FORMAT.getVertexSize();
-    private static final int INDEX_SIZE = Short.BYTES;
+    static final int VERTEX_SIZE = PipelineManager.TERRAIN_VERTEX_FORMAT.getVertexSize();
+    static final int INDEX_SIZE = Short.BYTES;
     private final int index;
     private final Vector3i origin;
     private final int minHeight;
+    //Null unless sharedAreaBuffers is enabled
+    private final SharedAreaBuffers sharedBuffers;
 
     private boolean allocated = false;
     AreaBuffer vertexBuffer, indexBuffer;
     private final EnumMap<TerrainRenderType, AreaBuffer> areaBufferTypes = new EnumMap<>(TerrainRenderType.class);
 
+    //Parameters uploaded while an AreaBuffer is growing, applied once the new buffer is bound
+    private final ObjectArrayList<ParametersUpdate> pendingUpdates = new ObjectArrayList<>();
+
     //Need ugly minHeight Parameter to fix custom world heights (exceeding 384 Blocks in total)
-    public DrawBuffers(int index, Vector3i origin, int minHeight) {
+    public DrawBuffers(int index, Vector3i origin, int minHeight, SharedAreaBuffers sharedBuffers) {
 
         this.index = index;
         this.origin = origin;
         this.minHeight = minHeight;
+        this.sharedBuffers = sharedBuffers;
     }
 
     public void allocateBuffers() {
-        if(!Initializer.CONFIG.perRenderTypeAreaBuffers)
+        if(this.sharedBuffers == null && !Initializer.CONFIG.perRenderTypeAreaBuffers)
             vertexBuffer = new AreaBuffer(VK_BUFFER_USAGE_VERTEX_BUFFER_BIT, 2097152 /*RenderType.BIG_BUFFER_SIZE>>1*/, VERTEX_SIZE);
 
         this.allocated = true;
     }
 
     public void upload(int xOffset, int yOffset, int zOffset, UploadBuffer buffer, DrawParameters drawParameters, TerrainRenderType renderType) {
+        this.applyPendingUpdates();
+
         int vertexOffset = drawParameters.vertexOffset;
         int firstIndex = 0;
         drawParameters.baseInstance = encodeSectionOffset(xOffset, yOffset, zOffset);
+        drawParameters.recordIndex = GpuCuller.getRecordIndex(this.index, renderType, xOffset & 127, yOffset - this.minHeight & 127, zOffset & 127);
 
         if(!buffer.indexOnly) {
             this.getAreaBufferOrAlloc(renderType).upload(buffer.getVertexBuffer(), drawParameters.vertexBufferSegment);
@@ -65,54 +73,133 @@ public class DrawBuffers {
         }
 
         if(!buffer.autoIndices) {
-            if (this.indexBuffer==null)
-                this.indexBuffer = new AreaBuffer(VK_BUFFER_USAGE_INDEX_BUFFER_BIT, 786432 /*RenderType.SMALL_BUFFER_SIZE*/, INDEX_SIZE);
-            this.indexBuffer.upload(buffer.getIndexBuffer(), drawParameters.indexBufferSegment);
+            this.getIndexBufferOrAlloc().upload(buffer.getIndexBuffer(), drawParameters.indexBufferSegment);
 //            drawParameters.firstIndex = drawParameters.indexBufferSegment.getOffset() / INDEX_SIZE;
             firstIndex = drawParameters.indexBufferSegment.getOffset() / INDEX_SIZE;
         }
 
-        drawParameters.indexCount = buffer.indexCount;
-        drawParameters.firstIndex = firstIndex;
-        drawParameters.vertexOffset = vertexOffset;
+        if(this.isGrowthPending()) {
+            this.pendingUpdates.add(new ParametersUpdate(drawParameters, buffer.indexCount, firstIndex, vertexOffset));
+        }
+        else {
+            drawParameters.indexCount = buffer.indexCount;
+            drawParameters.firstIndex = firstIndex;
+            drawParameters.vertexOffset = vertexOffset;
+            drawParameters.updateCullRecord();
+        }
 
         buffer.release();
     }
 
+    private boolean isGrowthPending() {
+        if(this.sharedBuffers != null)
+            return this.sharedBuffers.isGrowthPending();
+
+        if(this.indexBuffer != null && this.indexBuffer.isGrowthPending())
+            return true;
+
+        for(AreaBuffer areaBuffer : this.areaBufferTypes.values()) {
+            if(areaBuffer.isGrowthPending())
+                return true;
+        }
+
+        return false;
+    }
+
+    void applyPendingUpdates() {
+        if(this.pendingUpdates.isEmpty() || this.isGrowthPending())
+            return;
+
+        for(ParametersUpdate update : this.pendingUpdates) {
+            update.setDrawParameters();
+        }
+        this.pendingUpdates.clear();
+    }
+
+    boolean hasPendingUpdates() {
+        return !this.pendingUpdates.isEmpty();
+    }
+
+    void removePendingUpdates(DrawParameters drawParameters) {
+        if(!this.pendingUpdates.isEmpty())
+            this.pendingUpdates.removeIf(update -> update.drawParameters() == drawParameters);
+    }
+
     //Exploit Pass by Reference to allow all keys to be the same AreaBufferObject (if perRenderTypeAreaBuffers is disabled)
     private AreaBuffer getAreaBufferOrAlloc(TerrainRenderType r) {
+        if(this.sharedBuffers != null)
+            return this.sharedBuffers.getVertexBufferOrAlloc(r);
+
         return this.areaBufferTypes.computeIfAbsent(
                 r, t -> Initializer.CONFIG.perRenderTypeAreaBuffers ? new AreaBuffer(VK_BUFFER_USAGE_VERTEX_BUFFER_BIT, r.initialSize, VERTEX_SIZE) : this.vertexBuffer);
     }
 
     AreaBuffer getAreaBuffer(TerrainRenderType r) {
+        if(this.sharedBuffers != null)
+            return this.sharedBuffers.getVertexBuffer(r);
+
         return this.areaBufferTypes.get(r);
     }
 
     private boolean hasRenderType(TerrainRenderType r) {
-        return this.areaBufferTypes.containsKey(r);
+        return this.getAreaBuffer(r) != null;
+    }
+
+    private AreaBuffer getIndexBufferOrAlloc() {
+        if(this.sharedBuffers != null)
+            return this.sharedBuffers.getIndexBufferOrAlloc();
+
+        if(this.indexBuffer == null)
+            this.indexBuffer = new AreaBuffer(VK_BUFFER_USAGE_INDEX_BUFFER_BIT, 786432 /*RenderType.SMALL_BUFFER_SIZE*/, INDEX_SIZE);
+        return this.indexBuffer;
     }
 
+    private AreaBuffer getIndexBuffer() {
+        return this.sharedBuffers != null ? this.sharedBuffers.getIndexBuffer() : this.indexBuffer;
+    }
+
+    //World section coords, x and z wrapped to 10 bits: the vertex shader places sections relative to the camera section
+    //so draws of different areas need no per area constants
     private int encodeSectionOffset(int xOffset, int yOffset, int zOffset) {
-        final int xOffset1 = (xOffset & 127);
-        final int zOffset1 = (zOffset & 127);
-        final int yOffset1 = (yOffset-this.minHeight & 127);
-        return yOffset1 << 16 | zOffset1 << 8 | xOffset1;
+        final int xSection = (xOffset >> 4) & 1023;
+        final int zSection = (zOffset >> 4) & 1023;
+        final int ySection = (yOffset - this.minHeight >> 4) & 255;
+        return ySection << 20 | zSection << 10 | xSection;
+    }
+
+    //Camera relative matrices, the same for every area of the layer
+    public static void pushMatrices(VkCommandBuffer commandBuffer, Pipeline pipeline) {
+        nvkCmdPushConstants(commandBuffer, pipeline.getLayout(), VK_SHADER_STAGE_VERTEX_BIT, 0, 64, VRenderSystem.MVP.ptr);
+        nvkCmdPushConstants(commandBuffer, pipeline.getLayout(), VK_SHADER_STAGE_VERTEX_BIT, 64, 64, VRenderSystem.modelViewMatrix.ptr);
     }
 
-    private void updateChunkAreaOrigin(VkCommandBuffer commandBuffer, Pipeline pipeline, double camX, double camY, double camZ, FloatBuffer mPtr) {
-            float x = (float)(camX - (this.origin.x));
-            float y = (float)(camY - (this.origin.y));
-            float z = (float)(camZ - (this.origin.z));
+    //Writes the indirect commands of the queue at ptr, returns the written commands count
+    public static int writeDrawCommands(long ptr, StaticQueue<DrawParameters> queue, boolean isTranslucent) {
+        int drawCount = 0;
+        for (int i = 0; i < queue.size(); ++i) {
 
-            Matrix4f MVP = new Matrix4f().set(VRenderSystem.MVP.buffer.asFloatBuffer());
-            Matrix4f MV = new Matrix4f().set(VRenderSystem.modelViewMatrix.buffer.asFloatBuffer());
+            final DrawParameters drawParameters = queue.get(i, isTranslucent);
 
-            MVP.translate(-x, -y, -z).get(mPtr);
-            MV.translate(-x, -y, -z).get(16,mPtr);
+//            //TODO
+//            if (!drawParameters.ready && drawParameters.vertexBufferSegment.getOffset() != -1) {
+//                if (!drawParameters.vertexBufferSegment.isReady())
+//                    continue;
+//                drawParameters.ready = true;
+//            }
+
+            long commandPtr = ptr + (drawCount * 20L);
+            MemoryUtil.memPutInt(commandPtr, drawParameters.indexCount);
+            MemoryUtil.memPutInt(commandPtr + 4, drawParameters.instanceCount);
+            MemoryUtil.memPutInt(commandPtr + 8, drawParameters.firstIndex);
+            MemoryUtil.memPutInt(commandPtr + 12, drawParameters.vertexOffset);
+            MemoryUtil.memPutInt(commandPtr + 16, drawParameters.baseInstance);
+
+            drawCount++;
+        }
 
-            vkCmdPushConstants(commandBuffer, pipeline.getLayout(), VK_SHADER_STAGE_VERTEX_BIT, 0, mPtr);
+        return drawCount;
     }
+
     public void buildDrawBatchesIndirect(IndirectBuffer indirectBuffer, StaticQueue<DrawParameters> queue, TerrainRenderType terrainRenderType) {
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
@@ -122,27 +209,7 @@ public class DrawBuffers {
 
             boolean isTranslucent = terrainRenderType == TerrainRenderType.TRANSLUCENT;
 
-            int drawCount = 0;
-            for (var iterator = queue.iterator(isTranslucent); iterator.hasNext(); ) {
-
-                final DrawParameters drawParameters = iterator.next();
-
-//                //TODO
-//                if (!drawParameters.ready && drawParameters.vertexBufferSegment.getOffset() != -1) {
-//                    if (!drawParameters.vertexBufferSegment.isReady())
-//                        continue;
-//                    drawParameters.ready = true;
-//                }
-
-                long ptr = bufferPtr + (drawCount * 20L);
-                MemoryUtil.memPutInt(ptr, drawParameters.indexCount);
-                MemoryUtil.memPutInt(ptr + 4, drawParameters.instanceCount);
-                MemoryUtil.memPutInt(ptr + 8, drawParameters.firstIndex);
-                MemoryUtil.memPutInt(ptr + 12, drawParameters.vertexOffset);
-                MemoryUtil.memPutInt(ptr + 16, drawParameters.baseInstance);
-
-                drawCount++;
-            }
+            int drawCount = writeDrawCommands(bufferPtr, queue, isTranslucent);
 
             if (drawCount == 0) return;
 
@@ -161,31 +228,64 @@ public class DrawBuffers {
 
         VkCommandBuffer commandBuffer = Renderer.getCommandBuffer();
 
-        for (var iterator = queue.iterator(isTranslucent); iterator.hasNext(); ) {
-            final DrawParameters drawParameters = iterator.next();
+        for (int i = 0; i < queue.size(); ++i) {
+            final DrawParameters drawParameters = queue.get(i, isTranslucent);
 
             vkCmdDrawIndexed(commandBuffer, drawParameters.indexCount, drawParameters.instanceCount, drawParameters.firstIndex, drawParameters.vertexOffset, drawParameters.baseInstance);
 
         }
     }
 
-    void bindBuffers(VkCommandBuffer commandBuffer, Pipeline pipeline, TerrainRenderType terrainRenderType, double camX, double camY, double camZ) {
+    void bindBuffers(VkCommandBuffer commandBuffer, TerrainRenderType terrainRenderType) {
+        this.applyPendingUpdates();
+
+        bindBuffers(commandBuffer, getAreaBuffer(terrainRenderType), this.getIndexBuffer(), terrainRenderType);
+    }
 
+    static void bindBuffers(VkCommandBuffer commandBuffer, AreaBuffer vertexBuffer, AreaBuffer indexBuffer, TerrainRenderType terrainRenderType) {
         try(MemoryStack stack = MemoryStack.stackPush()) {
-            nvkCmdBindVertexBuffers(commandBuffer, 0, 1, stack.npointer(getAreaBuffer(terrainRenderType).getId()), stack.npointer(0));
-            updateChunkAreaOrigin(commandBuffer, pipeline, camX, camY, camZ, stack.mallocFloat(32));
+            nvkCmdBindVertexBuffers(commandBuffer, 0, 1, stack.npointer(vertexBuffer.getId()), stack.npointer(0));
         }
 
-        if(terrainRenderType == TerrainRenderType.TRANSLUCENT) {
-            vkCmdBindIndexBuffer(commandBuffer, this.indexBuffer.getId(), 0, VK_INDEX_TYPE_UINT16);
+        if(terrainRenderType == TerrainRenderType.TRANSLUCENT && indexBuffer != null) {
+            vkCmdBindIndexBuffer(commandBuffer, indexBuffer.getId(), 0, VK_INDEX_TYPE_UINT16);
+        }
+    }
+
+    public int defragment(int maxBytes) {
+        if(!this.allocated || this.sharedBuffers != null || !this.pendingUpdates.isEmpty())
+            return 0;
+
+        int moved = 0;
+        if(this.vertexBuffer != null)
+            moved += this.vertexBuffer.defragment(maxBytes);
+        else {
+            for(AreaBuffer areaBuffer : this.areaBufferTypes.values()) {
+                if(moved >= maxBytes)
+                    break;
+
+                moved += areaBuffer.defragment(maxBytes - moved);
+            }
         }
 
+        //The budget is shared with the vertex buffers
+        if(this.indexBuffer != null && moved < maxBytes)
+            moved += this.indexBuffer.defragment(maxBytes - moved);
+
+        return moved;
     }
 
     public void releaseBuffers() {
         if(!this.allocated)
             return;
 
+        //Shared buffers are released by ChunkAreaManager, sections free their segments on reset
+        if(this.sharedBuffers != null) {
+            this.pendingUpdates.clear();
+            this.allocated = false;
+            return;
+        }
+
         if(this.vertexBuffer == null) {
             this.areaBufferTypes.values().forEach(AreaBuffer::freeBuffer);
         }
@@ -198,6 +298,7 @@ public class DrawBuffers {
 
         this.vertexBuffer = null;
         this.indexBuffer = null;
+        this.pendingUpdates.clear();
         this.allocated = false;
     }
 
@@ -207,6 +308,8 @@ public class DrawBuffers {
     //instanceCount was added to encourage memcpy optimisations _(CPU doesn't need to insert a 1, which generates better ASM + helps JIT)_
     public static class DrawParameters {
         int indexCount, instanceCount = 1, firstIndex, vertexOffset, baseInstance;
+        //Slot in the GpuCuller records, -1 if not uploaded
+        int recordIndex = -1;
         final AreaBuffer.Segment vertexBufferSegment = new AreaBuffer.Segment();
         final AreaBuffer.Segment indexBufferSegment;
         boolean ready = false;
@@ -215,15 +318,55 @@ public class DrawBuffers {
             indexBufferSegment = translucent ? new AreaBuffer.Segment() : null;
         }
 
+        //Refresh cached offsets of segments moved by AreaBuffer defragmentation
+        void updateMovedOffsets() {
+            boolean moved = false;
+
+            if(this.vertexBufferSegment.moved) {
+                this.vertexOffset = this.vertexBufferSegment.getOffset() / VERTEX_SIZE;
+                this.vertexBufferSegment.moved = false;
+                moved = true;
+            }
+
+            if(this.indexBufferSegment != null && this.indexBufferSegment.moved) {
+                this.firstIndex = this.indexBufferSegment.getOffset() / INDEX_SIZE;
+                this.indexBufferSegment.moved = false;
+                moved = true;
+            }
+
+            if(moved)
+                this.updateCullRecord();
+        }
+
+        void updateCullRecord() {
+            GpuCuller gpuCuller = WorldRenderer.getInstance().getGpuCuller();
+            if(gpuCuller != null)
+                gpuCuller.updateRecord(this);
+        }
+
         public void reset(ChunkArea chunkArea, TerrainRenderType r) {
             this.indexCount = 0;
             this.firstIndex = 0;
             this.vertexOffset = 0;
 
+            GpuCuller gpuCuller = WorldRenderer.getInstance().getGpuCuller();
+            if(gpuCuller != null)
+                gpuCuller.clearRecord(this);
+            this.recordIndex = -1;
+
+            if(chunkArea != null)
+                chunkArea.drawBuffers().removePendingUpdates(this);
+
             int segmentOffset = this.vertexBufferSegment.getOffset();
             if(chunkArea != null && chunkArea.drawBuffers().hasRenderType(r) && segmentOffset != -1) {
                 chunkArea.drawBuffers().getAreaBuffer(r).setSegmentFree(this.vertexBufferSegment);
             }
+
+            if(chunkArea != null && this.indexBufferSegment != null && this.indexBufferSegment.getOffset() != -1) {
+                AreaBuffer indexBuffer = chunkArea.drawBuffers().getIndexBuffer();
+                if(indexBuffer != null)
+                    indexBuffer.setSegmentFree(this.indexBufferSegment);
+            }
         }
     }
 
@@ -234,6 +377,7 @@ public class DrawBuffers {
             this.drawParameters.firstIndex = firstIndex;
             this.drawParameters.vertexOffset = vertexOffset;
             this.drawParameters.ready = true;
+            this.drawParameters.updateCullRecord();
         }
     }
 
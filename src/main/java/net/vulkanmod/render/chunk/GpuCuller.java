@@ -0,0 +1,452 @@
+package net.vulkanmod.render.chunk;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.vulkanmod.render.chunk.util.AreaSetQueue;
+import net.vulkanmod.render.chunk.util.StaticQueue;
+import net.vulkanmod.render.vertex.TerrainRenderType;
+import net.vulkanmod.vulkan.DeviceManager;
+import net.vulkanmod.vulkan.Renderer;
+import net.vulkanmod.vulkan.Synchronization;
+import net.vulkanmod.vulkan.Vulkan;
+import net.vulkanmod.vulkan.memory.MemoryType;
+import net.vulkanmod.vulkan.memory.StagingBuffer;
+import net.vulkanmod.vulkan.memory.StorageBuffer;
+import net.vulkanmod.vulkan.queue.CommandPool;
+import net.vulkanmod.vulkan.shader.ComputePipeline;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.vulkan.VkBufferCopy;
+import org.lwjgl.vulkan.VkCommandBuffer;
+import org.lwjgl.vulkan.VkMemoryBarrier;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.vulkan.VK10.*;
+import static org.lwjgl.vulkan.VK12.vkCmdDrawIndexedIndirectCount;
+
+//Builds the opaque layers draw commands on the GPU: section DrawParameters live in a persistent record buffer
+//updated only when they change, a compute pass culls the sections visited by the graph traversal and writes the indirect commands
+public class GpuCuller {
+    static final int SECTIONS = 512;
+    static final int LAYERS = TerrainRenderType.VALUES.length;
+    static final int MASK_WORDS = SECTIONS / Integer.SIZE;
+
+    //Sizes in ints of the terrain_cull.comp structs
+    static final int RECORD_INTS = 4;
+    static final int JOB_INTS = 8 + MASK_WORDS;
+    static final int COMMAND_INTS = 5;
+
+    private static final int GROUP_SIZE = 64;
+    private static final int PUSH_CONSTANTS_SIZE = 6 * 16 + 2 * 4;
+    private static final int INITIAL_COMMANDS = 50000;
+
+    public static boolean isSupported() {
+        return DeviceManager.deviceInfo.isDrawIndirectSupported();
+    }
+
+    public static boolean culls(TerrainRenderType renderType) {
+        return renderType != TerrainRenderType.TRANSLUCENT;
+    }
+
+    static int getRecordIndex(int areaIndex, TerrainRenderType renderType, int x, int y, int z) {
+        int slot = (x >> 4) | (y >> 4) << 3 | (z >> 4) << 6;
+        return (areaIndex * LAYERS + renderType.ordinal()) * SECTIONS + slot;
+    }
+
+    //Layout of the uploaded structs, shared with CullReference checks
+
+    static void putRecord(int[] records, int index, int indexCount, int firstIndex, int vertexOffset, int baseInstance) {
+        int ptr = index * RECORD_INTS;
+        records[ptr] = indexCount;
+        records[ptr + 1] = firstIndex;
+        records[ptr + 2] = vertexOffset;
+        records[ptr + 3] = baseInstance;
+    }
+
+    static void setMaskBit(int[] masks, int layer, int slot) {
+        masks[layer * MASK_WORDS + (slot >> 5)] |= 1 << (slot & 31);
+    }
+
+    static void putJob(int[] jobs, int job, float originX, float originY, float originZ,
+                       int layer, int outputBase, int countIndex, int[] masks) {
+        int ptr = job * JOB_INTS;
+        jobs[ptr] = Float.floatToRawIntBits(originX);
+        jobs[ptr + 1] = Float.floatToRawIntBits(originY);
+        jobs[ptr + 2] = Float.floatToRawIntBits(originZ);
+        jobs[ptr + 3] = 0;
+        jobs[ptr + 4] = layer * SECTIONS;
+        jobs[ptr + 5] = outputBase;
+        jobs[ptr + 6] = countIndex;
+        jobs[ptr + 7] = 0;
+        System.arraycopy(masks, layer * MASK_WORDS, jobs, ptr + 8, MASK_WORDS);
+    }
+
+    private final int areaCount;
+    private final boolean compact;
+    //Areas share their vertex buffers, the jobs of a layer write a single command range
+    private final boolean shared;
+    private final ComputePipeline pipeline;
+
+    //CPU copy of the record buffer: indexCount, firstIndex, vertexOffset, baseInstance of every (area, render type, section slot)
+    final int[] records;
+    private final long[] dirtyBits;
+    private final IntArrayList dirtyRecords = new IntArrayList();
+    private final StorageBuffer recordBuffer;
+    private boolean recordsCleared = false;
+
+    //Sections of each (area, render type) visited by the last graph traversal
+    private final int[] masks;
+    private int maskFrame = Integer.MIN_VALUE;
+
+    final int[] jobs;
+    int jobCount;
+    int commandCount;
+    final float[] planes = new float[6 * 4];
+
+    //Job of each (area, render type) in the current frame or -1
+    private final int[] areaJobs;
+    private final int[] jobOutputs;
+    private final int[] jobSizes;
+    private final int[] layerOutputs = new int[LAYERS];
+    private final int[] layerSizes = new int[LAYERS];
+
+    private int frames;
+    private StorageBuffer[] jobBuffers;
+    private StorageBuffer[] commandBuffers;
+    private StorageBuffer[] countBuffers;
+
+    //Reused across frames, grown when a frame has more dirty runs
+    private VkBufferCopy.Buffer copyRegions = VkBufferCopy.calloc(64);
+    private final StagingBuffer.Region stagingRegion = new StagingBuffer.Region();
+
+    public GpuCuller(int areaCount, boolean shared) {
+        this.areaCount = areaCount;
+        this.compact = DeviceManager.deviceInfo.isDrawIndirectCountSupported();
+        this.shared = shared;
+
+        int layers = areaCount * LAYERS;
+        this.records = new int[layers * SECTIONS * RECORD_INTS];
+        this.dirtyBits = new long[layers * SECTIONS / Long.SIZE];
+        this.masks = new int[layers * MASK_WORDS];
+        this.jobs = new int[layers * JOB_INTS];
+        this.areaJobs = new int[layers];
+        this.jobOutputs = new int[layers];
+        this.jobSizes = new int[layers];
+        Arrays.fill(this.areaJobs, -1);
+
+        this.recordBuffer = new StorageBuffer(this.records.length * 4, 0, MemoryType.GPU_MEM);
+
+        this.frames = Renderer.getFramesNum();
+        this.pipeline = new ComputePipeline("basic/cull/terrain_cull", 4, PUSH_CONSTANTS_SIZE, this.frames);
+        this.allocateFrameBuffers();
+    }
+
+    private void allocateFrameBuffers() {
+        int layers = this.areaCount * LAYERS;
+
+        this.jobBuffers = new StorageBuffer[this.frames];
+        this.commandBuffers = new StorageBuffer[this.frames];
+        this.countBuffers = new StorageBuffer[this.frames];
+
+        for(int i = 0; i < this.frames; ++i) {
+            this.jobBuffers[i] = new StorageBuffer(layers * JOB_INTS * 4, 0, MemoryType.BAR_MEM);
+            this.commandBuffers[i] = new StorageBuffer(INITIAL_COMMANDS * COMMAND_INTS * 4, VK_BUFFER_USAGE_INDIRECT_BUFFER_BIT, MemoryType.GPU_MEM);
+            this.countBuffers[i] = new StorageBuffer(layers * 4, VK_BUFFER_USAGE_INDIRECT_BUFFER_BIT, MemoryType.GPU_MEM);
+        }
+    }
+
+    private void freeFrameBuffers() {
+        for(int i = 0; i < this.frames; ++i) {
+            this.jobBuffers[i].freeBuffer();
+            this.commandBuffers[i].freeBuffer();
+            this.countBuffers[i].freeBuffer();
+        }
+    }
+
+    public void setFrames(int frames) {
+        if(frames == this.frames)
+            return;
+
+        this.freeFrameBuffers();
+        this.frames = frames;
+        this.allocateFrameBuffers();
+        this.pipeline.createStorageSets(frames);
+    }
+
+    void updateRecord(DrawBuffers.DrawParameters drawParameters) {
+        int i = drawParameters.recordIndex;
+        if(i == -1)
+            return;
+
+        putRecord(this.records, i, drawParameters.indexCount, drawParameters.firstIndex,
+                drawParameters.vertexOffset, drawParameters.baseInstance);
+
+        this.markDirty(i);
+    }
+
+    void clearRecord(DrawBuffers.DrawParameters drawParameters) {
+        int i = drawParameters.recordIndex;
+        if(i == -1)
+            return;
+
+        Arrays.fill(this.records, i * RECORD_INTS, (i + 1) * RECORD_INTS, 0);
+        this.markDirty(i);
+    }
+
+    private void markDirty(int i) {
+        long bit = 1L << (i & 63);
+        if((this.dirtyBits[i >> 6] & bit) == 0) {
+            this.dirtyBits[i >> 6] |= bit;
+            this.dirtyRecords.add(i);
+        }
+    }
+
+    public void cull(AreaSetQueue areaQueue, VFrustum frustum, short lastFrame) {
+        if(lastFrame != this.maskFrame) {
+            this.updateMasks(areaQueue);
+            this.maskFrame = lastFrame;
+        }
+
+        frustum.getPlanes(this.planes);
+        this.buildJobs(areaQueue, frustum);
+
+        if(this.jobCount == 0 && this.dirtyRecords.isEmpty())
+            return;
+
+        int frame = Renderer.getCurrentFrame();
+        StorageBuffer commandBuffer = this.commandBuffers[frame];
+        if(this.commandCount * COMMAND_INTS * 4 > commandBuffer.getBufferSize()) {
+            commandBuffer.resizeBuffer(this.commandCount * COMMAND_INTS * 4 * 3 / 2);
+            this.pipeline.invalidateStorageSet(frame);
+        }
+
+        StorageBuffer jobBuffer = this.jobBuffers[frame];
+        MemoryUtil.memIntBuffer(jobBuffer.getDataPtr(), this.jobCount * JOB_INTS).put(this.jobs, 0, this.jobCount * JOB_INTS);
+
+        CommandPool.CommandBuffer cmdBuffer = DeviceManager.getComputeQueue().beginCommands();
+        VkCommandBuffer handle = cmdBuffer.getHandle();
+
+        this.uploadDirtyRecords(handle);
+
+        if(this.jobCount > 0) {
+            if(this.compact)
+                vkCmdFillBuffer(handle, this.countBuffers[frame].getId(), 0, VK_WHOLE_SIZE, 0);
+
+            barrier(handle, VK_PIPELINE_STAGE_TRANSFER_BIT, VK_ACCESS_TRANSFER_WRITE_BIT,
+                    VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT, VK_ACCESS_SHADER_READ_BIT | VK_ACCESS_SHADER_WRITE_BIT);
+
+            this.pipeline.setStorageBuffer(frame, 0, this.recordBuffer.getId());
+            this.pipeline.setStorageBuffer(frame, 1, jobBuffer.getId());
+            this.pipeline.setStorageBuffer(frame, 2, commandBuffer.getId());
+            this.pipeline.setStorageBuffer(frame, 3, this.countBuffers[frame].getId());
+            this.pipeline.bind(handle, frame);
+
+            try(MemoryStack stack = MemoryStack.stackPush()) {
+                ByteBuffer pushConstants = stack.malloc(PUSH_CONSTANTS_SIZE);
+                pushConstants.asFloatBuffer().put(this.planes);
+                pushConstants.putInt(6 * 16, this.jobCount);
+                pushConstants.putInt(6 * 16 + 4, this.compact ? 1 : 0);
+
+                this.pipeline.pushConstants(handle, pushConstants);
+            }
+
+            vkCmdDispatch(handle, SECTIONS / GROUP_SIZE, this.jobCount, 1);
+
+            barrier(handle, VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT, VK_ACCESS_SHADER_WRITE_BIT,
+                    VK_PIPELINE_STAGE_DRAW_INDIRECT_BIT, VK_ACCESS_INDIRECT_COMMAND_READ_BIT);
+        }
+
+        //Waited on before the frame is submitted, as indirect buffer uploads
+        DeviceManager.getComputeQueue().submitCommands(cmdBuffer);
+        Synchronization.INSTANCE.addCommandBuffer(cmdBuffer);
+    }
+
+    private void updateMasks(AreaSetQueue areaQueue) {
+        Arrays.fill(this.masks, 0);
+
+        StaticQueue<ChunkArea> queue = areaQueue.queue();
+        for(int a = 0; a < queue.size(); ++a) {
+            ChunkArea chunkArea = queue.get(a);
+            for(TerrainRenderType renderType : TerrainRenderType.VALUES) {
+                if(!culls(renderType))
+                    continue;
+
+                int layer = chunkArea.index() * LAYERS + renderType.ordinal();
+                var sectionQueue = chunkArea.sectionQueues().get(renderType);
+
+                for(int i = 0; i < sectionQueue.size(); ++i) {
+                    int record = sectionQueue.get(i).recordIndex;
+
+                    //Not uploaded yet
+                    if(record == -1 || record / SECTIONS != layer)
+                        continue;
+
+                    setMaskBit(this.masks, layer, record & (SECTIONS - 1));
+                }
+            }
+        }
+    }
+
+    //Jobs of a render type are contiguous so each layer commands form a single range
+    private void buildJobs(AreaSetQueue areaQueue, VFrustum frustum) {
+        Arrays.fill(this.areaJobs, -1);
+        StaticQueue<ChunkArea> queue = areaQueue.queue();
+        this.jobCount = 0;
+        this.commandCount = 0;
+
+        for(TerrainRenderType renderType : TerrainRenderType.VALUES) {
+            this.layerOutputs[renderType.ordinal()] = this.commandCount;
+
+            if(!culls(renderType)) {
+                this.layerSizes[renderType.ordinal()] = 0;
+                continue;
+            }
+
+            for(int a = 0; a < queue.size(); ++a) {
+                ChunkArea chunkArea = queue.get(a);
+                int layer = chunkArea.index() * LAYERS + renderType.ordinal();
+                int maskPtr = layer * MASK_WORDS;
+
+                int sections = 0;
+                for(int i = 0; i < MASK_WORDS; ++i) {
+                    sections += Integer.bitCount(this.masks[maskPtr + i]);
+                }
+
+                if(sections == 0)
+                    continue;
+
+                int job = this.jobCount++;
+                int outputBase = this.shared && this.compact ? this.layerOutputs[renderType.ordinal()] : this.commandCount;
+
+                putJob(this.jobs, job,
+                        (float) (chunkArea.position().x() - frustum.getCamX()),
+                        (float) (chunkArea.position().y() - frustum.getCamY()),
+                        (float) (chunkArea.position().z() - frustum.getCamZ()),
+                        layer, outputBase, this.shared ? renderType.ordinal() : job, this.masks);
+
+                this.areaJobs[layer] = job;
+                this.jobOutputs[job] = outputBase;
+                this.jobSizes[job] = sections;
+
+                this.commandCount += sections;
+            }
+
+            this.layerSizes[renderType.ordinal()] = this.commandCount - this.layerOutputs[renderType.ordinal()];
+        }
+    }
+
+    private void uploadDirtyRecords(VkCommandBuffer commandBuffer) {
+        int count = this.dirtyRecords.size();
+        if(!this.recordsCleared) {
+            vkCmdFillBuffer(commandBuffer, this.recordBuffer.getId(), 0, VK_WHOLE_SIZE, 0);
+            barrier(commandBuffer, VK_PIPELINE_STAGE_TRANSFER_BIT, VK_ACCESS_TRANSFER_WRITE_BIT,
+                    VK_PIPELINE_STAGE_TRANSFER_BIT, VK_ACCESS_TRANSFER_WRITE_BIT);
+            this.recordsCleared = true;
+        }
+
+        if(count == 0)
+            return;
+
+        this.dirtyRecords.unstableSort(null);
+
+        final int recordSize = RECORD_INTS * 4;
+        StagingBuffer.Region region = this.stagingRegion;
+        Vulkan.getStagingBuffer().reserve(region, count * recordSize, recordSize);
+
+        //Contiguous records are copied by a single region
+        int runs = 1;
+        for(int i = 1; i < count; ++i) {
+            if(this.dirtyRecords.getInt(i) != this.dirtyRecords.getInt(i - 1) + 1)
+                runs++;
+        }
+
+        if(runs > this.copyRegions.capacity()) {
+            this.copyRegions.free();
+            this.copyRegions = VkBufferCopy.calloc(runs * 3 / 2);
+        }
+
+        VkBufferCopy.Buffer copyRegions = this.copyRegions.clear().limit(runs);
+        int run = -1;
+
+        for(int i = 0; i < count; ++i) {
+            int record = this.dirtyRecords.getInt(i);
+            this.dirtyBits[record >> 6] &= ~(1L << (record & 63));
+
+            long dst = region.ptr() + (long) i * recordSize;
+            int ptr = record * RECORD_INTS;
+            MemoryUtil.memPutInt(dst, this.records[ptr]);
+            MemoryUtil.memPutInt(dst + 4, this.records[ptr + 1]);
+            MemoryUtil.memPutInt(dst + 8, this.records[ptr + 2]);
+            MemoryUtil.memPutInt(dst + 12, this.records[ptr + 3]);
+
+            if(i == 0 || record != this.dirtyRecords.getInt(i - 1) + 1) {
+                run++;
+                copyRegions.get(run)
+                        .srcOffset(region.offset() + (long) i * recordSize)
+                        .dstOffset((long) record * recordSize)
+                        .size(0);
+            }
+
+            VkBufferCopy copy = copyRegions.get(run);
+            copy.size(copy.size() + recordSize);
+        }
+
+        //The single record buffer may still be read by the previous dispatch
+        barrier(commandBuffer, VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT, VK_ACCESS_SHADER_READ_BIT,
+                VK_PIPELINE_STAGE_TRANSFER_BIT, VK_ACCESS_TRANSFER_WRITE_BIT);
+        vkCmdCopyBuffer(commandBuffer, region.bufferId(), this.recordBuffer.getId(), copyRegions);
+
+        this.dirtyRecords.clear();
+    }
+
+    private static void barrier(VkCommandBuffer commandBuffer, int srcStage, int srcAccess, int dstStage, int dstAccess) {
+        try(MemoryStack stack = MemoryStack.stackPush()) {
+            VkMemoryBarrier.Buffer barrier = VkMemoryBarrier.calloc(1, stack);
+            barrier.sType$Default();
+            barrier.srcAccessMask(srcAccess);
+            barrier.dstAccessMask(dstAccess);
+
+            vkCmdPipelineBarrier(commandBuffer, srcStage, dstStage, 0, barrier, null, null);
+        }
+    }
+
+    //Draws the culled sections of the area, buffers must be already bound
+    public void draw(VkCommandBuffer commandBuffer, ChunkArea chunkArea, TerrainRenderType renderType) {
+        int job = this.areaJobs[chunkArea.index() * LAYERS + renderType.ordinal()];
+        if(job == -1)
+            return;
+
+        int frame = Renderer.getCurrentFrame();
+        long offset = (long) this.jobOutputs[job] * COMMAND_INTS * 4;
+
+        if(this.compact)
+            vkCmdDrawIndexedIndirectCount(commandBuffer, this.commandBuffers[frame].getId(), offset,
+                    this.countBuffers[frame].getId(), job * 4L, this.jobSizes[job], COMMAND_INTS * 4);
+        else
+            vkCmdDrawIndexedIndirect(commandBuffer, this.commandBuffers[frame].getId(), offset, this.jobSizes[job], COMMAND_INTS * 4);
+    }
+
+    //Draws the culled sections of every area with a single call, shared buffers must be already bound
+    public void drawLayer(VkCommandBuffer commandBuffer, TerrainRenderType renderType) {
+        int size = this.layerSizes[renderType.ordinal()];
+        if(size == 0)
+            return;
+
+        int frame = Renderer.getCurrentFrame();
+        long offset = (long) this.layerOutputs[renderType.ordinal()] * COMMAND_INTS * 4;
+
+        if(this.compact)
+            vkCmdDrawIndexedIndirectCount(commandBuffer, this.commandBuffers[frame].getId(), offset,
+                    this.countBuffers[frame].getId(), renderType.ordinal() * 4L, size, COMMAND_INTS * 4);
+        else
+            vkCmdDrawIndexedIndirect(commandBuffer, this.commandBuffers[frame].getId(), offset, size, COMMAND_INTS * 4);
+    }
+
+    public void cleanUp() {
+        this.freeFrameBuffers();
+        this.recordBuffer.freeBuffer();
+        this.pipeline.scheduleCleanUp();
+        this.copyRegions.free();
+    }
+}
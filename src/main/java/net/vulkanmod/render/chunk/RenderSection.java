@@ -13,7 +13,6 @@ import net.vulkanmod.render.chunk.build.CompiledSection;
 import net.vulkanmod.render.chunk.build.TaskDispatcher;
 import net.vulkanmod.render.vertex.TerrainRenderType;
 
-import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
@@ -23,19 +22,18 @@ public class RenderSection {
     static final Map<RenderSection, Set<BlockEntity>> globalBlockEntitiesMap = new Reference2ReferenceOpenHashMap<>();
 
     private ChunkArea chunkArea;
-    private final RenderSection[] neighbours = new RenderSection[6];
     public byte frustumIndex;
-    private short lastFrame = -1;
     private short lastFrame2 = -1;
 
+    //Graph state lives in the grid's SectionGraph arrays
+    final int index;
+    private final SectionGraph graph;
+
     private final CompileStatus compileStatus = new CompileStatus();
 
     private boolean dirty = true;
     private boolean playerChanged;
 
-    private boolean completelyEmpty = true;
-    private long visibility;
-
     int xOffset, yOffset, zOffset;
 
 //    private final DrawBuffers.DrawParameters[] drawParametersArray =
@@ -44,15 +42,9 @@ public class RenderSection {
 //                    .toArray(DrawBuffers.DrawParameters[]::new);
     private final DrawBuffers.DrawParameters[] drawParametersArray;
 
-    //Graph-info
-    public Direction mainDir;
-    public byte directions;
-    public byte step;
-    public byte directionChanges;
-    byte sourceDirs;
-
-
-    public RenderSection(int index, int x, int y, int z) {
+    public RenderSection(SectionGraph graph, int index, int x, int y, int z) {
+        this.graph = graph;
+        this.index = index;
         this.xOffset = x;
         this.yOffset = y;
         this.zOffset = z;
@@ -72,49 +64,24 @@ public class RenderSection {
 
     }
 
-    public RenderSection setGraphInfo(@Nullable Direction from, byte step) {
-        mainDir = from;
-
-        sourceDirs = (byte) (from != null ? 1 << from.ordinal() : 0);
-
-        this.step = step;
-        this.directions = 0;
-        this.directionChanges = 0;
-        return this;
-    }
-
-    public void addDir(Direction direction) {
-        if(sourceDirs == 0)
-            return;
-        sourceDirs |= 1 << direction.ordinal();
-    }
-
-    public void setDirections(byte p_109855_, Direction p_109856_) {
-        this.directions = (byte)(this.directions | p_109855_ | 1 << p_109856_.ordinal());
-    }
-
-    void setDirectionChanges(byte i) {
-        this.directionChanges = i;
-    }
-
-    public boolean hasDirection(Direction p_109860_) {
-        return (this.directions & 1 << p_109860_.ordinal()) > 0;
-    }
+    public boolean resortTransparency(TaskDispatcher taskDispatcher, double camX, double camY, double camZ) {
+        CompiledSection compiledSection = this.getCompiledSection();
 
-    public boolean hasMainDirection() {
-        return this.sourceDirs != 0;
-    }
+        if (!compiledSection.renderTypes.contains(TerrainRenderType.TRANSLUCENT))
+            return false;
 
-    public void resortTransparency(TaskDispatcher taskDispatcher) {
+        //Last sorted order is still correct, skip the task and the upload
+        //Origin is computed as in SortTransparencyTask
+        if (!compiledSection.needsResort((float) camX - (float) this.xOffset(), (float) camY - (float) this.yOffset(), (float) camZ - (float) this.zOffset()))
+            return false;
 
         if (this.compileStatus.sortTask != null) {
             this.compileStatus.sortTask.cancel();
         }
 
-        if (this.getCompiledSection().renderTypes.contains(TerrainRenderType.TRANSLUCENT)) {
-            this.compileStatus.sortTask = new ChunkTask.SortTransparencyTask(this);
-            taskDispatcher.schedule(this.compileStatus.sortTask);
-        }
+        this.compileStatus.sortTask = new ChunkTask.SortTransparencyTask(this);
+        taskDispatcher.schedule(this.compileStatus.sortTask);
+        return true;
     }
 
     public void rebuildChunkAsync(TaskDispatcher dispatcher, RenderRegionCache renderRegionCache) {
@@ -180,22 +147,13 @@ public class RenderSection {
         return drawParametersArray[renderType.ordinal()];
     }
 
-    public void setNeighbour(int index, @Nullable RenderSection chunk) {
-        this.neighbours[index] = chunk;
-    }
-
-    public RenderSection getNeighbour(Direction dir) {
-        return this.neighbours[dir.ordinal()];
-    }
-
-    public RenderSection getNeighbour(int i) {
-        return this.neighbours[i];
-    }
-
     public void setChunkArea(ChunkArea chunkArea) {
         this.chunkArea = chunkArea;
 
         this.frustumIndex = chunkArea.getFrustumIndex(xOffset, yOffset, zOffset);
+
+        this.graph.chunkArea[this.index] = chunkArea;
+        this.graph.frustumIndex[this.index] = this.frustumIndex;
     }
 
     public ChunkArea getChunkArea() {
@@ -211,19 +169,25 @@ public class RenderSection {
     }
 
     public void setVisibility(long visibility) {
-        this.visibility = visibility;
+        if(this.graph.visibility[this.index] != visibility)
+            WorldRenderer.getInstance().setGraphChanged();
+
+        this.graph.visibility[this.index] = visibility;
     }
 
     public void setCompletelyEmpty(boolean b) {
-        this.completelyEmpty = b;
+        if(this.graph.completelyEmpty[this.index] != b)
+            WorldRenderer.getInstance().setGraphChanged();
+
+        this.graph.completelyEmpty[this.index] = b;
     }
 
     public boolean visibilityBetween(Direction dir1, Direction dir2) {
-        return (this.visibility & (1L << ((dir1.ordinal() << 3) + dir2.ordinal()))) != 0;
+        return this.graph.visibilityBetween(this.index, dir1.ordinal(), dir2.ordinal());
     }
 
     public boolean isCompletelyEmpty() {
-        return this.completelyEmpty;
+        return this.graph.completelyEmpty[this.index];
     }
 
     public boolean hasXYNeighbours() {
@@ -253,12 +217,12 @@ public class RenderSection {
 
     private void reset() {
         this.cancelTasks();
+        //Before the compiled section is cleared, as its render types tell which parameters hold segments
+        this.resetDrawParameters();
+
         this.compileStatus.compiledSection = CompiledSection.UNCOMPILED;
         this.dirty = true;
-        this.visibility = 0;
-        this.completelyEmpty = true;
-
-        this.resetDrawParameters();
+        this.graph.reset(this.index);
     }
 
     private void resetDrawParameters() {
@@ -278,9 +242,10 @@ public class RenderSection {
     }
 
     public boolean setLastFrame(short i) {
-        boolean res = i == this.lastFrame ;
+        short[] lastFrame = this.graph.lastFrame;
+        boolean res = i == lastFrame[this.index];
         if(!res)
-            this.lastFrame = i;
+            lastFrame[this.index] = i;
         return res;
     }
 
@@ -292,7 +257,11 @@ public class RenderSection {
     }
 
     public short getLastFrame() {
-        return this.lastFrame;
+        return this.graph.lastFrame[this.index];
+    }
+
+    public int getIndex() {
+        return this.index;
     }
 
     static class CompileStatus {
@@ -0,0 +1,129 @@
+package net.vulkanmod.render.chunk;
+
+import java.util.Arrays;
+
+//Visibility graph state of every grid section packed in primitive arrays, indexed as SectionGrid.getChunkIndex
+//Neighbours are derived from the index and the current grid window instead of being stored per section
+public class SectionGraph {
+    static final byte NO_DIRECTION = -1;
+
+    final int width;
+    final int height;
+    private final int layerSize;
+
+    final short[] lastFrame;
+    final byte[] mainDir;
+    final byte[] directions;
+    final byte[] step;
+    final byte[] directionChanges;
+    final byte[] sourceDirs;
+    final long[] visibility;
+    final boolean[] completelyEmpty;
+    final ChunkArea[] chunkArea;
+    final byte[] frustumIndex;
+
+    //First x, z grid index of the window around the camera (the other ends have no further neighbour)
+    private int xStart;
+    private int zStart;
+    private int xEnd;
+    private int zEnd;
+
+    SectionGraph(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.layerSize = width * height;
+
+        int size = width * height * width;
+        this.lastFrame = new short[size];
+        this.mainDir = new byte[size];
+        this.directions = new byte[size];
+        this.step = new byte[size];
+        this.directionChanges = new byte[size];
+        this.sourceDirs = new byte[size];
+        this.visibility = new long[size];
+        this.completelyEmpty = new boolean[size];
+        this.chunkArea = new ChunkArea[size];
+        this.frustumIndex = new byte[size];
+
+        Arrays.fill(this.lastFrame, (short) -1);
+        Arrays.fill(this.mainDir, NO_DIRECTION);
+        Arrays.fill(this.completelyEmpty, true);
+
+        this.setWindow(0, 0);
+    }
+
+    void setWindow(int xStart, int zStart) {
+        this.xStart = xStart;
+        this.zStart = zStart;
+        this.xEnd = Math.floorMod(xStart - 1, this.width);
+        this.zEnd = Math.floorMod(zStart - 1, this.width);
+    }
+
+    void reset(int index) {
+        this.visibility[index] = 0;
+        this.completelyEmpty[index] = true;
+    }
+
+    //Neighbour index in the given Direction ordinal or -1 if outside the grid
+    public int getNeighbour(int index, int direction) {
+        int x = index % this.width;
+        int y = (index / this.width) % this.height;
+        int z = index / this.layerSize;
+
+        return switch (direction) {
+            //DOWN, UP
+            case 0 -> y != 0 ? index - this.width : -1;
+            case 1 -> y != this.height - 1 ? index + this.width : -1;
+            //NORTH, SOUTH
+            case 2 -> z == this.zStart ? -1 : z != 0 ? index - this.layerSize : index + (this.width - 1) * this.layerSize;
+            case 3 -> z == this.zEnd ? -1 : z != this.width - 1 ? index + this.layerSize : index - (this.width - 1) * this.layerSize;
+            //WEST, EAST
+            case 4 -> x == this.xStart ? -1 : x != 0 ? index - 1 : index + this.width - 1;
+            case 5 -> x == this.xEnd ? -1 : x != this.width - 1 ? index + 1 : index - (this.width - 1);
+            default -> throw new IllegalArgumentException("Invalid direction: " + direction);
+        };
+    }
+
+    void setGraphInfo(int index, int from, byte step) {
+        this.mainDir[index] = (byte) from;
+        this.sourceDirs[index] = (byte) (from != NO_DIRECTION ? 1 << from : 0);
+
+        this.step[index] = step;
+        this.directions[index] = 0;
+        this.directionChanges[index] = 0;
+    }
+
+    void addDir(int index, int direction) {
+        if(this.sourceDirs[index] == 0)
+            return;
+        this.sourceDirs[index] |= 1 << direction;
+    }
+
+    void setDirections(int index, byte directions, int direction) {
+        this.directions[index] = (byte) (this.directions[index] | directions | 1 << direction);
+    }
+
+    boolean hasDirection(int index, int direction) {
+        return (this.directions[index] & 1 << direction) != 0;
+    }
+
+    boolean hasMainDirection(int index) {
+        return this.sourceDirs[index] != 0;
+    }
+
+    //Direction changes of a section first reached from index through direction
+    byte nextDirectionChanges(int index, int direction) {
+        if((this.sourceDirs[index] & (1 << direction)) == 0 && !this.completelyEmpty[index])
+            return this.step[index] > 4 ? (byte) (this.directionChanges[index] + 1) : 0;
+
+        return this.directionChanges[index];
+    }
+
+    byte inFrustum(int index) {
+        return this.chunkArea[index].inFrustum(this.frustumIndex[index]);
+    }
+
+    boolean visibilityBetween(int index, int dir1, int dir2) {
+        return (this.visibility[index] & (1L << ((dir1 << 3) + dir2))) != 0;
+    }
+}
@@ -2,10 +2,9 @@ package net.vulkanmod.render.chunk;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.minecraft.client.Minecraft;
+import net.vulkanmod.render.chunk.build.TaskDispatcher;
 import net.vulkanmod.render.chunk.util.CircularIntList;
-import net.vulkanmod.render.chunk.util.Util;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.Direction;
 import net.minecraft.util.Mth;
 import net.minecraft.world.level.Level;
 import net.vulkanmod.render.profiling.Profiler;
@@ -19,6 +18,7 @@ public class SectionGrid {
     protected int gridHeight;
     protected int gridWidth;
     public RenderSection[] chunks;
+    SectionGraph graph;
     final ChunkAreaManager chunkAreaManager;
 
     private int prevSecX;
@@ -40,17 +40,17 @@ public class SectionGrid {
         } else {
             int i = this.gridWidth * this.gridHeight * this.gridWidth;
             this.chunks = new RenderSection[i];
+            this.graph = new SectionGraph(this.gridWidth, this.gridHeight);
 
             for(int j = 0; j < this.gridWidth; ++j) {
                 for(int k = 0; k < this.gridHeight; ++k) {
                     for(int l = 0; l < this.gridWidth; ++l) {
                         int i1 = this.getChunkIndex(j, k, l);
-                        RenderSection renderSection = new RenderSection(i1, j * 16, k * 16, l * 16);
+                        RenderSection renderSection = new RenderSection(this.graph, i1, j * 16, k * 16, l * 16);
                         this.chunks[i1] = renderSection;
                     }
                 }
             }
-            this.setYNeighbours();
         }
     }
 
@@ -58,7 +58,7 @@ public class SectionGrid {
         this.chunkAreaManager.releaseAllBuffers();
     }
 
-    private int getChunkIndex(int x, int y, int z) {
+    int getChunkIndex(int x, int y, int z) {
         return (z * this.gridHeight + y) * this.gridWidth + x;
     }
 
@@ -120,6 +120,8 @@ public class SectionGrid {
         int zAbsChunkIndex = (j >> 4) - this.gridWidth / 2;
         int zStart = Math.floorMod(zAbsChunkIndex, this.gridWidth);
 
+        this.graph.setWindow(xStart, zStart);
+
         CircularIntList xList = new CircularIntList(this.gridWidth, xStart);
         CircularIntList zList = new CircularIntList(this.gridWidth, zStart);
         CircularIntList.OwnIterator xIterator = xList.iterator();
@@ -176,11 +178,6 @@ public class SectionGrid {
 
                     renderSection.setOrigin(x1, y1, z1);
 
-                    this.unsetNeighbours(renderSection);
-
-                    this.setNeighbours(renderSection, xList, zList, xRangeIterator.getCurrentIndex(), zIterator.getCurrentIndex(),
-                            xRelativeIndex, yRel, zRelativeIndex);
-
                     this.setChunkArea(renderSection, x1, y1, z1);
                 }
             }
@@ -205,11 +202,6 @@ public class SectionGrid {
 
                     renderSection.setOrigin(x1, y1, z1);
 
-                    this.unsetNeighbours(renderSection);
-
-                    this.setNeighbours(renderSection, xList, zList, xComplIterator.getCurrentIndex(), zRangeIterator.getCurrentIndex(),
-                            xRelativeIndex, yRel, zRelativeIndex);
-
                     this.setChunkArea(renderSection, x1, y1, z1);
 
                 }
@@ -268,76 +260,6 @@ public class SectionGrid {
         this.prevSecZ = j >> 4;
     }
 
-    private void setNeighbours(RenderSection section, CircularIntList xList, CircularIntList zList,
-                               int xIdx, int zIdx, int x, int y, int z) {
-        //TODO: maybe connect neighbours on section compile
-
-        int eastX = xList.getNext(xIdx);
-        int westX = xList.getPrevious(xIdx);
-        int northZ = zList.getPrevious(zIdx);
-        int southZ = zList.getNext(zIdx);
-
-        if(eastX != -1) {
-            RenderSection neighbour = this.chunks[getChunkIndex(eastX, y, z)];
-            section.setNeighbour(Direction.EAST.ordinal(), neighbour);
-            neighbour.setNeighbour(Direction.WEST.ordinal(), section);
-        }
-
-        if(westX != -1) {
-            RenderSection neighbour = this.chunks[getChunkIndex(westX, y, z)];
-            section.setNeighbour(Direction.WEST.ordinal(), neighbour);
-            neighbour.setNeighbour(Direction.EAST.ordinal(), section);
-        }
-
-        if(northZ != -1) {
-            RenderSection neighbour = this.chunks[getChunkIndex(x, y, northZ)];
-            section.setNeighbour(Direction.NORTH.ordinal(), neighbour);
-            neighbour.setNeighbour(Direction.SOUTH.ordinal(), section);
-        }
-
-        if(southZ != -1) {
-            RenderSection neighbour = this.chunks[getChunkIndex(x, y, southZ)];
-            section.setNeighbour(Direction.SOUTH.ordinal(), neighbour);
-            neighbour.setNeighbour(Direction.NORTH.ordinal(), section);
-        }
-    }
-
-    private void unsetNeighbours(RenderSection section) {
-
-        for(Direction dir : Util.XZ_DIRECTIONS) {
-//        for(Direction dir : Util.DIRECTIONS) {
-            RenderSection neighbour = section.getNeighbour(dir.ordinal());
-            if(neighbour != null)
-                neighbour.setNeighbour(dir.getOpposite().ordinal(), null);
-        }
-
-    }
-
-    private void setYNeighbours() {
-        for(int j = 0; j < this.gridWidth; ++j) {
-            for(int k = 0; k < this.gridHeight; ++k) {
-                for(int l = 0; l < this.gridWidth; ++l) {
-                    int i1 = this.getChunkIndex(j, k, l);
-                    this.setYNeighbours(this.chunks[i1], j, k, l);
-                }
-            }
-        }
-    }
-
-    private void setYNeighbours(RenderSection section, int x, int y, int z) {
-        if(y != this.gridHeight - 1) {
-            RenderSection neighbour = this.chunks[getChunkIndex(x, y + 1, z)];
-            section.setNeighbour(Direction.UP.ordinal(), neighbour);
-            neighbour.setNeighbour(Direction.DOWN.ordinal(), section);
-        }
-
-        if(y != 0) {
-            RenderSection neighbour = this.chunks[getChunkIndex(x , y - 1, z)];
-            section.setNeighbour(Direction.DOWN.ordinal(), neighbour);
-            neighbour.setNeighbour(Direction.UP.ordinal(), section);
-        }
-    }
-
     private void setChunkArea(RenderSection section, int x, int y, int z) {
         ChunkArea chunkArea = this.chunkAreaManager.getChunkArea(section, x, y, z);
 
@@ -388,7 +310,7 @@ public class SectionGrid {
         return list;
     }
 
-    public void updateFrustumVisibility(VFrustum frustum) {
-        this.chunkAreaManager.updateFrustumVisibility(frustum);
+    public void updateFrustumVisibility(VFrustum frustum, TaskDispatcher taskDispatcher) {
+        this.chunkAreaManager.updateFrustumVisibility(frustum, taskDispatcher);
     }
 }
@@ -0,0 +1,92 @@
+package net.vulkanmod.render.chunk;
+
+import net.vulkanmod.Initializer;
+import net.vulkanmod.render.vertex.TerrainRenderType;
+
+import java.util.EnumMap;
+
+import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_INDEX_BUFFER_BIT;
+import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_VERTEX_BUFFER_BIT;
+
+//Vertex and index arenas used by every area when sharedAreaBuffers is enabled,
+//a layer is then bound once and drawn with a single indirect call
+public class SharedAreaBuffers {
+    private static final int VERTEX_BUFFER_SIZE = 16 * 2097152;
+    private static final int INDEX_BUFFER_SIZE = 4 * 786432;
+
+    private final EnumMap<TerrainRenderType, AreaBuffer> vertexBuffers = new EnumMap<>(TerrainRenderType.class);
+    private AreaBuffer vertexBuffer;
+    private AreaBuffer indexBuffer;
+
+    AreaBuffer getVertexBufferOrAlloc(TerrainRenderType renderType) {
+        return this.vertexBuffers.computeIfAbsent(renderType, t -> {
+            if(Initializer.CONFIG.perRenderTypeAreaBuffers)
+                return new AreaBuffer(VK_BUFFER_USAGE_VERTEX_BUFFER_BIT, renderType.initialSize * 8, DrawBuffers.VERTEX_SIZE);
+
+            if(this.vertexBuffer == null)
+                this.vertexBuffer = new AreaBuffer(VK_BUFFER_USAGE_VERTEX_BUFFER_BIT, VERTEX_BUFFER_SIZE, DrawBuffers.VERTEX_SIZE);
+            return this.vertexBuffer;
+        });
+    }
+
+    AreaBuffer getVertexBuffer(TerrainRenderType renderType) {
+        return this.vertexBuffers.get(renderType);
+    }
+
+    AreaBuffer getIndexBufferOrAlloc() {
+        if(this.indexBuffer == null)
+            this.indexBuffer = new AreaBuffer(VK_BUFFER_USAGE_INDEX_BUFFER_BIT, INDEX_BUFFER_SIZE, DrawBuffers.INDEX_SIZE);
+
+        return this.indexBuffer;
+    }
+
+    AreaBuffer getIndexBuffer() {
+        return this.indexBuffer;
+    }
+
+    boolean isGrowthPending() {
+        if(this.indexBuffer != null && this.indexBuffer.isGrowthPending())
+            return true;
+
+        for(AreaBuffer areaBuffer : this.vertexBuffers.values()) {
+            if(areaBuffer.isGrowthPending())
+                return true;
+        }
+
+        return false;
+    }
+
+    int defragment(int maxBytes) {
+        int moved = 0;
+        if(this.vertexBuffer != null)
+            moved += this.vertexBuffer.defragment(maxBytes);
+        else {
+            for(AreaBuffer areaBuffer : this.vertexBuffers.values()) {
+                if(moved >= maxBytes)
+                    break;
+
+                moved += areaBuffer.defragment(maxBytes - moved);
+            }
+        }
+
+        //The budget is shared with the vertex buffers
+        if(this.indexBuffer != null && moved < maxBytes)
+            moved += this.indexBuffer.defragment(maxBytes - moved);
+
+        return moved;
+    }
+
+    void releaseBuffers() {
+        if(this.vertexBuffer != null)
+            this.vertexBuffer.freeBuffer();
+        else
+            this.vertexBuffers.values().forEach(AreaBuffer::freeBuffer);
+
+        if(this.indexBuffer != null)
+            this.indexBuffer.freeBuffer();
+
+        this.vertexBuffers.clear();
+        this.vertexBuffer = null;
+        this.indexBuffer = null;
+    }
+}
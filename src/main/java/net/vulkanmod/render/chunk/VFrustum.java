@@ -5,6 +5,8 @@ import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
 import org.joml.Vector4f;
 
+import java.util.Arrays;
+
 public class VFrustum {
     private Vector4f viewVector = new Vector4f();
     private double camX;
@@ -14,6 +16,9 @@ public class VFrustum {
     private final FrustumIntersection frustum = new FrustumIntersection();
     private final Matrix4f matrix = new Matrix4f();
 
+    //Planes as (x, y, z, w) in FrustumIntersection order: NX, PX, NY, PY, NZ, PZ
+    private final float[] planes = new float[6 * 4];
+
     public VFrustum offsetToFullyIncludeCameraCube(int offset) {
         double d0 = Math.floor(this.camX / (double)offset) * (double)offset;
         double d1 = Math.floor(this.camY / (double)offset) * (double)offset;
@@ -42,6 +47,73 @@ public class VFrustum {
 
         this.frustum.set(this.matrix, false);
         this.viewVector = this.matrix.transformTranspose(new Vector4f(0.0F, 0.0F, 1.0F, 0.0F));
+
+        Matrix4f m = this.matrix;
+        this.setPlane(0, m.m03() + m.m00(), m.m13() + m.m10(), m.m23() + m.m20(), m.m33() + m.m30());
+        this.setPlane(1, m.m03() - m.m00(), m.m13() - m.m10(), m.m23() - m.m20(), m.m33() - m.m30());
+        this.setPlane(2, m.m03() + m.m01(), m.m13() + m.m11(), m.m23() + m.m21(), m.m33() + m.m31());
+        this.setPlane(3, m.m03() - m.m01(), m.m13() - m.m11(), m.m23() - m.m21(), m.m33() - m.m31());
+        this.setPlane(4, m.m03() + m.m02(), m.m13() + m.m12(), m.m23() + m.m22(), m.m33() + m.m32());
+        this.setPlane(5, m.m03() - m.m02(), m.m13() - m.m12(), m.m23() - m.m22(), m.m33() - m.m32());
+    }
+
+    private void setPlane(int i, float x, float y, float z, float w) {
+        this.planes[i * 4] = x;
+        this.planes[i * 4 + 1] = y;
+        this.planes[i * 4 + 2] = z;
+        this.planes[i * 4 + 3] = w;
+    }
+
+    public void getPlanes(float[] dst) {
+        System.arraycopy(this.planes, 0, dst, 0, this.planes.length);
+    }
+
+    public double getCamX() {
+        return this.camX;
+    }
+
+    public double getCamY() {
+        return this.camY;
+    }
+
+    public double getCamZ() {
+        return this.camZ;
+    }
+
+    /**
+     * Batched equivalent of FrustumIntersection.intersectAab for count camera relative boxes stored in flat arrays.
+     * Plane normal signs are loop invariant, so each plane runs a branch light pass over all boxes.
+     */
+    public void intersectAabs(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ,
+                              byte[] results, int count) {
+        Arrays.fill(results, 0, count, (byte) FrustumIntersection.INSIDE);
+
+        for(int p = 0; p < 6; ++p) {
+            float a = this.planes[p * 4];
+            float b = this.planes[p * 4 + 1];
+            float c = this.planes[p * 4 + 2];
+            float w = -this.planes[p * 4 + 3];
+
+            //Farthest (p) and nearest (n) vertices along the plane normal
+            float[] pX = a < 0 ? minX : maxX, nX = a < 0 ? maxX : minX;
+            float[] pY = b < 0 ? minY : maxY, nY = b < 0 ? maxY : minY;
+            float[] pZ = c < 0 ? minZ : maxZ, nZ = c < 0 ? maxZ : minZ;
+
+            for(int i = 0; i < count; ++i) {
+                byte r = results[i];
+
+                if(a * pX[i] + b * pY[i] + c * pZ[i] < w) {
+                    //Keep the first culling plane
+                    if(r < 0)
+                        r = (byte) p;
+                }
+                else if(r == FrustumIntersection.INSIDE && a * nX[i] + b * nY[i] + c * nZ[i] < w) {
+                    r = FrustumIntersection.INTERSECT;
+                }
+
+                results[i] = r;
+            }
+        }
     }
 
     public int cubeInFrustum(float x1, float y1, float z1, float x2, float y2, float z2) {
@@ -19,7 +19,6 @@ import net.minecraft.client.renderer.chunk.RenderRegionCache;
 import net.minecraft.client.renderer.culling.Frustum;
 import net.minecraft.client.resources.model.ModelBakery;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.Direction;
 import net.minecraft.core.SectionPos;
 import net.minecraft.server.level.BlockDestructionProgress;
 import net.minecraft.util.Mth;
@@ -33,7 +32,8 @@ import net.vulkanmod.render.chunk.build.ChunkTask;
 import net.vulkanmod.render.chunk.build.TaskDispatcher;
 import net.vulkanmod.render.chunk.util.AreaSetQueue;
 import net.vulkanmod.render.chunk.util.ResettableQueue;
-import net.vulkanmod.render.chunk.util.Util;
+import net.vulkanmod.render.chunk.util.StaticQueue;
+import net.vulkanmod.render.profiling.AllocationMeter;
 import net.vulkanmod.render.profiling.BuildTimeBench;
 import net.vulkanmod.render.profiling.Profiler;
 import net.vulkanmod.render.profiling.Profiler2;
@@ -46,12 +46,18 @@ import net.vulkanmod.vulkan.memory.MemoryType;
 import net.vulkanmod.vulkan.shader.GraphicsPipeline;
 import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.vulkan.VkCommandBuffer;
 
 import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
 import java.util.*;
 
+import static org.lwjgl.vulkan.VK10.vkCmdDrawIndexedIndirect;
+
 public class WorldRenderer {
+    private static final int DEFRAG_BYTES_PER_FRAME = 1048576;
+
     private static WorldRenderer INSTANCE;
 
     private final Minecraft minecraft;
@@ -76,10 +82,18 @@ public class WorldRenderer {
     private final Set<BlockEntity> globalBlockEntities = Sets.newHashSet();
 
     private final TaskDispatcher taskDispatcher;
-    private final ResettableQueue<RenderSection> chunkQueue = new ResettableQueue<>();
+    private ResettableQueue<RenderSection> chunkQueue = new ResettableQueue<>();
+    private ResettableQueue<RenderSection> prevChunkQueue = new ResettableQueue<>();
     private AreaSetQueue chunkAreaQueue;
     private short lastFrame = 0;
 
+    //Incremental visibility update state
+    private volatile boolean graphChanged = true;
+    private int traversalSectionX, traversalSectionY, traversalSectionZ;
+    private int traversalMaxDirectionChanges;
+    private int sectionsReused;
+    private int sectionsRevisited;
+
     private double xTransparentOld;
     private double yTransparentOld;
     private double zTransparentOld;
@@ -87,6 +101,9 @@ public class WorldRenderer {
     private VFrustum frustum;
 
     IndirectBuffer[] indirectBuffers;
+    private GpuCuller gpuCuller;
+    //Commands of every area of a layer, used with shared area buffers
+    private ByteBuffer layerCommands;
 //    UniformBuffers uniformBuffers;
 
     public RenderRegionCache renderRegionCache;
@@ -104,6 +121,9 @@ public class WorldRenderer {
         Renderer.getInstance().addOnResizeCallback(() -> {
             if(this.indirectBuffers.length != Renderer.getFramesNum())
                 allocateIndirectBuffers();
+
+            if(this.gpuCuller != null)
+                this.gpuCuller.setFrames(Renderer.getFramesNum());
         });
     }
 
@@ -170,6 +190,7 @@ public class WorldRenderer {
             this.lastCameraSectionY = sectionY;
             this.lastCameraSectionZ = sectionZ;
             this.sectionGrid.repositionCamera(cameraX, cameraZ);
+            this.taskDispatcher.updateCameraSection(sectionX, sectionY, sectionZ);
             p2.pushMilestone("end-reposition");
             p2.round();
         }
@@ -211,20 +232,39 @@ public class WorldRenderer {
                 this.lastCamRotY = camera.getYRot();
 
                 this.frustum = (((FrustumMixed)(frustum)).customFrustum()).offsetToFullyIncludeCameraCube(8);
-                this.sectionGrid.updateFrustumVisibility(this.frustum);
+                this.sectionGrid.updateFrustumVisibility(this.frustum, this.taskDispatcher);
 
                 this.minecraft.getProfiler().push("partial_update");
 
-                this.chunkQueue.clear();
-                this.initUpdate();
-                this.initializeQueueForFullUpdate(camera);
-
                 this.renderRegionCache = new RenderRegionCache();
 
-                if(flag)
-                    this.updateRenderChunks();
-                else
-                    this.updateRenderChunksSpectator();
+                if(flag && this.canUpdateIncrementally(sectionX, sectionY, sectionZ)) {
+                    this.initUpdate();
+                    this.updateRenderChunksIncremental();
+                }
+                else {
+                    //Reset before traversing, sections compiled meanwhile will flag it again
+                    this.graphChanged = !flag;
+                    this.traversalSectionX = sectionX;
+                    this.traversalSectionY = sectionY;
+                    this.traversalSectionZ = sectionZ;
+                    this.traversalMaxDirectionChanges = Initializer.CONFIG.advCulling;
+
+                    this.chunkQueue.clear();
+                    this.initUpdate();
+                    this.initializeQueueForFullUpdate(camera);
+
+                    if(flag)
+                        this.updateRenderChunks();
+                    else
+                        this.updateRenderChunksSpectator();
+
+                    this.sectionsReused = 0;
+                    this.sectionsRevisited = this.chunkQueue.size();
+                }
+
+                profiler.setCounter("Sections_reused", this.sectionsReused);
+                profiler.setCounter("Sections_revisited", this.sectionsRevisited);
 
                 this.minecraft.getProfiler().pop();
 
@@ -237,6 +277,9 @@ public class WorldRenderer {
         this.indirectBuffers[Renderer.getCurrentFrame()].reset();
 //        this.uniformBuffers.reset();
 
+        if(this.gpuCuller != null && this.frustum != null)
+            this.gpuCuller.cull(this.chunkAreaQueue, this.frustum, this.lastFrame);
+
         this.minecraft.getProfiler().pop();
         profiler.pop();
     }
@@ -260,7 +303,7 @@ public class WorldRenderer {
 
                     RenderSection renderSection1 = this.sectionGrid.getSectionAtBlockPos(new BlockPos(k + SectionPos.sectionToBlockCoord(i1, 8), j, l + SectionPos.sectionToBlockCoord(j1, 8)));
                     if (renderSection1 != null) {
-                        renderSection1.setGraphInfo(null, (byte) 0);
+                        this.sectionGrid.graph.setGraphInfo(renderSection1.index, SectionGraph.NO_DIRECTION, (byte) 0);
                         renderSection1.setLastFrame(this.lastFrame);
                         list.add(renderSection1);
 
@@ -278,7 +321,7 @@ public class WorldRenderer {
             }
 
         } else {
-            renderSection.setGraphInfo(null, (byte) 0);
+            this.sectionGrid.graph.setGraphInfo(renderSection.index, SectionGraph.NO_DIRECTION, (byte) 0);
             renderSection.setLastFrame(this.lastFrame);
             this.chunkQueue.add(renderSection);
         }
@@ -305,11 +348,98 @@ public class WorldRenderer {
         if(buildLimit == 0)
             this.needsUpdate = true;
 
+        SectionGraph graph = this.sectionGrid.graph;
+
         while(this.chunkQueue.hasNext()) {
             RenderSection renderSection = this.chunkQueue.poll();
+            int index = renderSection.index;
+
+            if(!graph.completelyEmpty[index]) {
+                renderSection.getChunkArea().addSections(renderSection);
+                this.chunkAreaQueue.add(renderSection.getChunkArea());
+                this.nonEmptyChunks++;
+            }
+
+            this.scheduleUpdate(renderSection);
+
+            if(graph.directionChanges[index] > maxDirectionsChanges)
+                continue;
+
+            //Opposite direction ordinal is direction ^ 1
+            for(int direction = 0; direction < 6; ++direction) {
+                int relativeIndex = graph.getNeighbour(index, direction);
+
+                if (relativeIndex != -1 && !graph.hasDirection(index, direction ^ 1)) {
+
+                    if (graph.hasMainDirection(index)) {
+                        if (!graph.visibilityBetween(index, graph.mainDir[index] ^ 1, direction))
+                            continue;
+                    }
+
+                    this.addNode(graph, index, relativeIndex, direction);
+                }
+            }
+        }
+
+    }
+
+    private boolean canUpdateIncrementally(int sectionX, int sectionY, int sectionZ) {
+        return Initializer.CONFIG.incrementalCulling && !this.graphChanged
+                && this.traversalSectionX == sectionX && this.traversalSectionY == sectionY && this.traversalSectionZ == sectionZ
+                && this.traversalMaxDirectionChanges == Initializer.CONFIG.advCulling;
+    }
+
+    //Camera is in the same section and no section visibility changed since the last full traversal:
+    //keep previous result and only re-explore sections whose frustum classification could have changed
+    private void updateRenderChunksIncremental() {
+        int maxDirectionsChanges = Initializer.CONFIG.advCulling;
+
+        int buildLimit = taskDispatcher.getIdleThreadsCount() * (Minecraft.getInstance().options.enableVsync().get() ? 6 : 3);
 
+        if(buildLimit == 0)
+            this.needsUpdate = true;
+
+        ResettableQueue<RenderSection> previousQueue = this.chunkQueue;
+        this.chunkQueue = this.prevChunkQueue;
+        this.prevChunkQueue = previousQueue;
+        this.chunkQueue.clear();
+
+        ChunkAreaManager chunkAreaManager = this.sectionGrid.chunkAreaManager;
+        SectionGraph graph = this.sectionGrid.graph;
+        int reused = 0;
+        int revisited = 0;
+
+        previousQueue.rewind();
+        while(previousQueue.hasNext()) {
+            RenderSection renderSection = previousQueue.poll();
+            ChunkArea chunkArea = renderSection.getChunkArea();
+            byte frustumState = chunkArea.inFrustum(renderSection.frustumIndex);
+
+            if(frustumState == FrustumIntersection.INSIDE && !chunkAreaManager.isFrustumChanged(chunkArea.index())) {
+                reused++;
+            }
+            else {
+                revisited++;
+
+                if(frustumState >= 0)
+                    continue;
+                else if(frustumState == FrustumIntersection.INTERSECT
+                        && frustum.cubeInFrustum(renderSection.xOffset, renderSection.yOffset, renderSection.zOffset,
+                        renderSection.xOffset + 16 , renderSection.yOffset + 16, renderSection.zOffset + 16) >= 0)
+                    continue;
+            }
+
+            renderSection.setLastFrame(this.lastFrame);
+            this.chunkQueue.add(renderSection);
+        }
 
-            if(!renderSection.isCompletelyEmpty()) {
+        int keptCount = this.chunkQueue.size();
+
+        for(int i = 0; this.chunkQueue.hasNext(); ++i) {
+            RenderSection renderSection = this.chunkQueue.poll();
+            int index = renderSection.index;
+
+            if(!graph.completelyEmpty[index]) {
                 renderSection.getChunkArea().addSections(renderSection);
                 this.chunkAreaQueue.add(renderSection.getChunkArea());
                 this.nonEmptyChunks++;
@@ -317,24 +447,40 @@ public class WorldRenderer {
 
             this.scheduleUpdate(renderSection);
 
-            if(renderSection.directionChanges > maxDirectionsChanges)
+            //Kept sections only need to expand towards the frustum border
+            boolean kept = i < keptCount;
+            if(!kept)
+                revisited++;
+
+            if(graph.directionChanges[index] > maxDirectionsChanges)
                 continue;
 
-            for(Direction direction : Util.DIRECTIONS) {
-                RenderSection relativeChunk = renderSection.getNeighbour(direction);
+            for(int direction = 0; direction < 6; ++direction) {
+                int relativeIndex = graph.getNeighbour(index, direction);
 
-                if (relativeChunk != null && !renderSection.hasDirection(direction.getOpposite())) {
+                if (relativeIndex != -1 && !graph.hasDirection(index, direction ^ 1)) {
 
-                    if (renderSection.hasMainDirection()) {
-                        if (!renderSection.visibilityBetween(renderSection.mainDir.getOpposite(), direction))
+                    if (kept && (graph.lastFrame[relativeIndex] == this.lastFrame || !isFrustumBorder(chunkAreaManager, graph, relativeIndex)))
+                        continue;
+
+                    if (graph.hasMainDirection(index)) {
+                        if (!graph.visibilityBetween(index, graph.mainDir[index] ^ 1, direction))
                             continue;
                     }
 
-                    this.addNode(renderSection, relativeChunk, direction);
+                    this.addNode(graph, index, relativeIndex, direction);
                 }
             }
         }
 
+        this.sectionsReused = reused;
+        this.sectionsRevisited = revisited;
+    }
+
+    private static boolean isFrustumBorder(ChunkAreaManager chunkAreaManager, SectionGraph graph, int index) {
+        ChunkArea chunkArea = graph.chunkArea[index];
+        return chunkAreaManager.isFrustumChanged(chunkArea.index())
+                || chunkArea.inFrustum(graph.frustumIndex[index]) == FrustumIntersection.INTERSECT;
     }
 
     private void updateRenderChunksSpectator() {
@@ -345,11 +491,13 @@ public class WorldRenderer {
         if(rebuildLimit == 0)
             this.needsUpdate = true;
 
+        SectionGraph graph = this.sectionGrid.graph;
+
         while(this.chunkQueue.hasNext()) {
             RenderSection renderSection = this.chunkQueue.poll();
+            int index = renderSection.index;
 
-
-            if(!renderSection.isCompletelyEmpty()) {
+            if(!graph.completelyEmpty[index]) {
                 renderSection.getChunkArea().addSections(renderSection);
                 this.chunkAreaQueue.add(renderSection.getChunkArea());
                 this.nonEmptyChunks++;
@@ -357,12 +505,12 @@ public class WorldRenderer {
 
             this.scheduleUpdate(renderSection);
 
-            for(Direction direction : Util.DIRECTIONS) {
-                RenderSection relativeChunk = renderSection.getNeighbour(direction);
+            for(int direction = 0; direction < 6; ++direction) {
+                int relativeIndex = graph.getNeighbour(index, direction);
 
-                if (relativeChunk != null && !renderSection.hasDirection(direction.getOpposite())) {
+                if (relativeIndex != -1 && !graph.hasDirection(index, direction ^ 1)) {
 
-                    this.addNode(renderSection, relativeChunk, direction);
+                    this.addNode(graph, index, relativeIndex, direction);
 
                 }
             }
@@ -370,41 +518,37 @@ public class WorldRenderer {
 
     }
 
-    private void addNode(RenderSection renderSection, RenderSection relativeChunk, Direction direction) {
-        if (relativeChunk.getChunkArea().inFrustum(relativeChunk.frustumIndex) >= 0) {
+    private void addNode(SectionGraph graph, int index, int relativeIndex, int direction) {
+        byte frustumState = graph.inFrustum(relativeIndex);
+
+        if (frustumState >= 0) {
             return;
         }
-        else if (relativeChunk.getLastFrame() == this.lastFrame) {
-            int d = renderSection.mainDir != direction && !renderSection.isCompletelyEmpty() ?
-                    renderSection.directionChanges + 1 : renderSection.directionChanges;
+        else if (graph.lastFrame[relativeIndex] == this.lastFrame) {
+            int d = graph.mainDir[index] != direction && !graph.completelyEmpty[index] ?
+                    graph.directionChanges[index] + 1 : graph.directionChanges[index];
 
-            relativeChunk.addDir(direction);
+            graph.addDir(relativeIndex, direction);
 
-            relativeChunk.directionChanges = d < relativeChunk.directionChanges ? (byte) d : relativeChunk.directionChanges;
+            if(d < graph.directionChanges[relativeIndex])
+                graph.directionChanges[relativeIndex] = (byte) d;
 
             return;
         }
-        else if(relativeChunk.getChunkArea().inFrustum(relativeChunk.frustumIndex) == FrustumIntersection.INTERSECT) {
+        else if(frustumState == FrustumIntersection.INTERSECT) {
+            RenderSection relativeChunk = this.sectionGrid.chunks[relativeIndex];
             if(frustum.cubeInFrustum(relativeChunk.xOffset, relativeChunk.yOffset, relativeChunk.zOffset,
                     relativeChunk.xOffset + 16 , relativeChunk.yOffset + 16, relativeChunk.zOffset + 16) >= 0)
                 return;
         }
 
-        relativeChunk.setLastFrame(this.lastFrame);
+        graph.lastFrame[relativeIndex] = this.lastFrame;
 
-        relativeChunk.setGraphInfo(direction, (byte) (renderSection.step + 1));
-        relativeChunk.setDirections(renderSection.directions, direction);
-        this.chunkQueue.add(relativeChunk);
-
-        byte d;
-        if ((renderSection.sourceDirs & (1 << direction.ordinal())) == 0 && !renderSection.isCompletelyEmpty())
-        {
-            d = renderSection.step > 4 ? (byte) (renderSection.directionChanges + 1) : 0;
-        }
-        else
-            d = renderSection.directionChanges;
+        graph.setGraphInfo(relativeIndex, direction, (byte) (graph.step[index] + 1));
+        graph.setDirections(relativeIndex, graph.directions[index], direction);
+        this.chunkQueue.add(this.sectionGrid.chunks[relativeIndex]);
 
-        relativeChunk.directionChanges = d;
+        graph.directionChanges[relativeIndex] = graph.nextDirectionChanges(index, direction);
     }
 
     public void scheduleUpdate(RenderSection section) {
@@ -425,6 +569,9 @@ public class WorldRenderer {
 
         Profiler2 profiler = Profiler2.getMainProfiler();
         profiler.push("Uploads");
+        //Moves are recorded before uploads are submitted, moved sections pick their new offsets on the next update
+        if(Initializer.CONFIG.defragAreaBuffers && this.sectionGrid.chunkAreaManager.defragmentBuffers(DEFRAG_BYTES_PER_FRAME))
+            this.needsUpdate = true;
         if(this.taskDispatcher.uploadAllPendingUploads())
             this.needsUpdate = true;
         profiler.pop();
@@ -463,6 +610,7 @@ public class WorldRenderer {
             this.taskDispatcher.createThreads();
 
             this.needsUpdate = true;
+            this.graphChanged = true;
 //            this.generateClouds = true;
 
             this.renderDistance = this.minecraft.options.getEffectiveRenderDistance();
@@ -478,6 +626,10 @@ public class WorldRenderer {
             this.sectionGrid = new SectionGrid(this.level, this.renderDistance);
             this.chunkAreaQueue = new AreaSetQueue(this.sectionGrid.chunkAreaManager.size);
 
+            this.releaseGpuCuller();
+            if(Initializer.CONFIG.gpuCulling && GpuCuller.isSupported())
+                this.gpuCuller = new GpuCuller(this.sectionGrid.chunkAreaManager.size, this.sectionGrid.chunkAreaManager.sharedBuffers != null);
+
             this.onAllChangedCallbacks.forEach(Runnable::run);
 
             Entity entity = this.minecraft.getCameraEntity();
@@ -505,6 +657,8 @@ public class WorldRenderer {
                 this.sectionGrid = null;
             }
 
+            this.releaseGpuCuller();
+
             this.taskDispatcher.stopThreads();
 
             this.needsUpdate = true;
@@ -512,6 +666,13 @@ public class WorldRenderer {
 
     }
 
+    private void releaseGpuCuller() {
+        if(this.gpuCuller != null) {
+            this.gpuCuller.cleanUp();
+            this.gpuCuller = null;
+        }
+    }
+
     public void addOnAllChangedCallback(Runnable runnable) {
         this.onAllChangedCallbacks.add(runnable);
     }
@@ -521,16 +682,18 @@ public class WorldRenderer {
     }
 
     public void renderSectionLayer(RenderType renderType, PoseStack poseStack, double camX, double camY, double camZ, Matrix4f projection) {
+        AllocationMeter.begin(AllocationMeter.TERRAIN);
         TerrainRenderType terrainRenderType = TerrainRenderType.get(renderType);
         renderType.setupRenderState();
 
         this.sortTranslucentSections(camX, camY, camZ);
 
         this.minecraft.getProfiler().push("filterempty");
-        this.minecraft.getProfiler().popPush(() -> "render_" + renderType);
+        this.minecraft.getProfiler().popPush(terrainRenderType.profilerName);
 
         final boolean isTranslucent = terrainRenderType == TerrainRenderType.TRANSLUCENT;
         final boolean indirectDraw = Initializer.CONFIG.indirectDraw;
+        final boolean gpuCulled = this.gpuCuller != null && GpuCuller.culls(terrainRenderType);
 
         VRenderSystem.applyMVP(poseStack.last().pose(), projection);
 
@@ -544,22 +707,35 @@ public class WorldRenderer {
             VRenderSystem.depthMask(!isTranslucent); //Disable Depth writes if Translucent
 
             GraphicsPipeline pipeline = PipelineManager.getTerrainShader(terrainRenderType);
-            boolean shouldUpdate = renderer.bindGraphicsPipeline(pipeline);
+            renderer.bindGraphicsPipeline(pipeline);
             Renderer.getDrawer().bindAutoIndexBuffer(commandBuffer, 7);
 
-            renderer.uploadAndBindUBOs(pipeline, shouldUpdate);
-            for(Iterator<ChunkArea> iterator = this.chunkAreaQueue.iterator(isTranslucent); iterator.hasNext();) {
-                ChunkArea chunkArea = iterator.next();
-                DrawBuffers drawBuffers = chunkArea.drawBuffers();
-                var queue = chunkArea.sectionQueues().get(terrainRenderType);
+            //Camera changes every frame, the UBO is written even if the pipeline was already bound
+            VRenderSystem.setTerrainCamera(camX, camY, camZ, this.sectionGrid.chunkAreaManager.minHeight);
+            renderer.uploadAndBindUBOs(pipeline, true);
+            DrawBuffers.pushMatrices(commandBuffer, pipeline);
 
-                if(drawBuffers.getAreaBuffer(terrainRenderType) != null && queue.size() > 0) {
-                    drawBuffers.bindBuffers(commandBuffer, pipeline, terrainRenderType, camX, camY, camZ);
-
-                    if (indirectDraw)
-                        drawBuffers.buildDrawBatchesIndirect(indirectBuffers[currentFrame], queue, terrainRenderType);
-                    else
-                        drawBuffers.buildDrawBatchesDirect(queue, terrainRenderType);
+            SharedAreaBuffers sharedBuffers = this.sectionGrid.chunkAreaManager.sharedBuffers;
+            if(sharedBuffers != null) {
+                this.renderSharedLayer(commandBuffer, sharedBuffers, terrainRenderType, gpuCulled, indirectDraw, currentFrame);
+            }
+            else {
+                StaticQueue<ChunkArea> areaQueue = this.chunkAreaQueue.queue();
+                for(int i = 0; i < areaQueue.size(); ++i) {
+                    ChunkArea chunkArea = areaQueue.get(i, isTranslucent);
+                    DrawBuffers drawBuffers = chunkArea.drawBuffers();
+                    var queue = chunkArea.sectionQueues().get(terrainRenderType);
+
+                    if(drawBuffers.getAreaBuffer(terrainRenderType) != null && queue.size() > 0) {
+                        drawBuffers.bindBuffers(commandBuffer, terrainRenderType);
+
+                        if (gpuCulled)
+                            this.gpuCuller.draw(commandBuffer, chunkArea, terrainRenderType);
+                        else if (indirectDraw)
+                            drawBuffers.buildDrawBatchesIndirect(indirectBuffers[currentFrame], queue, terrainRenderType);
+                        else
+                            drawBuffers.buildDrawBatchesDirect(queue, terrainRenderType);
+                    }
                 }
             }
         }
@@ -573,6 +749,59 @@ public class WorldRenderer {
         renderType.clearRenderState();
 
         VRenderSystem.applyMVP(RenderSystem.getModelViewMatrix(), RenderSystem.getProjectionMatrix());
+        AllocationMeter.end(AllocationMeter.TERRAIN);
+    }
+
+    //All areas are in the same buffers: bind once and draw the layer with a single indirect call
+    private void renderSharedLayer(VkCommandBuffer commandBuffer, SharedAreaBuffers sharedBuffers, TerrainRenderType terrainRenderType,
+                                   boolean gpuCulled, boolean indirectDraw, int currentFrame) {
+        AreaBuffer vertexBuffer = sharedBuffers.getVertexBuffer(terrainRenderType);
+        if(vertexBuffer == null)
+            return;
+
+        final boolean isTranslucent = terrainRenderType == TerrainRenderType.TRANSLUCENT;
+
+        StaticQueue<ChunkArea> areaQueue = this.chunkAreaQueue.queue();
+
+        int sectionCount = 0;
+        for(int i = 0; i < areaQueue.size(); ++i) {
+            ChunkArea chunkArea = areaQueue.get(i);
+            chunkArea.drawBuffers().applyPendingUpdates();
+            sectionCount += chunkArea.sectionQueues().get(terrainRenderType).size();
+        }
+
+        if(sectionCount == 0)
+            return;
+
+        DrawBuffers.bindBuffers(commandBuffer, vertexBuffer, sharedBuffers.getIndexBuffer(), terrainRenderType);
+
+        if(gpuCulled) {
+            this.gpuCuller.drawLayer(commandBuffer, terrainRenderType);
+        }
+        else if(indirectDraw) {
+            int size = sectionCount * 20;
+            if(this.layerCommands == null || this.layerCommands.capacity() < size)
+                this.layerCommands = MemoryUtil.memRealloc(this.layerCommands, size + (size >> 1));
+
+            //Areas and their sections keep the queue order, back to front for translucent
+            long ptr = MemoryUtil.memAddress0(this.layerCommands);
+            int drawCount = 0;
+            for(int i = 0; i < areaQueue.size(); ++i) {
+                var queue = areaQueue.get(i, isTranslucent).sectionQueues().get(terrainRenderType);
+                drawCount += DrawBuffers.writeDrawCommands(ptr + drawCount * 20L, queue, isTranslucent);
+            }
+
+            IndirectBuffer indirectBuffer = this.indirectBuffers[currentFrame];
+            indirectBuffer.recordCopyCmd(this.layerCommands.limit(drawCount * 20).position(0));
+
+            vkCmdDrawIndexedIndirect(commandBuffer, indirectBuffer.getId(), indirectBuffer.getOffset(), drawCount, 20);
+        }
+        else {
+            for(int i = 0; i < areaQueue.size(); ++i) {
+                ChunkArea chunkArea = areaQueue.get(i, isTranslucent);
+                chunkArea.drawBuffers().buildDrawBatchesDirect(chunkArea.sectionQueues().get(terrainRenderType), terrainRenderType);
+            }
+        }
     }
 
     private void sortTranslucentSections(double camX, double camY, double camZ) {
@@ -598,9 +827,8 @@ public class WorldRenderer {
             while(iterator.hasNext() && j < 15) {
                 RenderSection section = iterator.next();
 
-                section.resortTransparency(this.taskDispatcher);
-
-                ++j;
+                if(section.resortTransparency(this.taskDispatcher, camX, camY, camZ))
+                    ++j;
             }
         }
 
@@ -649,6 +877,10 @@ public class WorldRenderer {
         this.needsUpdate = true;
     }
 
+    public void setGraphChanged() {
+        this.graphChanged = true;
+    }
+
     public boolean needsUpdate() {
         return this.needsUpdate;
     }
@@ -681,6 +913,8 @@ public class WorldRenderer {
 
     public short getLastFrame() { return lastFrame; }
 
+    public GpuCuller getGpuCuller() { return this.gpuCuller; }
+
     public String getChunkStatistics() {
         int i = this.sectionGrid.chunks.length;
 //        int j = this.sectionsInFrustum.size();
@@ -692,6 +926,13 @@ public class WorldRenderer {
     public void cleanUp() {
         if(indirectBuffers != null)
             Arrays.stream(indirectBuffers).forEach(Buffer::freeBuffer);
+
+        this.releaseGpuCuller();
+
+        if(this.layerCommands != null) {
+            MemoryUtil.memFree(this.layerCommands);
+            this.layerCommands = null;
+        }
     }
 
 }
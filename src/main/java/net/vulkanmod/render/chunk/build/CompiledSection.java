@@ -26,6 +26,12 @@ public class CompiledSection {
     @Nullable
     TerrainBufferBuilder.SortState transparencyState;
 
+    //Whether the translucent order sorted last could differ for the given section relative camera position
+    public boolean needsResort(float camX, float camY, float camZ) {
+        TerrainBufferBuilder.SortState sortState = this.transparencyState;
+        return sortState == null || !sortState.isOrderValid(camX, camY, camZ);
+    }
+
     public boolean hasNoRenderableLayers() {
         return this.isCompletelyEmpty;
     }
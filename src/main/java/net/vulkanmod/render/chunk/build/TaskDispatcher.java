@@ -10,22 +10,33 @@ import net.vulkanmod.render.chunk.build.thread.ThreadBuilderPack;
 import net.vulkanmod.render.vertex.TerrainRenderType;
 import org.slf4j.Logger;
 
-import javax.annotation.Nullable;
 import java.util.EnumMap;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 public class TaskDispatcher {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
     private int highPriorityQuota = 2;
 
     private final Queue<Runnable> toUpload = Queues.newLinkedBlockingDeque();
     public final ThreadBuilderPack fixedBuffers;
 
-    //TODO volatile?
-    private boolean stopThreads;
-    private Thread[] threads;
-    private int idleThreads;
-    private final Queue<ChunkTask> highPriorityTasks = Queues.newConcurrentLinkedQueue();
-    private final Queue<ChunkTask> lowPriorityTasks = Queues.newConcurrentLinkedQueue();
+    private volatile boolean stopThreads;
+    private volatile Worker[] workers;
+
+    //Shared by all workers so the closest task is always taken first
+    private final TaskQueue taskQueue = new TaskQueue();
+
+    //Short render thread work shared with the workers while it runs, see runFrameTasks
+    private volatile FrameTasks frameTasks;
+
+    //Camera section used to order queued tasks by distance
+    private volatile int cameraSectionX, cameraSectionY, cameraSectionZ;
+    private volatile int priorityVersion;
 
     public TaskDispatcher() {
         this.fixedBuffers = new ThreadBuilderPack();
@@ -44,63 +55,125 @@ public class TaskDispatcher {
 
         this.stopThreads = false;
 
-        this.threads = new Thread[n];
+        if(this.workers != null)
+            this.clearBatchQueue();
 
+        Worker[] workers = new Worker[n];
         for (int i = 0; i < n; i++) {
-            ThreadBuilderPack builderPack = new ThreadBuilderPack();
+            workers[i] = new Worker(new ThreadBuilderPack());
+        }
+        this.workers = workers;
+
+        for (Worker worker : workers) {
             Thread thread = new Thread(
-                    () -> runTaskThread(builderPack));
+                    () -> runTaskThread(worker));
 
-            this.threads[i] = thread;
+            worker.thread = thread;
             thread.start();
         }
     }
 
-    private void runTaskThread(ThreadBuilderPack builderPack) {
+    private void runTaskThread(Worker worker) {
         while(!this.stopThreads) {
-            ChunkTask task = this.pollTask();
-
-            if(task == null)
-                synchronized (this) {
-                    try {
-                        this.idleThreads++;
-                        this.wait();
-                    } catch (InterruptedException e) {
-                        throw new RuntimeException(e);
-                    }
-                    this.idleThreads--;
+            FrameTasks frameTasks = this.frameTasks;
+            if(frameTasks != null)
+                frameTasks.runClaimed();
+
+            ChunkTask task = this.taskQueue.poll(this);
+
+            if(task == null) {
+                worker.sleeping.set(true);
+
+                //Check again after publishing the sleeping state to not miss a wake-up
+                task = this.taskQueue.poll(this);
+
+                if(task == null) {
+                    if(!this.stopThreads)
+                        LockSupport.park(this);
+
+                    worker.sleeping.set(false);
+                    continue;
                 }
 
-            if(task == null)
-                continue;
+                worker.sleeping.set(false);
+            }
 
-            task.doTask(builderPack);
+            //A failed build must not take the worker down with it
+            try {
+                task.doTask(worker.builderPack);
+            } catch (Throwable t) {
+                LOGGER.error("Chunk task failed", t);
+            }
         }
     }
 
+    //Runs the tasks on the calling thread and on the workers that are idle or finish a build meanwhile.
+    //Returns once every task completed, busy workers never delay the caller as it claims what is left.
+    //The first task failure is rethrown here, after the other tasks completed
+    public void runFrameTasks(FrameTasks tasks) {
+        tasks.begin();
+
+        Worker[] workers = this.workers;
+        boolean shared = !this.stopThreads && workers != null;
+        if(shared) {
+            this.frameTasks = tasks;
+
+            for (Worker worker : workers) {
+                worker.wake();
+            }
+        }
+
+        tasks.runClaimed();
+        tasks.awaitCompletion();
+
+        if(shared)
+            this.frameTasks = null;
+
+        Throwable failure = tasks.failure.get();
+        if(failure != null)
+            throw new RuntimeException("Frame task failed", failure);
+    }
+
     public void schedule(ChunkTask chunkTask) {
         if(chunkTask == null)
             return;
 
-        if (chunkTask.highPriority) {
-            this.highPriorityTasks.offer(chunkTask);
-        } else {
-            this.lowPriorityTasks.offer(chunkTask);
-        }
+        this.taskQueue.offer(chunkTask, this.computePriority(chunkTask));
 
-        synchronized (this) {
-            notify();
+        //Tasks scheduled before createThreads are polled once the workers start
+        Worker[] workers = this.workers;
+        if(workers == null)
+            return;
+
+        for (Worker worker : workers) {
+            if(worker.wake())
+                return;
         }
     }
 
-    @Nullable
-    private ChunkTask pollTask() {
-        ChunkTask task = this.highPriorityTasks.poll();
+    //Lower value means higher priority, high priority tasks always come first
+    long computePriority(ChunkTask task) {
+        RenderSection section = task.renderSection;
 
-        if(task == null)
-            task = this.lowPriorityTasks.poll();
+        long dx = (section.xOffset() >> 4) - this.cameraSectionX;
+        long dy = (section.yOffset() >> 4) - this.cameraSectionY;
+        long dz = (section.zOffset() >> 4) - this.cameraSectionZ;
+        long distance = dx * dx + dy * dy + dz * dz;
+
+        return task.highPriority ? distance : distance + (1L << 32);
+    }
+
+    public void updateCameraSection(int x, int y, int z) {
+        this.cameraSectionX = x;
+        this.cameraSectionY = y;
+        this.cameraSectionZ = z;
+
+        //Queued tasks get re-prioritized lazily on next poll
+        this.priorityVersion++;
+    }
 
-        return task;
+    int getPriorityVersion() {
+        return this.priorityVersion;
     }
 
     public void stopThreads() {
@@ -109,13 +182,13 @@ public class TaskDispatcher {
 
         this.stopThreads = true;
 
-        synchronized (this) {
-            notifyAll();
+        for (Worker worker : this.workers) {
+            LockSupport.unpark(worker.thread);
         }
 
-        for (Thread thread : this.threads) {
+        for (Worker worker : this.workers) {
             try {
-                thread.join();
+                worker.thread.join();
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
@@ -162,33 +235,102 @@ public class TaskDispatcher {
     }
 
     public int getIdleThreadsCount() {
-        return this.idleThreads;
+        Worker[] workers = this.workers;
+        if(workers == null)
+            return 0;
+
+        int count = 0;
+        for (Worker worker : workers) {
+            if(worker.sleeping.get())
+                count++;
+        }
+
+        return count;
     }
 
-    public boolean isIdle() { return this.idleThreads == this.threads.length && this.toUpload.isEmpty(); }
+    public boolean isIdle() { return this.workers != null && this.getIdleThreadsCount() == this.workers.length && this.toUpload.isEmpty(); }
 
     public void clearBatchQueue() {
-        while(!this.highPriorityTasks.isEmpty()) {
-            ChunkTask chunkTask = this.highPriorityTasks.poll();
-            if (chunkTask != null) {
-                chunkTask.cancel();
-            }
-        }
-
-        while(!this.lowPriorityTasks.isEmpty()) {
-            ChunkTask chunkTask = this.lowPriorityTasks.poll();
-            if (chunkTask != null) {
-                chunkTask.cancel();
-            }
-        }
+        this.taskQueue.cancelAll();
 
 //        this.toBatchCount = 0;
     }
 
+    public int getQueuedTasksCount() {
+        return this.taskQueue.size();
+    }
+
     public String getStats() {
 //        this.toBatchCount = this.highPriorityTasks.size() + this.lowPriorityTasks.size();
 //        return String.format("tB: %03d, toUp: %02d, FB: %02d", this.toBatchCount, this.toUpload.size(), this.freeBufferCount);
-        return String.format("iT: %d", this.idleThreads);
+        return String.format("iT: %d, tQ: %d", this.getIdleThreadsCount(), this.getQueuedTasksCount());
+    }
+
+    //Fixed set of tasks reused every frame, claimed by index so running them does not allocate
+    public static class FrameTasks {
+        //Spins before parking, frame tasks are expected to be short
+        private static final int MAX_SPINS = 1 << 10;
+
+        private final Runnable[] tasks;
+        private final AtomicInteger next;
+        private final AtomicInteger remaining = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private volatile Thread waiter;
+
+        public FrameTasks(Runnable[] tasks) {
+            this.tasks = tasks;
+            this.next = new AtomicInteger(tasks.length);
+        }
+
+        void begin() {
+            this.failure.set(null);
+            this.waiter = Thread.currentThread();
+            this.remaining.set(this.tasks.length);
+            this.next.set(0);
+        }
+
+        void runClaimed() {
+            int i;
+            while((i = this.next.getAndIncrement()) < this.tasks.length) {
+                try {
+                    this.tasks[i].run();
+                } catch (Throwable t) {
+                    LOGGER.error("Frame task failed", t);
+                    this.failure.compareAndSet(null, t);
+                } finally {
+                    if(this.remaining.decrementAndGet() == 0)
+                        LockSupport.unpark(this.waiter);
+                }
+            }
+        }
+
+        void awaitCompletion() {
+            for(int spins = 0; this.remaining.get() > 0; ++spins) {
+                if(spins < MAX_SPINS)
+                    Thread.onSpinWait();
+                else
+                    LockSupport.park(this);
+            }
+        }
+    }
+
+    private static class Worker {
+        final ThreadBuilderPack builderPack;
+        final AtomicBoolean sleeping = new AtomicBoolean(false);
+        Thread thread;
+
+        Worker(ThreadBuilderPack builderPack) {
+            this.builderPack = builderPack;
+        }
+
+        boolean wake() {
+            if(this.sleeping.compareAndSet(true, false)) {
+                LockSupport.unpark(this.thread);
+                return true;
+            }
+
+            return false;
+        }
     }
 
 }
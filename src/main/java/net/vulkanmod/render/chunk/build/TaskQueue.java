@@ -0,0 +1,108 @@
+package net.vulkanmod.render.chunk.build;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+//Binary heap shared by the TaskDispatcher workers, ordered by priority keys (lowest first)
+class TaskQueue {
+    private ChunkTask[] tasks = new ChunkTask[64];
+    private long[] keys = new long[64];
+    private int size;
+
+    private int priorityVersion;
+
+    synchronized void offer(ChunkTask task, long key) {
+        if(this.size == this.tasks.length) {
+            this.tasks = Arrays.copyOf(this.tasks, this.size * 2);
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+        }
+
+        this.siftUp(this.size, task, key);
+        this.size++;
+    }
+
+    @Nullable
+    synchronized ChunkTask poll(TaskDispatcher dispatcher) {
+        if(this.size == 0)
+            return null;
+
+        int version = dispatcher.getPriorityVersion();
+        if(version != this.priorityVersion) {
+            this.priorityVersion = version;
+            this.reprioritize(dispatcher);
+        }
+
+        ChunkTask task = this.tasks[0];
+
+        this.size--;
+        ChunkTask last = this.tasks[this.size];
+        long lastKey = this.keys[this.size];
+        this.tasks[this.size] = null;
+
+        if(this.size > 0)
+            this.siftDown(0, last, lastKey);
+
+        return task;
+    }
+
+    synchronized int size() {
+        return this.size;
+    }
+
+    synchronized void cancelAll() {
+        for(int i = 0; i < this.size; ++i) {
+            this.tasks[i].cancel();
+            this.tasks[i] = null;
+        }
+
+        this.size = 0;
+    }
+
+    private void reprioritize(TaskDispatcher dispatcher) {
+        for(int i = 0; i < this.size; ++i) {
+            this.keys[i] = dispatcher.computePriority(this.tasks[i]);
+        }
+
+        //Floyd heap construction
+        for(int i = (this.size >>> 1) - 1; i >= 0; --i) {
+            this.siftDown(i, this.tasks[i], this.keys[i]);
+        }
+    }
+
+    private void siftUp(int i, ChunkTask task, long key) {
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            if(this.keys[parent] <= key)
+                break;
+
+            this.tasks[i] = this.tasks[parent];
+            this.keys[i] = this.keys[parent];
+            i = parent;
+        }
+
+        this.tasks[i] = task;
+        this.keys[i] = key;
+    }
+
+    private void siftDown(int i, ChunkTask task, long key) {
+        int half = this.size >>> 1;
+
+        while(i < half) {
+            int child = (i << 1) + 1;
+            int right = child + 1;
+
+            if(right < this.size && this.keys[right] < this.keys[child])
+                child = right;
+
+            if(key <= this.keys[child])
+                break;
+
+            this.tasks[i] = this.tasks[child];
+            this.keys[i] = this.keys[child];
+            i = child;
+        }
+
+        this.tasks[i] = task;
+        this.keys[i] = key;
+    }
+}
@@ -1,12 +1,13 @@
 package net.vulkanmod.render.chunk.build;
 
-import net.vulkanmod.render.chunk.util.Util;
+import net.vulkanmod.render.chunk.util.NativeBufferPool;
 import net.vulkanmod.render.vertex.TerrainBufferBuilder;
-import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
 
 public class UploadBuffer {
+    //Layer copies are recycled instead of being freed after each upload
+    private static final NativeBufferPool BUFFER_POOL = new NativeBufferPool(4194304, 33554432);
 
     public final int indexCount;
     public final boolean autoIndices;
@@ -24,12 +25,12 @@ public class UploadBuffer {
         this.indexOnly = drawState.indexOnly();
 
         if(!this.indexOnly)
-            this.vertexBuffer = Util.createCopy(renderedBuffer.vertexBuffer());
+            this.vertexBuffer = BUFFER_POOL.copy(renderedBuffer.vertexBuffer());
         else
             this.vertexBuffer = null;
 
         if(!drawState.sequentialIndex())
-            this.indexBuffer = Util.createCopy(renderedBuffer.indexBuffer());
+            this.indexBuffer = BUFFER_POOL.copy(renderedBuffer.indexBuffer());
         else
             this.indexBuffer = null;
     }
@@ -41,10 +42,14 @@ public class UploadBuffer {
     public ByteBuffer getIndexBuffer() { return indexBuffer; }
 
     public void release() {
+        //Pooled buffers must not be returned twice
+        if(this.released)
+            return;
+
         if(vertexBuffer != null)
-            MemoryUtil.memFree(vertexBuffer);
+            BUFFER_POOL.free(vertexBuffer);
         if(indexBuffer != null)
-            MemoryUtil.memFree(indexBuffer);
+            BUFFER_POOL.free(indexBuffer);
         this.released = true;
     }
 }
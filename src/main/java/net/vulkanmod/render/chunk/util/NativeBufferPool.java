@@ -0,0 +1,90 @@
+package net.vulkanmod.render.chunk.util;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+//Thread safe pool of off-heap buffers in power of two size classes
+public class NativeBufferPool {
+    private static final int MIN_SHIFT = 12;
+
+    private final int maxShift;
+    private final long maxPooledBytes;
+    private final ObjectArrayList<ByteBuffer>[] freeBuffers;
+
+    private long pooledBytes;
+
+    public NativeBufferPool(int maxBufferSize, long maxPooledBytes) {
+        this.maxShift = getSizeShift(maxBufferSize);
+        this.maxPooledBytes = maxPooledBytes;
+
+        this.freeBuffers = createLists(this.maxShift - MIN_SHIFT + 1);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ObjectArrayList<ByteBuffer>[] createLists(int count) {
+        ObjectArrayList<ByteBuffer>[] lists = new ObjectArrayList[count];
+        for(int i = 0; i < count; ++i) {
+            lists[i] = new ObjectArrayList<>();
+        }
+        return lists;
+    }
+
+    public ByteBuffer allocate(int size) {
+        int shift = getSizeShift(size);
+
+        //Not pooled
+        if(shift > this.maxShift)
+            return MemoryUtil.memAlloc(size);
+
+        ByteBuffer buffer = null;
+        synchronized (this) {
+            ObjectArrayList<ByteBuffer> buffers = this.freeBuffers[shift - MIN_SHIFT];
+            if(!buffers.isEmpty()) {
+                buffer = buffers.pop();
+                this.pooledBytes -= buffer.capacity();
+            }
+        }
+
+        if(buffer == null)
+            buffer = MemoryUtil.memAlloc(1 << shift);
+
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    public ByteBuffer copy(ByteBuffer src) {
+        ByteBuffer buffer = this.allocate(src.remaining());
+        MemoryUtil.memCopy(src, buffer);
+        return buffer;
+    }
+
+    public void free(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int shift = Integer.numberOfTrailingZeros(capacity);
+
+        if(Integer.bitCount(capacity) == 1 && shift >= MIN_SHIFT && shift <= this.maxShift) {
+            synchronized (this) {
+                if(this.pooledBytes + capacity <= this.maxPooledBytes) {
+                    this.freeBuffers[shift - MIN_SHIFT].push(buffer);
+                    this.pooledBytes += capacity;
+                    return;
+                }
+            }
+        }
+
+        MemoryUtil.memFree(buffer);
+    }
+
+    public synchronized long getPooledBytes() {
+        return this.pooledBytes;
+    }
+
+    private static int getSizeShift(int size) {
+        if(size <= 1 << MIN_SHIFT)
+            return MIN_SHIFT;
+
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+}
@@ -47,6 +47,15 @@ public class StaticQueue<T> implements Iterable<T> {
         return limit;
     }
 
+    public T get(int i) {
+        return this.queue[i];
+    }
+
+    //Indexed access in iterator(reverseOrder) order, avoids the iterator allocation on hot paths
+    public T get(int i, boolean reverseOrder) {
+        return this.queue[reverseOrder ? this.limit - 1 - i : i];
+    }
+
     public void clear() {
         this.position = 0;
         this.limit = 0;
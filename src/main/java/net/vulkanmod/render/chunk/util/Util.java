@@ -51,6 +51,14 @@ public class Util {
         return r != 0 ? i + alignment - r : i;
     }
 
+    public static long align(long i, int alignment) {
+        if(alignment == 0)
+            return i;
+
+        long r = i % alignment;
+        return r != 0 ? i + alignment - r : i;
+    }
+
     public static ByteBuffer createCopy(ByteBuffer src) {
         ByteBuffer ret = MemoryUtil.memAlloc(src.remaining());
         MemoryUtil.memCopy(src, ret);
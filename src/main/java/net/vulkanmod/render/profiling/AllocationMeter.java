@@ -0,0 +1,80 @@
+package net.vulkanmod.render.profiling;
+
+import net.vulkanmod.Initializer;
+
+import java.lang.management.ManagementFactory;
+
+//Heap bytes allocated by the render thread in the terrain, entity and gui passes, reported as Profiler2 counters.
+//Passes are expected to stay within BUDGETS after WARMUP_FRAMES, exceeding ones are logged once
+public abstract class AllocationMeter {
+    public static final int TERRAIN = 0;
+    public static final int ENTITIES = 1;
+    public static final int GUI = 2;
+
+    private static final String[] COUNTERS = { "Alloc_terrain_B", "Alloc_entities_B", "Alloc_gui_B" };
+    private static final long[] BUDGETS = { 1024, 64 * 1024, 64 * 1024 };
+    private static final int WARMUP_FRAMES = 600;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+
+    private static final long[] passBytes = new long[COUNTERS.length];
+    private static final long[] passStart = new long[COUNTERS.length];
+    private static final boolean[] budgetExceeded = new boolean[COUNTERS.length];
+    private static long frameStart = -1;
+    private static int activeFrames;
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemorySupported()) {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+            return threadBean;
+        }
+
+        return null;
+    }
+
+    private static boolean isActive() {
+        return Profiler2.ACTIVE && THREAD_BEAN != null;
+    }
+
+    public static void begin(int pass) {
+        if(!isActive())
+            return;
+
+        passStart[pass] = THREAD_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    public static void end(int pass) {
+        if(!isActive() || passStart[pass] == 0)
+            return;
+
+        passBytes[pass] += THREAD_BEAN.getCurrentThreadAllocatedBytes() - passStart[pass];
+        passStart[pass] = 0;
+    }
+
+    public static void endFrame(Profiler2 profiler) {
+        if(!isActive()) {
+            frameStart = -1;
+            activeFrames = 0;
+            return;
+        }
+
+        activeFrames++;
+
+        long allocated = THREAD_BEAN.getCurrentThreadAllocatedBytes();
+        if(frameStart != -1)
+            profiler.setCounter("Alloc_frame_KB", (int) ((allocated - frameStart) >> 10));
+        frameStart = allocated;
+
+        for(int i = 0; i < COUNTERS.length; ++i) {
+            profiler.setCounter(COUNTERS[i], (int) Math.min(passBytes[i], Integer.MAX_VALUE));
+
+            if(activeFrames > WARMUP_FRAMES && passBytes[i] > BUDGETS[i] && !budgetExceeded[i]) {
+                budgetExceeded[i] = true;
+                Initializer.LOGGER.warn("{} exceeded the per frame allocation budget: {} bytes", COUNTERS[i], passBytes[i]);
+            }
+
+            passBytes[i] = 0;
+        }
+    }
+}
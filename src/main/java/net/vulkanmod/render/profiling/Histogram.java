@@ -0,0 +1,82 @@
+package net.vulkanmod.render.profiling;
+
+import java.util.Arrays;
+
+//Log-linear histogram of microsecond values with fixed storage, values below SUB_BUCKET_COUNT are exact,
+//above that each power of 2 is split in 32 buckets (~3% precision)
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_BITS = SUB_BUCKET_BITS - 1;
+
+    //~67 s
+    public static final long MAX_VALUE = (1L << 26) - 1;
+    private static final int BUCKET_NUM = getIndex(MAX_VALUE) + 1;
+
+    private final long[] counts = new long[BUCKET_NUM];
+    private long totalCount;
+    private long total;
+    private long max;
+
+    private static int getIndex(long value) {
+        if(value < SUB_BUCKET_COUNT)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_HALF_BITS;
+        return (shift << SUB_BUCKET_HALF_BITS) + (int) (value >> shift);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if(index < SUB_BUCKET_COUNT)
+            return index;
+
+        int shift = (index >> SUB_BUCKET_HALF_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BUCKET_HALF_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public void recordValue(long value) {
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+
+        this.counts[getIndex(value)]++;
+        this.totalCount++;
+        this.total += value;
+        this.max = Math.max(this.max, value);
+    }
+
+    public long getValueAtPercentile(double percentile) {
+        if(this.totalCount == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile * 0.01 * this.totalCount));
+
+        long count = 0;
+        for(int i = 0; i < BUCKET_NUM; ++i) {
+            count += this.counts[i];
+
+            if(count >= target)
+                return Math.min(highestEquivalentValue(i), this.max);
+        }
+
+        return this.max;
+    }
+
+    public double getMean() {
+        return this.totalCount != 0 ? (double) this.total / this.totalCount : 0.0;
+    }
+
+    public long getMax() {
+        return this.max;
+    }
+
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    public void reset() {
+        Arrays.fill(this.counts, 0);
+        this.totalCount = 0;
+        this.total = 0;
+        this.max = 0;
+    }
+}
@@ -1,22 +1,23 @@
 package net.vulkanmod.render.profiling;
 
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-import org.jetbrains.annotations.Nullable;
+import it.unimi.dsi.fastutil.objects.Object2IntArrayMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.vulkanmod.Initializer;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 
-//TODO needs a rework
+//Sections are registered once per (parent, name) and keep their last SAMPLE_NUM frame times in a ring,
+//plus a histogram since the last export. Nothing is allocated per frame once all sections have been seen
 public class Profiler2 {
     private static final boolean DEBUG = false;
     private static final boolean FORCE_ACTIVE = false;
 
-    private static final float CONVERSION = 1000.0f;
-    private static final float INV_CONVERSION = 1.0f / CONVERSION;
     private static final int SAMPLE_NUM = 200;
+    private static final int MAX_SECTIONS = 128;
+    private static final int MAX_DEPTH = 32;
 
-    private static final float TRIGGER_TIME = 10.0f * 1000;
     public static boolean ACTIVE = FORCE_ACTIVE;
 
     private static final Profiler2 MAIN_PROFILER = new Profiler2("Main");
@@ -27,259 +28,233 @@ public class Profiler2 {
 
     public static void setActive(boolean b) {
         if(!FORCE_ACTIVE)
-            ACTIVE = b;
+            ACTIVE = b || Initializer.CONFIG.profilerExport;
 
         if(!ACTIVE) {
-            MAIN_PROFILER.entriesStack.clear();
-            MAIN_PROFILER.slowEntries.clear();
-            MAIN_PROFILER.hasStarted = false;
+            MAIN_PROFILER.reset();
+            MAIN_PROFILER.counters.clear();
         }
     }
 
-    private final String name;
-    private Entries entries;
-    private final LinkedList<Entries> entriesStack = new LinkedList<>();
+    //Section tree, 0 is the main section
+    final String[] names = new String[MAX_SECTIONS];
+    final String[] paths = new String[MAX_SECTIONS];
+    final int[] parents = new int[MAX_SECTIONS];
+    private final int[] firstChild = new int[MAX_SECTIONS];
+    private final int[] lastChild = new int[MAX_SECTIONS];
+    private final int[] nextSibling = new int[MAX_SECTIONS];
+    int sectionCount;
+
+    private final long[] frameTimes = new long[MAX_SECTIONS];
+    private final boolean[] visited = new boolean[MAX_SECTIONS];
+    final Histogram[] histograms = new Histogram[MAX_SECTIONS];
+
+    //Frame times in ms, NaN if the section was not visited
+    private final float[] samples = new float[MAX_SECTIONS * SAMPLE_NUM];
+    private int sampleIdx;
+    private int sampleCount;
+    int frames;
+
+    private final int[] stack = new int[MAX_DEPTH];
+    private final long[] startTimes = new long[MAX_DEPTH];
+    private int depth;
     private boolean hasStarted = false;
 
-    private final LinkedList<Entries> slowEntries = new LinkedList<>();
+    private final Object2IntArrayMap<String> counters = new Object2IntArrayMap<>();
 
     public Profiler2(String s) {
-        this.name = s;
+        addSection(-1, s);
     }
 
     public void push(String s) {
-        if(ACTIVE && hasStarted)
-            entries.push(s);
+        if(!ACTIVE || !hasStarted)
+            return;
+
+        if(depth + 1 >= MAX_DEPTH) {
+            if(DEBUG)
+                Initializer.LOGGER.warn("Profiler stack overflow on section {}", s);
+            return;
+        }
+
+        int parent = stack[depth];
+        depth++;
+        stack[depth] = parent != -1 ? getOrAddChild(parent, s) : -1;
+        startTimes[depth] = System.nanoTime();
     }
 
     public void pop() {
-        if(ACTIVE && hasStarted)
-            entries.pop();
+        if(!ACTIVE || !hasStarted || depth == 0)
+            return;
+
+        int section = stack[depth];
+        if(section != -1) {
+            frameTimes[section] += System.nanoTime() - startTimes[depth];
+            visited[section] = true;
+        }
+
+        depth--;
     }
 
     public void round() {
         if(!ACTIVE)
             return;
 
+        long time = System.nanoTime();
+
         if(!hasStarted) {
-            entries = new Entries();
+            depth = 0;
+            stack[0] = 0;
+            startTimes[0] = time;
             hasStarted = true;
             return;
         }
 
-        entries.round();
-//        entries.calculateValues();
+        if(depth != 0) {
+            if(DEBUG)
+                Initializer.LOGGER.warn("Profiler stack level is not 0");
 
-        //Slow entries
-        if(entries.mainNode.value >= TRIGGER_TIME * 2) {
-            if(slowEntries.size() > SAMPLE_NUM)
-                slowEntries.pollLast();
-            slowEntries.push(entries);
+            depth = 0;
         }
 
-        if(entriesStack.size() > SAMPLE_NUM)
-            entriesStack.pollLast();
-        entriesStack.push(entries);
-
-        entries = new Entries();
-    }
-
-    public List<Result> getResults(int... indices) {
-        if(!hasStarted || this.entriesStack.isEmpty())
-            return null;
+        frameTimes[0] = time - startTimes[0];
+        visited[0] = true;
+        startTimes[0] = time;
 
-        Entries entries = this.entriesStack.getLast();
-        Node startNode = entries.mainNode;
+        for(int i = 0; i < sectionCount; ++i) {
+            float value = Float.NaN;
 
-        //TODO select index on entries iteration
-//        for (int i : indices) {
-//            if(i < 0 || i >= startNode.children.size()) {
-//                return null;
-//            }
-//
-//            startNode = startNode.children.get(i);
-//        }
+            if(visited[i]) {
+                histograms[i].recordValue(frameTimes[i] / 1000);
+                value = frameTimes[i] * 1.0e-6f;
+            }
 
-        var nodes = startNode.children;
+            samples[i * SAMPLE_NUM + sampleIdx] = value;
+            frameTimes[i] = 0;
+            visited[i] = false;
+        }
 
-        List<Result> results = new ArrayList<>();
+        sampleIdx = (sampleIdx + 1) % SAMPLE_NUM;
+        sampleCount = Math.min(sampleCount + 1, SAMPLE_NUM);
+        frames++;
 
-        //First is whole start node result
-        results.add(new Result(startNode.name));
+        if(Initializer.CONFIG.profilerExport && this == MAIN_PROFILER)
+            ProfilerExporter.onRound(this);
+    }
 
-        for (Node node : nodes) {
-            results.add(new Result(node.name));
-        }
+    public void setCounter(String s, int value) {
+        if(ACTIVE)
+            counters.put(s, value);
+    }
 
-        int resultSize = results.size();
+    public Object2IntMap<String> getCounters() {
+        return counters;
+    }
 
-        for(Entries entries1 : entriesStack) {
-            results.get(0).addValue(entries1.mainNode.value);
+    //First is the main section, then its direct children in first seen order
+    public List<Result> getResults() {
+        if(!hasStarted || sampleCount == 0)
+            return null;
 
-            nodes = entries1.mainNode.children;
-            Node node;
-            for (int i = 0; i < nodes.size(); i++) {
-                node = nodes.get(i);
+        List<Result> results = new ArrayList<>();
+        results.add(getResult(0));
 
-                if(i+1 >= resultSize)
-                    break;
-                results.get(i+1).addValue(node.value);
-            }
+        for(int i = firstChild[0]; i != -1; i = nextSibling[i]) {
+            results.add(getResult(i));
         }
 
-        //Instantaneous
-//        Entries entries1 = entriesStack.getLast();
-//
-//        results.get(0).addValue(entries1.mainNode.value);
-//
-//        nodes = entries1.mainNode.children;
-//        Node node;
-//        for (int i = 0; i < nodes.size(); i++) {
-//            node = nodes.get(i);
-//
-//            if(i+1 >= resultSize)
-//                break;
-//            results.get(i+1).addValue(node.value);
-//        }
-
-        results.forEach(Result::computeAvg);
         return results;
     }
 
-    public static class Result {
-        public final String name;
-        float value = 0;
-        int count = 0;
+    private Result getResult(int section) {
+        Histogram histogram = histograms[section];
 
+        float sum = 0;
+        int count = 0;
+        for(int i = 0; i < sampleCount; ++i) {
+            float value = samples[section * SAMPLE_NUM + i];
 
-        public Result(String name) {
-            this.name = name;
+            if(!Float.isNaN(value)) {
+                sum += value;
+                count++;
+            }
         }
 
-        public void addValue(float f) {
-            value += f;
-            count++;
-        }
+        return new Result(names[section], count != 0 ? sum / count : 0.0f,
+                histogram.getValueAtPercentile(99.0) * 0.001f, histogram.getMax() * 0.001f);
+    }
 
-        public float computeAvg() {
-            return value /= count * 1000.0f;
-        }
-
-        public float getValue() { return value; }
-
-        public String toString() {
-            return String.format("%s: %.3f", name, value);
+    void resetHistograms() {
+        for(int i = 0; i < sectionCount; ++i) {
+            histograms[i].reset();
         }
+        frames = 0;
     }
 
-    private static float convert(float v) {
-        return v * INV_CONVERSION;
+    private void reset() {
+        resetHistograms();
+        Arrays.fill(frameTimes, 0);
+        Arrays.fill(visited, false);
+        sampleIdx = 0;
+        sampleCount = 0;
+        depth = 0;
+        hasStarted = false;
     }
 
-    private static class Entries {
-        final Node mainNode;
-        Node currentNode;
-
-        byte level = 0;
-
-        Entries() {
-            mainNode = new Node(null, "Main");
-            currentNode = mainNode;
-        }
-
-        void push(String s) {
-            currentNode = new Node(currentNode, s);
-
-            level++;
-        }
-
-        void pop() {
-            Node parent = currentNode.parent;
-
-            if (parent == null)
-                return;
-
-            currentNode.computeDelta();
-            parent.addChild(currentNode);
-            currentNode = parent;
-
-            level--;
+    private int getOrAddChild(int parent, String name) {
+        for(int i = firstChild[parent]; i != -1; i = nextSibling[i]) {
+            if(names[i] == name || names[i].equals(name))
+                return i;
         }
 
-        void round() {
-            if(DEBUG && level != 0) {
-                System.err.println("Profiler stack level is not 0");
-
-                level = 0;
-            }
-
-            this.mainNode.computeDelta();
-        }
-
-        public Node getNodeFromPath(byte[] indices) {
-            Node node = mainNode;
-
-            for(byte i : indices) {
-                Node next = node.children.get(i);
-                if(next == null)
-                    return null;
-                node = next;
-            }
+        return addSection(parent, name);
+    }
 
-            return node;
+    private int addSection(int parent, String name) {
+        if(sectionCount == MAX_SECTIONS)
+            return -1;
+
+        int section = sectionCount++;
+        names[section] = name;
+        paths[section] = parent != -1 ? paths[parent] + "/" + name : name;
+        parents[section] = parent;
+        firstChild[section] = -1;
+        lastChild[section] = -1;
+        nextSibling[section] = -1;
+        histograms[section] = new Histogram();
+        Arrays.fill(samples, section * SAMPLE_NUM, (section + 1) * SAMPLE_NUM, Float.NaN);
+
+        if(parent != -1) {
+            if(firstChild[parent] == -1)
+                firstChild[parent] = section;
+            else
+                nextSibling[lastChild[parent]] = section;
+            lastChild[parent] = section;
         }
 
-        public String toString() {
-            StringBuilder s = new StringBuilder();
-            s.append("total time: ");
-            s.append(this.mainNode.value);
-            s.append(" | ");
-
-            for(Node entry : this.mainNode.children) {
-                s.append(" ").append(entry.name).append(": ").append(entry.value);
-            }
-
-            return s.toString();
-        }
+        return section;
     }
 
-    private static class Node {
-//        byte level, index;
-        final String name;
-        final long start;
-        float value;
-
-        Node parent;
-        List<Node> children = new ObjectArrayList<>();
+    public static class Result {
+        public final String name;
+        final float value;
+        final float p99;
+        final float max;
 
-        public Node(@Nullable Node parent, String name) {
-            this.parent = parent;
+        public Result(String name, float value, float p99, float max) {
             this.name = name;
-            this.start = System.nanoTime();
+            this.value = value;
+            this.p99 = p99;
+            this.max = max;
         }
 
-        void addChild(Node node) {
-            children.add(node);
-        }
-
-        void computeDelta() {
-            value = convert(System.nanoTime() - start);
-        }
-
-        public String toString() {
-//            return this.name + ": " + this.value;
+        public float getValue() { return value; }
 
-            StringBuilder s = new StringBuilder();
-            s.append(this.name);
-            s.append(": ");
-            s.append(this.value);
-            s.append(" | ");
+        public float getP99() { return p99; }
 
-            for(Node entry : this.children) {
-                s.append(" ").append(entry.name).append(": ").append(entry.value);
-            }
+        public float getMax() { return max; }
 
-            return s.toString();
+        public String toString() {
+            return String.format("%s: %.3f (p99 %.3f max %.3f)", name, value, p99, max);
         }
     }
 }
@@ -0,0 +1,143 @@
+package net.vulkanmod.render.profiling;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.fabricmc.loader.api.FabricLoader;
+import net.vulkanmod.Initializer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Appends Profiler2 section histograms (ms) and counters as a JSON line every EXPORT_PERIOD,
+//the file is rotated to .1 once it exceeds MAX_FILE_SIZE. Lines are built on the render thread and written by a single
+//background thread, in order
+public abstract class ProfilerExporter {
+    private static final long EXPORT_PERIOD = 5_000_000_000L;
+    private static final long MAX_FILE_SIZE = 8 * 1024 * 1024;
+
+    private static final Path PATH = FabricLoader.getInstance().getGameDir().resolve("logs").resolve("vulkanmod-profiler.jsonl");
+    private static final Path ROTATED_PATH = PATH.resolveSibling("vulkanmod-profiler.jsonl.1");
+
+    private static final StringBuilder builder = new StringBuilder();
+    private static long lastExport = -1;
+    private static volatile boolean failed = false;
+
+    private static ExecutorService writer;
+
+    static void onRound(Profiler2 profiler) {
+        long time = System.nanoTime();
+
+        if(lastExport == -1) {
+            lastExport = time;
+            profiler.resetHistograms();
+            return;
+        }
+
+        if(time - lastExport < EXPORT_PERIOD || failed)
+            return;
+
+        lastExport = time;
+
+        write(profiler);
+        profiler.resetHistograms();
+    }
+
+    private static void write(Profiler2 profiler) {
+        StringBuilder sb = builder;
+        sb.setLength(0);
+
+        sb.append("{\"time\":").append(System.currentTimeMillis());
+        sb.append(",\"frames\":").append(profiler.frames);
+        sb.append(",\"sections\":{");
+
+        boolean first = true;
+        for(int i = 0; i < profiler.sectionCount; ++i) {
+            Histogram histogram = profiler.histograms[i];
+            if(histogram.getTotalCount() == 0)
+                continue;
+
+            if(!first)
+                sb.append(',');
+            first = false;
+
+            appendString(sb, profiler.paths[i]);
+            sb.append(":{");
+            sb.append("\"count\":").append(histogram.getTotalCount());
+            appendMs(sb, ",\"avg\":", histogram.getMean());
+            appendMs(sb, ",\"p50\":", histogram.getValueAtPercentile(50.0));
+            appendMs(sb, ",\"p95\":", histogram.getValueAtPercentile(95.0));
+            appendMs(sb, ",\"p99\":", histogram.getValueAtPercentile(99.0));
+            appendMs(sb, ",\"max\":", histogram.getMax());
+            sb.append('}');
+        }
+
+        sb.append("},\"counters\":{");
+
+        first = true;
+        for(Object2IntMap.Entry<String> entry : profiler.getCounters().object2IntEntrySet()) {
+            if(!first)
+                sb.append(',');
+            first = false;
+
+            appendString(sb, entry.getKey());
+            sb.append(':').append(entry.getIntValue());
+        }
+
+        sb.append("}}\n");
+
+        if(writer == null) {
+            writer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "VulkanMod profiler export");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        String line = sb.toString();
+        writer.execute(() -> writeLine(line));
+    }
+
+    private static void writeLine(String line) {
+        if(failed)
+            return;
+
+        try {
+            Files.createDirectories(PATH.getParent());
+
+            if(Files.exists(PATH) && Files.size(PATH) > MAX_FILE_SIZE)
+                Files.move(PATH, ROTATED_PATH, StandardCopyOption.REPLACE_EXISTING);
+
+            Files.writeString(PATH, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            failed = true;
+            Initializer.LOGGER.error("Failed to export profiler data to {}, export disabled", PATH, e);
+        }
+    }
+
+    //Section paths come from mods and resource names, quotes, backslashes and control characters are escaped
+    static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+
+        for(int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+
+            if(c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if(c < 0x20)
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+
+        sb.append('"');
+    }
+
+    private static void appendMs(StringBuilder sb, String key, double micros) {
+        sb.append(key).append(String.format(Locale.ROOT, "%.3f", micros * 0.001));
+    }
+}
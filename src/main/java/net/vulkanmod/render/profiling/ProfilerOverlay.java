@@ -115,6 +115,15 @@ public class ProfilerOverlay {
 //            list.add(String.format("[%d] %s", i, result.toString()));
         }
 
+        var counters = Profiler2.getMainProfiler().getCounters();
+        if(!counters.isEmpty()) {
+            list.add("");
+
+            for (var entry : counters.object2IntEntrySet()) {
+                list.add(String.format("%s: %d", entry.getKey(), entry.getIntValue()));
+            }
+        }
+
         //Section build stats
         list.add("");
         list.add("");
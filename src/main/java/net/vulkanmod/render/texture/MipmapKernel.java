@@ -0,0 +1,152 @@
+package net.vulkanmod.render.texture;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.stream.IntStream;
+
+//Mip level kernels over raw RGBA pixels, rows are processed in bands so large images are split
+//across the fork-join pool. Output matches MipmapGenerator's gamma blend exactly
+public abstract class MipmapKernel {
+    public static final int ALPHA_CUTOFF = 50;
+
+    //Pixels per band, images below this run on the calling thread
+    private static final int BAND_PIXELS = 65536;
+
+    //Same values as MipmapGenerator.POW22
+    private static final float[] POW22 = new float[256];
+
+    static {
+        for(int i = 0; i < POW22.length; ++i) {
+            POW22[i] = (float) Math.pow((float) i / 255.0F, 2.2);
+        }
+    }
+
+    //Returns -1 if the image has no fully transparent pixel, otherwise the average rgb of the non transparent ones
+    public static int scanTransparency(long ptr, int width, int height) {
+        int rowsPerBand = getRowsPerBand(width);
+        int bands = (height + rowsPerBand - 1) / rowsPerBand;
+
+        //transparent count, count, r, g, b per band
+        int[] results = new int[bands * 5];
+
+        if(bands == 1)
+            scanRows(ptr, width, 0, height, results, 0);
+        else
+            IntStream.range(0, bands).parallel().forEach(band -> {
+                int y0 = band * rowsPerBand;
+                scanRows(ptr, width, y0, Math.min(y0 + rowsPerBand, height), results, band * 5);
+            });
+
+        int transparent = 0, count = 0, sumR = 0, sumG = 0, sumB = 0;
+        for(int i = 0; i < results.length; i += 5) {
+            transparent += results[i];
+            count += results[i + 1];
+            //int sums wrap on large images as the previous implementation did, wrapping is order independent
+            sumR += results[i + 2];
+            sumG += results[i + 3];
+            sumB += results[i + 4];
+        }
+
+        if(transparent == 0)
+            return -1;
+
+        if(count == 0)
+            return 0;
+
+        sumR /= count;
+        sumG /= count;
+        sumB /= count;
+
+        return (sumR & 0xFF) | ((sumG & 0xFF) << 8) | ((sumB & 0xFF) << 16);
+    }
+
+    private static void scanRows(long ptr, int width, int y0, int y1, int[] results, int offset) {
+        int transparent = 0, count = 0, sumR = 0, sumG = 0, sumB = 0;
+
+        for(int y = y0; y < y1; ++y) {
+            long rowPtr = ptr + (long) y * width * 4L;
+
+            for(int x = 0; x < width; ++x) {
+                int value = MemoryUtil.memGetInt(rowPtr + x * 4L);
+
+                if((value >>> 24) == 0) {
+                    transparent++;
+                }
+                else {
+                    count++;
+                    sumR += value & 0xFF;
+                    sumG += (value >> 8) & 0xFF;
+                    sumB += (value >> 16) & 0xFF;
+                }
+            }
+        }
+
+        results[offset] = transparent;
+        results[offset + 1] = count;
+        results[offset + 2] = sumR;
+        results[offset + 3] = sumG;
+        results[offset + 4] = sumB;
+    }
+
+    //Halves srcPtr into dstPtr (width x height), avg replaces the color of pixels under ALPHA_CUTOFF when not -1
+    public static void downsample(long srcPtr, long dstPtr, int width, int height, int avg) {
+        int rowsPerBand = getRowsPerBand(width);
+        int bands = (height + rowsPerBand - 1) / rowsPerBand;
+
+        if(bands == 1)
+            downsampleRows(srcPtr, dstPtr, width, 0, height, avg);
+        else
+            IntStream.range(0, bands).parallel().forEach(band -> {
+                int y0 = band * rowsPerBand;
+                downsampleRows(srcPtr, dstPtr, width, y0, Math.min(y0 + rowsPerBand, height), avg);
+            });
+    }
+
+    private static void downsampleRows(long srcPtr, long dstPtr, int width, int y0, int y1, int avg) {
+        final long srcStride = width * 2 * 4L;
+
+        for(int y = y0; y < y1; ++y) {
+            long row0 = srcPtr + y * 2L * srcStride;
+            long row1 = row0 + srcStride;
+            long dstRow = dstPtr + (long) y * width * 4L;
+
+            for(int x = 0; x < width; ++x) {
+                long offset = x * 8L;
+                int p0 = MemoryUtil.memGetInt(row0 + offset);
+                int p1 = MemoryUtil.memGetInt(row0 + offset + 4);
+                int p2 = MemoryUtil.memGetInt(row1 + offset);
+                int p3 = MemoryUtil.memGetInt(row1 + offset + 4);
+
+                if(avg != -1) {
+                    p0 = (p0 >>> 24) >= ALPHA_CUTOFF ? p0 : avg | p0 & 0xFF000000;
+                    p1 = (p1 >>> 24) >= ALPHA_CUTOFF ? p1 : avg | p1 & 0xFF000000;
+                    p2 = (p2 >>> 24) >= ALPHA_CUTOFF ? p2 : avg | p2 & 0xFF000000;
+                    p3 = (p3 >>> 24) >= ALPHA_CUTOFF ? p3 : avg | p3 & 0xFF000000;
+                }
+
+                MemoryUtil.memPutInt(dstRow + x * 4L, blend(p0, p1, p2, p3));
+            }
+        }
+    }
+
+    private static int getRowsPerBand(int width) {
+        return Math.max(1, BAND_PIXELS / Math.max(1, width));
+    }
+
+    public static int blend(int p0, int p1, int p2, int p3) {
+        int a = gammaBlend(p0, p1, p2, p3, 24);
+        int b = gammaBlend(p0, p1, p2, p3, 16);
+        int g = gammaBlend(p0, p1, p2, p3, 8);
+        int r = gammaBlend(p0, p1, p2, p3, 0);
+        return a << 24 | b << 16 | g << 8 | r;
+    }
+
+    private static int gammaBlend(int i, int j, int k, int l, int m) {
+        float f = POW22[(i >> m) & 0xFF];
+        float g = POW22[(j >> m) & 0xFF];
+        float h = POW22[(k >> m) & 0xFF];
+        float n = POW22[(l >> m) & 0xFF];
+        float o = (float) Math.pow((double) (f + g + h + n) * 0.25, 0.45454545454545453);
+        return (int) ((double) o * 255.0);
+    }
+}
@@ -1,18 +1,9 @@
 package net.vulkanmod.render.texture;
 
-import net.vulkanmod.vulkan.texture.VulkanImage;
-import org.lwjgl.system.MemoryStack;
-import org.lwjgl.vulkan.VkCommandBuffer;
-
-import java.util.HashSet;
-import java.util.Set;
-
 public abstract class SpriteUtil {
 
     private static boolean doUpload = false;
 
-    private static Set<VulkanImage> transitionedLayouts = new HashSet<>();
-
     public static void setDoUpload(boolean b) {
         doUpload = b;
     }
@@ -20,16 +11,4 @@ public abstract class SpriteUtil {
     public static boolean shouldUpload() {
         return doUpload;
     }
-
-    public static void addTransitionedLayout(VulkanImage image) {
-        transitionedLayouts.add(image);
-    }
-
-    public static void transitionLayouts(VkCommandBuffer commandBuffer) {
-        try(MemoryStack stack = MemoryStack.stackPush()) {
-            transitionedLayouts.forEach(image -> image.readOnlyLayout(stack, commandBuffer));
-
-            transitionedLayouts.clear();
-        }
-    }
 }
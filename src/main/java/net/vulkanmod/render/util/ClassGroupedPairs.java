@@ -0,0 +1,50 @@
+package net.vulkanmod.render.util;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+//Pairs grouped by the class of their first element, in insertion order within a group.
+//Group lists are kept and only cleared, adding does not allocate once every class was seen and the lists grew
+public class ClassGroupedPairs<T, U> {
+    private final Object2IntOpenHashMap<Class<?>> classIndices = new Object2IntOpenHashMap<>();
+    private final ObjectArrayList<ObjectArrayList<T>> firsts = new ObjectArrayList<>();
+    private final ObjectArrayList<ObjectArrayList<U>> seconds = new ObjectArrayList<>();
+
+    public ClassGroupedPairs() {
+        this.classIndices.defaultReturnValue(-1);
+    }
+
+    public void add(T first, U second) {
+        Class<?> key = first.getClass();
+        int index = this.classIndices.getInt(key);
+
+        if(index == -1) {
+            index = this.firsts.size();
+            this.classIndices.put(key, index);
+            this.firsts.add(new ObjectArrayList<>());
+            this.seconds.add(new ObjectArrayList<>());
+        }
+
+        this.firsts.get(index).add(first);
+        this.seconds.get(index).add(second);
+    }
+
+    public void clear() {
+        for(int i = 0; i < this.firsts.size(); ++i) {
+            this.firsts.get(i).clear();
+            this.seconds.get(i).clear();
+        }
+    }
+
+    public int groupCount() {
+        return this.firsts.size();
+    }
+
+    public ObjectArrayList<T> getFirsts(int group) {
+        return this.firsts.get(group);
+    }
+
+    public ObjectArrayList<U> getSeconds(int group) {
+        return this.seconds.get(group);
+    }
+}
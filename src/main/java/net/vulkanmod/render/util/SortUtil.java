@@ -2,6 +2,8 @@ package net.vulkanmod.render.util;
 
 import it.unimi.dsi.fastutil.ints.IntComparator;
 
+import java.util.Arrays;
+
 public class SortUtil {
 
     public static void mergeSort(int[] a, float[] distances) {
@@ -14,7 +16,7 @@ public class SortUtil {
             insertionSort(indices, distances, from, to);
         } else {
             if (supp == null) {
-                supp = java.util.Arrays.copyOf(indices, to);
+                supp = Arrays.copyOf(indices, to);
             }
 
             int mid = from + to >>> 1;
@@ -40,6 +42,60 @@ public class SortUtil {
         }
     }
 
+    /**
+     * Stable LSD radix sort of indices 0..n-1 by descending distance, 8 bits per pass.
+     * Passes where every key shares the same digit are skipped.
+     * @param histogram scratch of at least 1024 ints
+     */
+    public static void radixSortDescending(float[] distances, int[] indices, int[] keys, int[] tmpIndices, int[] tmpKeys, int[] histogram, int n) {
+        Arrays.fill(histogram, 0, 1024, 0);
+
+        for(int i = 0; i < n; ++i) {
+            int bits = Float.floatToRawIntBits(distances[i]);
+            //Map to unsigned ascending order, then invert for descending
+            int key = ~(bits ^ ((bits >> 31) | 0x80000000));
+            keys[i] = key;
+            indices[i] = i;
+
+            histogram[key & 0xFF]++;
+            histogram[256 + ((key >>> 8) & 0xFF)]++;
+            histogram[512 + ((key >>> 16) & 0xFF)]++;
+            histogram[768 + (key >>> 24)]++;
+        }
+
+        int[] srcKeys = keys, srcIndices = indices;
+        int[] dstKeys = tmpKeys, dstIndices = tmpIndices;
+
+        for(int pass = 0; pass < 4; ++pass) {
+            int base = pass << 8;
+            int shift = pass << 3;
+
+            if(n == 0 || histogram[base + ((srcKeys[0] >>> shift) & 0xFF)] == n)
+                continue;
+
+            int sum = 0;
+            for(int i = 0; i < 256; ++i) {
+                int count = histogram[base + i];
+                histogram[base + i] = sum;
+                sum += count;
+            }
+
+            for(int i = 0; i < n; ++i) {
+                int key = srcKeys[i];
+                int dst = histogram[base + ((key >>> shift) & 0xFF)]++;
+                dstKeys[dst] = key;
+                dstIndices[dst] = srcIndices[i];
+            }
+
+            int[] t = srcKeys; srcKeys = dstKeys; dstKeys = t;
+            t = srcIndices; srcIndices = dstIndices; dstIndices = t;
+        }
+
+        if(srcIndices != indices) {
+            System.arraycopy(srcIndices, 0, indices, 0, n);
+        }
+    }
+
     public static void quickSort(int[] a, float[] distances) {
         quickSort(a, distances, 0, a.length);
     }
@@ -8,15 +8,11 @@ import net.minecraft.util.Mth;
 import net.minecraft.world.level.block.state.BlockState;
 import net.vulkanmod.render.PipelineManager;
 import net.vulkanmod.render.util.SortUtil;
-import org.apache.commons.lang3.mutable.MutableInt;
 import org.jetbrains.annotations.Nullable;
-import org.joml.Vector3f;
 import org.lwjgl.system.MemoryUtil;
 import org.slf4j.Logger;
 
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
-import java.util.function.IntConsumer;
 
 public class TerrainBufferBuilder implements VertexConsumer {
 	protected static final float POS_CONV = 1024.0f;
@@ -38,13 +34,26 @@ public class TerrainBufferBuilder implements VertexConsumer {
 	private boolean fastFormat;
 	private boolean fullFormat;
 	private boolean building;
+	//Packed quad centroids (x, y, z)
 	@Nullable
-	private Vector3f[] sortingPoints;
+	private float[] sortingPoints;
 	private float sortX = Float.NaN;
 	private float sortY = Float.NaN;
 	private float sortZ = Float.NaN;
+	private float sortingExtent;
 	private boolean indexOnly;
 
+	//Sort scratch, builders are owned by a single worker thread
+	private boolean quadsSorted;
+	private float minSortGap;
+	private float maxSortDistance;
+	private float[] distances = new float[0];
+	private int[] sortKeys = new int[0];
+	private int[] sortTmpKeys = new int[0];
+	private int[] sortIndices = new int[0];
+	private int[] sortTmpIndices = new int[0];
+	private final int[] sortHistogram = new int[1024];
+
 	protected long bufferPtr;
 //    private long ptr;
 
@@ -93,6 +102,7 @@ public class TerrainBufferBuilder implements VertexConsumer {
 				this.sortX = f;
 				this.sortY = g;
 				this.sortZ = h;
+				this.quadsSorted = false;
 				if (this.sortingPoints == null) {
 					this.sortingPoints = this.makeQuadSortingPoints();
 				}
@@ -102,7 +112,12 @@ public class TerrainBufferBuilder implements VertexConsumer {
 	}
 
 	public SortState getSortState() {
-		return new SortState(this.mode, this.vertices, this.sortingPoints, this.sortX, this.sortY, this.sortZ);
+		if (this.sortingPoints != null) {
+			this.sortQuads();
+		}
+
+		return new SortState(this.mode, this.vertices, this.sortingPoints, this.sortX, this.sortY, this.sortZ,
+				this.sortingExtent, this.minSortGap, this.maxSortDistance);
 	}
 
 	public void restoreSortState(SortState sortState) {
@@ -114,6 +129,8 @@ public class TerrainBufferBuilder implements VertexConsumer {
 		this.sortX = sortState.sortX;
 		this.sortY = sortState.sortY;
 		this.sortZ = sortState.sortZ;
+		this.sortingExtent = sortState.extent;
+		this.quadsSorted = false;
 		this.indexOnly = true;
 	}
 
@@ -140,64 +157,34 @@ public class TerrainBufferBuilder implements VertexConsumer {
 		}
 	}
 
-	private IntConsumer intConsumer(int i, VertexFormat.IndexType indexType) {
-		MutableInt mutableInt = new MutableInt(i);
-		IntConsumer var10000;
-		switch (indexType) {
-			case SHORT:
-				var10000 = (ix) -> {
-					this.buffer.putShort(mutableInt.getAndAdd(2), (short)ix);
-				};
-				break;
-			case INT:
-				var10000 = (ix) -> {
-					this.buffer.putInt(mutableInt.getAndAdd(4), ix);
-				};
-				break;
-			default:
-				throw new IncompatibleClassChangeError();
-		}
-
-		return var10000;
-	}
-
-	private Vector3f[] makeQuadSortingPoints() {
-		FloatBuffer floatBuffer = this.buffer.asFloatBuffer();
-		int i = this.renderedBufferPointer / 4;
-		int j = this.format.getIntegerSize();
-		int stride = j * this.mode.primitiveStride;
+	private float[] makeQuadSortingPoints() {
+		int stride = this.format.getVertexSize() * this.mode.primitiveStride;
+		int j = this.format.getVertexSize();
 		int pointsNum = this.vertices / this.mode.primitiveStride;
-		Vector3f[] vector3fs = new Vector3f[pointsNum];
+		float[] points = new float[pointsNum * 3];
+
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
 
-		if (this.format == CustomVertexFormat.COMPRESSED_TERRAIN) {
-			stride = this.format.getVertexSize() * this.mode.primitiveStride;
-			j = this.format.getVertexSize();
-			float invConv = 1.0f / POS_CONV;
-			for(int m = 0; m < pointsNum; ++m) {
-				long ptr = this.bufferPtr + this.renderedBufferPointer + (long) m * stride;
+		boolean compressed = this.format == CustomVertexFormat.COMPRESSED_TERRAIN;
+		float invConv = 1.0f / POS_CONV;
+		for(int m = 0; m < pointsNum; ++m) {
+			long ptr = this.bufferPtr + this.renderedBufferPointer + (long) m * stride;
 
+			float q, r, s;
+			if (compressed) {
 				short x1 = MemoryUtil.memGetShort(ptr + 0);
 				short y1 = MemoryUtil.memGetShort(ptr + 2);
 				short z1 = MemoryUtil.memGetShort(ptr + 4);
-//				short x2 = MemoryUtil.memGetShort(ptr + j * 2 + 0);
-//				short y2 = MemoryUtil.memGetShort(ptr + j * 2 + 2);
-//				short z2 = MemoryUtil.memGetShort(ptr + j * 2 + 4);
 				//Am I wrong?
 				short x2 = MemoryUtil.memGetShort(ptr + j * 3 + 0);
 				short y2 = MemoryUtil.memGetShort(ptr + j * 3 + 2);
 				short z2 = MemoryUtil.memGetShort(ptr + j * 3 + 4);
 
-				float q = ((x1 * invConv) + (x2 * invConv)) * 0.5f;
-				float r = ((y1 * invConv) + (y2 * invConv)) * 0.5f;
-				float s = ((z1 * invConv) + (z2 * invConv)) * 0.5f;
-				vector3fs[m] = new Vector3f(q, r, s);
-			}
-		} else {
-			stride = this.format.getVertexSize() * this.mode.primitiveStride;
-			j = this.format.getVertexSize();
-			for(int m = 0; m < pointsNum; ++m) {
-				long ptr = this.bufferPtr + this.renderedBufferPointer + (long) m * stride;
-
+				q = ((x1 * invConv) + (x2 * invConv)) * 0.5f;
+				r = ((y1 * invConv) + (y2 * invConv)) * 0.5f;
+				s = ((z1 * invConv) + (z2 * invConv)) * 0.5f;
+			} else {
 				float x1 = MemoryUtil.memGetFloat(ptr + 0);
 				float y1 = MemoryUtil.memGetFloat(ptr + 4);
 				float z1 = MemoryUtil.memGetFloat(ptr + 8);
@@ -205,38 +192,103 @@ public class TerrainBufferBuilder implements VertexConsumer {
 				float y2 = MemoryUtil.memGetFloat(ptr + j * 2 + 4);
 				float z2 = MemoryUtil.memGetFloat(ptr + j * 2 + 8);
 
-				float q = (x1 + x2) * 0.5f;
-				float r = (y1 + y2) * 0.5f;
-				float s = (z1 + z2) * 0.5f;
-				vector3fs[m] = new Vector3f(q, r, s);
+				q = (x1 + x2) * 0.5f;
+				r = (y1 + y2) * 0.5f;
+				s = (z1 + z2) * 0.5f;
 			}
+
+			points[m * 3] = q;
+			points[m * 3 + 1] = r;
+			points[m * 3 + 2] = s;
+
+			minX = Math.min(minX, q);
+			minY = Math.min(minY, r);
+			minZ = Math.min(minZ, s);
+			maxX = Math.max(maxX, q);
+			maxY = Math.max(maxY, r);
+			maxZ = Math.max(maxZ, s);
+		}
+
+		if (pointsNum > 0) {
+			float dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+			this.sortingExtent = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+		} else {
+			this.sortingExtent = 0.0f;
 		}
 
-		return vector3fs;
+		return points;
 	}
 
-	private void putSortedQuadIndices(VertexFormat.IndexType indexType) {
-		float[] distances = new float[this.sortingPoints.length];
-		int[] is = new int[this.sortingPoints.length];
+	//Sorts quads back to front, keeping the smallest distance gap between consecutive quads
+	private void sortQuads() {
+		if (this.quadsSorted)
+			return;
+
+		int n = this.sortingPoints.length / 3;
+		this.ensureSortCapacity(n);
 
-		for(int i = 0; i < this.sortingPoints.length; is[i] = i++) {
-			float f = this.sortingPoints[i].x() - this.sortX;
-			float g = this.sortingPoints[i].y() - this.sortY;
-			float h = this.sortingPoints[i].z() - this.sortZ;
+		float[] points = this.sortingPoints;
+		float[] distances = this.distances;
+		for(int i = 0; i < n; ++i) {
+			float f = points[i * 3] - this.sortX;
+			float g = points[i * 3 + 1] - this.sortY;
+			float h = points[i * 3 + 2] - this.sortZ;
 			distances[i] = f * f + g * g + h * h;
 		}
 
-		SortUtil.mergeSort(is, distances);
-		IntConsumer intConsumer = this.intConsumer(this.nextElementByte, indexType);
+		SortUtil.radixSortDescending(distances, this.sortIndices, this.sortKeys, this.sortTmpIndices, this.sortTmpKeys, this.sortHistogram, n);
+
+		float minGap = Float.POSITIVE_INFINITY;
+		float maxDistance = n > 0 ? distances[this.sortIndices[0]] : 0.0f;
+		for(int i = 1; i < n; ++i) {
+			minGap = Math.min(minGap, distances[this.sortIndices[i - 1]] - distances[this.sortIndices[i]]);
+		}
+
+		this.minSortGap = minGap;
+		this.maxSortDistance = maxDistance;
+		this.quadsSorted = true;
+	}
+
+	private void ensureSortCapacity(int n) {
+		if (this.sortIndices.length < n) {
+			int size = Math.max(n, this.sortIndices.length * 3 / 2);
+			this.distances = new float[size];
+			this.sortKeys = new int[size];
+			this.sortTmpKeys = new int[size];
+			this.sortIndices = new int[size];
+			this.sortTmpIndices = new int[size];
+		}
+	}
 
-		for(int i = 0; i < is.length; ++i) {
-			int j = is[i];
-			intConsumer.accept(j * this.mode.primitiveStride + 0);
-			intConsumer.accept(j * this.mode.primitiveStride + 1);
-			intConsumer.accept(j * this.mode.primitiveStride + 2);
-			intConsumer.accept(j * this.mode.primitiveStride + 2);
-			intConsumer.accept(j * this.mode.primitiveStride + 3);
-			intConsumer.accept(j * this.mode.primitiveStride + 0);
+	private void putSortedQuadIndices(VertexFormat.IndexType indexType) {
+		this.sortQuads();
+
+		int n = this.sortingPoints.length / 3;
+		int stride = this.mode.primitiveStride;
+		long ptr = this.bufferPtr + this.nextElementByte;
+
+		if (indexType == VertexFormat.IndexType.SHORT) {
+			for(int i = 0; i < n; ++i) {
+				int j = this.sortIndices[i] * stride;
+				MemoryUtil.memPutShort(ptr, (short) (j + 0));
+				MemoryUtil.memPutShort(ptr + 2, (short) (j + 1));
+				MemoryUtil.memPutShort(ptr + 4, (short) (j + 2));
+				MemoryUtil.memPutShort(ptr + 6, (short) (j + 2));
+				MemoryUtil.memPutShort(ptr + 8, (short) (j + 3));
+				MemoryUtil.memPutShort(ptr + 10, (short) (j + 0));
+				ptr += 12;
+			}
+		} else {
+			for(int i = 0; i < n; ++i) {
+				int j = this.sortIndices[i] * stride;
+				MemoryUtil.memPutInt(ptr, j + 0);
+				MemoryUtil.memPutInt(ptr + 4, j + 1);
+				MemoryUtil.memPutInt(ptr + 8, j + 2);
+				MemoryUtil.memPutInt(ptr + 12, j + 2);
+				MemoryUtil.memPutInt(ptr + 16, j + 3);
+				MemoryUtil.memPutInt(ptr + 20, j + 0);
+				ptr += 24;
+			}
 		}
 	}
 
@@ -302,6 +354,7 @@ public class TerrainBufferBuilder implements VertexConsumer {
 		this.currentElement = null;
 		this.elementIndex = 0;
 		this.sortingPoints = null;
+		this.quadsSorted = false;
 		this.sortX = Float.NaN;
 		this.sortY = Float.NaN;
 		this.sortZ = Float.NaN;
@@ -435,21 +488,43 @@ public class TerrainBufferBuilder implements VertexConsumer {
 	}
 
 	public static class SortState {
+		private static final float SORT_EPSILON = 1.0E-5f;
+
 		final VertexFormat.Mode mode;
 		final int vertices;
 		@Nullable
-		final Vector3f[] sortingPoints;
+		final float[] sortingPoints;
 		final float sortX;
 		final float sortY;
 		final float sortZ;
+		final float extent;
+		final float minGap;
+		final float maxDistance;
 
-		SortState(VertexFormat.Mode mode, int i, @Nullable Vector3f[] vector3fs, float f, float g, float h) {
+		SortState(VertexFormat.Mode mode, int i, @Nullable float[] points, float f, float g, float h, float extent, float minGap, float maxDistance) {
 			this.mode = mode;
 			this.vertices = i;
-			this.sortingPoints = vector3fs;
+			this.sortingPoints = points;
 			this.sortX = f;
 			this.sortY = g;
 			this.sortZ = h;
+			this.extent = extent;
+			this.minGap = minGap;
+			this.maxDistance = maxDistance;
+		}
+
+		//Moving the origin by d changes the distance difference of any two quads by at most 2 * |d| * extent,
+		//the order is unchanged as long as that stays below the smallest gap (plus float rounding margin)
+		public boolean isOrderValid(float x, float y, float z) {
+			if (this.sortingPoints == null || Float.isNaN(this.sortX))
+				return false;
+
+			float dx = x - this.sortX;
+			float dy = y - this.sortY;
+			float dz = z - this.sortZ;
+			float move = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+			return 2.0f * move * this.extent + this.maxDistance * SORT_EPSILON < this.minGap;
 		}
 	}
 
@@ -5,6 +5,7 @@ import net.vulkanmod.interfaces.ExtendedRenderType;
 import net.vulkanmod.vulkan.VRenderSystem;
 
 import java.util.EnumSet;
+import java.util.Locale;
 
 public enum TerrainRenderType {
     SOLID(0.0f, 262144 /*BIG_BUFFER_SIZE*/),
@@ -20,10 +21,13 @@ public enum TerrainRenderType {
 
     final float alphaCutout;
     public final int initialSize;
+    //Cached to avoid building the section name every frame
+    public final String profilerName;
 
     TerrainRenderType(float alphaCutout, int initialSize) {
         this.alphaCutout = alphaCutout;
         this.initialSize = initialSize;
+        this.profilerName = "render_" + this.name().toLowerCase(Locale.ROOT);
     }
 
     public static TerrainRenderType get(RenderType renderType) {
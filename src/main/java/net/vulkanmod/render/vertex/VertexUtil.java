@@ -1,6 +1,10 @@
 package net.vulkanmod.render.vertex;
 
 import net.vulkanmod.vulkan.util.ColorUtil;
+import org.joml.Matrix3f;
+import org.joml.Vector3f;
+
+import static org.joml.Math.fma;
 
 public class VertexUtil {
 
@@ -19,6 +23,16 @@ public class VertexUtil {
         return ((int)x & 0xFF) | ((int)y & 0xFF) << 8|  ((int)z & 0xFF) << 16;
     }
 
+    //Same as packing matrix.transform(new Vector3f(normal)), without allocating the transformed vector
+    public static int packNormal(Matrix3f matrix, Vector3f normal) {
+        float x = normal.x(), y = normal.y(), z = normal.z();
+
+        return packNormal(
+                fma(matrix.m00(), x, fma(matrix.m10(), y, matrix.m20() * z)),
+                fma(matrix.m01(), x, fma(matrix.m11(), y, matrix.m21() * z)),
+                fma(matrix.m02(), x, fma(matrix.m12(), y, matrix.m22() * z)));
+    }
+
     public static float unpackColorR(int i) {
         return ((i >> 24) & 0xFF) * COLOR_INV;
     }
@@ -34,11 +34,13 @@ public class DeviceInfo {
 
     public final VkPhysicalDeviceFeatures2 availableFeatures;
     public final VkPhysicalDeviceVulkan11Features availableFeatures11;
+    public final VkPhysicalDeviceVulkan12Features availableFeatures12;
 
 //    public final VkPhysicalDeviceVulkan13Features availableFeatures13;
 //    public final boolean vulkan13Support;
 
     private boolean drawIndirectSupported;
+    private boolean drawIndirectCountSupported;
 
     static {
         CentralProcessor centralProcessor = new SystemInfo().getHardware().getProcessor();
@@ -65,6 +67,11 @@ public class DeviceInfo {
         this.availableFeatures11.sType$Default();
         this.availableFeatures.pNext(this.availableFeatures11);
 
+        this.availableFeatures12 = VkPhysicalDeviceVulkan12Features.calloc();
+        this.availableFeatures12.sType$Default();
+        if(properties.apiVersion() >= VK12.VK_API_VERSION_1_2)
+            this.availableFeatures11.pNext(this.availableFeatures12.address());
+
         //Vulkan 1.3
 //        this.availableFeatures13 = VkPhysicalDeviceVulkan13Features.malloc();
 //        this.availableFeatures13.sType$Default();
@@ -77,6 +84,12 @@ public class DeviceInfo {
         if(this.availableFeatures.features().multiDrawIndirect() && this.availableFeatures11.shaderDrawParameters())
                 this.drawIndirectSupported = true;
 
+        this.drawIndirectCountSupported = this.drawIndirectSupported && this.availableFeatures12.drawIndirectCount();
+
+    }
+
+    public VkPhysicalDeviceProperties getProperties() {
+        return this.properties;
     }
 
     private static String decodeVendor(int i) {
@@ -182,6 +195,10 @@ public class DeviceInfo {
         return drawIndirectSupported;
     }
 
+    public boolean isDrawIndirectCountSupported() {
+        return drawIndirectCountSupported;
+    }
+
     //Added these to allow detecting GPU vendor, to allow handling vendor specific circumstances:
     // (e.g. such as in case we encounter a vendor specific driver bug)
     public boolean isAMD() { return vendorId == 0x1022; }
@@ -185,6 +185,16 @@ public abstract class DeviceManager {
             createInfo.pNext(deviceVulkan11Features);
             deviceVulkan11Features.pNext(dynamicRenderingFeaturesKHR.address());
 
+            //Timeline semaphores are core and required in Vulkan 1.2, queue submissions signal them
+            VkPhysicalDeviceVulkan12Features deviceVulkan12Features = VkPhysicalDeviceVulkan12Features.calloc(stack);
+            deviceVulkan12Features.sType$Default();
+            deviceVulkan12Features.timelineSemaphore(true);
+
+            if(deviceInfo.isDrawIndirectCountSupported())
+                deviceVulkan12Features.drawIndirectCount(true);
+
+            dynamicRenderingFeaturesKHR.pNext(deviceVulkan12Features.address());
+
             //Vulkan 1.3 dynamic rendering
 //            VkPhysicalDeviceVulkan13Features deviceVulkan13Features = VkPhysicalDeviceVulkan13Features.calloc(stack);
 //            deviceVulkan13Features.sType$Default();
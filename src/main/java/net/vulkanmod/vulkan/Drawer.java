@@ -1,6 +1,7 @@
 package net.vulkanmod.vulkan;
 
 import com.mojang.blaze3d.vertex.VertexFormat;
+import net.vulkanmod.Initializer;
 import net.vulkanmod.render.chunk.AreaUploadManager;
 import net.vulkanmod.vulkan.memory.*;
 import net.vulkanmod.vulkan.util.VUtil;
@@ -25,7 +26,7 @@ public class Drawer {
     private static final int UINT16_INDEX_MAX = 98304;
 
     private int framesNum;
-    private VertexBuffer[] vertexBuffers;
+    private FrameVertexBuffer[] vertexBuffers;
     private final AutoIndexBuffer quadsIndexBuffer;
     private final AutoIndexBuffer triangleFanIndexBuffer;
     private final AutoIndexBuffer triangleStripIndexBuffer;
@@ -49,12 +50,12 @@ public class Drawer {
 
         if(vertexBuffers != null) {
             Arrays.stream(this.vertexBuffers).iterator().forEachRemaining(
-                    Buffer::freeBuffer
+                    FrameVertexBuffer::freeBuffer
             );
         }
-        this.vertexBuffers = new VertexBuffer[framesNum];
+        this.vertexBuffers = new FrameVertexBuffer[framesNum];
         for (int i = 0; i < framesNum; ++i) {
-            this.vertexBuffers[i] = new VertexBuffer(INITIAL_VB_SIZE, MemoryType.BAR_MEM);
+            this.vertexBuffers[i] = new FrameVertexBuffer(INITIAL_VB_SIZE, MemoryType.BAR_MEM);
         }
 
         if(this.uniformBuffers != null)
@@ -63,7 +64,9 @@ public class Drawer {
     }
 
     public void resetBuffers(int currentFrame) {
-        this.vertexBuffers[currentFrame].reset();
+        //Each buffer is reset once every framesNum frames, the config counts frames
+        int shrinkFrames = Initializer.CONFIG.vertexBufferShrinkFrames;
+        this.vertexBuffers[currentFrame].reset((shrinkFrames + this.framesNum - 1) / this.framesNum);
         this.uniformBuffers.reset();
     }
 
@@ -72,8 +75,7 @@ public class Drawer {
         AutoIndexBuffer autoIndexBuffer;
         int indexCount;
 
-        VertexBuffer vertexBuffer = this.vertexBuffers[currentFrame];
-        vertexBuffer.copyToVertexBuffer(vertexFormat.getVertexSize(), vertexCount, buffer);
+        VertexBuffer vertexBuffer = this.vertexBuffers[currentFrame].copyToVertexBuffer(vertexFormat.getVertexSize(), vertexCount, buffer);
 
         switch (mode) {
             case QUADS, LINES -> {
@@ -111,21 +113,29 @@ public class Drawer {
     public UniformBuffers getUniformBuffers() { return this.uniformBuffers; }
 
     public void drawIndexed(VertexBuffer vertexBuffer, IndexBuffer indexBuffer, int indexCount) {
+        drawIndexed(vertexBuffer.getId(), vertexBuffer.getOffset(), indexBuffer.getId(), indexBuffer.getOffset(), indexCount);
+    }
+
+    public void drawIndexed(long vertexBuffer, long vertexOffset, long indexBuffer, long indexOffset, int indexCount) {
         VkCommandBuffer commandBuffer = Renderer.getCommandBuffer();
 
-        VUtil.UNSAFE.putLong(pBuffers, vertexBuffer.getId());
-        VUtil.UNSAFE.putLong(pOffsets, vertexBuffer.getOffset());
+        VUtil.UNSAFE.putLong(pBuffers, vertexBuffer);
+        VUtil.UNSAFE.putLong(pOffsets, vertexOffset);
         nvkCmdBindVertexBuffers(commandBuffer, 0, 1, pBuffers, pOffsets);
 
-        vkCmdBindIndexBuffer(commandBuffer, indexBuffer.getId(), indexBuffer.getOffset(), VK_INDEX_TYPE_UINT16);
+        vkCmdBindIndexBuffer(commandBuffer, indexBuffer, indexOffset, VK_INDEX_TYPE_UINT16);
         vkCmdDrawIndexed(commandBuffer, indexCount, 1, 0, 0, 0);
     }
 
     public void draw(VertexBuffer vertexBuffer, int vertexCount) {
+        draw(vertexBuffer.getId(), vertexBuffer.getOffset(), vertexCount);
+    }
+
+    public void draw(long vertexBuffer, long vertexOffset, int vertexCount) {
         VkCommandBuffer commandBuffer = Renderer.getCommandBuffer();
 
-        VUtil.UNSAFE.putLong(pBuffers, vertexBuffer.getId());
-        VUtil.UNSAFE.putLong(pOffsets, vertexBuffer.getOffset());
+        VUtil.UNSAFE.putLong(pBuffers, vertexBuffer);
+        VUtil.UNSAFE.putLong(pOffsets, vertexOffset);
         nvkCmdBindVertexBuffers(commandBuffer, 0, 1, pBuffers, pOffsets);
 
         vkCmdDraw(commandBuffer, vertexCount, 1, 0, 0);
@@ -147,8 +157,7 @@ public class Drawer {
     public void cleanUpResources() {
         Buffer buffer;
         for (int i = 0; i < framesNum; ++i) {
-            buffer = this.vertexBuffers[i];
-            MemoryManager.freeBuffer(buffer.getId(), buffer.getAllocation());
+            this.vertexBuffers[i].cleanUp();
 
             buffer = this.uniformBuffers.getUniformBuffer(i);
             MemoryManager.freeBuffer(buffer.getId(), buffer.getAllocation());
@@ -8,14 +8,18 @@ import net.vulkanmod.gl.GlFramebuffer;
 import net.vulkanmod.mixin.window.WindowAccessor;
 import net.vulkanmod.render.chunk.AreaUploadManager;
 import net.vulkanmod.render.PipelineManager;
+import net.vulkanmod.render.profiling.AllocationMeter;
 import net.vulkanmod.render.profiling.Profiler2;
 import net.vulkanmod.vulkan.framebuffer.Framebuffer;
 import net.vulkanmod.vulkan.framebuffer.RenderPass;
 import net.vulkanmod.vulkan.memory.MemoryManager;
+import net.vulkanmod.vulkan.memory.StagingBuffer;
 import net.vulkanmod.vulkan.passes.LegacyMainPass;
 import net.vulkanmod.vulkan.passes.MainPass;
 import net.vulkanmod.vulkan.shader.*;
 import net.vulkanmod.vulkan.shader.layout.PushConstants;
+import net.vulkanmod.vulkan.texture.ImageReadback;
+import net.vulkanmod.vulkan.texture.TextureUploadBatcher;
 import net.vulkanmod.vulkan.texture.VTextureSelector;
 import net.vulkanmod.vulkan.util.VUtil;
 import org.lwjgl.PointerBuffer;
@@ -278,17 +282,17 @@ public class Renderer {
             VkSubmitInfo submitInfo = VkSubmitInfo.calloc(stack);
             submitInfo.sType(VK_STRUCTURE_TYPE_SUBMIT_INFO);
 
-            submitInfo.waitSemaphoreCount(1);
-            submitInfo.pWaitSemaphores(stack.longs(imageAvailableSemaphores.get(currentFrame)));
-            submitInfo.pWaitDstStageMask(stack.ints(VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT));
-
             submitInfo.pSignalSemaphores(stack.longs(renderFinishedSemaphores.get(currentFrame)));
 
             submitInfo.pCommandBuffers(stack.pointers(currentCmdBuffer));
 
             vkResetFences(device, stack.longs(inFlightFences.get(currentFrame)));
 
-            Synchronization.INSTANCE.waitFences();
+            //Texture copies of this frame go first on the same queue
+            TextureUploadBatcher.submit();
+
+            //Transfers and culling the frame depends on are waited on by the GPU
+            Synchronization.INSTANCE.setFrameWaits(stack, submitInfo, imageAvailableSemaphores.get(currentFrame));
 
             if((vkResult = vkQueueSubmit(DeviceManager.getGraphicsQueue().queue(), submitInfo, inFlightFences.get(currentFrame))) != VK_SUCCESS) {
                 vkResetFences(device, stack.longs(inFlightFences.get(currentFrame)));
@@ -360,9 +364,22 @@ public class Renderer {
         p.push("Frame_ops");
 
         drawer.resetBuffers(currentFrame);
+        p.setCounter("UBO_KB", drawer.getUniformBuffers().getLastFrameBytes() >> 10);
 
         AreaUploadManager.INSTANCE.updateFrame();
-        Vulkan.getStagingBuffer().reset();
+
+        StagingBuffer stagingBuffer = Vulkan.getStagingBuffer();
+        stagingBuffer.beginFrame(currentFrame);
+        p.setCounter("Staging_KB", (int) (stagingBuffer.getLastFrameBytes() >> 10));
+        p.setCounter("Staging_fill_%", stagingBuffer.getFillLevel());
+
+        TextureUploadBatcher.beginFrame();
+        p.setCounter("Texture_upload_KB", (int) (TextureUploadBatcher.getLastFrameBytes() >> 10));
+        p.setCounter("Texture_deferred", TextureUploadBatcher.getDeferredCount());
+
+        ImageReadback.update();
+        p.setCounter("Readback_pending", ImageReadback.getPendingCount());
+        AllocationMeter.endFrame(p);
     }
 
     public void addUsedPipeline(Pipeline pipeline) {
@@ -437,6 +454,7 @@ public class Renderer {
 
         PipelineManager.destroyPipelines();
         VTextureSelector.getWhiteTexture().free();
+        ImageReadback.cleanUp();
     }
 
     private void destroySyncObjects() {
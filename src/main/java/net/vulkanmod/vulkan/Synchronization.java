@@ -1,72 +1,88 @@
 package net.vulkanmod.vulkan;
 
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.vulkanmod.vulkan.queue.CommandPool;
-import net.vulkanmod.vulkan.queue.GraphicsQueue;
-import net.vulkanmod.vulkan.queue.TransferQueue;
-import net.vulkanmod.vulkan.util.VUtil;
-import org.lwjgl.system.MemoryUtil;
-import org.lwjgl.vulkan.VkDevice;
+import net.vulkanmod.vulkan.queue.TimelineSemaphore;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.VkSubmitInfo;
+import org.lwjgl.vulkan.VkTimelineSemaphoreSubmitInfo;
 
+import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 
 import static org.lwjgl.vulkan.VK10.*;
 
+//Tracks the timeline value per queue the next frame depends on.
+//The frame submission waits on those values on the GPU instead of the render thread waiting on each fence
 public class Synchronization {
-    private static final int ALLOCATION_SIZE = 50;
+    private static final int MAX_TIMELINES = 4;
 
-    public static final Synchronization INSTANCE = new Synchronization(ALLOCATION_SIZE);
+    public static final Synchronization INSTANCE = new Synchronization();
 
-    private final LongBuffer fences;
-    private int idx = 0;
-
-    private ObjectArrayList<CommandPool.CommandBuffer> commandBuffers = new ObjectArrayList<>();
-
-    Synchronization(int allocSize) {
-        this.fences = MemoryUtil.memAllocLong(allocSize);
-    }
+    private final TimelineSemaphore[] timelines = new TimelineSemaphore[MAX_TIMELINES];
+    private final long[] values = new long[MAX_TIMELINES];
+    private int count = 0;
 
+    //The buffer is released right away, the pool only reuses it once the queue passed its value
     public synchronized void addCommandBuffer(CommandPool.CommandBuffer commandBuffer) {
-        this.addFence(commandBuffer.getFence());
-        this.commandBuffers.add(commandBuffer);
+        this.addWait(commandBuffer.getTimeline(), commandBuffer.getSubmitValue());
+        commandBuffer.reset();
     }
 
-    public synchronized void addFence(long fence) {
-        if(idx == ALLOCATION_SIZE)
-            waitFences();
+    public synchronized void addWait(TimelineSemaphore timeline, long value) {
+        for(int i = 0; i < count; ++i) {
+            if(timelines[i] == timeline) {
+                values[i] = Math.max(values[i], value);
+                return;
+            }
+        }
 
-        fences.put(idx, fence);
-        idx++;
+        timelines[count] = timeline;
+        values[count] = value;
+        count++;
     }
 
-    public synchronized void waitFences() {
-
-        if(idx == 0) return;
+    //Adds the pending timeline waits after the swap chain wait and clears them
+    public synchronized void setFrameWaits(MemoryStack stack, VkSubmitInfo submitInfo, long imageAvailableSemaphore) {
+        LongBuffer pSemaphores = stack.mallocLong(count + 1);
+        LongBuffer pValues = stack.mallocLong(count + 1);
+        IntBuffer pStages = stack.mallocInt(count + 1);
 
-        VkDevice device = Vulkan.getDevice();
+        pSemaphores.put(0, imageAvailableSemaphore);
+        pValues.put(0, 0L);
+        pStages.put(0, VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT);
 
-        fences.limit(idx);
-
-        for (int i = 0; i < idx; i++) {
-            vkWaitForFences(device, fences.get(i), true, VUtil.UINT64_MAX);
+        for(int i = 0; i < count; ++i) {
+            pSemaphores.put(i + 1, timelines[i].getId());
+            pValues.put(i + 1, values[i]);
+            pStages.put(i + 1, VK_PIPELINE_STAGE_ALL_COMMANDS_BIT);
         }
 
-        this.commandBuffers.forEach(CommandPool.CommandBuffer::reset);
-        this.commandBuffers.clear();
+        VkTimelineSemaphoreSubmitInfo timelineInfo = VkTimelineSemaphoreSubmitInfo.calloc(stack);
+        timelineInfo.sType$Default();
+        timelineInfo.waitSemaphoreValueCount(count + 1);
+        timelineInfo.pWaitSemaphoreValues(pValues);
+
+        submitInfo.pNext(timelineInfo);
+        submitInfo.waitSemaphoreCount(count + 1);
+        submitInfo.pWaitSemaphores(pSemaphores);
+        submitInfo.pWaitDstStageMask(pStages);
 
-        fences.limit(ALLOCATION_SIZE);
-        idx = 0;
+        this.clear();
     }
 
-    public static void waitFence(long fence) {
-        VkDevice device = Vulkan.getDevice();
+    //Blocks until every pending value is reached
+    public synchronized void waitPending() {
+        for(int i = 0; i < count; ++i) {
+            timelines[i].waitValue(values[i]);
+        }
 
-        vkWaitForFences(device, fence, true, VUtil.UINT64_MAX);
+        this.clear();
     }
 
-    public static boolean checkFenceStatus(long fence) {
-        VkDevice device = Vulkan.getDevice();
-        return vkGetFenceStatus(device, fence) == VK_SUCCESS;
+    private void clear() {
+        for(int i = 0; i < count; ++i) {
+            timelines[i] = null;
+        }
+        count = 0;
     }
-
 }
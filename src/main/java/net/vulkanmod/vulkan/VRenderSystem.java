@@ -4,6 +4,7 @@ import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.platform.Window;
 import com.mojang.blaze3d.systems.RenderSystem;
 import net.minecraft.client.Minecraft;
+import net.minecraft.util.Mth;
 import net.vulkanmod.vulkan.shader.PipelineState;
 import net.vulkanmod.vulkan.util.ColorUtil;
 import net.vulkanmod.vulkan.util.MappedBuffer;
@@ -40,6 +41,8 @@ public abstract class VRenderSystem {
     public static MappedBuffer MVP = new MappedBuffer(16 * 4);
 
     public static MappedBuffer ChunkOffset = new MappedBuffer(3 * 4);
+    public static MappedBuffer cameraSectionPos = new MappedBuffer(4 * 4);
+    public static MappedBuffer cameraSectionOffset = new MappedBuffer(4 * 4);
     public static MappedBuffer lightDirection0 = new MappedBuffer(3 * 4);
     public static MappedBuffer lightDirection1 = new MappedBuffer(3 * 4);
 
@@ -130,6 +133,31 @@ public abstract class VRenderSystem {
         VUtil.UNSAFE.putFloat(ptr + 8, f3);
     }
 
+    //Camera section (x, z wrapped to 10 bits as in the terrain baseInstance) and camera offset inside it
+    public static void setTerrainCamera(double camX, double camY, double camZ, int minHeight) {
+        int secX = Mth.floor(camX) >> 4;
+        int secY = Mth.floor(camY) - minHeight >> 4;
+        int secZ = Mth.floor(camZ) >> 4;
+
+        long ptr = cameraSectionPos.ptr;
+        VUtil.UNSAFE.putFloat(ptr, secX & 1023);
+        VUtil.UNSAFE.putFloat(ptr + 4, secY);
+        VUtil.UNSAFE.putFloat(ptr + 8, secZ & 1023);
+
+        ptr = cameraSectionOffset.ptr;
+        VUtil.UNSAFE.putFloat(ptr, (float) (camX - (secX << 4)));
+        VUtil.UNSAFE.putFloat(ptr + 4, (float) (camY - minHeight - (secY << 4)));
+        VUtil.UNSAFE.putFloat(ptr + 8, (float) (camZ - (secZ << 4)));
+    }
+
+    public static MappedBuffer getCameraSectionPos() {
+        return cameraSectionPos;
+    }
+
+    public static MappedBuffer getCameraSectionOffset() {
+        return cameraSectionOffset;
+    }
+
     public static void setShaderColor(float f1, float f2, float f3, float f4) {
         ColorUtil.setRGBA_Buffer(shaderColor, f1, f2, f3, f4);
     }
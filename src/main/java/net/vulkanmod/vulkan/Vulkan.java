@@ -1,7 +1,6 @@
 package net.vulkanmod.vulkan;
 
 import net.vulkanmod.vulkan.framebuffer.SwapChain;
-import net.vulkanmod.vulkan.memory.Buffer;
 import net.vulkanmod.vulkan.memory.MemoryManager;
 import net.vulkanmod.vulkan.memory.StagingBuffer;
 import net.vulkanmod.vulkan.queue.Queue;
@@ -16,7 +15,6 @@ import org.lwjgl.vulkan.*;
 
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -128,7 +126,7 @@ public class Vulkan {
 
     private static long allocator;
 
-    private static StagingBuffer[] stagingBuffers;
+    private static StagingBuffer stagingBuffer;
 
     public static boolean use24BitsDepthFormat = true;
     private static int DEFAULT_DEPTH_FORMAT = 0;
@@ -154,15 +152,12 @@ public class Vulkan {
     }
 
     static void createStagingBuffers() {
-        if(stagingBuffers != null) {
+        if(stagingBuffer != null) {
             freeStagingBuffers();
         }
 
-        stagingBuffers = new StagingBuffer[Renderer.getFramesNum()];
-
-        for(int i = 0; i < stagingBuffers.length; ++i) {
-            stagingBuffers[i] = new StagingBuffer(30 * 1024 * 1024);
-        }
+        int framesNum = Renderer.getFramesNum();
+        stagingBuffer = new StagingBuffer(framesNum * 30 * 1024 * 1024, framesNum);
     }
 
     static void setupDepthFormat() {
@@ -208,7 +203,7 @@ public class Vulkan {
     }
 
     private static void freeStagingBuffers() {
-        Arrays.stream(stagingBuffers).forEach(Buffer::freeBuffer);
+        stagingBuffer.freeBuffer();
     }
 
     private static void createInstance() {
@@ -466,7 +461,7 @@ public class Vulkan {
         return commandPool;
     }
 
-    public static StagingBuffer getStagingBuffer() { return stagingBuffers[Renderer.getCurrentFrame()]; }
+    public static StagingBuffer getStagingBuffer() { return stagingBuffer; }
 
     public static DeviceInfo getDeviceInfo() { return DeviceManager.deviceInfo; }
 }
@@ -4,6 +4,7 @@ import net.vulkanmod.vulkan.Renderer;
 import net.vulkanmod.vulkan.VRenderSystem;
 import net.vulkanmod.vulkan.Vulkan;
 import net.vulkanmod.vulkan.memory.MemoryManager;
+import net.vulkanmod.vulkan.texture.TextureUploadBatcher;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.vulkan.*;
 
@@ -124,6 +125,10 @@ public class RenderPass {
     }
 
     public void beginRenderPass(VkCommandBuffer commandBuffer, long framebufferId, MemoryStack stack) {
+        if(colorAttachmentInfo != null)
+            TextureUploadBatcher.frameLayoutChange(framebuffer.getColorAttachment());
+        if(depthAttachmentInfo != null)
+            TextureUploadBatcher.frameLayoutChange(framebuffer.getDepthAttachment());
 
         if(colorAttachmentInfo != null
                 && framebuffer.getColorAttachment().getCurrentLayout() != VK_IMAGE_LAYOUT_PRESENT_SRC_KHR)
@@ -229,6 +234,14 @@ public class RenderPass {
         return id;
     }
 
+    //Pipelines can be shared by render passes with the same attachment formats
+    public long getFormatsKey() {
+        long colorFormat = colorAttachmentInfo != null ? colorAttachmentInfo.format : 0;
+        long depthFormat = depthAttachmentInfo != null ? depthAttachmentInfo.format : 0;
+
+        return colorFormat << 32 | depthFormat;
+    }
+
     public static class AttachmentInfo {
         final Type type;
         final int format;
@@ -58,7 +58,7 @@ public class SwapChain extends Framebuffer {
     }
 
     public void recreateSwapChain() {
-        Synchronization.INSTANCE.waitFences();
+        Synchronization.INSTANCE.waitPending();
 
         if(this.depthAttachment != null) {
             this.depthAttachment.free();
@@ -0,0 +1,136 @@
+package net.vulkanmod.vulkan.memory;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_INDEX_BUFFER_BIT;
+import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_VERTEX_BUFFER_BIT;
+
+//Sub-allocates frequently replaced buffers (VBOs) out of a few large device buffers instead of one VMA allocation each.
+//Freed ranges are reused after MemoryManager frames went by, empty pages other than the first are released
+public class BufferPool {
+    private static final int PAGE_SIZE = 4 * 1024 * 1024;
+    private static final int ALIGNMENT = 16;
+
+    public static final BufferPool VERTICES = new BufferPool(VK_BUFFER_USAGE_VERTEX_BUFFER_BIT);
+    public static final BufferPool INDICES = new BufferPool(VK_BUFFER_USAGE_INDEX_BUFFER_BIT);
+
+    private static long frame;
+
+    private final int usage;
+    private final ObjectArrayList<Page> pages = new ObjectArrayList<>();
+
+    private BufferPool(int usage) {
+        this.usage = usage;
+    }
+
+    public synchronized Allocation upload(ByteBuffer data) {
+        int size = data.remaining();
+
+        Page page = null;
+        int offset = -1;
+        for(int i = 0; i < this.pages.size() && offset == -1; ++i) {
+            page = this.pages.get(i);
+            offset = page.allocator.allocate(size);
+        }
+
+        if(offset == -1) {
+            page = this.createPage(Math.max(PAGE_SIZE, (size + ALIGNMENT - 1) & -ALIGNMENT));
+            offset = page.allocator.allocate(size);
+        }
+
+        page.buffer.type.uploadBuffer(page.buffer, data, offset);
+
+        return new Allocation(page, offset, size);
+    }
+
+    private Page createPage(int size) {
+        Buffer buffer = this.usage == VK_BUFFER_USAGE_VERTEX_BUFFER_BIT
+                ? new VertexBuffer(size, MemoryType.GPU_MEM)
+                : new IndexBuffer(size, MemoryType.GPU_MEM);
+
+        Page page = new Page(buffer, new RangeAllocator(size, ALIGNMENT));
+        this.pages.add(page);
+        return page;
+    }
+
+    private synchronized void free(Allocation allocation) {
+        allocation.page.allocator.free(allocation.offset, allocation.size, frame);
+    }
+
+    private synchronized void releaseFrame(long releasedFrame) {
+        for(int i = this.pages.size() - 1; i >= 0; --i) {
+            Page page = this.pages.get(i);
+            page.allocator.release(releasedFrame);
+
+            if(i > 0 && page.allocator.isEmpty()) {
+                page.buffer.freeBuffer();
+                this.pages.remove(i);
+            }
+        }
+    }
+
+    public synchronized int getPageCount() {
+        return this.pages.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        long used = 0;
+        for(Page page : this.pages) {
+            used += page.allocator.getUsed();
+        }
+        return used;
+    }
+
+    //Called with MemoryManager.initFrame, ranges freed Frames frames ago are no longer in use
+    static void updateFrame() {
+        frame++;
+
+        long releasedFrame = frame - MemoryManager.getFrames();
+        VERTICES.releaseFrame(releasedFrame);
+        INDICES.releaseFrame(releasedFrame);
+    }
+
+    static void freeAll() {
+        VERTICES.freePages();
+        INDICES.freePages();
+    }
+
+    private synchronized void freePages() {
+        for(Page page : this.pages) {
+            MemoryManager.freeBuffer(page.buffer.getId(), page.buffer.getAllocation());
+        }
+        this.pages.clear();
+    }
+
+    private record Page(Buffer buffer, RangeAllocator allocator) {}
+
+    public class Allocation {
+        private final Page page;
+        private final int offset;
+        private final int size;
+
+        private Allocation(Page page, int offset, int size) {
+            this.page = page;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        public long getBufferId() {
+            return this.page.buffer.getId();
+        }
+
+        public int getOffset() {
+            return this.offset;
+        }
+
+        public int getSize() {
+            return this.size;
+        }
+
+        public void free() {
+            BufferPool.this.free(this);
+        }
+    }
+}
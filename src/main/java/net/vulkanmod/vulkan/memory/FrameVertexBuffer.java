@@ -0,0 +1,109 @@
+package net.vulkanmod.vulkan.memory;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.nio.ByteBuffer;
+
+//Immediate mode vertex storage of a frame. When a block is full a new one is chained instead of replacing
+//the live block, draws already recorded keep their buffer. Blocks are merged on reset, once the frame that used
+//them is being reused, and shrunk back after a number of resets using far less than the capacity
+public class FrameVertexBuffer {
+    private final int initialSize;
+    private final MemoryType memoryType;
+
+    private final ObjectArrayList<VertexBuffer> blocks = new ObjectArrayList<>();
+    private VertexBuffer current;
+
+    private int frameBytes;
+    private int quietPeakBytes;
+    private int quietResets;
+
+    public FrameVertexBuffer(int initialSize, MemoryType memoryType) {
+        this.initialSize = initialSize;
+        this.memoryType = memoryType;
+
+        this.current = new VertexBuffer(initialSize, memoryType);
+        this.blocks.add(this.current);
+    }
+
+    //Returns the block the data was written to, bind it with its offset
+    public VertexBuffer copyToVertexBuffer(int vertexSize, int vertexCount, ByteBuffer byteBuffer) {
+        int size = vertexSize * vertexCount;
+
+        if(size > this.current.getBufferSize() - this.current.getUsedBytes()) {
+            //Doubles the total capacity
+            this.current = new VertexBuffer(Math.max(size, this.getCapacity()), this.memoryType);
+            this.blocks.add(this.current);
+        }
+
+        this.current.copyToVertexBuffer(vertexSize, vertexCount, byteBuffer);
+        this.frameBytes += size;
+
+        return this.current;
+    }
+
+    //Shrinks after shrinkResets consecutive quiet resets of this buffer, 0 disables shrinking
+    public void reset(int shrinkResets) {
+        int capacity = this.getCapacity();
+
+        if(this.blocks.size() > 1) {
+            //The frame overflowed, keep a single block of the chain total size
+            this.replaceBlocks(capacity);
+            this.quietResets = 0;
+            this.quietPeakBytes = 0;
+        }
+        else if(capacity > this.initialSize && shrinkResets > 0) {
+            if(this.frameBytes <= capacity >> 2) {
+                this.quietResets++;
+                this.quietPeakBytes = Math.max(this.quietPeakBytes, this.frameBytes);
+            }
+            else {
+                this.quietResets = 0;
+                this.quietPeakBytes = 0;
+            }
+
+            if(this.quietResets >= shrinkResets) {
+                this.replaceBlocks(Math.max(this.initialSize, this.quietPeakBytes * 2));
+                this.quietResets = 0;
+                this.quietPeakBytes = 0;
+            }
+        }
+
+        this.current.reset();
+        this.frameBytes = 0;
+    }
+
+    //Freed buffers go through MemoryManager's freeable lists, in flight frames may still read them
+    private void replaceBlocks(int size) {
+        for(VertexBuffer block : this.blocks) {
+            block.freeBuffer();
+        }
+        this.blocks.clear();
+
+        this.current = new VertexBuffer(size, this.memoryType);
+        this.blocks.add(this.current);
+    }
+
+    public int getCapacity() {
+        int capacity = 0;
+        for(VertexBuffer block : this.blocks) {
+            capacity += block.getBufferSize();
+        }
+        return capacity;
+    }
+
+    public void freeBuffer() {
+        for(VertexBuffer block : this.blocks) {
+            block.freeBuffer();
+        }
+        this.blocks.clear();
+    }
+
+    //Immediate release on shutdown
+    public void cleanUp() {
+        for(VertexBuffer block : this.blocks) {
+            MemoryManager.freeBuffer(block.getId(), block.getAllocation());
+        }
+        this.blocks.clear();
+    }
+}
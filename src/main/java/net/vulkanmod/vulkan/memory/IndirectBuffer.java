@@ -10,6 +10,7 @@ import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_INDIRECT_BUFFER_BIT;
 
 public class IndirectBuffer extends Buffer {
     CommandPool.CommandBuffer commandBuffer;
+    private final StagingBuffer.Region stagingRegion = new StagingBuffer.Region();
 
     public IndirectBuffer(int size, MemoryType type) {
         super(VK_BUFFER_USAGE_INDIRECT_BUFFER_BIT, type);
@@ -30,10 +31,10 @@ public class IndirectBuffer extends Buffer {
             if(commandBuffer == null)
                 commandBuffer = DeviceManager.getTransferQueue().beginCommands();
 
-            StagingBuffer stagingBuffer = Vulkan.getStagingBuffer();
-            stagingBuffer.copyBuffer(size, byteBuffer);
+            StagingBuffer.Region region = this.stagingRegion;
+            Vulkan.getStagingBuffer().copyBuffer(region, size, byteBuffer);
 
-            TransferQueue.uploadBufferCmd(commandBuffer.getHandle(), stagingBuffer.id, stagingBuffer.offset, this.getId(), this.getUsedBytes(), size);
+            TransferQueue.uploadBufferCmd(commandBuffer.getHandle(), region.bufferId(), region.offset(), this.getId(), this.getUsedBytes(), size);
         }
 
         offset = usedBytes;
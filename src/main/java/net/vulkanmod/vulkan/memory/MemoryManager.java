@@ -78,6 +78,7 @@ public class MemoryManager {
         this.setCurrentFrame(frame);
         this.freeBuffers(frame);
         this.doFrameOps(frame);
+        BufferPool.updateFrame();
     }
 
     public void setCurrentFrame(int frame) {
@@ -91,6 +92,8 @@ public class MemoryManager {
             this.doFrameOps(frame);
         }
 
+        BufferPool.freeAll();
+
 //        buffers.values().forEach(buffer -> freeBuffer(buffer.getId(), buffer.getAllocation()));
 //        images.values().forEach(image -> image.doFree(this));
     }
@@ -186,6 +189,11 @@ public class MemoryManager {
         vmaMapMemory(allocator, allocation, data);
     }
 
+    public void Unmap(long allocation) {
+
+        vmaUnmapMemory(allocator, allocation);
+    }
+
     public static void freeBuffer(long buffer, long allocation) {
         vmaDestroyBuffer(allocator, buffer, allocation);
 
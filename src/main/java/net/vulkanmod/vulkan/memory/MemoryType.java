@@ -22,6 +22,9 @@ public enum MemoryType {
     private long usedBytes;
     private final int flags;
 
+    //Buffers are written from several threads
+    private static final ThreadLocal<StagingBuffer.Region> STAGING_REGION = ThreadLocal.withInitial(StagingBuffer.Region::new);
+
     //requiredFlags: MemType MUST have this flag(s) to be used
     //optimalFlags: MemType IDEALLY has these flags for Optimal performance, but are not strictly required to have these flags to be used
 
@@ -105,9 +108,9 @@ public enum MemoryType {
     void copyToBuffer(Buffer buffer, int bufferSize, ByteBuffer byteBuffer)
     {
          if(!this.mappable()){
-             StagingBuffer stagingBuffer = Vulkan.getStagingBuffer();
-             stagingBuffer.copyBuffer(bufferSize, byteBuffer);
-             DeviceManager.getTransferQueue().copyBufferCmd(stagingBuffer.id, stagingBuffer.offset, buffer.getId(), buffer.getUsedBytes(), bufferSize);
+             StagingBuffer.Region region = STAGING_REGION.get();
+             Vulkan.getStagingBuffer().copyBuffer(region, bufferSize, byteBuffer);
+             DeviceManager.getTransferQueue().copyBufferCmd(region.bufferId(), region.offset(), buffer.getId(), buffer.getUsedBytes(), bufferSize);
          }
          else VUtil.memcpy(byteBuffer, buffer.data.getByteBuffer(0, buffer.bufferSize), bufferSize, buffer.getUsedBytes());
     }
@@ -131,10 +134,10 @@ public enum MemoryType {
       if(!this.mappable())
       {
           int bufferSize = byteBuffer.remaining();
-          StagingBuffer stagingBuffer = Vulkan.getStagingBuffer();
-          stagingBuffer.copyBuffer(bufferSize, byteBuffer);
+          StagingBuffer.Region region = STAGING_REGION.get();
+          Vulkan.getStagingBuffer().copyBuffer(region, bufferSize, byteBuffer);
 
-          DeviceManager.getTransferQueue().copyBufferCmd(stagingBuffer.id, stagingBuffer.offset, buffer.getId(), dstOffset, bufferSize);
+          DeviceManager.getTransferQueue().copyBufferCmd(region.bufferId(), region.offset(), buffer.getId(), dstOffset, bufferSize);
       }
 
       else VUtil.memcpy(byteBuffer, buffer.data.getByteBuffer(0, buffer.bufferSize), byteBuffer.remaining(), dstOffset);
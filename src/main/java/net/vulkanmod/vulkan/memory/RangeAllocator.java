@@ -0,0 +1,178 @@
+package net.vulkanmod.vulkan.memory;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectSortedMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectRBTreeSet;
+
+import java.util.Comparator;
+
+//Offset/size sub-allocation of a fixed range, best fit with coalescing of free neighbours.
+//Frees are tagged with a frame and only reused once release() reached it, ranges may still be read by in flight frames.
+//Pure bookkeeping, it does not touch any device memory
+public class RangeAllocator {
+    private static final Comparator<Range> SIZE_COMPARATOR = (r1, r2) -> {
+        int c = Integer.compare(r1.size, r2.size);
+        return c != 0 ? c : Integer.compare(r1.offset, r2.offset);
+    };
+
+    private final int capacity;
+    private final int alignment;
+
+    private final ObjectRBTreeSet<Range> freeRangesBySize = new ObjectRBTreeSet<>(SIZE_COMPARATOR);
+    private final Int2ObjectRBTreeMap<Range> freeRangesByOffset = new Int2ObjectRBTreeMap<>();
+
+    private final Range searchKey = new Range(0, 0);
+
+    //Deferred frees in frame order
+    private final LongArrayList pendingFrames = new LongArrayList();
+    private final IntArrayList pendingRanges = new IntArrayList();
+    private int pendingHead;
+
+    private int used;
+    private int pendingBytes;
+
+    public RangeAllocator(int capacity, int alignment) {
+        if(Integer.bitCount(alignment) != 1)
+            throw new IllegalArgumentException("Alignment must be a power of 2: " + alignment);
+
+        this.capacity = capacity;
+        this.alignment = alignment;
+
+        this.addFreeRange(0, capacity);
+    }
+
+    //Returns the offset of the allocation or -1 if no free range fits
+    public int allocate(int size) {
+        size = this.align(size);
+
+        this.searchKey.offset = Integer.MIN_VALUE;
+        this.searchKey.size = size;
+
+        var iterator = this.freeRangesBySize.iterator(this.searchKey);
+        if(!iterator.hasNext())
+            return -1;
+
+        Range range = iterator.next();
+        this.removeFreeRange(range);
+
+        if(range.size > size)
+            this.addFreeRange(range.offset + size, range.size - size);
+
+        this.used += size;
+        return range.offset;
+    }
+
+    //The range becomes available once release() is called with frame or a later one
+    public void free(int offset, int size, long frame) {
+        if(!this.pendingFrames.isEmpty() && frame < this.pendingFrames.getLong(this.pendingFrames.size() - 1))
+            throw new IllegalArgumentException("Frees must be in frame order");
+
+        size = this.align(size);
+
+        this.pendingFrames.add(frame);
+        this.pendingRanges.add(offset);
+        this.pendingRanges.add(size);
+
+        this.used -= size;
+        this.pendingBytes += size;
+    }
+
+    public void release(long frame) {
+        int count = this.pendingFrames.size();
+
+        while(this.pendingHead < count && this.pendingFrames.getLong(this.pendingHead) <= frame) {
+            int offset = this.pendingRanges.getInt(this.pendingHead * 2);
+            int size = this.pendingRanges.getInt(this.pendingHead * 2 + 1);
+
+            this.addFreeRange(offset, size);
+            this.pendingBytes -= size;
+            this.pendingHead++;
+        }
+
+        if(this.pendingHead == count) {
+            this.pendingFrames.clear();
+            this.pendingRanges.clear();
+            this.pendingHead = 0;
+        }
+        //Frees every frame never fully drain the lists
+        else if(this.pendingHead >= 64 && this.pendingHead * 2 > count) {
+            this.pendingFrames.removeElements(0, this.pendingHead);
+            this.pendingRanges.removeElements(0, this.pendingHead * 2);
+            this.pendingHead = 0;
+        }
+    }
+
+    private int align(int size) {
+        return (size + this.alignment - 1) & -this.alignment;
+    }
+
+    private void addFreeRange(int offset, int size) {
+        Range previous = this.getPrecedingFreeRange(offset);
+        if(previous != null) {
+            this.removeFreeRange(previous);
+            offset = previous.offset;
+            size += previous.size;
+        }
+
+        Range next = this.freeRangesByOffset.get(offset + size);
+        if(next != null) {
+            this.removeFreeRange(next);
+            size += next.size;
+        }
+
+        Range range = new Range(offset, size);
+        this.freeRangesBySize.add(range);
+        this.freeRangesByOffset.put(offset, range);
+    }
+
+    private void removeFreeRange(Range range) {
+        this.freeRangesBySize.remove(range);
+        this.freeRangesByOffset.remove(range.offset);
+    }
+
+    //Free range ending exactly at offset
+    private Range getPrecedingFreeRange(int offset) {
+        Int2ObjectSortedMap<Range> head = this.freeRangesByOffset.headMap(offset);
+        if(head.isEmpty())
+            return null;
+
+        Range range = head.get(head.lastIntKey());
+        return range.offset + range.size == offset ? range : null;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int getUsed() {
+        return this.used;
+    }
+
+    public int getPendingBytes() {
+        return this.pendingBytes;
+    }
+
+    //No allocation is live nor waiting to be released
+    public boolean isEmpty() {
+        return this.used == 0 && this.pendingBytes == 0;
+    }
+
+    public int getFreeRangeCount() {
+        return this.freeRangesBySize.size();
+    }
+
+    public int getLargestFreeRange() {
+        return this.freeRangesBySize.isEmpty() ? 0 : this.freeRangesBySize.last().size;
+    }
+
+    private static class Range {
+        int offset, size;
+
+        Range(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+}
@@ -1,66 +1,182 @@
 package net.vulkanmod.vulkan.memory;
 
+import net.vulkanmod.Initializer;
 import net.vulkanmod.render.chunk.util.Util;
 import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.lwjgl.system.libc.LibCString.nmemcpy;
 import static org.lwjgl.vulkan.VK10.*;
 
-public class StagingBuffer extends Buffer {
+/**
+ * Persistently mapped ring shared by all frames in flight.
+ * Space is reserved with a CAS on the ring head so copies can be done from any thread.
+ * Positions are absolute byte counts, each frame records the head when it begins. When the same
+ * frame index begins again its fence was waited on, so everything copied before its previous
+ * begin (waited on by that frame's or an earlier submission) is retired.
+ * Reservations are written into a caller owned Region, so copies do not allocate.
+ * If the ring is full the copy spills into a new, bigger ring; the old one stays alive until
+ * the frames referencing it are retired.
+ */
+public class StagingBuffer {
+    private final int framesNum;
+    private final long[] frameMarks;
+
+    private volatile Ring ring;
+
+    private final AtomicLong frameBytes = new AtomicLong();
+    private long lastFrameBytes;
+    private int spills;
+
+    public StagingBuffer(int bufferSize, int framesNum) {
+        this.framesNum = framesNum;
+        this.frameMarks = new long[framesNum];
+        this.ring = new Ring(bufferSize);
+    }
 
-    public StagingBuffer(int bufferSize) {
-        super(VK_BUFFER_USAGE_TRANSFER_SRC_BIT, MemoryType.BAR_MEM);
-        this.usedBytes = 0;
-        this.offset = 0;
+    public void copyBuffer(Region region, int size, ByteBuffer byteBuffer) {
+        this.copyBuffer(region, size, MemoryUtil.memAddress(byteBuffer), 1);
+    }
 
-        this.createBuffer(bufferSize);
+    public void copyBuffer(Region region, int size, ByteBuffer byteBuffer, int alignment) {
+        this.copyBuffer(region, size, MemoryUtil.memAddress(byteBuffer), alignment);
     }
 
-    public void copyBuffer(int size, ByteBuffer byteBuffer) {
+    public void copyBuffer(Region region, int size, long srcPtr, int alignment) {
+        this.reserve(region, size, alignment);
+        nmemcpy(region.ptr, srcPtr, size);
+    }
 
-        if(size > this.bufferSize - this.usedBytes) {
-            resizeBuffer((this.bufferSize + size) * 2);
+    public void reserve(Region region, int size, int alignment) {
+        Ring ring = this.ring;
+        long offset = ring.tryReserve(size, alignment);
+
+        if(offset == -1) {
+            synchronized (this) {
+                //Another thread might have already spilled
+                ring = this.ring;
+                offset = ring.tryReserve(size, alignment);
+
+                if(offset == -1) {
+                    ring = this.spill(size);
+                    offset = ring.tryReserve(size, alignment);
+                }
+            }
         }
 
-//        VUtil.memcpy(byteBuffer, this.data.getByteBuffer(0, this.bufferSize), this.usedBytes);
-        nmemcpy(this.data.get(0) + this.usedBytes, MemoryUtil.memAddress(byteBuffer), size);
-
-        offset = usedBytes;
-        usedBytes += size;
+        this.frameBytes.addAndGet(size);
 
-        //createVertexBuffer(vertexSize, vertexCount, byteBuffer);
+        region.bufferId = ring.getId();
+        region.offset = offset;
+        region.ptr = ring.data.get(0) + offset;
     }
-    public void copyBuffer2(int size, long byteBuffer) {
 
-        if(size > this.bufferSize - this.usedBytes) {
-            resizeBuffer((this.bufferSize + size) * 2);
+    private Ring spill(int size) {
+        Ring old = this.ring;
+
+        int newSize = old.getBufferSize() * 2;
+        while(newSize < size)
+            newSize *= 2;
+
+        //Deferred free: pending copies recorded in flight frames still read from the old ring
+        old.freeBuffer();
+
+        Ring ring = new Ring(newSize);
+        for(int i = 0; i < this.framesNum; ++i) {
+            this.frameMarks[i] = 0;
         }
 
-//        VUtil.memcpy(byteBuffer, this.data.getByteBuffer(0, this.bufferSize), this.usedBytes);
-        nmemcpy(this.data.get(0) + this.usedBytes, (byteBuffer), size);
+        this.ring = ring;
+        this.spills++;
+
+        Initializer.LOGGER.info("Staging buffer full, resized to {} MB", newSize >> 20);
+        return ring;
+    }
+
+    //Called on the render thread when a frame index is reused, after waiting on its fence
+    public synchronized void beginFrame(int frame) {
+        Ring ring = this.ring;
+
+        //Copies recorded after the previous begin of this index may only be waited on by a later, unfinished frame
+        ring.retire(this.frameMarks[frame]);
+        this.frameMarks[frame] = ring.head.get();
+
+        this.lastFrameBytes = this.frameBytes.getAndSet(0);
+    }
 
-        offset = usedBytes;
-        usedBytes += size;
+    public long getLastFrameBytes() {
+        return this.lastFrameBytes;
+    }
 
-        //createVertexBuffer(vertexSize, vertexCount, byteBuffer);
+    //Fill level in percent
+    public int getFillLevel() {
+        Ring ring = this.ring;
+        return (int) ((ring.head.get() - ring.tail) * 100 / ring.getBufferSize());
     }
 
-    public void align(int alignment) {
-        int alignedValue = Util.align(usedBytes, alignment);
+    public int getSpills() {
+        return this.spills;
+    }
 
-        if(alignedValue > this.bufferSize) {
-            resizeBuffer((this.bufferSize) * 2);
+    public void freeBuffer() {
+        this.ring.freeBuffer();
+    }
+
+    //Filled by reserve() and copyBuffer(), one per caller thread
+    public static class Region {
+        long bufferId;
+        long offset;
+        long ptr;
+
+        public long bufferId() {
+            return this.bufferId;
+        }
+
+        public long offset() {
+            return this.offset;
         }
 
-        usedBytes = alignedValue;
+        public long ptr() {
+            return this.ptr;
+        }
     }
 
-    private void resizeBuffer(int newSize) {
-        this.type.freeBuffer(this);
-        this.createBuffer(newSize);
+    private static class Ring extends Buffer {
+        final AtomicLong head = new AtomicLong();
+        volatile long tail;
+
+        Ring(int bufferSize) {
+            super(VK_BUFFER_USAGE_TRANSFER_SRC_BIT, MemoryType.BAR_MEM);
+
+            this.createBuffer(bufferSize);
+        }
 
-        System.out.println("resized staging buffer to: " + newSize);
+        //Returns the offset of the reserved range or -1 if the ring is full
+        long tryReserve(int size, int alignment) {
+            long capacity = this.bufferSize;
+
+            while(true) {
+                long head = this.head.get();
+                long start = Util.align(head, alignment);
+
+                //Ranges are contiguous, skip to the ring start if it would wrap
+                if((start % capacity) + size > capacity)
+                    start = (start / capacity + 1) * capacity;
+
+                long end = start + size;
+                if(end - this.tail > capacity)
+                    return -1;
+
+                if(this.head.compareAndSet(head, end))
+                    return start % capacity;
+            }
+        }
+
+        void retire(long position) {
+            if(position > this.tail)
+                this.tail = position;
+        }
     }
 }
@@ -0,0 +1,21 @@
+package net.vulkanmod.vulkan.memory;
+
+import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT;
+
+public class StorageBuffer extends Buffer {
+
+    public StorageBuffer(int size, int usage, MemoryType type) {
+        super(usage | VK_BUFFER_USAGE_STORAGE_BUFFER_BIT, type);
+        this.createBuffer(size);
+    }
+
+    //Content is not preserved
+    public void resizeBuffer(int newSize) {
+        this.type.freeBuffer(this);
+        this.createBuffer(newSize);
+    }
+
+    public long getDataPtr() {
+        return this.data.get(0);
+    }
+}
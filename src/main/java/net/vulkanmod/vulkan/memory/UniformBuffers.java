@@ -3,6 +3,8 @@ package net.vulkanmod.vulkan.memory;
 import net.vulkanmod.vulkan.*;
 import net.vulkanmod.vulkan.queue.CommandPool;
 import net.vulkanmod.vulkan.queue.TransferQueue;
+import net.vulkanmod.vulkan.shader.Pipeline;
+import net.vulkanmod.vulkan.shader.descriptor.UBO;
 import net.vulkanmod.vulkan.util.VUtil;
 
 import java.nio.ByteBuffer;
@@ -12,10 +14,14 @@ import java.util.List;
 import static net.vulkanmod.vulkan.util.VUtil.align;
 import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_UNIFORM_BUFFER_BIT;
 
-public class UniformBuffers {
+public class UniformBuffers implements UBO.Target {
 
     private int bufferSize;
     private int usedBytes;
+    private int lastFrameBytes;
+
+    //Changes when previously written offsets are no longer valid (reset or resize)
+    private long epoch;
 
     public List<UniformBuffer> uniformBuffers;
 
@@ -23,6 +29,7 @@ public class UniformBuffers {
     private final int framesSize = Renderer.getFramesNum();
 
     CommandPool.CommandBuffer commandBuffer;
+    private final StagingBuffer.Region stagingRegion = new StagingBuffer.Region();
 
     public UniformBuffers(int size) {
         createUniformBuffers(size, MemoryType.BAR_MEM);
@@ -57,12 +64,19 @@ public class UniformBuffers {
         return align(uploadSize, minOffset);
     }
 
+    @Override
+    public int alignSize(int size) {
+        return getAlignedSize(size);
+    }
+
+    @Override
     public void checkCapacity(int size) {
         if (size > this.bufferSize - this.usedBytes) {
             resizeBuffer((this.bufferSize + size) * 2);
         }
     }
 
+    @Override
     public void updateOffset(int alignedSize) {
         usedBytes += alignedSize;
     }
@@ -74,6 +88,7 @@ public class UniformBuffers {
         }
 
         this.bufferSize = newSize;
+        this.epoch++;
 
         System.out.println("resized UniformBuffer to: " + newSize);
     }
@@ -88,17 +103,31 @@ public class UniformBuffers {
     }
 
     public void free() {
+        uniformBuffers.forEach(uniformBuffer -> Pipeline.evictDescriptorSets(uniformBuffer.getId()));
         uniformBuffers.forEach(Buffer::freeBuffer);
     }
 
     public void reset() {
+        lastFrameBytes = usedBytes;
         usedBytes = 0;
+        epoch++;
+    }
+
+    @Override
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public int getLastFrameBytes() {
+        return lastFrameBytes;
     }
 
+    @Override
     public int getUsedBytes() {
         return usedBytes;
     }
 
+    @Override
     public long getPointer(int frame) {
         return this.uniformBuffers.get(frame).data.get(0) + usedBytes;
     }
@@ -126,14 +155,15 @@ public class UniformBuffers {
 
                 int size = buffer.remaining();
 
-                StagingBuffer stagingBuffer = Vulkan.getStagingBuffer();
-                stagingBuffer.copyBuffer(size, buffer);
+                StagingBuffer.Region region = stagingRegion;
+                Vulkan.getStagingBuffer().copyBuffer(region, size, buffer);
 
-                TransferQueue.uploadBufferCmd(commandBuffer.getHandle(), stagingBuffer.id, stagingBuffer.offset, this.id, offset, size);
+                TransferQueue.uploadBufferCmd(commandBuffer.getHandle(), region.bufferId(), region.offset(), this.id, offset, size);
             }
         }
 
         private void resizeBuffer(int newSize) {
+            Pipeline.evictDescriptorSets(this.id);
             this.type.freeBuffer(this);
             createBuffer(newSize);
         }
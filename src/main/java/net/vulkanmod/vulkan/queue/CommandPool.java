@@ -19,7 +19,13 @@ public class CommandPool {
     private final List<CommandBuffer> commandBuffers = new ObjectArrayList<>();
     private final java.util.Queue<CommandBuffer> availableCmdBuffers = new ArrayDeque<>();
 
-    CommandPool(int queueFamilyIndex) {
+    private final TimelineSemaphore timeline;
+    //Released buffers wait here until the queue timeline passes their submission
+    private final SubmissionTracker<CommandBuffer> releasedCmdBuffers;
+
+    CommandPool(int queueFamilyIndex, TimelineSemaphore timeline) {
+        this.timeline = timeline;
+        this.releasedCmdBuffers = new SubmissionTracker<>(timeline);
         this.createCommandPool(queueFamilyIndex);
     }
 
@@ -42,11 +48,13 @@ public class CommandPool {
         }
     }
 
-    public CommandBuffer beginCommands() {
+    public synchronized CommandBuffer beginCommands() {
 
         try(MemoryStack stack = stackPush()) {
             final int size = 10;
 
+            this.releasedCmdBuffers.retire(availableCmdBuffers::add);
+
             if(availableCmdBuffers.isEmpty()) {
 
                 VkCommandBufferAllocateInfo allocInfo = VkCommandBufferAllocateInfo.calloc(stack);
@@ -58,16 +66,8 @@ public class CommandPool {
                 PointerBuffer pCommandBuffer = stack.mallocPointer(size);
                 vkAllocateCommandBuffers(Vulkan.getDevice(), allocInfo, pCommandBuffer);
 
-                VkFenceCreateInfo fenceInfo = VkFenceCreateInfo.calloc(stack);
-                fenceInfo.sType$Default();
-                fenceInfo.flags(VK_FENCE_CREATE_SIGNALED_BIT);
-
                 for(int i = 0; i < size; ++i) {
-                    LongBuffer pFence = stack.mallocLong(size);
-                    vkCreateFence(Vulkan.getDevice(), fenceInfo, null, pFence);
-
-                    CommandBuffer commandBuffer = new CommandBuffer(new VkCommandBuffer(pCommandBuffer.get(i), Vulkan.getDevice()), pFence.get(0));
-                    commandBuffer.handle = new VkCommandBuffer(pCommandBuffer.get(i), Vulkan.getDevice());
+                    CommandBuffer commandBuffer = new CommandBuffer(new VkCommandBuffer(pCommandBuffer.get(i), Vulkan.getDevice()));
                     commandBuffers.add(commandBuffer);
                     availableCmdBuffers.add(commandBuffer);
                 }
@@ -75,6 +75,8 @@ public class CommandPool {
             }
 
             CommandBuffer commandBuffer = availableCmdBuffers.poll();
+            commandBuffer.submitValue = 0;
+            commandBuffer.recording = true;
 
             VkCommandBufferBeginInfo beginInfo = VkCommandBufferBeginInfo.calloc(stack);
             beginInfo.sType(VK_STRUCTURE_TYPE_COMMAND_BUFFER_BEGIN_INFO);
@@ -82,60 +84,83 @@ public class CommandPool {
 
             vkBeginCommandBuffer(commandBuffer.handle, beginInfo);
 
-//            current++;
-
             return commandBuffer;
         }
     }
 
-    public long submitCommands(CommandBuffer commandBuffer, VkQueue queue) {
+    //Returns the timeline value the submission signals
+    public synchronized long submitCommands(CommandBuffer commandBuffer, VkQueue queue) {
 
         try(MemoryStack stack = stackPush()) {
-            long fence = commandBuffer.fence;
-
             vkEndCommandBuffer(commandBuffer.handle);
 
-            vkResetFences(Vulkan.getDevice(), commandBuffer.fence);
+            long value = this.timeline.nextValue();
+
+            VkTimelineSemaphoreSubmitInfo timelineInfo = VkTimelineSemaphoreSubmitInfo.calloc(stack);
+            timelineInfo.sType$Default();
+            timelineInfo.signalSemaphoreValueCount(1);
+            timelineInfo.pSignalSemaphoreValues(stack.longs(value));
 
             VkSubmitInfo submitInfo = VkSubmitInfo.calloc(stack);
             submitInfo.sType(VK_STRUCTURE_TYPE_SUBMIT_INFO);
+            submitInfo.pNext(timelineInfo);
             submitInfo.pCommandBuffers(stack.pointers(commandBuffer.handle));
+            submitInfo.pSignalSemaphores(stack.longs(this.timeline.getId()));
+
+            int result = vkQueueSubmit(queue, submitInfo, VK_NULL_HANDLE);
+            if(result != VK_SUCCESS) {
+                throw new RuntimeException("Failed to submit command buffer: " + result);
+            }
 
-            vkQueueSubmit(queue, submitInfo, fence);
+            commandBuffer.submitValue = value;
+            commandBuffer.recording = false;
+            commandBuffer.submitted = true;
 
-            return fence;
+            return value;
         }
     }
 
-    public void addToAvailable(CommandBuffer commandBuffer) {
-        this.availableCmdBuffers.add(commandBuffer);
+    public synchronized void release(CommandBuffer commandBuffer) {
+        this.releasedCmdBuffers.add(commandBuffer.submitValue, commandBuffer);
+    }
+
+    public TimelineSemaphore getTimeline() {
+        return this.timeline;
     }
 
     public void cleanUp() {
-        for(CommandBuffer commandBuffer : commandBuffers) {
-            vkDestroyFence(Vulkan.getDevice(), commandBuffer.fence, null);
-        }
         vkResetCommandPool(Vulkan.getDevice(), id, VK_COMMAND_POOL_RESET_RELEASE_RESOURCES_BIT);
         vkDestroyCommandPool(Vulkan.getDevice(), id, null);
     }
 
     public class CommandBuffer {
         VkCommandBuffer handle;
-        long fence;
+        long submitValue;
         boolean submitted;
         boolean recording;
 
-        public CommandBuffer(VkCommandBuffer handle, long fence) {
+        public CommandBuffer(VkCommandBuffer handle) {
             this.handle = handle;
-            this.fence = fence;
         }
 
         public VkCommandBuffer getHandle() {
             return handle;
         }
 
-        public long getFence() {
-            return fence;
+        public long getSubmitValue() {
+            return submitValue;
+        }
+
+        public TimelineSemaphore getTimeline() {
+            return timeline;
+        }
+
+        public boolean isComplete() {
+            return timeline.isComplete(submitValue);
+        }
+
+        public void waitCompletion() {
+            timeline.waitValue(submitValue);
         }
 
         public boolean isSubmitted() {
@@ -146,10 +171,11 @@ public class CommandPool {
             return recording;
         }
 
+        //The buffer is reused once the GPU is done with it, callers don't need to wait before releasing
         public void reset() {
             this.submitted = false;
             this.recording = false;
-            addToAvailable(this);
+            release(this);
         }
     }
 }
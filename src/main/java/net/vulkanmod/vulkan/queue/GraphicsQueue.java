@@ -23,7 +23,7 @@ public class GraphicsQueue extends Queue {
     }
 
     public void endRecordingAndSubmit() {
-        long fence = submitCommands(currentCmdBuffer);
+        submitCommands(currentCmdBuffer);
         Synchronization.INSTANCE.addCommandBuffer(currentCmdBuffer);
 
         currentCmdBuffer = null;
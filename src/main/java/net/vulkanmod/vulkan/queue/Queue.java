@@ -18,6 +18,7 @@ public abstract class Queue {
 
     private static QueueFamilyIndices queueFamilyIndices;
     protected CommandPool commandPool;
+    protected TimelineSemaphore timeline;
 
     private final VkQueue queue;
 
@@ -34,8 +35,10 @@ public abstract class Queue {
         vkGetDeviceQueue(DeviceManager.device, familyIndex, 0, pQueue);
         this.queue = new VkQueue(pQueue.get(0), DeviceManager.device);
 
-        if(initCommandPool)
-            this.commandPool = new CommandPool(familyIndex);
+        if(initCommandPool) {
+            this.timeline = new TimelineSemaphore();
+            this.commandPool = new CommandPool(familyIndex, this.timeline);
+        }
     }
 
     public synchronized long submitCommands(CommandPool.CommandBuffer commandBuffer) {
@@ -44,9 +47,13 @@ public abstract class Queue {
 
     public VkQueue queue() { return this.queue; }
 
+    public TimelineSemaphore getTimeline() { return this.timeline; }
+
     public void cleanUp() {
-        if(commandPool != null)
+        if(commandPool != null) {
             commandPool.cleanUp();
+            timeline.cleanUp();
+        }
     }
 
     public void waitIdle() {
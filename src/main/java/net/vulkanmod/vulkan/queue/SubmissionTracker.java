@@ -0,0 +1,83 @@
+package net.vulkanmod.vulkan.queue;
+
+import java.util.function.Consumer;
+
+//Objects waiting for a timeline value, ordered by value, an entry retires once the timeline reached its value.
+//Entries are mostly added in increasing order, one released late (e.g. held by a readback) is inserted before
+//higher values so it does not wait behind them
+public class SubmissionTracker<T> {
+    private final Timeline timeline;
+
+    private long[] values = new long[16];
+    private Object[] items = new Object[16];
+    private int head, size;
+
+    public SubmissionTracker(Timeline timeline) {
+        this.timeline = timeline;
+    }
+
+    public void add(long value, T item) {
+        if(this.size == this.values.length)
+            grow();
+
+        int mask = this.values.length - 1;
+        int i = this.size;
+
+        //Shifts higher values towards the tail, usually none
+        while(i > 0) {
+            int prev = (this.head + i - 1) & mask;
+            if(this.values[prev] <= value)
+                break;
+
+            int idx = (this.head + i) & mask;
+            this.values[idx] = this.values[prev];
+            this.items[idx] = this.items[prev];
+            i--;
+        }
+
+        int idx = (this.head + i) & mask;
+        this.values[idx] = value;
+        this.items[idx] = item;
+        this.size++;
+    }
+
+    //Passes every retired entry to the consumer, the timeline is queried at most once
+    public void retire(Consumer<T> consumer) {
+        if(this.size == 0)
+            return;
+
+        long completed = this.timeline.getCompletedValue();
+        while(this.size > 0 && this.values[this.head] <= completed) {
+            consumer.accept(poll());
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T poll() {
+        T item = (T) this.items[this.head];
+        this.items[this.head] = null;
+        this.head = (this.head + 1) & (this.values.length - 1);
+        this.size--;
+        return item;
+    }
+
+    private void grow() {
+        int capacity = this.values.length;
+        long[] values = new long[capacity * 2];
+        Object[] items = new Object[capacity * 2];
+
+        for(int i = 0; i < this.size; ++i) {
+            int idx = (this.head + i) & (capacity - 1);
+            values[i] = this.values[idx];
+            items[i] = this.items[idx];
+        }
+
+        this.values = values;
+        this.items = items;
+        this.head = 0;
+    }
+}
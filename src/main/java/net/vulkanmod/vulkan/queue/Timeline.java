@@ -0,0 +1,14 @@
+package net.vulkanmod.vulkan.queue;
+
+//Progress of a queue as a single increasing counter, each submission signals the next value.
+//Kept apart from the Vulkan semaphore so the retire bookkeeping can run against any clock
+public interface Timeline {
+
+    long getCompletedValue();
+
+    void waitValue(long value);
+
+    default boolean isComplete(long value) {
+        return value <= this.getCompletedValue();
+    }
+}
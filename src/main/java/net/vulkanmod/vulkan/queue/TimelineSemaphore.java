@@ -0,0 +1,93 @@
+package net.vulkanmod.vulkan.queue;
+
+import net.vulkanmod.vulkan.Vulkan;
+import net.vulkanmod.vulkan.util.VUtil;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.VkSemaphoreCreateInfo;
+import org.lwjgl.vulkan.VkSemaphoreTypeCreateInfo;
+import org.lwjgl.vulkan.VkSemaphoreWaitInfo;
+
+import java.nio.LongBuffer;
+
+import static org.lwjgl.system.MemoryStack.stackPush;
+import static org.lwjgl.vulkan.VK10.*;
+import static org.lwjgl.vulkan.VK12.*;
+
+public class TimelineSemaphore implements Timeline {
+    private final long id;
+
+    private long submittedValue;
+    //Last value read from the device, avoids a query when a value is already known to be complete
+    private long completedValue;
+
+    public TimelineSemaphore() {
+        try(MemoryStack stack = stackPush()) {
+            VkSemaphoreTypeCreateInfo typeInfo = VkSemaphoreTypeCreateInfo.calloc(stack);
+            typeInfo.sType$Default();
+            typeInfo.semaphoreType(VK_SEMAPHORE_TYPE_TIMELINE);
+            typeInfo.initialValue(0);
+
+            VkSemaphoreCreateInfo createInfo = VkSemaphoreCreateInfo.calloc(stack);
+            createInfo.sType$Default();
+            createInfo.pNext(typeInfo);
+
+            LongBuffer pSemaphore = stack.mallocLong(1);
+
+            if(vkCreateSemaphore(Vulkan.getDevice(), createInfo, null, pSemaphore) != VK_SUCCESS) {
+                throw new RuntimeException("Failed to create timeline semaphore");
+            }
+
+            this.id = pSemaphore.get(0);
+        }
+    }
+
+    public long nextValue() {
+        return ++this.submittedValue;
+    }
+
+    public long getSubmittedValue() {
+        return this.submittedValue;
+    }
+
+    @Override
+    public boolean isComplete(long value) {
+        return value <= this.completedValue || value <= this.getCompletedValue();
+    }
+
+    @Override
+    public long getCompletedValue() {
+        try(MemoryStack stack = stackPush()) {
+            LongBuffer pValue = stack.mallocLong(1);
+            vkGetSemaphoreCounterValue(Vulkan.getDevice(), this.id, pValue);
+
+            this.completedValue = Math.max(this.completedValue, pValue.get(0));
+            return this.completedValue;
+        }
+    }
+
+    @Override
+    public void waitValue(long value) {
+        if(value <= this.completedValue)
+            return;
+
+        try(MemoryStack stack = stackPush()) {
+            VkSemaphoreWaitInfo waitInfo = VkSemaphoreWaitInfo.calloc(stack);
+            waitInfo.sType$Default();
+            waitInfo.semaphoreCount(1);
+            waitInfo.pSemaphores(stack.longs(this.id));
+            waitInfo.pValues(stack.longs(value));
+
+            vkWaitSemaphores(Vulkan.getDevice(), waitInfo, VUtil.UINT64_MAX);
+        }
+
+        this.completedValue = Math.max(this.completedValue, value);
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    public void cleanUp() {
+        vkDestroySemaphore(Vulkan.getDevice(), this.id, null);
+    }
+}
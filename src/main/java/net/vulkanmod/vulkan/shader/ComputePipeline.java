@@ -0,0 +1,215 @@
+package net.vulkanmod.vulkan.shader;
+
+import net.vulkanmod.vulkan.DeviceManager;
+import net.vulkanmod.vulkan.shader.SPIRVUtils.SPIRV;
+import net.vulkanmod.vulkan.shader.SPIRVUtils.ShaderKind;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.vulkan.*;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.system.MemoryStack.stackPush;
+import static org.lwjgl.vulkan.VK10.*;
+
+//Compute pipeline whose bindings are all storage buffers, one descriptor set per frame
+public class ComputePipeline extends Pipeline {
+
+    private final int bindings;
+    private final int pushConstantsSize;
+    private final long shaderModule;
+    private final long pipeline;
+
+    private long descriptorPool;
+    private long[] sets;
+    private long[][] setBuffers;
+
+    public ComputePipeline(String path, int bindings, int pushConstantsSize, int frames) {
+        super(path);
+        this.bindings = bindings;
+        this.pushConstantsSize = pushConstantsSize;
+
+        String resourcePath = SPIRVUtils.class.getResource("/assets/vulkanmod/shaders/").toExternalForm();
+        SPIRV spirv = SPIRVUtils.compileShaderAbsoluteFile(String.format("%s%s.comp", resourcePath, path), ShaderKind.COMPUTE_SHADER);
+        if(spirv == null)
+            throw new RuntimeException("Failed to load compute shader: " + path);
+
+        this.shaderModule = createShaderModule(spirv.bytecode());
+
+        this.createStorageSetLayout();
+        this.createComputePipelineLayout();
+        this.pipeline = this.createPipeline();
+
+        this.createStorageSets(frames);
+    }
+
+    private void createStorageSetLayout() {
+        try(MemoryStack stack = stackPush()) {
+            VkDescriptorSetLayoutBinding.Buffer layoutBindings = VkDescriptorSetLayoutBinding.calloc(this.bindings, stack);
+
+            for(int i = 0; i < this.bindings; ++i) {
+                VkDescriptorSetLayoutBinding binding = layoutBindings.get(i);
+                binding.binding(i);
+                binding.descriptorCount(1);
+                binding.descriptorType(VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+                binding.stageFlags(VK_SHADER_STAGE_COMPUTE_BIT);
+            }
+
+            VkDescriptorSetLayoutCreateInfo layoutInfo = VkDescriptorSetLayoutCreateInfo.calloc(stack);
+            layoutInfo.sType$Default();
+            layoutInfo.pBindings(layoutBindings);
+
+            LongBuffer pDescriptorSetLayout = stack.mallocLong(1);
+
+            if(vkCreateDescriptorSetLayout(DeviceManager.device, layoutInfo, null, pDescriptorSetLayout) != VK_SUCCESS) {
+                throw new RuntimeException("Failed to create descriptor set layout" + this.name);
+            }
+
+            this.descriptorSetLayout = pDescriptorSetLayout.get(0);
+        }
+    }
+
+    private void createComputePipelineLayout() {
+        try(MemoryStack stack = stackPush()) {
+            VkPipelineLayoutCreateInfo pipelineLayoutInfo = VkPipelineLayoutCreateInfo.calloc(stack);
+            pipelineLayoutInfo.sType$Default();
+            pipelineLayoutInfo.pSetLayouts(stack.longs(this.descriptorSetLayout));
+
+            if(this.pushConstantsSize > 0) {
+                VkPushConstantRange.Buffer pushConstantRange = VkPushConstantRange.calloc(1, stack);
+                pushConstantRange.size(this.pushConstantsSize);
+                pushConstantRange.offset(0);
+                pushConstantRange.stageFlags(VK_SHADER_STAGE_COMPUTE_BIT);
+
+                pipelineLayoutInfo.pPushConstantRanges(pushConstantRange);
+            }
+
+            LongBuffer pPipelineLayout = stack.longs(VK_NULL_HANDLE);
+
+            if(vkCreatePipelineLayout(DeviceManager.device, pipelineLayoutInfo, null, pPipelineLayout) != VK_SUCCESS) {
+                throw new RuntimeException("Failed to create pipeline layout");
+            }
+
+            this.pipelineLayout = pPipelineLayout.get(0);
+        }
+    }
+
+    private long createPipeline() {
+        try(MemoryStack stack = stackPush()) {
+            VkPipelineShaderStageCreateInfo shaderStage = VkPipelineShaderStageCreateInfo.calloc(stack);
+            shaderStage.sType$Default();
+            shaderStage.stage(VK_SHADER_STAGE_COMPUTE_BIT);
+            shaderStage.module(this.shaderModule);
+            shaderStage.pName(stack.UTF8("main"));
+
+            VkComputePipelineCreateInfo.Buffer pipelineInfo = VkComputePipelineCreateInfo.calloc(1, stack);
+            pipelineInfo.sType$Default();
+            pipelineInfo.stage(shaderStage);
+            pipelineInfo.layout(this.pipelineLayout);
+
+            LongBuffer pPipeline = stack.mallocLong(1);
+
+            if(vkCreateComputePipelines(DeviceManager.device, PIPELINE_CACHE, pipelineInfo, null, pPipeline) != VK_SUCCESS) {
+                throw new RuntimeException("Failed to create compute pipeline " + this.name);
+            }
+
+            return pPipeline.get(0);
+        }
+    }
+
+    public void createStorageSets(int frames) {
+        if(this.descriptorPool != VK_NULL_HANDLE)
+            vkDestroyDescriptorPool(DeviceManager.device, this.descriptorPool, null);
+
+        try(MemoryStack stack = stackPush()) {
+            VkDescriptorPoolSize.Buffer poolSizes = VkDescriptorPoolSize.calloc(1, stack);
+            poolSizes.get(0).type(VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+            poolSizes.get(0).descriptorCount(this.bindings * frames);
+
+            VkDescriptorPoolCreateInfo poolInfo = VkDescriptorPoolCreateInfo.calloc(stack);
+            poolInfo.sType$Default();
+            poolInfo.pPoolSizes(poolSizes);
+            poolInfo.maxSets(frames);
+
+            LongBuffer pDescriptorPool = stack.mallocLong(1);
+
+            if(vkCreateDescriptorPool(DeviceManager.device, poolInfo, null, pDescriptorPool) != VK_SUCCESS) {
+                throw new RuntimeException("Failed to create descriptor pool");
+            }
+
+            this.descriptorPool = pDescriptorPool.get(0);
+
+            LongBuffer layouts = stack.mallocLong(frames);
+            for(int i = 0; i < frames; ++i) {
+                layouts.put(i, this.descriptorSetLayout);
+            }
+
+            VkDescriptorSetAllocateInfo allocInfo = VkDescriptorSetAllocateInfo.calloc(stack);
+            allocInfo.sType$Default();
+            allocInfo.descriptorPool(this.descriptorPool);
+            allocInfo.pSetLayouts(layouts);
+
+            LongBuffer pDescriptorSets = stack.mallocLong(frames);
+
+            if(vkAllocateDescriptorSets(DeviceManager.device, allocInfo, pDescriptorSets) != VK_SUCCESS) {
+                throw new RuntimeException("Failed to allocate descriptor sets");
+            }
+
+            this.sets = new long[frames];
+            pDescriptorSets.get(this.sets);
+            this.setBuffers = new long[frames][this.bindings];
+        }
+    }
+
+    //Points a binding of the frame set to the whole buffer, skipped if the set was last written with the same buffer
+    public void setStorageBuffer(int frame, int binding, long buffer) {
+        if(this.setBuffers[frame][binding] == buffer)
+            return;
+
+        try(MemoryStack stack = stackPush()) {
+            long bufferInfo = stack.ncalloc(VkDescriptorBufferInfo.ALIGNOF, 1, VkDescriptorBufferInfo.SIZEOF);
+            VkDescriptorBufferInfo.nbuffer(bufferInfo, buffer);
+            VkDescriptorBufferInfo.nrange(bufferInfo, VK_WHOLE_SIZE);
+
+            long write = stack.ncalloc(VkWriteDescriptorSet.ALIGNOF, 1, VkWriteDescriptorSet.SIZEOF);
+            VkWriteDescriptorSet.nsType(write, VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+            VkWriteDescriptorSet.ndstSet(write, this.sets[frame]);
+            VkWriteDescriptorSet.ndstBinding(write, binding);
+            VkWriteDescriptorSet.ndescriptorType(write, VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+            VkWriteDescriptorSet.ndescriptorCount(write, 1);
+            MemoryUtil.memPutAddress(write + VkWriteDescriptorSet.PBUFFERINFO, bufferInfo);
+
+            nvkUpdateDescriptorSets(DeviceManager.device, 1, write, 0, MemoryUtil.NULL);
+        }
+
+        this.setBuffers[frame][binding] = buffer;
+    }
+
+    //A recreated buffer may get the handle of the freed one back, its bindings have to be written again
+    public void invalidateStorageSet(int frame) {
+        Arrays.fill(this.setBuffers[frame], VK_NULL_HANDLE);
+    }
+
+    public void bind(VkCommandBuffer commandBuffer, int frame) {
+        try(MemoryStack stack = stackPush()) {
+            vkCmdBindPipeline(commandBuffer, VK_PIPELINE_BIND_POINT_COMPUTE, this.pipeline);
+            vkCmdBindDescriptorSets(commandBuffer, VK_PIPELINE_BIND_POINT_COMPUTE, this.pipelineLayout, 0, stack.longs(this.sets[frame]), null);
+        }
+    }
+
+    public void pushConstants(VkCommandBuffer commandBuffer, ByteBuffer data) {
+        vkCmdPushConstants(commandBuffer, this.pipelineLayout, VK_SHADER_STAGE_COMPUTE_BIT, 0, data);
+    }
+
+    @Override
+    public void cleanUp() {
+        vkDestroyShaderModule(DeviceManager.device, this.shaderModule, null);
+        vkDestroyPipeline(DeviceManager.device, this.pipeline, null);
+
+        vkDestroyDescriptorPool(DeviceManager.device, this.descriptorPool, null);
+        vkDestroyDescriptorSetLayout(DeviceManager.device, this.descriptorSetLayout, null);
+        vkDestroyPipelineLayout(DeviceManager.device, this.pipelineLayout, null);
+    }
+}
@@ -5,15 +5,22 @@ import com.mojang.blaze3d.vertex.VertexFormat;
 import com.mojang.blaze3d.vertex.VertexFormatElement;
 import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.vulkanmod.Initializer;
 import net.vulkanmod.interfaces.VertexFormatMixed;
 import net.vulkanmod.vulkan.DeviceManager;
 import net.vulkanmod.vulkan.Renderer;
 import net.vulkanmod.vulkan.Vulkan;
+import net.vulkanmod.vulkan.framebuffer.RenderPass;
+import net.vulkanmod.vulkan.shader.descriptor.UBO;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.vulkan.*;
 
 import java.nio.ByteBuffer;
 import java.nio.LongBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
 
 import static org.lwjgl.system.MemoryStack.stackGet;
 import static org.lwjgl.system.MemoryStack.stackPush;
@@ -21,9 +28,18 @@ import static org.lwjgl.vulkan.VK10.*;
 import static org.lwjgl.vulkan.VK10.vkDestroyPipelineLayout;
 
 public class GraphicsPipeline extends Pipeline {
+    private static final ExecutorService PREWARM_EXECUTOR = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "Pipeline prewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private final Object2LongMap<PipelineState> graphicsPipelines = new Object2LongOpenHashMap<>();
 
+    //States from the pipeline manifest being created on background threads
+    private final Map<PipelineState, CompletableFuture<Long>> pendingPipelines = new ConcurrentHashMap<>();
+    private final Set<RenderPass> prewarmedPasses = new ReferenceOpenHashSet<>();
+
     private final VertexFormat vertexFormat;
 
     private long vertShaderModule = 0;
@@ -41,17 +57,60 @@ public class GraphicsPipeline extends Pipeline {
         createPipelineLayout();
         createShaderModules(builder.vertShaderSPIRV, builder.fragShaderSPIRV);
 
-        if(builder.renderPass != null)
+        if(builder.renderPass != null) {
             graphicsPipelines.computeIfAbsent(PipelineState.DEFAULT,
                     this::createGraphicsPipeline);
 
+            this.prewarmedPasses.add(builder.renderPass);
+            this.prewarm(builder.renderPass);
+        }
+
         createDescriptorSets(Renderer.getFramesNum());
 
         PIPELINES.add(this);
     }
 
     public long getHandle(PipelineState state) {
-        return graphicsPipelines.computeIfAbsent(state, this::createGraphicsPipeline);
+        long handle = graphicsPipelines.getLong(state);
+        if(handle != VK_NULL_HANDLE)
+            return handle;
+
+        return this.createPipeline(state);
+    }
+
+    private long createPipeline(PipelineState state) {
+        long handle = VK_NULL_HANDLE;
+
+        //Wait on the background build of this state if there is one
+        CompletableFuture<Long> pending = this.pendingPipelines.remove(state);
+        if(pending != null) {
+            try {
+                handle = pending.join();
+            } catch (CompletionException e) {
+                Initializer.LOGGER.error("Pipeline prewarm failed for {}", this.name, e);
+            }
+        }
+
+        if(handle == VK_NULL_HANDLE)
+            handle = this.createGraphicsPipeline(state);
+
+        graphicsPipelines.put(state, handle);
+        PipelineManifest.record(this.name, state);
+
+        //First use with this render pass, create the other known states in background
+        if(state.renderPass != null && this.prewarmedPasses.add(state.renderPass))
+            this.prewarm(state.renderPass);
+
+        return handle;
+    }
+
+    private void prewarm(RenderPass renderPass) {
+        for(PipelineState state : PipelineManifest.getStates(this.name, renderPass)) {
+            if(graphicsPipelines.containsKey(state) || this.pendingPipelines.containsKey(state))
+                continue;
+
+            this.pendingPipelines.put(state, CompletableFuture.supplyAsync(() -> this.createGraphicsPipeline(state), PREWARM_EXECUTOR));
+        }
     }
 
     private long createGraphicsPipeline(PipelineState state) {
@@ -343,11 +402,25 @@ public class GraphicsPipeline extends Pipeline {
         return attributeDescriptions.rewind();
     }
 
+    //Background builds use the shader modules and the pipeline cache
+    void waitPendingPipelines() {
+        this.pendingPipelines.forEach((state, pending) -> {
+            try {
+                graphicsPipelines.put(state, (long) pending.join());
+            } catch (CompletionException ignored) {}
+        });
+        this.pendingPipelines.clear();
+    }
+
     public void cleanUp() {
+        this.waitPendingPipelines();
+        this.prewarmedPasses.clear();
+
         vkDestroyShaderModule(DeviceManager.device, vertShaderModule, null);
         vkDestroyShaderModule(DeviceManager.device, fragShaderModule, null);
 
         destroyDescriptorSets();
+        this.buffers.forEach(UBO::free);
 
         graphicsPipelines.forEach((state, pipeline) -> {
             vkDestroyPipeline(DeviceManager.device, pipeline, null);
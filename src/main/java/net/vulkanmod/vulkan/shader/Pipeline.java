@@ -11,6 +11,7 @@ import net.vulkanmod.vulkan.shader.SPIRVUtils.SPIRV;
 import net.vulkanmod.vulkan.shader.SPIRVUtils.ShaderKind;
 import net.vulkanmod.vulkan.memory.MemoryManager;
 import net.vulkanmod.vulkan.memory.UniformBuffers;
+import net.vulkanmod.vulkan.shader.descriptor.DescriptorSetCache;
 import net.vulkanmod.vulkan.shader.descriptor.ImageDescriptor;
 import net.vulkanmod.vulkan.shader.descriptor.ManualUBO;
 import net.vulkanmod.vulkan.shader.layout.AlignedStruct;
@@ -18,6 +19,7 @@ import net.vulkanmod.vulkan.shader.layout.PushConstants;
 import net.vulkanmod.vulkan.shader.descriptor.UBO;
 import net.vulkanmod.vulkan.texture.VTextureSelector;
 import net.vulkanmod.vulkan.texture.VulkanImage;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.apache.commons.lang3.Validate;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
@@ -38,29 +40,32 @@ import static org.lwjgl.vulkan.VK10.*;
 public abstract class Pipeline {
 
     private static final VkDevice DEVICE = Vulkan.getDevice();
-    protected static final long PIPELINE_CACHE = createPipelineCache();
+    protected static final long PIPELINE_CACHE = PipelineCacheFile.createPipelineCache(DEVICE);
     protected static final List<Pipeline> PIPELINES = new LinkedList<>();
 
-    private static long createPipelineCache() {
-        try(MemoryStack stack = stackPush()) {
+    public static void destroyPipelineCache() {
+        PIPELINES.forEach(pipeline -> {
+            if(pipeline instanceof GraphicsPipeline graphicsPipeline)
+                graphicsPipeline.waitPendingPipelines();
+        });
 
-            VkPipelineCacheCreateInfo cacheCreateInfo = VkPipelineCacheCreateInfo.calloc(stack);
-            cacheCreateInfo.sType(VK_STRUCTURE_TYPE_PIPELINE_CACHE_CREATE_INFO);
+        PipelineCacheFile.savePipelineCache(DEVICE, PIPELINE_CACHE);
+        PipelineManifest.save();
+        vkDestroyPipelineCache(DEVICE, PIPELINE_CACHE, null);
+    }
 
-            LongBuffer pPipelineCache = stack.mallocLong(1);
+    //Drops cached descriptor sets referencing a destroyed image view or buffer
+    public static void evictDescriptorSets(long handle) {
+        for(Pipeline pipeline : PIPELINES) {
+            if(pipeline.descriptorSets == null)
+                continue;
 
-            if(vkCreatePipelineCache(DEVICE, cacheCreateInfo, null, pPipelineCache) != VK_SUCCESS) {
-                throw new RuntimeException("Failed to create graphics pipeline");
+            for(DescriptorSets descriptorSets : pipeline.descriptorSets) {
+                descriptorSets.evict(handle);
             }
-
-            return pPipelineCache.get(0);
         }
     }
 
-    public static void destroyPipelineCache() {
-        vkDestroyPipelineCache(DEVICE, PIPELINE_CACHE, null);
-    }
-
     public static void recreateDescriptorSets(int frames) {
         PIPELINES.forEach(pipeline -> {
             pipeline.destroyDescriptorSets();
@@ -175,7 +180,7 @@ public abstract class Pipeline {
 
     public void resetDescriptorPool(int i) {
         if(this.descriptorSets != null)
-                this.descriptorSets[i].resetIdx();
+                this.descriptorSets[i].releaseEvictedSets();
 
     }
 
@@ -217,16 +222,19 @@ public abstract class Pipeline {
 
     protected class DescriptorSets {
         private int poolSize = 10;
-        private long descriptorPool;
+        private final LongArrayList descriptorPools = new LongArrayList();
         private LongBuffer sets;
+        private int setIdx;
         private long uniformBufferId;
         private long currentSet;
-        private int currentIdx = -1;
 
         private final int frame;
         private final ImageDescriptor.State[] boundTextures = new ImageDescriptor.State[imageDescriptors.size()];
         private final IntBuffer dynamicOffsets = MemoryUtil.memAllocInt(buffers.size());
 
+        //Key: uniform buffer id, then image view and sampler of each image descriptor
+        private final DescriptorSetCache cache = new DescriptorSetCache(1 + imageDescriptors.size() * 2);
+
         DescriptorSets(int frame) {
             this.frame = frame;
 
@@ -246,85 +254,100 @@ public abstract class Pipeline {
                 final boolean textureUpdate = this.transitionSamplers(uniformBuffers);
 
                 if(textureUpdate) {
-                    this.updateDescriptorSet(stack, uniformBuffers);
+                    this.selectDescriptorSet(stack, uniformBuffers);
                 }
 
                 if (textureUpdate || pipelineUpdate)
-                    vkCmdBindDescriptorSets(commandBuffer, bindPoint, pipelineLayout,
-                        0, stack.longs(currentSet), dynamicOffsets);
+                    nvkCmdBindDescriptorSets(commandBuffer, bindPoint, pipelineLayout,
+                        0, 1, stack.nlong(currentSet), dynamicOffsets.remaining(), MemoryUtil.memAddress(dynamicOffsets));
 
             }
         }
 
         private void updateUniforms(UniformBuffers uniformBuffers) {
-            int currentOffset = uniformBuffers.getUsedBytes();
             //TODO: Might be possible to replace w/ BaseDeviceAddress + Pointer Arithmetic
-            int i = 0;
-            for(UBO ubo : buffers) {
-//                ubo.update();
-//                uniformBuffers.uploadUBO(ubo.getBuffer(), currentOffset, frame);
-
-                this.dynamicOffsets.put(i, currentOffset);
+            for(int i = 0; i < buffers.size(); ++i) {
+                UBO ubo = buffers.get(i);
 
                 //TODO non mappable memory
+                this.dynamicOffsets.put(i, ubo.upload(uniformBuffers, frame));
+            }
+        }
 
-                int alignedSize = UniformBuffers.getAlignedSize(ubo.getSize());
-                uniformBuffers.checkCapacity(alignedSize);
-                ubo.update(uniformBuffers.getPointer(frame));
+        //UBO offsets are dynamic, a set only depends on the bound handles and is reused across draws and frames
+        private void selectDescriptorSet(MemoryStack stack, UniformBuffers uniformBuffers) {
+            this.uniformBufferId = uniformBuffers.getId(frame);
 
-                uniformBuffers.updateOffset(alignedSize);
+            long[] key = this.cache.getLookupKey();
+            key[0] = this.uniformBufferId;
 
-                currentOffset = uniformBuffers.getUsedBytes();
-                ++i;
+            for(int j = 0; j < imageDescriptors.size(); ++j) {
+                ImageDescriptor imageDescriptor = imageDescriptors.get(j);
+                VulkanImage image = imageDescriptor.getImage();
+                long view = imageDescriptor.getImageView(image);
+                long sampler = image.getSampler();
+
+                key[1 + j * 2] = view;
+                key[2 + j * 2] = imageDescriptor.useSampler ? sampler : 0L;
+
+                this.boundTextures[j].set(view, sampler);
             }
-        }
 
-        private void updateDescriptorSet(MemoryStack stack, UniformBuffers uniformBuffers) {
+            long set = this.cache.get();
 
+            if(set == 0L) {
+                set = this.cache.pollFreeSet();
 
-            this.uniformBufferId = uniformBuffers.getId(frame);
-            this.currentIdx++;
-            if(this.currentIdx >= this.poolSize) {
+                if(set == 0L)
+                    set = this.allocateSet(stack);
+
+                this.updateDescriptorSet(stack, set);
+                this.cache.put(set);
+            }
+
+            this.currentSet = set;
+        }
+
+        private long allocateSet(MemoryStack stack) {
+            if(this.setIdx >= this.poolSize) {
+                //Sets of the previous pools stay cached, the new pool is added next to them
                 this.poolSize *= 2;
 
                 this.createDescriptorPool(stack);
                 this.createDescriptorSets(stack);
-
-                //debug
-//                System.out.println("resized descriptor pool to: " + this.poolSize);
-
-                this.resetIdx();
-                this.updateDescriptorSet(stack, uniformBuffers);
-                return;
             }
 
-            this.currentSet = this.sets.get(this.currentIdx);
+            return this.sets.get(this.setIdx++);
+        }
 
-            VkWriteDescriptorSet.Buffer descriptorWrites = VkWriteDescriptorSet.calloc(buffers.size() + imageDescriptors.size(), stack);
-            VkDescriptorBufferInfo.Buffer[] bufferInfos = new VkDescriptorBufferInfo.Buffer[buffers.size()];
+        private void updateDescriptorSet(MemoryStack stack, long set) {
+            //Raw struct addresses: no struct wrappers are allocated on each update
+            final int writeCount = buffers.size() + imageDescriptors.size();
+            long descriptorWrites = stack.ncalloc(VkWriteDescriptorSet.ALIGNOF, writeCount, VkWriteDescriptorSet.SIZEOF);
+            long bufferInfos = stack.ncalloc(VkDescriptorBufferInfo.ALIGNOF, buffers.size(), VkDescriptorBufferInfo.SIZEOF);
+            long imageInfos = stack.ncalloc(VkDescriptorImageInfo.ALIGNOF, imageDescriptors.size(), VkDescriptorImageInfo.SIZEOF);
 
             //TODO maybe ubo update is not needed everytime
             int i = 0;
-            for(UBO ubo : buffers) {
-
-                bufferInfos[i] = VkDescriptorBufferInfo.calloc(1, stack);
-                bufferInfos[i].buffer(this.uniformBufferId);
-                bufferInfos[i].range(ubo.getSize());
-
-                VkWriteDescriptorSet uboDescriptorWrite = descriptorWrites.get(i);
-                uboDescriptorWrite.sType$Default();
-                uboDescriptorWrite.dstBinding(ubo.getBinding());
-                uboDescriptorWrite.dstArrayElement(0);
-                uboDescriptorWrite.descriptorType(ubo.getType());
-                uboDescriptorWrite.descriptorCount(1);
-                uboDescriptorWrite.pBufferInfo(bufferInfos[i]);
-                uboDescriptorWrite.dstSet(currentSet);
+            for(int j = 0; j < buffers.size(); ++j) {
+                UBO ubo = buffers.get(j);
+
+                long bufferInfo = bufferInfos + (long) j * VkDescriptorBufferInfo.SIZEOF;
+                VkDescriptorBufferInfo.nbuffer(bufferInfo, this.uniformBufferId);
+                VkDescriptorBufferInfo.nrange(bufferInfo, ubo.getSize());
+
+                long uboDescriptorWrite = descriptorWrites + (long) i * VkWriteDescriptorSet.SIZEOF;
+                VkWriteDescriptorSet.nsType(uboDescriptorWrite, VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+                VkWriteDescriptorSet.ndstBinding(uboDescriptorWrite, ubo.getBinding());
+                VkWriteDescriptorSet.ndstArrayElement(uboDescriptorWrite, 0);
+                VkWriteDescriptorSet.ndescriptorType(uboDescriptorWrite, ubo.getType());
+                VkWriteDescriptorSet.ndescriptorCount(uboDescriptorWrite, 1);
+                MemoryUtil.memPutAddress(uboDescriptorWrite + VkWriteDescriptorSet.PBUFFERINFO, bufferInfo);
+                VkWriteDescriptorSet.ndstSet(uboDescriptorWrite, set);
 
                 ++i;
             }
 
-            VkDescriptorImageInfo.Buffer[] imageInfo = new VkDescriptorImageInfo.Buffer[imageDescriptors.size()];
-
             for(int j = 0; j < imageDescriptors.size(); ++j) {
                 ImageDescriptor imageDescriptor = imageDescriptors.get(j);
                 VulkanImage image = imageDescriptor.getImage();
@@ -332,30 +355,26 @@ public abstract class Pipeline {
                 long sampler = image.getSampler();
                 int layout = imageDescriptor.getLayout();
 
-                if(imageDescriptor.isReadOnlyLayout)
-                    image.readOnlyLayout();
-
-                imageInfo[j] = VkDescriptorImageInfo.calloc(1, stack);
-                imageInfo[j].imageLayout(layout);
-                imageInfo[j].imageView(view);
+                long imageInfo = imageInfos + (long) j * VkDescriptorImageInfo.SIZEOF;
+                VkDescriptorImageInfo.nimageLayout(imageInfo, layout);
+                VkDescriptorImageInfo.nimageView(imageInfo, view);
 
                 if(imageDescriptor.useSampler)
-                    imageInfo[j].sampler(sampler);
+                    VkDescriptorImageInfo.nsampler(imageInfo, sampler);
 
-                VkWriteDescriptorSet samplerDescriptorWrite = descriptorWrites.get(i);
-                samplerDescriptorWrite.sType(VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
-                samplerDescriptorWrite.dstBinding(imageDescriptor.getBinding());
-                samplerDescriptorWrite.dstArrayElement(0);
-                samplerDescriptorWrite.descriptorType(imageDescriptor.getType());
-                samplerDescriptorWrite.descriptorCount(1);
-                samplerDescriptorWrite.pImageInfo(imageInfo[j]);
-                samplerDescriptorWrite.dstSet(currentSet);
+                long samplerDescriptorWrite = descriptorWrites + (long) i * VkWriteDescriptorSet.SIZEOF;
+                VkWriteDescriptorSet.nsType(samplerDescriptorWrite, VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+                VkWriteDescriptorSet.ndstBinding(samplerDescriptorWrite, imageDescriptor.getBinding());
+                VkWriteDescriptorSet.ndstArrayElement(samplerDescriptorWrite, 0);
+                VkWriteDescriptorSet.ndescriptorType(samplerDescriptorWrite, imageDescriptor.getType());
+                VkWriteDescriptorSet.ndescriptorCount(samplerDescriptorWrite, 1);
+                MemoryUtil.memPutAddress(samplerDescriptorWrite + VkWriteDescriptorSet.PIMAGEINFO, imageInfo);
+                VkWriteDescriptorSet.ndstSet(samplerDescriptorWrite, set);
 
-                this.boundTextures[j].set(view, sampler);
                 ++i;
             }
 
-            vkUpdateDescriptorSets(DEVICE, descriptorWrites, null);
+            nvkUpdateDescriptorSets(DEVICE, writeCount, descriptorWrites, 0, MemoryUtil.NULL);
         }
 
         private boolean transitionSamplers(UniformBuffers uniformBuffers) {
@@ -369,18 +388,12 @@ public abstract class Pipeline {
                 if(imageDescriptor.isReadOnlyLayout)
                     image.readOnlyLayout();
 
-                if(!this.boundTextures[j].isCurrentState(view, sampler)) {
+                //No early exit, every image still needs its layout transition
+                if(!this.boundTextures[j].isCurrentState(view, sampler))
                     changed = true;
-                    break;
-                }
             }
 
-            if(!changed && this.currentIdx != -1 &&
-                this.uniformBufferId == uniformBuffers.getId(frame)) {
-                this.currentSet = this.sets.get(this.currentIdx);
-                return false;
-            }
-            return true;
+            return changed || this.currentSet == 0L || this.uniformBufferId != uniformBuffers.getId(frame);
         }
 
         private void createDescriptorSets(MemoryStack stack) {
@@ -393,10 +406,14 @@ public abstract class Pipeline {
 
             VkDescriptorSetAllocateInfo allocInfo = VkDescriptorSetAllocateInfo.calloc(stack);
             allocInfo.sType$Default();
-            allocInfo.descriptorPool(descriptorPool);
+            allocInfo.descriptorPool(this.descriptorPools.getLong(this.descriptorPools.size() - 1));
             allocInfo.pSetLayouts(layout);
 
+            if(this.sets != null)
+                MemoryUtil.memFree(this.sets);
+
             this.sets = MemoryUtil.memAllocLong(this.poolSize);
+            this.setIdx = 0;
 
             int result = vkAllocateDescriptorSets(DEVICE, allocInfo, this.sets);
             if (result != VK_SUCCESS) {
@@ -434,21 +451,33 @@ public abstract class Pipeline {
                 throw new RuntimeException("Failed to create descriptor pool");
             }
 
-            if(this.descriptorPool != VK_NULL_HANDLE) {
-                final long oldDescriptorPool = this.descriptorPool;
-                MemoryManager.getInstance().addFrameOp(() -> {
-                    vkDestroyDescriptorPool(DEVICE, oldDescriptorPool, null);
-                });
+            this.descriptorPools.add(pDescriptorPool.get(0));
+        }
+
+        private void evict(long handle) {
+            if(this.cache.evict(handle) > 0) {
+                //The current set may be among the evicted ones, force a lookup on the next bind
+                this.currentSet = 0L;
             }
+        }
 
-            this.descriptorPool = pDescriptorPool.get(0);
+        //Called when the frame is reused, sets evicted since can no longer be in use
+        public void releaseEvictedSets() {
+            this.cache.release();
         }
 
-        public void resetIdx() { this.currentIdx = -1; }
+        public DescriptorSetCache getCache() {
+            return this.cache;
+        }
 
         private void cleanUp() {
-            vkResetDescriptorPool(DEVICE, descriptorPool, 0);
-            vkDestroyDescriptorPool(DEVICE, descriptorPool, null);
+            for(long descriptorPool : this.descriptorPools) {
+                vkDestroyDescriptorPool(DEVICE, descriptorPool, null);
+            }
+            this.descriptorPools.clear();
+
+            MemoryUtil.memFree(this.sets);
+            MemoryUtil.memFree(this.dynamicOffsets);
         }
 
     }
@@ -505,13 +534,15 @@ public abstract class Pipeline {
         public void compileShaders() {
             String resourcePath = SPIRVUtils.class.getResource("/assets/vulkanmod/shaders/").toExternalForm();
 
+            var fragShader = compileShaderAbsoluteFileAsync(String.format("%s%s.fsh", resourcePath, this.shaderPath), ShaderKind.FRAGMENT_SHADER);
             this.vertShaderSPIRV = compileShaderAbsoluteFile(String.format("%s%s.vsh", resourcePath, this.shaderPath), ShaderKind.VERTEX_SHADER);
-            this.fragShaderSPIRV = compileShaderAbsoluteFile(String.format("%s%s.fsh", resourcePath, this.shaderPath), ShaderKind.FRAGMENT_SHADER);
+            this.fragShaderSPIRV = fragShader.join();
         }
 
         public void compileShaders(String name, String vsh, String fsh) {
+            var fragShader = compileShaderAsync(String.format("%s.fsh", name), fsh, ShaderKind.FRAGMENT_SHADER);
             this.vertShaderSPIRV = compileShader(String.format("%s.vsh", name), vsh, ShaderKind.VERTEX_SHADER);
-            this.fragShaderSPIRV = compileShader(String.format("%s.fsh", name), fsh, ShaderKind.FRAGMENT_SHADER);
+            this.fragShaderSPIRV = fragShader.join();
         }
 
         public void parseBindingsJSON() {
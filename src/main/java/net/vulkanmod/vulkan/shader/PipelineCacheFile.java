@@ -0,0 +1,205 @@
+package net.vulkanmod.vulkan.shader;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.vulkanmod.Initializer;
+import net.vulkanmod.vulkan.DeviceManager;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.vulkan.VkDevice;
+import org.lwjgl.vulkan.VkPhysicalDeviceProperties;
+import org.lwjgl.vulkan.VkPipelineCacheCreateInfo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.lwjgl.vulkan.VK10.*;
+
+//Stores VkPipelineCache data between sessions, files from another device, driver or mod version are discarded
+public class PipelineCacheFile {
+    private static final int MAGIC = 0x564B5043; //VKPC
+    private static final int FORMAT_VERSION = 1;
+
+    //Vulkan pipeline cache header: length, version, vendorID, deviceID, pipelineCacheUUID
+    private static final int VK_HEADER_SIZE = 16 + VK_UUID_SIZE;
+
+    public static Path getCacheDir() {
+        return FabricLoader.getInstance().getGameDir().resolve("vulkanmod_cache");
+    }
+
+    private static Path getPath() {
+        return getCacheDir().resolve("pipeline_cache.bin");
+    }
+
+    public static long createPipelineCache(VkDevice device) {
+        long t0 = System.nanoTime();
+        byte[] data = readCacheData();
+
+        try(MemoryStack stack = MemoryStack.stackPush()) {
+            ByteBuffer initialData = data != null ? MemoryUtil.memAlloc(data.length).put(data).flip() : null;
+
+            try {
+                long cache = createCache(device, initialData, stack);
+
+                if(cache == VK_NULL_HANDLE && initialData != null) {
+                    Initializer.LOGGER.warn("Pipeline cache data rejected by the driver, starting with an empty cache");
+                    cache = createCache(device, null, stack);
+                }
+
+                if(cache == VK_NULL_HANDLE)
+                    throw new RuntimeException("Failed to create pipeline cache");
+
+                if(data != null)
+                    Initializer.LOGGER.info("Loaded pipeline cache ({} KB) in {} ms", data.length >> 10, (System.nanoTime() - t0) / 1000000);
+
+                return cache;
+            } finally {
+                if(initialData != null)
+                    MemoryUtil.memFree(initialData);
+            }
+        }
+    }
+
+    private static long createCache(VkDevice device, ByteBuffer initialData, MemoryStack stack) {
+        VkPipelineCacheCreateInfo cacheCreateInfo = VkPipelineCacheCreateInfo.calloc(stack);
+        cacheCreateInfo.sType(VK_STRUCTURE_TYPE_PIPELINE_CACHE_CREATE_INFO);
+        cacheCreateInfo.pInitialData(initialData);
+
+        LongBuffer pPipelineCache = stack.mallocLong(1);
+
+        if(vkCreatePipelineCache(device, cacheCreateInfo, null, pPipelineCache) != VK_SUCCESS)
+            return VK_NULL_HANDLE;
+
+        return pPipelineCache.get(0);
+    }
+
+    public static void savePipelineCache(VkDevice device, long pipelineCache) {
+        long t0 = System.nanoTime();
+
+        try(MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer pSize = stack.mallocPointer(1);
+            if(vkGetPipelineCacheData(device, pipelineCache, pSize, null) != VK_SUCCESS || pSize.get(0) == 0)
+                return;
+
+            ByteBuffer buffer = MemoryUtil.memAlloc((int) pSize.get(0));
+            try {
+                if(vkGetPipelineCacheData(device, pipelineCache, pSize, buffer) != VK_SUCCESS)
+                    return;
+
+                byte[] data = new byte[(int) pSize.get(0)];
+                buffer.get(0, data);
+
+                writeCacheData(data);
+            } finally {
+                MemoryUtil.memFree(buffer);
+            }
+
+            Initializer.LOGGER.info("Saved pipeline cache ({} KB) in {} ms", pSize.get(0) >> 10, (System.nanoTime() - t0) / 1000000);
+        } catch (IOException e) {
+            Initializer.LOGGER.error("Failed to save pipeline cache", e);
+        }
+    }
+
+    private static byte[] readCacheData() {
+        Path path = getPath();
+        if(!Files.exists(path))
+            return null;
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+                return reject("unknown format");
+
+            byte[] uuid = new byte[VK_UUID_SIZE];
+            in.readFully(uuid);
+            int driverVersion = in.readInt();
+            String modVersion = in.readUTF();
+
+            VkPhysicalDeviceProperties properties = DeviceManager.deviceInfo.getProperties();
+            if(!Arrays.equals(uuid, getUUID(properties)) || driverVersion != properties.driverVersion())
+                return reject("device or driver changed");
+
+            if(!modVersion.equals(getModVersion()))
+                return reject("mod version changed");
+
+            int length = in.readInt();
+            long checksum = in.readLong();
+            //magic, format, uuid, driver, mod version (2 bytes length + UTF), data length and checksum
+            long headerSize = 4 + 4 + VK_UUID_SIZE + 4 + 2 + modVersion.getBytes(StandardCharsets.UTF_8).length + 4 + 8;
+            if(length < VK_HEADER_SIZE || length > Files.size(path) - headerSize)
+                return reject("invalid length");
+
+            byte[] data = new byte[length];
+            in.readFully(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if(crc.getValue() != checksum)
+                return reject("checksum mismatch");
+
+            if(!checkVkHeader(data, properties))
+                return reject("header mismatch");
+
+            return data;
+        } catch (IOException e) {
+            return reject(e.toString());
+        }
+    }
+
+    private static void writeCacheData(byte[] data) throws IOException {
+        Path path = getPath();
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        VkPhysicalDeviceProperties properties = DeviceManager.deviceInfo.getProperties();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.write(getUUID(properties));
+            out.writeInt(properties.driverVersion());
+            out.writeUTF(getModVersion());
+            out.writeInt(data.length);
+            out.writeLong(crc.getValue());
+            out.write(data);
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static boolean checkVkHeader(byte[] data, VkPhysicalDeviceProperties properties) {
+        ByteBuffer header = ByteBuffer.wrap(data).order(ByteOrder.nativeOrder());
+
+        if(header.getInt(0) != VK_HEADER_SIZE || header.getInt(4) != VK_PIPELINE_CACHE_HEADER_VERSION_ONE)
+            return false;
+        if(header.getInt(8) != properties.vendorID() || header.getInt(12) != properties.deviceID())
+            return false;
+
+        return Arrays.equals(Arrays.copyOfRange(data, 16, VK_HEADER_SIZE), getUUID(properties));
+    }
+
+    private static byte[] getUUID(VkPhysicalDeviceProperties properties) {
+        byte[] uuid = new byte[VK_UUID_SIZE];
+        properties.pipelineCacheUUID().get(0, uuid);
+        return uuid;
+    }
+
+    private static String getModVersion() {
+        String version = Initializer.getVersion();
+        return version != null ? version : "";
+    }
+
+    private static byte[] reject(String reason) {
+        Initializer.LOGGER.warn("Discarding pipeline cache: {}", reason);
+        return null;
+    }
+}
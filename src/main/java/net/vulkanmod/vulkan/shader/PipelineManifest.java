@@ -0,0 +1,143 @@
+package net.vulkanmod.vulkan.shader;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.vulkanmod.Initializer;
+import net.vulkanmod.vulkan.framebuffer.RenderPass;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+//PipelineStates used by each pipeline, saved at shutdown and used to pre-create pipelines on the next launch
+public class PipelineManifest {
+    private static final Gson GSON = new Gson();
+    private static final Type TYPE = new TypeToken<Manifest>() {}.getType();
+
+    //Entry layout: render pass formats key, cull state, blend state, depth state, logic op state, color mask
+    private static final int ENTRY_SIZE = 6;
+
+    private static Map<String, LongArrayList> entries;
+    private static boolean changed;
+
+    private static Path getPath() {
+        return PipelineCacheFile.getCacheDir().resolve("pipeline_manifest.json");
+    }
+
+    public static synchronized void record(String pipeline, PipelineState state) {
+        if(pipeline == null || state.renderPass == null)
+            return;
+
+        load();
+
+        long[] entry = encode(state);
+        LongArrayList list = entries.computeIfAbsent(pipeline, k -> new LongArrayList());
+
+        for(int i = 0; i < list.size(); i += ENTRY_SIZE) {
+            if(matches(list, i, entry))
+                return;
+        }
+
+        list.addElements(list.size(), entry);
+        changed = true;
+    }
+
+    //Known states of a pipeline that are compatible with the given render pass
+    public static synchronized List<PipelineState> getStates(String pipeline, RenderPass renderPass) {
+        if(pipeline == null)
+            return Collections.emptyList();
+
+        load();
+
+        LongArrayList list = entries.get(pipeline);
+        if(list == null)
+            return Collections.emptyList();
+
+        long formatsKey = renderPass.getFormatsKey();
+        List<PipelineState> states = new ArrayList<>();
+
+        for(int i = 0; i < list.size(); i += ENTRY_SIZE) {
+            if(list.getLong(i) != formatsKey)
+                continue;
+
+            states.add(new PipelineState(list.getLong(i + 1) != 0, (int) list.getLong(i + 2), (int) list.getLong(i + 3),
+                    (int) list.getLong(i + 4), (int) list.getLong(i + 5), renderPass));
+        }
+
+        return states;
+    }
+
+    public static synchronized void save() {
+        if(!changed)
+            return;
+
+        Manifest manifest = new Manifest();
+        manifest.version = Initializer.getVersion();
+        manifest.pipelines = new HashMap<>();
+        entries.forEach((name, list) -> manifest.pipelines.put(name, list.toLongArray()));
+
+        try {
+            Path path = getPath();
+            Files.createDirectories(path.getParent());
+
+            try(Writer writer = Files.newBufferedWriter(path)) {
+                GSON.toJson(manifest, TYPE, writer);
+            }
+
+            changed = false;
+        } catch (IOException e) {
+            Initializer.LOGGER.error("Failed to save pipeline manifest", e);
+        }
+    }
+
+    private static void load() {
+        if(entries != null)
+            return;
+
+        entries = new HashMap<>();
+
+        Path path = getPath();
+        if(!Files.exists(path))
+            return;
+
+        try(Reader reader = Files.newBufferedReader(path)) {
+            Manifest manifest = GSON.fromJson(reader, TYPE);
+
+            //State encodings may change between versions
+            if(manifest == null || manifest.pipelines == null || !Objects.equals(manifest.version, Initializer.getVersion()))
+                return;
+
+            manifest.pipelines.forEach((name, values) -> {
+                if(values != null && values.length % ENTRY_SIZE == 0)
+                    entries.put(name, new LongArrayList(values));
+            });
+        } catch (Exception e) {
+            Initializer.LOGGER.warn("Discarding pipeline manifest: {}", e.toString());
+        }
+    }
+
+    private static long[] encode(PipelineState state) {
+        return new long[] {
+                state.renderPass.getFormatsKey(), state.cullState ? 1 : 0,
+                state.blendState_i, state.depthState_i, state.logicOp_i, state.colorMask_i
+        };
+    }
+
+    private static boolean matches(LongArrayList list, int i, long[] entry) {
+        for(int j = 0; j < ENTRY_SIZE; ++j) {
+            if(list.getLong(i + j) != entry[j])
+                return false;
+        }
+        return true;
+    }
+
+    private static class Manifest {
+        String version;
+        Map<String, long[]> pipelines;
+    }
+}
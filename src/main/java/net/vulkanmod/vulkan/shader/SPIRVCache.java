@@ -0,0 +1,143 @@
+package net.vulkanmod.vulkan.shader;
+
+import net.vulkanmod.Initializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+//Disk cache of compiled SPIR-V blobs, evicts least recently used entries above the size cap
+class SPIRVCache {
+    private static final int SPIRV_MAGIC = 0x07230203;
+    private static final String EXTENSION = ".spv";
+
+    private final Path dir;
+    private final long maxSize;
+
+    //Key -> file size, in access order
+    private LinkedHashMap<String, Long> entries;
+    private long size;
+
+    SPIRVCache(Path dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    synchronized byte[] get(String key) {
+        this.loadIndex();
+
+        if(this.entries.get(key) == null)
+            return null;
+
+        Path path = this.dir.resolve(key + EXTENSION);
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+
+            if(!isValid(bytes)) {
+                Initializer.LOGGER.warn("Discarding invalid cached SPIR-V {}", key);
+                this.remove(key);
+                return null;
+            }
+
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return bytes;
+        } catch (IOException e) {
+            this.remove(key);
+            return null;
+        }
+    }
+
+    synchronized void put(String key, ByteBuffer bytecode) {
+        this.loadIndex();
+
+        byte[] bytes = new byte[bytecode.remaining()];
+        bytecode.get(bytecode.position(), bytes);
+
+        try {
+            Files.createDirectories(this.dir);
+
+            Path path = this.dir.resolve(key + EXTENSION);
+            Path tmp = this.dir.resolve(key + ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Initializer.LOGGER.error("Failed to write cached SPIR-V", e);
+            return;
+        }
+
+        Long old = this.entries.put(key, (long) bytes.length);
+        this.size += bytes.length - (old != null ? old : 0);
+
+        this.evict();
+    }
+
+    private void evict() {
+        var iterator = this.entries.entrySet().iterator();
+
+        while(this.size > this.maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            iterator.remove();
+            this.size -= entry.getValue();
+
+            try {
+                Files.deleteIfExists(this.dir.resolve(entry.getKey() + EXTENSION));
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void remove(String key) {
+        Long fileSize = this.entries.remove(key);
+        if(fileSize != null)
+            this.size -= fileSize;
+
+        try {
+            Files.deleteIfExists(this.dir.resolve(key + EXTENSION));
+        } catch (IOException ignored) {}
+    }
+
+    //Files are indexed on first use, oldest access first
+    private void loadIndex() {
+        if(this.entries != null)
+            return;
+
+        this.entries = new LinkedHashMap<>(64, 0.75f, true);
+
+        if(!Files.isDirectory(this.dir))
+            return;
+
+        try(Stream<Path> files = Files.list(this.dir)) {
+            files.filter(path -> path.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparingLong(SPIRVCache::getLastModified))
+                    .forEach(path -> {
+                        String name = path.getFileName().toString();
+                        long fileSize = path.toFile().length();
+
+                        this.entries.put(name.substring(0, name.length() - EXTENSION.length()), fileSize);
+                        this.size += fileSize;
+                    });
+        } catch (IOException e) {
+            Initializer.LOGGER.error("Failed to index SPIR-V cache", e);
+        }
+
+        this.evict();
+    }
+
+    private static long getLastModified(Path path) {
+        return path.toFile().lastModified();
+    }
+
+    private static boolean isValid(byte[] bytes) {
+        if(bytes.length < 20 || (bytes.length & 3) != 0)
+            return false;
+
+        return ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder()).getInt(0) == SPIRV_MAGIC;
+    }
+}
@@ -1,6 +1,7 @@
 package net.vulkanmod.vulkan.shader;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.lwjgl.Version;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.system.NativeResource;
@@ -15,9 +16,21 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.lwjgl.system.MemoryUtil.NULL;
 import static org.lwjgl.system.MemoryUtil.memASCII;
@@ -27,6 +40,19 @@ public class SPIRVUtils {
     private static final boolean DEBUG = false;
     private static final boolean OPTIMIZATIONS = true;
 
+    //Bump to invalidate cached SPIR-V when compile options change
+    private static final int CACHE_VERSION = 1;
+    private static final SPIRVCache CACHE = new SPIRVCache(PipelineCacheFile.getCacheDir().resolve("spirv"), 32L * 1024 * 1024);
+    private static final Pattern INCLUDE_PATTERN = Pattern.compile("^\\s*#\\s*include\\s*[<\"]([^>\"]+)[>\"]", Pattern.MULTILINE);
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "SPIR-V compiler");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     private static long compiler;
     private static long options;
 
@@ -37,7 +63,7 @@ public class SPIRVUtils {
 
     private static ObjectArrayList<String> includePaths;
 
-    private static float time = 0.0f;
+    private static final AtomicLong time = new AtomicLong();
 
     static {
         initCompiler();
@@ -86,7 +112,26 @@ public class SPIRVUtils {
         return null;
     }
 
+    public static CompletableFuture<SPIRV> compileShaderAbsoluteFileAsync(String shaderFile, ShaderKind shaderKind) {
+        return CompletableFuture.supplyAsync(() -> compileShaderAbsoluteFile(shaderFile, shaderKind), EXECUTOR);
+    }
+
+    public static CompletableFuture<SPIRV> compileShaderAsync(String filename, String source, ShaderKind shaderKind) {
+        return CompletableFuture.supplyAsync(() -> compileShader(filename, source, shaderKind), EXECUTOR);
+    }
+
     public static SPIRV compileShader(String filename, String source, ShaderKind shaderKind) {
+        String key = getCacheKey(filename, source, shaderKind);
+
+        byte[] cached = key != null ? CACHE.get(key) : null;
+        if(cached != null) {
+            ByteBuffer buffer = MemoryUtil.memAlloc(cached.length);
+            buffer.put(cached);
+            buffer.position(0);
+
+            return new SPIRV(MemoryUtil.memAddress(buffer), buffer);
+        }
+
         long startTime = System.nanoTime();
 
         long result = shaderc_compile_into_spv(compiler, source, shaderKind.kind, filename, "main", options);
@@ -99,9 +144,70 @@ public class SPIRVUtils {
             throw new RuntimeException("Failed to compile shader " + filename + " into SPIR-V:\n" + shaderc_result_get_error_message(result));
         }
 
-        time += (System.nanoTime() - startTime) / 1000000.0f;
+        time.addAndGet(System.nanoTime() - startTime);
+
+        ByteBuffer bytecode = shaderc_result_get_bytes(result);
+        if(key != null)
+            CACHE.put(key, bytecode);
+
+        return new SPIRV(result, bytecode);
+    }
+
+    //Hash of everything affecting the output: options, shader kind, source and included files
+    private static String getCacheKey(String filename, String source, ShaderKind shaderKind) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update(String.format("%d;%s;%b;%b;%s;", CACHE_VERSION, Version.getVersion(), OPTIMIZATIONS, DEBUG, shaderKind.name())
+                    .getBytes(StandardCharsets.UTF_8));
+            //Source names end up in debug info
+            if(DEBUG)
+                digest.update(filename.getBytes(StandardCharsets.UTF_8));
+
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+
+            if(!hashIncludes(digest, source, new HashSet<>()))
+                return null;
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static boolean hashIncludes(MessageDigest digest, String source, Set<String> visited) {
+        Matcher matcher = INCLUDE_PATTERN.matcher(source);
+
+        while(matcher.find()) {
+            String requested = matcher.group(1);
+            if(!visited.add(requested))
+                continue;
+
+            String include = readInclude(requested);
+            if(include == null)
+                return false;
+
+            digest.update(requested.getBytes(StandardCharsets.UTF_8));
+            digest.update(include.getBytes(StandardCharsets.UTF_8));
+
+            if(!hashIncludes(digest, include, visited))
+                return false;
+        }
+
+        return true;
+    }
 
-        return new SPIRV(result, shaderc_result_get_bytes(result));
+    private static String readInclude(String requested) {
+        try {
+            for(String includePath : includePaths) {
+                Path path = Paths.get(new URI(String.format("%s%s", includePath, requested)));
+
+                if(Files.exists(path))
+                    return Files.readString(path);
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException ignored) {}
+
+        return null;
     }
 
     private static SPIRV readFromStream(InputStream inputStream) {
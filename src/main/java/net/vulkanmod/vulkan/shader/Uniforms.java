@@ -47,6 +47,8 @@ public class Uniforms {
         //Vec4
         vec4f_uniformMap.put("ColorModulator", VRenderSystem::getShaderColor);
         vec4f_uniformMap.put("FogColor", VRenderSystem::getShaderFogColor);
+        vec4f_uniformMap.put("CameraSectionPos", VRenderSystem::getCameraSectionPos);
+        vec4f_uniformMap.put("CameraSectionOffset", VRenderSystem::getCameraSectionOffset);
 
     }
 }
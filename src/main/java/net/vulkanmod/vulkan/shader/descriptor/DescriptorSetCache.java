@@ -0,0 +1,149 @@
+package net.vulkanmod.vulkan.shader.descriptor;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+
+import java.util.Arrays;
+
+//Descriptor sets keyed by the handles written in them (buffer ids, image views, samplers).
+//A set is written once and reused while its handles are alive. Evicted sets are handed out again only after
+//release(), when the frames that could still bind them retired. Pure bookkeeping over handles, no device calls
+public class DescriptorSetCache {
+    //Safety net for streams of unique keys, everything is dropped past this
+    static final int MAX_ENTRIES = 1024;
+
+    private final Object2LongOpenHashMap<Key> sets = new Object2LongOpenHashMap<>();
+    //Reverse index, eviction only visits the keys using the handle
+    private final Long2ObjectOpenHashMap<ReferenceOpenHashSet<Key>> keysByHandle = new Long2ObjectOpenHashMap<>();
+    private final Key lookupKey;
+
+    private final LongArrayList freeSets = new LongArrayList();
+    private final LongArrayList pendingSets = new LongArrayList();
+
+    private long hits, misses, evictions;
+
+    public DescriptorSetCache(int keyLength) {
+        this.lookupKey = new Key(new long[keyLength]);
+        this.sets.defaultReturnValue(0L);
+    }
+
+    //Filled by the caller before get() and put()
+    public long[] getLookupKey() {
+        return this.lookupKey.handles;
+    }
+
+    //Set written with the lookup key handles, 0 if none
+    public long get() {
+        this.lookupKey.updateHash();
+        long set = this.sets.getLong(this.lookupKey);
+
+        if(set != 0L)
+            this.hits++;
+        else
+            this.misses++;
+
+        return set;
+    }
+
+    public void put(long set) {
+        if(this.sets.size() >= MAX_ENTRIES)
+            this.evictAll();
+
+        Key key = new Key(this.lookupKey.handles.clone());
+        this.sets.put(key, set);
+
+        for(long handle : key.handles) {
+            if(handle != 0L)
+                this.keysByHandle.computeIfAbsent(handle, h -> new ReferenceOpenHashSet<>()).add(key);
+        }
+    }
+
+    //A previously evicted set that can be rewritten, 0 if none
+    public long pollFreeSet() {
+        return this.freeSets.isEmpty() ? 0L : this.freeSets.popLong();
+    }
+
+    //Drops every entry referencing the handle, returns the number of evicted sets
+    public int evict(long handle) {
+        if(handle == 0L)
+            return 0;
+
+        ReferenceOpenHashSet<Key> keys = this.keysByHandle.remove(handle);
+        if(keys == null)
+            return 0;
+
+        for(Key key : keys) {
+            this.pendingSets.add(this.sets.removeLong(key));
+
+            for(long other : key.handles) {
+                if(other == handle || other == 0L)
+                    continue;
+
+                ReferenceOpenHashSet<Key> otherKeys = this.keysByHandle.get(other);
+                if(otherKeys != null && otherKeys.remove(key) && otherKeys.isEmpty())
+                    this.keysByHandle.remove(other);
+            }
+        }
+
+        this.evictions += keys.size();
+        return keys.size();
+    }
+
+    public void evictAll() {
+        for(long set : this.sets.values()) {
+            this.pendingSets.add(set);
+        }
+
+        this.evictions += this.sets.size();
+        this.sets.clear();
+        this.keysByHandle.clear();
+    }
+
+    //Evicted sets become reusable, to be called once frames that could bind them retired
+    public void release() {
+        this.freeSets.addAll(this.pendingSets);
+        this.pendingSets.clear();
+    }
+
+    public int size() {
+        return this.sets.size();
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    private static class Key {
+        final long[] handles;
+        int hash;
+
+        Key(long[] handles) {
+            this.handles = handles;
+            this.updateHash();
+        }
+
+        void updateHash() {
+            this.hash = Arrays.hashCode(this.handles);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && this.hash == key.hash && Arrays.equals(this.handles, key.handles);
+        }
+    }
+}
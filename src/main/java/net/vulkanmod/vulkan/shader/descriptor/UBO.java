@@ -2,6 +2,7 @@ package net.vulkanmod.vulkan.shader.descriptor;
 
 import net.vulkanmod.vulkan.shader.layout.AlignedStruct;
 import net.vulkanmod.vulkan.shader.layout.Uniform;
+import org.lwjgl.system.MemoryUtil;
 
 import java.util.List;
 
@@ -11,12 +12,82 @@ public class UBO extends AlignedStruct implements Descriptor {
     private final int binding;
     private final int stages;
 
+    //Packed contents of the current and of the last uploaded block
+    private long block;
+    private long lastBlock;
+
+    private Target lastBuffers;
+    private int lastFrame;
+    private long lastEpoch;
+    private int lastOffset;
+
     public UBO(int binding, int stages, int size, List<Uniform.Info> infoList) {
         super(infoList, size);
         this.binding = binding;
         this.stages = stages;
     }
 
+    //Returns the dynamic offset of the block. Unchanged contents reuse the offset of the last upload
+    //as long as it is still in the buffer, only changed blocks advance it
+    public int upload(Target uniformBuffers, int frame) {
+        if(this.block == 0L) {
+            this.block = MemoryUtil.nmemCalloc(1, this.size);
+            this.lastBlock = MemoryUtil.nmemCalloc(1, this.size);
+        }
+
+        this.update(this.block);
+
+        if(uniformBuffers == this.lastBuffers && frame == this.lastFrame
+                && uniformBuffers.getEpoch() == this.lastEpoch
+                && equals(this.block, this.lastBlock, this.size))
+            return this.lastOffset;
+
+        int alignedSize = uniformBuffers.alignSize(this.size);
+        uniformBuffers.checkCapacity(alignedSize);
+
+        int offset = uniformBuffers.getUsedBytes();
+        MemoryUtil.memCopy(this.block, uniformBuffers.getPointer(frame), this.size);
+        uniformBuffers.updateOffset(alignedSize);
+
+        long tmp = this.lastBlock;
+        this.lastBlock = this.block;
+        this.block = tmp;
+
+        this.lastBuffers = uniformBuffers;
+        this.lastFrame = frame;
+        this.lastEpoch = uniformBuffers.getEpoch();
+        this.lastOffset = offset;
+
+        return offset;
+    }
+
+    //Sizes are multiples of 4 bytes
+    private static boolean equals(long ptr1, long ptr2, int size) {
+        int i = 0;
+        for(; i + 8 <= size; i += 8) {
+            if(MemoryUtil.memGetLong(ptr1 + i) != MemoryUtil.memGetLong(ptr2 + i))
+                return false;
+        }
+
+        for(; i < size; i += 4) {
+            if(MemoryUtil.memGetInt(ptr1 + i) != MemoryUtil.memGetInt(ptr2 + i))
+                return false;
+        }
+
+        return true;
+    }
+
+    public void free() {
+        if(this.block == 0L)
+            return;
+
+        MemoryUtil.nmemFree(this.block);
+        MemoryUtil.nmemFree(this.lastBlock);
+        this.block = 0L;
+        this.lastBlock = 0L;
+        this.lastBuffers = null;
+    }
+
     public int getBinding() {
         return binding;
     }
@@ -30,4 +101,19 @@ public class UBO extends AlignedStruct implements Descriptor {
         return stages;
     }
 
+    //Per frame buffers the blocks are written to, implemented by UniformBuffers
+    public interface Target {
+        //Changes when previously returned offsets are no longer valid
+        long getEpoch();
+
+        int alignSize(int size);
+
+        void checkCapacity(int size);
+
+        int getUsedBytes();
+
+        long getPointer(int frame);
+
+        void updateOffset(int alignedSize);
+    }
 }
@@ -0,0 +1,181 @@
+package net.vulkanmod.vulkan.texture;
+
+import net.vulkanmod.vulkan.DeviceManager;
+import net.vulkanmod.vulkan.memory.MemoryManager;
+import net.vulkanmod.vulkan.queue.CommandPool;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.LongBuffer;
+import java.util.ArrayDeque;
+
+import static org.lwjgl.system.MemoryStack.stackPush;
+import static org.lwjgl.vulkan.VK10.*;
+
+//Image to host copies through a ring of persistently mapped buffers.
+//Async requests are polled on the following frames and their callback runs on the render thread
+public abstract class ImageReadback {
+    private static final int SLOTS = 3;
+    //Larger slot buffers are freed once their read completed instead of staying mapped
+    private static final long MAX_KEPT_CAPACITY = 32L << 20;
+
+    private static final Slot[] slots = new Slot[SLOTS];
+    private static final ArrayDeque<Slot> pending = new ArrayDeque<>();
+    private static int next;
+
+    static {
+        for(int i = 0; i < SLOTS; ++i) {
+            slots[i] = new Slot();
+        }
+    }
+
+    //The data pointer is only valid during the call
+    public interface Callback {
+        void accept(long ptr, int width, int height);
+    }
+
+    public static void readAsync(VulkanImage image, Callback callback) {
+        Slot slot = record(image);
+        slot.callback = callback;
+        pending.add(slot);
+    }
+
+    public static void read(VulkanImage image, long dstPtr) {
+        Slot slot = record(image);
+        slot.commandBuffer.waitCompletion();
+
+        MemoryUtil.memCopy(slot.ptr, dstPtr, slot.dataSize);
+        release(slot);
+    }
+
+    //Runs the callbacks of the completed requests, in submission order
+    public static void update() {
+        while(!pending.isEmpty() && pending.peek().commandBuffer.isComplete()) {
+            complete(pending.poll());
+        }
+    }
+
+    public static int getPendingCount() {
+        return pending.size();
+    }
+
+    private static Slot record(VulkanImage image) {
+        //Pending uploads must land before the read back
+        TextureUploadBatcher.flushDeferred();
+        TextureUploadBatcher.submit();
+
+        Slot slot = acquireSlot();
+        long size = (long) image.width * image.height * image.formatSize;
+        slot.ensureCapacity(size);
+        slot.dataSize = size;
+        slot.width = image.width;
+        slot.height = image.height;
+
+        try(MemoryStack stack = stackPush()) {
+            int prevLayout = image.getCurrentLayout();
+            CommandPool.CommandBuffer commandBuffer = DeviceManager.getGraphicsQueue().beginCommands();
+            image.transitionImageLayout(stack, commandBuffer.getHandle(), VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL);
+
+            ImageUtil.copyImageToBuffer(commandBuffer.getHandle(), slot.buffer, image.getId(), 0, image.width, image.height, 0, 0, 0, 0, 0);
+            image.transitionImageLayout(stack, commandBuffer.getHandle(), prevLayout);
+
+            DeviceManager.getGraphicsQueue().submitCommands(commandBuffer);
+            slot.commandBuffer = commandBuffer;
+        }
+
+        return slot;
+    }
+
+    private static Slot acquireSlot() {
+        for(int i = 0; i < SLOTS; ++i) {
+            Slot slot = slots[(next + i) % SLOTS];
+            if(slot.commandBuffer == null) {
+                next = (next + i + 1) % SLOTS;
+                return slot;
+            }
+        }
+
+        //Every slot is in flight, wait for the oldest
+        Slot slot = pending.poll();
+        slot.commandBuffer.waitCompletion();
+        complete(slot);
+
+        return acquireSlot();
+    }
+
+    private static void complete(Slot slot) {
+        try {
+            slot.callback.accept(slot.ptr, slot.width, slot.height);
+        }
+        finally {
+            release(slot);
+        }
+    }
+
+    private static void release(Slot slot) {
+        slot.commandBuffer.reset();
+        slot.commandBuffer = null;
+        slot.callback = null;
+
+        if(slot.capacity > MAX_KEPT_CAPACITY)
+            slot.free();
+    }
+
+    public static void cleanUp() {
+        for(Slot slot : slots) {
+            slot.free();
+        }
+        pending.clear();
+    }
+
+    private static class Slot {
+        long buffer;
+        long allocation;
+        long ptr;
+        long capacity;
+
+        long dataSize;
+        int width, height;
+
+        CommandPool.CommandBuffer commandBuffer;
+        Callback callback;
+
+        void ensureCapacity(long size) {
+            if(size <= this.capacity)
+                return;
+
+            this.free();
+
+            try(MemoryStack stack = stackPush()) {
+                LongBuffer pBuffer = stack.mallocLong(1);
+                PointerBuffer pAllocation = stack.pointers(0L);
+                MemoryManager.getInstance().createBuffer(size,
+                        VK_BUFFER_USAGE_TRANSFER_DST_BIT,
+                        VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK_MEMORY_PROPERTY_HOST_COHERENT_BIT | VK_MEMORY_PROPERTY_HOST_CACHED_BIT,
+                        pBuffer,
+                        pAllocation);
+
+                PointerBuffer data = stack.mallocPointer(1);
+                MemoryManager.getInstance().Map(pAllocation.get(0), data);
+
+                this.buffer = pBuffer.get(0);
+                this.allocation = pAllocation.get(0);
+                this.ptr = data.get(0);
+                this.capacity = size;
+            }
+        }
+
+        void free() {
+            if(this.buffer == 0L)
+                return;
+
+            MemoryManager.getInstance().Unmap(this.allocation);
+            MemoryManager.freeBuffer(this.buffer, this.allocation);
+            this.buffer = 0L;
+            this.allocation = 0L;
+            this.ptr = 0L;
+            this.capacity = 0L;
+        }
+    }
+}
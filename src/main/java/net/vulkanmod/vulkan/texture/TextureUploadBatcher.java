@@ -0,0 +1,427 @@
+package net.vulkanmod.vulkan.texture;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.vulkanmod.Initializer;
+import net.vulkanmod.vulkan.DeviceManager;
+import net.vulkanmod.vulkan.Synchronization;
+import net.vulkanmod.vulkan.Vulkan;
+import net.vulkanmod.vulkan.memory.StagingBuffer;
+import net.vulkanmod.vulkan.queue.CommandPool;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.vulkan.VkBufferImageCopy;
+import org.lwjgl.vulkan.VkImageMemoryBarrier;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import static org.lwjgl.vulkan.VK10.*;
+
+//Collects the image uploads of a frame and records them in a single graphics queue submission:
+//one barrier to transfer dst for every image, the copies (merged per image), one barrier back to shader read.
+//Uploads past the per frame budget are kept in host memory and staged on the following frames.
+//The batch is submitted before the frame command buffer, so image layouts are tracked on its own timeline:
+//it starts from the layout an image has when the frame starts and ends in the one the frame commands expect
+public abstract class TextureUploadBatcher {
+    private static final ObjectArrayList<Upload> uploads = new ObjectArrayList<>();
+    private static final ObjectArrayList<VulkanImage> images = new ObjectArrayList<>();
+    private static final ObjectArrayList<VulkanImage> batchImages = new ObjectArrayList<>();
+    private static final ObjectArrayList<VulkanImage> frameImages = new ObjectArrayList<>();
+    private static final ArrayDeque<Upload> deferredUploads = new ArrayDeque<>();
+    private static final ArrayDeque<Upload> uploadPool = new ArrayDeque<>();
+
+    private static CommandPool.CommandBuffer commandBuffer;
+    private static final StagingBuffer.Region stagingRegion = new StagingBuffer.Region();
+
+    //Reused across frames, a reload can record thousands of copies
+    private static VkBufferImageCopy.Buffer copyRegions = VkBufferImageCopy.calloc(64);
+    private static VkImageMemoryBarrier.Buffer barrierBuffer = VkImageMemoryBarrier.calloc(64);
+
+    private static long frameBytes;
+    private static long lastFrameBytes;
+
+    public static void uploadSubTexture(VulkanImage image, int mipLevel, int width, int height, int xOffset, int yOffset, int unpackSkipRows, int unpackSkipPixels, int unpackRowLength, ByteBuffer buffer) {
+        int size = buffer.limit();
+        int srcOffset = (unpackRowLength * unpackSkipRows + unpackSkipPixels) * image.formatSize;
+
+        Upload upload = getUpload();
+        upload.set(image, mipLevel, width, height, xOffset, yOffset, unpackRowLength, size, srcOffset);
+
+        //Keep the upload order once something has been deferred
+        if(deferredUploads.isEmpty() && !isOverBudget(size)) {
+            stage(upload, MemoryUtil.memAddress(buffer));
+        }
+        else {
+            upload.hostPtr = MemoryUtil.nmemAlloc(size);
+            MemoryUtil.memCopy(MemoryUtil.memAddress(buffer), upload.hostPtr, size);
+            deferredUploads.add(upload);
+        }
+    }
+
+    private static boolean isOverBudget(long size) {
+        long budget = (long) Initializer.CONFIG.textureUploadBudget << 20;
+        //The first upload of a frame always goes through
+        return budget > 0 && frameBytes > 0 && frameBytes + size > budget;
+    }
+
+    private static void stage(Upload upload, long srcPtr) {
+        StagingBuffer.Region region = stagingRegion;
+        Vulkan.getStagingBuffer().copyBuffer(region, upload.size, srcPtr, upload.image.formatSize);
+        upload.bufferId = region.bufferId();
+        upload.bufferOffset = region.offset() + upload.srcOffset;
+
+        VulkanImage image = upload.image;
+        join(image);
+
+        if(!image.uploadStaged) {
+            image.uploadStaged = true;
+            images.add(image);
+        }
+
+        uploads.add(upload);
+        frameBytes += upload.size;
+    }
+
+    private static void join(VulkanImage image) {
+        if(image.uploadPending)
+            return;
+
+        image.uploadPending = true;
+        batchImages.add(image);
+
+        if(image.frameLayoutChanged) {
+            //Frame commands already recorded a barrier from the frame start layout, the batch has to give it back
+            image.batchLayout = image.frameStartLayout;
+            image.batchEndLayout = image.frameStartLayout != VK_IMAGE_LAYOUT_UNDEFINED
+                    ? image.frameStartLayout : VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL;
+        }
+        else {
+            //Frame commands recorded from now on start from the layout left by the batch
+            image.batchLayout = image.getCurrentLayout();
+            image.batchEndLayout = VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL;
+            image.setCurrentLayout(VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL);
+        }
+    }
+
+    //To be called before the frame command buffer records a layout change of the image
+    public static void frameLayoutChange(VulkanImage image) {
+        if(image.frameLayoutChanged)
+            return;
+
+        image.frameLayoutChanged = true;
+        image.frameStartLayout = image.getCurrentLayout();
+        frameImages.add(image);
+    }
+
+    //Called at frame start, submits what was left by a skipped frame and stages deferred uploads within the budget
+    public static void beginFrame() {
+        submit();
+
+        for(int i = 0; i < frameImages.size(); ++i) {
+            frameImages.get(i).frameLayoutChanged = false;
+        }
+        frameImages.clear();
+
+        lastFrameBytes = frameBytes;
+        frameBytes = 0;
+
+        while(!deferredUploads.isEmpty() && !isOverBudget(deferredUploads.peek().size)) {
+            Upload upload = deferredUploads.poll();
+            stage(upload, upload.hostPtr);
+
+            MemoryUtil.nmemFree(upload.hostPtr);
+            upload.hostPtr = 0;
+        }
+    }
+
+    //Stages every deferred upload regardless of the budget, needed before reading image contents back
+    public static void flushDeferred() {
+        while(!deferredUploads.isEmpty()) {
+            Upload upload = deferredUploads.poll();
+            stage(upload, upload.hostPtr);
+
+            MemoryUtil.nmemFree(upload.hostPtr);
+            upload.hostPtr = 0;
+        }
+    }
+
+    //Stages the deferred uploads of a single image, in order
+    static void flushDeferred(VulkanImage image) {
+        if(deferredUploads.isEmpty())
+            return;
+
+        Iterator<Upload> iterator = deferredUploads.iterator();
+        while(iterator.hasNext()) {
+            Upload upload = iterator.next();
+            if(upload.image != image)
+                continue;
+
+            iterator.remove();
+            stage(upload, upload.hostPtr);
+
+            MemoryUtil.nmemFree(upload.hostPtr);
+            upload.hostPtr = 0;
+        }
+    }
+
+    //Records every copy to the image, deferred ones included, and moves it to transfer dst in the batch command buffer.
+    //Commands recorded after it (e.g. mipmap generation) must set batchLayout to the layout they leave the image in
+    static CommandPool.CommandBuffer recordImageUploads(MemoryStack stack, VulkanImage image) {
+        flushDeferred(image);
+        CommandPool.CommandBuffer commandBuffer = recordUploads();
+
+        join(image);
+        if(image.batchLayout != VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL) {
+            VkImageMemoryBarrier.Buffer barrier = VkImageMemoryBarrier.calloc(1, stack);
+            setBarrier(barrier.get(0), image, image.batchLayout, VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL,
+                    layoutAccess(image.batchLayout), VK_ACCESS_TRANSFER_WRITE_BIT);
+
+            vkCmdPipelineBarrier(commandBuffer.getHandle(), layoutStage(image.batchLayout, VK_PIPELINE_STAGE_TOP_OF_PIPE_BIT),
+                    VK_PIPELINE_STAGE_TRANSFER_BIT, 0, null, null, barrier);
+            image.batchLayout = VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL;
+        }
+
+        return commandBuffer;
+    }
+
+    //Records the pending copies and returns the batch command buffer, further commands on the uploaded images can follow
+    public static CommandPool.CommandBuffer recordUploads() {
+        if(commandBuffer == null)
+            commandBuffer = DeviceManager.getGraphicsQueue().beginCommands();
+
+        if(uploads.isEmpty())
+            return commandBuffer;
+
+        transferDstLayouts();
+        recordCopies();
+
+        for(int i = 0; i < uploads.size(); ++i) {
+            Upload upload = uploads.get(i);
+            upload.image = null;
+            uploadPool.add(upload);
+        }
+        uploads.clear();
+
+        for(int i = 0; i < images.size(); ++i) {
+            images.get(i).uploadStaged = false;
+        }
+        images.clear();
+
+        return commandBuffer;
+    }
+
+    //Must be called before any other graphics queue submission reading the uploaded images
+    public static void submit() {
+        if(commandBuffer == null && uploads.isEmpty())
+            return;
+
+        recordUploads();
+
+        endLayouts();
+
+        for(int i = 0; i < batchImages.size(); ++i) {
+            batchImages.get(i).uploadPending = false;
+        }
+        batchImages.clear();
+
+        DeviceManager.getGraphicsQueue().submitCommands(commandBuffer);
+        Synchronization.INSTANCE.addCommandBuffer(commandBuffer);
+        commandBuffer = null;
+    }
+
+    private static void transferDstLayouts() {
+        VkImageMemoryBarrier.Buffer barriers = getBarriers(images.size());
+        int srcStages = 0;
+        int count = 0;
+
+        for(int i = 0; i < images.size(); ++i) {
+            VulkanImage image = images.get(i);
+            int layout = image.batchLayout;
+
+            if(layout == VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL)
+                continue;
+
+            setBarrier(barriers.get(count), image, layout, VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL, layoutAccess(layout), VK_ACCESS_TRANSFER_WRITE_BIT);
+            image.batchLayout = VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL;
+            srcStages |= layoutStage(layout, VK_PIPELINE_STAGE_TOP_OF_PIPE_BIT);
+            count++;
+        }
+
+        if(count == 0)
+            return;
+
+        barriers.limit(count);
+        vkCmdPipelineBarrier(commandBuffer.getHandle(), srcStages, VK_PIPELINE_STAGE_TRANSFER_BIT, 0,
+                null, null, barriers);
+    }
+
+    private static void recordCopies() {
+        if(copyRegions.capacity() < uploads.size()) {
+            copyRegions.free();
+            copyRegions = VkBufferImageCopy.calloc(Math.max(uploads.size(), copyRegions.capacity() * 2));
+        }
+
+        VkBufferImageCopy.Buffer regions = copyRegions.clear();
+
+        int first = 0;
+        for(int i = 0; i < uploads.size(); ++i) {
+            Upload upload = uploads.get(i);
+
+            VkBufferImageCopy region = regions.get(i);
+            region.bufferOffset(upload.bufferOffset);
+            region.bufferRowLength(upload.rowLength);
+            region.bufferImageHeight(upload.height);
+            region.imageSubresource()
+                    .aspectMask(VK_IMAGE_ASPECT_COLOR_BIT)
+                    .mipLevel(upload.mipLevel)
+                    .baseArrayLayer(0)
+                    .layerCount(1);
+            region.imageOffset().set(upload.xOffset, upload.yOffset, 0);
+            region.imageExtent().set(upload.width, upload.height, 1);
+
+            //Consecutive copies to the same image from the same staging buffer share one command
+            boolean last = i + 1 == uploads.size();
+            if(last || uploads.get(i + 1).image != upload.image || uploads.get(i + 1).bufferId != upload.bufferId) {
+                regions.position(first).limit(i + 1);
+                vkCmdCopyBufferToImage(commandBuffer.getHandle(), upload.bufferId, upload.image.getId(),
+                        VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL, regions);
+                regions.clear();
+
+                first = i + 1;
+            }
+        }
+    }
+
+    private static void endLayouts() {
+        VkImageMemoryBarrier.Buffer barriers = getBarriers(batchImages.size());
+        int srcStages = 0, dstStages = 0;
+        int count = 0;
+
+        for(int i = 0; i < batchImages.size(); ++i) {
+            VulkanImage image = batchImages.get(i);
+            int layout = image.batchLayout;
+            int endLayout = image.batchEndLayout;
+
+            if(layout == endLayout)
+                continue;
+
+            setBarrier(barriers.get(count), image, layout, endLayout, layoutAccess(layout), layoutAccess(endLayout));
+            image.batchLayout = endLayout;
+            srcStages |= layoutStage(layout, VK_PIPELINE_STAGE_TOP_OF_PIPE_BIT);
+            dstStages |= layoutStage(endLayout, VK_PIPELINE_STAGE_BOTTOM_OF_PIPE_BIT);
+            count++;
+        }
+
+        if(count == 0)
+            return;
+
+        barriers.limit(count);
+        vkCmdPipelineBarrier(commandBuffer.getHandle(), srcStages, dstStages, 0,
+                null, null, barriers);
+    }
+
+    private static int layoutAccess(int layout) {
+        return switch (layout) {
+            case VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL -> VK_ACCESS_TRANSFER_WRITE_BIT;
+            case VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL -> VK_ACCESS_TRANSFER_READ_BIT;
+            case VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL -> VK_ACCESS_SHADER_READ_BIT;
+            case VK_IMAGE_LAYOUT_COLOR_ATTACHMENT_OPTIMAL -> VK_ACCESS_COLOR_ATTACHMENT_READ_BIT | VK_ACCESS_COLOR_ATTACHMENT_WRITE_BIT;
+            case VK_IMAGE_LAYOUT_DEPTH_STENCIL_ATTACHMENT_OPTIMAL -> VK_ACCESS_DEPTH_STENCIL_ATTACHMENT_READ_BIT | VK_ACCESS_DEPTH_STENCIL_ATTACHMENT_WRITE_BIT;
+            //Undefined and present src
+            default -> 0;
+        };
+    }
+
+    private static int layoutStage(int layout, int defaultStage) {
+        return switch (layout) {
+            case VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL, VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL -> VK_PIPELINE_STAGE_TRANSFER_BIT;
+            case VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL -> VK_PIPELINE_STAGE_FRAGMENT_SHADER_BIT;
+            case VK_IMAGE_LAYOUT_COLOR_ATTACHMENT_OPTIMAL -> VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT;
+            case VK_IMAGE_LAYOUT_DEPTH_STENCIL_ATTACHMENT_OPTIMAL -> VK_PIPELINE_STAGE_EARLY_FRAGMENT_TESTS_BIT | VK_PIPELINE_STAGE_LATE_FRAGMENT_TESTS_BIT;
+            default -> defaultStage;
+        };
+    }
+
+    private static VkImageMemoryBarrier.Buffer getBarriers(int count) {
+        if(barrierBuffer.capacity() < count) {
+            barrierBuffer.free();
+            barrierBuffer = VkImageMemoryBarrier.calloc(Math.max(count, barrierBuffer.capacity() * 2));
+        }
+
+        return barrierBuffer.clear();
+    }
+
+    private static void setBarrier(VkImageMemoryBarrier barrier, VulkanImage image, int oldLayout, int newLayout, int srcAccess, int dstAccess) {
+        barrier.sType(VK_STRUCTURE_TYPE_IMAGE_MEMORY_BARRIER);
+        barrier.oldLayout(oldLayout);
+        barrier.newLayout(newLayout);
+        barrier.srcQueueFamilyIndex(VK_QUEUE_FAMILY_IGNORED);
+        barrier.dstQueueFamilyIndex(VK_QUEUE_FAMILY_IGNORED);
+        barrier.image(image.getId());
+        barrier.subresourceRange()
+                .aspectMask(image.aspect)
+                .baseMipLevel(0)
+                .levelCount(VK_REMAINING_MIP_LEVELS)
+                .baseArrayLayer(0)
+                .layerCount(VK_REMAINING_ARRAY_LAYERS);
+        barrier.srcAccessMask(srcAccess);
+        barrier.dstAccessMask(dstAccess);
+    }
+
+    //Drops the deferred uploads of an image that is being freed
+    static void removeImage(VulkanImage image) {
+        if(deferredUploads.isEmpty())
+            return;
+
+        deferredUploads.removeIf(upload -> {
+            if(upload.image != image)
+                return false;
+
+            MemoryUtil.nmemFree(upload.hostPtr);
+            upload.hostPtr = 0;
+            upload.image = null;
+            uploadPool.add(upload);
+            return true;
+        });
+    }
+
+    private static Upload getUpload() {
+        Upload upload = uploadPool.poll();
+        return upload != null ? upload : new Upload();
+    }
+
+    public static long getLastFrameBytes() {
+        return lastFrameBytes;
+    }
+
+    public static int getDeferredCount() {
+        return deferredUploads.size();
+    }
+
+    private static class Upload {
+        VulkanImage image;
+        int mipLevel;
+        int width, height;
+        int xOffset, yOffset;
+        int rowLength;
+        int size;
+        int srcOffset;
+
+        long bufferId;
+        long bufferOffset;
+        long hostPtr;
+
+        void set(VulkanImage image, int mipLevel, int width, int height, int xOffset, int yOffset, int rowLength, int size, int srcOffset) {
+            this.image = image;
+            this.mipLevel = mipLevel;
+            this.width = width;
+            this.height = height;
+            this.xOffset = xOffset;
+            this.yOffset = yOffset;
+            this.rowLength = rowLength;
+            this.size = size;
+            this.srcOffset = srcOffset;
+        }
+    }
+}
@@ -4,8 +4,8 @@ import com.mojang.blaze3d.platform.NativeImage;
 import net.vulkanmod.vulkan.*;
 import net.vulkanmod.vulkan.framebuffer.SwapChain;
 import net.vulkanmod.vulkan.memory.MemoryManager;
-import net.vulkanmod.vulkan.memory.StagingBuffer;
 import net.vulkanmod.vulkan.queue.CommandPool;
+import net.vulkanmod.vulkan.shader.Pipeline;
 import net.vulkanmod.vulkan.util.VUtil;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryStack;
@@ -43,6 +43,17 @@ public class VulkanImage {
 
     private int currentLayout;
 
+    //Set while the image has copies in TextureUploadBatcher
+    boolean uploadStaged;
+    boolean uploadPending;
+    //Layouts along the batch command buffer, which runs before the frame one
+    int batchLayout;
+    int batchEndLayout;
+
+    //Set once the frame command buffer changed the layout, frameStartLayout is the one it started from
+    boolean frameLayoutChanged;
+    int frameStartLayout;
+
     //Used for swap chain images
     public VulkanImage(long id, int format, int mipLevels, int width, int height, int formatSize, int usage, long imageView) {
         this.id = id;
@@ -189,35 +200,17 @@ public class VulkanImage {
     }
 
     public void uploadSubTextureAsync(int mipLevel, int width, int height, int xOffset, int yOffset, int unpackSkipRows, int unpackSkipPixels, int unpackRowLength, ByteBuffer buffer) {
-        long imageSize = buffer.limit();
-
-        CommandPool.CommandBuffer commandBuffer = DeviceManager.getGraphicsQueue().getCommandBuffer();
-        try(MemoryStack stack = stackPush()) {
-            transferDstLayout(stack, commandBuffer.getHandle());
-        }
-
-        StagingBuffer stagingBuffer = Vulkan.getStagingBuffer();
-        stagingBuffer.align(this.formatSize);
-
-        stagingBuffer.copyBuffer((int)imageSize, buffer);
-
-        ImageUtil.copyBufferToImageCmd(commandBuffer.getHandle(), stagingBuffer.getId(), id, mipLevel, width, height, xOffset, yOffset,
-                (int) (stagingBuffer.getOffset() + (unpackRowLength * unpackSkipRows + unpackSkipPixels) * this.formatSize), unpackRowLength, height);
-
-        long fence = DeviceManager.getGraphicsQueue().endIfNeeded(commandBuffer);
-        if (fence != VK_NULL_HANDLE)
-//            Synchronization.INSTANCE.addFence(fence);
-            Synchronization.INSTANCE.addCommandBuffer(commandBuffer);
-    }
-
-    private void transferDstLayout(MemoryStack stack, VkCommandBuffer commandBuffer) {
-        transitionImageLayout(stack, commandBuffer, VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL);
+        TextureUploadBatcher.uploadSubTexture(this, mipLevel, width, height, xOffset, yOffset, unpackSkipRows, unpackSkipPixels, unpackRowLength, buffer);
     }
 
     public void readOnlyLayout() {
         if (this.currentLayout == VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL)
             return;
 
+        //The upload batch is submitted first and leaves the image in read only layout
+        if (this.uploadPending)
+            return;
+
         CommandPool.CommandBuffer commandBuffer = DeviceManager.getGraphicsQueue().getCommandBuffer();
         try(MemoryStack stack = MemoryStack.stackPush()) {
             readOnlyLayout(stack, commandBuffer.getHandle());
@@ -361,6 +354,15 @@ public class VulkanImage {
     }
 
     public void free() {
+        TextureUploadBatcher.removeImage(this);
+
+        Pipeline.evictDescriptorSets(this.mainImageView);
+        if(this.levelImageViews != null) {
+            for(long imageView : this.levelImageViews) {
+                Pipeline.evictDescriptorSets(imageView);
+            }
+        }
+
         MemoryManager.getInstance().addToFreeable(this);
     }
 
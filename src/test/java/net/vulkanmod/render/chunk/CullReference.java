@@ -0,0 +1,69 @@
+package net.vulkanmod.render.chunk;
+
+import static net.vulkanmod.render.chunk.GpuCuller.*;
+
+//CPU implementation of terrain_cull.comp over the same data GpuCuller uploads (records, jobs, frustum planes),
+//used to validate the compute pass output. Compacted commands of a job come in slot order here, in any order on the GPU
+class CullReference {
+
+    static void cull(int[] records, int[] jobs, int jobCount, float[] planes, boolean compact, int[] commands, int[] counts) {
+        for(int job = 0; job < jobCount; ++job) {
+            int jobPtr = job * JOB_INTS;
+            float originX = Float.intBitsToFloat(jobs[jobPtr]);
+            float originY = Float.intBitsToFloat(jobs[jobPtr + 1]);
+            float originZ = Float.intBitsToFloat(jobs[jobPtr + 2]);
+            int recordBase = jobs[jobPtr + 4];
+            int outputBase = jobs[jobPtr + 5];
+            int countIndex = jobs[jobPtr + 6];
+
+            int rank = 0;
+            for(int slot = 0; slot < SECTIONS; ++slot) {
+                if((jobs[jobPtr + 8 + (slot >> 5)] & (1 << (slot & 31))) == 0)
+                    continue;
+
+                int recordPtr = (recordBase + slot) * RECORD_INTS;
+                int indexCount = records[recordPtr];
+                int baseInstance = records[recordPtr + 3];
+
+                boolean visible = indexCount != 0;
+                if(visible) {
+                    float x = originX + ((slot & 7) << 4);
+                    float y = originY + ((slot >> 3 & 7) << 4);
+                    float z = originZ + ((slot >> 6 & 7) << 4);
+                    visible = boxInFrustum(planes, x, y, z, x + 16.0f, y + 16.0f, z + 16.0f);
+                }
+
+                int outputIndex;
+                if(compact) {
+                    if(!visible)
+                        continue;
+
+                    outputIndex = counts[countIndex]++;
+                }
+                else
+                    outputIndex = rank++;
+
+                int commandPtr = (outputBase + outputIndex) * COMMAND_INTS;
+                commands[commandPtr] = indexCount;
+                commands[commandPtr + 1] = visible ? 1 : 0;
+                commands[commandPtr + 2] = records[recordPtr + 1];
+                commands[commandPtr + 3] = records[recordPtr + 2];
+                commands[commandPtr + 4] = baseInstance;
+            }
+        }
+    }
+
+    static boolean boxInFrustum(float[] planes, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        for(int i = 0; i < 6; ++i) {
+            float a = planes[i * 4], b = planes[i * 4 + 1], c = planes[i * 4 + 2], w = planes[i * 4 + 3];
+
+            float px = a < 0 ? minX : maxX;
+            float py = b < 0 ? minY : maxY;
+            float pz = c < 0 ? minZ : maxZ;
+
+            if(a * px + b * py + c * pz < -w)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+package net.vulkanmod.render.chunk;
+
+import net.vulkanmod.render.vertex.TerrainRenderType;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static net.vulkanmod.render.chunk.GpuCuller.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+//Checks the compute cull reference against the CPU frustum test, over records and jobs packed as GpuCuller uploads them
+class CullReferenceTest {
+    private static final int AREAS = 4;
+    //Area size in blocks, 8 sections per axis
+    private static final int AREA_SIZE = 128;
+
+    @Test
+    void matchesCpuFrustumTest() {
+        Random random = new Random(3);
+
+        for(int i = 0; i < 50; ++i) {
+            this.checkScene(random, false);
+            this.checkScene(random, true);
+        }
+    }
+
+    @Test
+    void boxTestMatchesVFrustum() {
+        Random random = new Random(11);
+
+        for(int i = 0; i < 20; ++i) {
+            VFrustum frustum = createFrustum(random, 0, 0, 0);
+            float[] planes = new float[6 * 4];
+            frustum.getPlanes(planes);
+
+            for(int j = 0; j < 500; ++j) {
+                float x = random.nextInt(512) - 256;
+                float y = random.nextInt(256) - 128;
+                float z = random.nextInt(512) - 256;
+
+                boolean visible = frustum.cubeInFrustum(x, y, z, x + 16, y + 16, z + 16) < 0;
+                assertEquals(visible, CullReference.boxInFrustum(planes, x, y, z, x + 16, y + 16, z + 16));
+            }
+        }
+    }
+
+    private void checkScene(Random random, boolean compact) {
+        //Integer camera position keeps the camera relative origins exact in float
+        int camX = random.nextInt(64) - 32, camY = 64 + random.nextInt(32), camZ = random.nextInt(64) - 32;
+        VFrustum frustum = createFrustum(random, camX, camY, camZ);
+
+        int layers = AREAS * LAYERS;
+        int[] records = new int[layers * SECTIONS * RECORD_INTS];
+        int[] masks = new int[layers * MASK_WORDS];
+        int[] jobs = new int[layers * JOB_INTS];
+        int[][] areaOrigins = new int[AREAS][];
+
+        TerrainRenderType renderType = TerrainRenderType.SOLID;
+
+        for(int area = 0; area < AREAS; ++area) {
+            int[] origin = {
+                    (area & 1) * AREA_SIZE - AREA_SIZE,
+                    0,
+                    (area >> 1) * AREA_SIZE - AREA_SIZE
+            };
+            areaOrigins[area] = origin;
+
+            for(int s = 0; s < 200; ++s) {
+                int x = random.nextInt(8) << 4, y = random.nextInt(8) << 4, z = random.nextInt(8) << 4;
+                int record = getRecordIndex(area, renderType, x, y, z);
+
+                //Some sections are visited with no geometry
+                int indexCount = random.nextInt(4) == 0 ? 0 : 6 * (1 + random.nextInt(1000));
+                putRecord(records, record, indexCount, random.nextInt(1 << 20), random.nextInt(1 << 20), record);
+                setMaskBit(masks, area * LAYERS + renderType.ordinal(), record & (SECTIONS - 1));
+            }
+        }
+
+        int commandCount = 0;
+        int[] outputBases = new int[AREAS];
+        for(int area = 0; area < AREAS; ++area) {
+            int layer = area * LAYERS + renderType.ordinal();
+            int[] origin = areaOrigins[area];
+
+            outputBases[area] = commandCount;
+            putJob(jobs, area, origin[0] - camX, origin[1] - camY, origin[2] - camZ, layer, commandCount, area, masks);
+
+            for(int i = 0; i < MASK_WORDS; ++i) {
+                commandCount += Integer.bitCount(masks[layer * MASK_WORDS + i]);
+            }
+        }
+
+        float[] planes = new float[6 * 4];
+        frustum.getPlanes(planes);
+
+        int[] commands = new int[commandCount * COMMAND_INTS];
+        int[] counts = new int[AREAS];
+        CullReference.cull(records, jobs, AREAS, planes, compact, commands, counts);
+
+        //Expected output from the CPU path: visited sections with geometry inside the frustum
+        for(int area = 0; area < AREAS; ++area) {
+            int layer = area * LAYERS + renderType.ordinal();
+            int[] origin = areaOrigins[area];
+            int output = outputBases[area];
+
+            for(int slot = 0; slot < SECTIONS; ++slot) {
+                if((masks[layer * MASK_WORDS + (slot >> 5)] & (1 << (slot & 31))) == 0)
+                    continue;
+
+                int x = origin[0] + ((slot & 7) << 4);
+                int y = origin[1] + ((slot >> 3 & 7) << 4);
+                int z = origin[2] + ((slot >> 6 & 7) << 4);
+
+                int record = getRecordIndex(area, renderType, x - origin[0], y - origin[1], z - origin[2]);
+                int recordPtr = record * RECORD_INTS;
+                boolean visible = records[recordPtr] != 0 && frustum.cubeInFrustum(x, y, z, x + 16, y + 16, z + 16) < 0;
+
+                if(compact && !visible)
+                    continue;
+
+                int commandPtr = output++ * COMMAND_INTS;
+                String section = "area " + area + " slot " + slot;
+                assertEquals(records[recordPtr], commands[commandPtr], section);
+                assertEquals(visible ? 1 : 0, commands[commandPtr + 1], section);
+                assertEquals(records[recordPtr + 1], commands[commandPtr + 2], section);
+                assertEquals(records[recordPtr + 2], commands[commandPtr + 3], section);
+                assertEquals(record, commands[commandPtr + 4], section);
+            }
+
+            if(compact)
+                assertEquals(output - outputBases[area], counts[area], "area " + area);
+        }
+    }
+
+    private static VFrustum createFrustum(Random random, int camX, int camY, int camZ) {
+        Matrix4f projection = new Matrix4f().perspective((float) Math.toRadians(70.0), 16.0f / 9.0f, 0.05f, 256.0f);
+        Matrix4f modelView = new Matrix4f()
+                .rotateX((random.nextFloat() - 0.5f) * (float) Math.PI)
+                .rotateY(random.nextFloat() * 2.0f * (float) Math.PI);
+
+        VFrustum frustum = new VFrustum();
+        frustum.calculateFrustum(modelView, projection);
+        frustum.setCamOffset(camX, camY, camZ);
+        return frustum;
+    }
+}
@@ -0,0 +1,49 @@
+package net.vulkanmod.render.chunk.build;
+
+import net.vulkanmod.render.profiling.AllocationBudget;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameTasksTest {
+
+    private static TaskDispatcher.FrameTasks createTasks(int[] runs) {
+        Runnable[] tasks = new Runnable[runs.length];
+        for(int i = 0; i < tasks.length; ++i) {
+            int slice = i;
+            tasks[i] = () -> runs[slice]++;
+        }
+        return new TaskDispatcher.FrameTasks(tasks);
+    }
+
+    private static void runFrame(TaskDispatcher.FrameTasks frameTasks) {
+        frameTasks.begin();
+        frameTasks.runClaimed();
+        frameTasks.awaitCompletion();
+    }
+
+    @Test
+    void runsEveryTaskOncePerFrame() {
+        int[] runs = new int[16];
+        TaskDispatcher.FrameTasks frameTasks = createTasks(runs);
+
+        //Nothing is claimed before begin()
+        frameTasks.runClaimed();
+        assertArrayEquals(new int[16], runs);
+
+        runFrame(frameTasks);
+        runFrame(frameTasks);
+
+        for(int count : runs) {
+            assertEquals(2, count);
+        }
+    }
+
+    @Test
+    void frameDoesNotAllocate() {
+        int[] runs = new int[16];
+        TaskDispatcher.FrameTasks frameTasks = createTasks(runs);
+
+        AllocationBudget.assertNoAllocation("FrameTasks", () -> runFrame(frameTasks));
+    }
+}
@@ -0,0 +1,93 @@
+package net.vulkanmod.render.chunk.build;
+
+import net.vulkanmod.render.chunk.build.thread.ThreadBuilderPack;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Frame tasks shared with running worker threads
+class TaskDispatcherTest {
+    private static final int WORKERS = 3;
+
+    private TaskDispatcher dispatcher;
+
+    @BeforeEach
+    void startWorkers() {
+        //Frame tasks never use the builders
+        ThreadBuilderPack.setTerrainBuilderConstructor(renderType -> null);
+
+        this.dispatcher = new TaskDispatcher();
+        this.dispatcher.createThreads(WORKERS);
+    }
+
+    @AfterEach
+    void stopWorkers() {
+        this.dispatcher.stopThreads();
+    }
+
+    private void awaitIdleWorkers() throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while(this.dispatcher.getIdleThreadsCount() < WORKERS) {
+            assertTrue(System.nanoTime() < deadline, "Workers did not go idle");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void runsEveryTaskOncePerFrame() throws InterruptedException {
+        AtomicInteger[] runs = new AtomicInteger[64];
+        Runnable[] tasks = new Runnable[runs.length];
+        for(int i = 0; i < tasks.length; ++i) {
+            AtomicInteger count = runs[i] = new AtomicInteger();
+            tasks[i] = count::incrementAndGet;
+        }
+        TaskDispatcher.FrameTasks frameTasks = new TaskDispatcher.FrameTasks(tasks);
+
+        final int frames = 1000;
+        for(int frame = 0; frame < frames; ++frame) {
+            //Parked workers are woken by runFrameTasks
+            if(frame % 100 == 0)
+                this.awaitIdleWorkers();
+
+            this.dispatcher.runFrameTasks(frameTasks);
+
+            for(AtomicInteger count : runs) {
+                assertEquals(frame + 1, count.get());
+            }
+        }
+    }
+
+    @Test
+    void failureIsRethrownAndWorkersSurvive() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        RuntimeException failure = new RuntimeException("test failure");
+        boolean[] fail = { true };
+
+        Runnable[] tasks = new Runnable[16];
+        for(int i = 0; i < tasks.length; ++i) {
+            int slice = i;
+            tasks[i] = () -> {
+                runs.incrementAndGet();
+                if(slice == 7 && fail[0])
+                    throw failure;
+            };
+        }
+        TaskDispatcher.FrameTasks frameTasks = new TaskDispatcher.FrameTasks(tasks);
+
+        this.awaitIdleWorkers();
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> this.dispatcher.runFrameTasks(frameTasks));
+        assertSame(failure, thrown.getCause());
+        assertEquals(tasks.length, runs.get());
+
+        //A dead worker would never report idle again
+        this.awaitIdleWorkers();
+
+        fail[0] = false;
+        this.dispatcher.runFrameTasks(frameTasks);
+        assertEquals(2 * tasks.length, runs.get());
+    }
+}
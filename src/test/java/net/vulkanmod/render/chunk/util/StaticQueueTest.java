@@ -0,0 +1,44 @@
+package net.vulkanmod.render.chunk.util;
+
+import net.vulkanmod.render.profiling.AllocationBudget;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticQueueTest {
+
+    private static StaticQueue<Integer> createQueue(int size) {
+        StaticQueue<Integer> queue = new StaticQueue<>(64);
+        for(int i = 0; i < size; ++i) {
+            queue.add(i);
+        }
+        return queue;
+    }
+
+    @Test
+    void indexedAccessFollowsIteratorOrder() {
+        StaticQueue<Integer> queue = createQueue(37);
+
+        for(boolean reverse : new boolean[] { false, true }) {
+            Iterator<Integer> iterator = queue.iterator(reverse);
+            for(int i = 0; i < queue.size(); ++i) {
+                assertSame(iterator.next(), queue.get(i, reverse));
+            }
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    void indexedLoopDoesNotAllocate() {
+        StaticQueue<Integer> queue = createQueue(37);
+        int[] sum = new int[1];
+
+        AllocationBudget.assertNoAllocation("StaticQueue.get", () -> {
+            for(int i = 0; i < queue.size(); ++i) {
+                sum[0] += queue.get(i, true);
+            }
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package net.vulkanmod.render.profiling;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+//Heap bytes allocated by the calling thread while running a hot path, from the counter AllocationMeter reads in game.
+//Measured runs follow a warm up so they execute compiled code, escape analysis included
+public final class AllocationBudget {
+    private static final int WARMUP_RUNS = 20_000;
+    private static final int MEASURED_RUNS = 10_000;
+
+    private AllocationBudget() {}
+
+    //Fails if the operation allocates on every run, one off allocations below a byte per run on average are tolerated
+    public static void assertNoAllocation(String name, Runnable operation) {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean, "Allocation counter not available");
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported(), "Allocation counter not available");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        for(int i = 0; i < WARMUP_RUNS; ++i) {
+            operation.run();
+        }
+
+        long start = threadBean.getCurrentThreadAllocatedBytes();
+        for(int i = 0; i < MEASURED_RUNS; ++i) {
+            operation.run();
+        }
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - start;
+
+        assertTrue(allocated < MEASURED_RUNS,
+                () -> "%s allocated %d bytes in %d runs".formatted(name, allocated, MEASURED_RUNS));
+    }
+}
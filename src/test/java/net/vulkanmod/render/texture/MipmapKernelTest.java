@@ -0,0 +1,163 @@
+package net.vulkanmod.render.texture;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//MipmapKernel against the per pixel loops of the MipmapGenerator overwrite it replaced
+class MipmapKernelTest {
+    private static final float[] POW22 = new float[256];
+
+    static {
+        for(int i = 0; i < POW22.length; ++i) {
+            POW22[i] = (float) Math.pow((float) i / 255.0F, 2.2);
+        }
+    }
+
+    //Previous implementation, column-major over int arrays
+    private static int legacyAverage(int[] pixels, int width, int height) {
+        boolean transparent = false;
+        for(int i = 0; i < width; ++i) {
+            for(int j = 0; j < height; ++j) {
+                if(pixels[i + j * width] >> 24 == 0)
+                    transparent = true;
+            }
+        }
+
+        if(!transparent)
+            return -1;
+
+        int[] values = new int[width * height];
+        int count = 0;
+        for(int i = 0; i < width; ++i) {
+            for(int j = 0; j < height; ++j) {
+                int value = pixels[i + j * width];
+                if(((value >> 24) & 0xFF) > 0)
+                    values[count++] = value;
+            }
+        }
+
+        if(count == 0)
+            return 0;
+
+        int sumR = 0, sumG = 0, sumB = 0;
+        for(int i = 0; i < count; i++) {
+            sumR += values[i] & 0xFF;
+            sumG += (values[i] >> 8) & 0xFF;
+            sumB += (values[i] >> 16) & 0xFF;
+        }
+
+        sumR /= count;
+        sumG /= count;
+        sumB /= count;
+
+        return ((sumR & 0xFF) | ((sumG & 0xFF) << 8) | ((sumB & 0xFF) << 16) | (0xFF << 24)) & 0x00FFFFFF;
+    }
+
+    private static int[] legacyDownsample(int[] src, int width, int height, int avg) {
+        int[] dst = new int[width * height];
+        final int width2 = width * 2;
+
+        for(int m = 0; m < width; ++m) {
+            for(int n = 0; n < height; ++n) {
+                int p0 = src[(m * 2) + (n * 2) * width2];
+                int p1 = src[(m * 2 + 1) + (n * 2) * width2];
+                int p2 = src[(m * 2) + (n * 2 + 1) * width2];
+                int p3 = src[(m * 2 + 1) + (n * 2 + 1) * width2];
+
+                if(avg != -1) {
+                    p0 = ((p0 >> 24) & 0xFF) >= MipmapKernel.ALPHA_CUTOFF ? p0 : avg | p0 & 0xFF000000;
+                    p1 = ((p1 >> 24) & 0xFF) >= MipmapKernel.ALPHA_CUTOFF ? p1 : avg | p1 & 0xFF000000;
+                    p2 = ((p2 >> 24) & 0xFF) >= MipmapKernel.ALPHA_CUTOFF ? p2 : avg | p2 & 0xFF000000;
+                    p3 = ((p3 >> 24) & 0xFF) >= MipmapKernel.ALPHA_CUTOFF ? p3 : avg | p3 & 0xFF000000;
+                }
+
+                int a = legacyGammaBlend(p0, p1, p2, p3, 24);
+                int b = legacyGammaBlend(p0, p1, p2, p3, 16);
+                int g = legacyGammaBlend(p0, p1, p2, p3, 8);
+                int r = legacyGammaBlend(p0, p1, p2, p3, 0);
+                dst[m + n * width] = a << 24 | b << 16 | g << 8 | r;
+            }
+        }
+
+        return dst;
+    }
+
+    private static int legacyGammaBlend(int i, int j, int k, int l, int m) {
+        float f = POW22[(i >> m) & 0xFF];
+        float g = POW22[(j >> m) & 0xFF];
+        float h = POW22[(k >> m) & 0xFF];
+        float n = POW22[(l >> m) & 0xFF];
+        float o = (float) ((double) ((float) Math.pow((double) (f + g + h + n) * 0.25, 0.45454545454545453)));
+        return (int) ((double) o * 255.0);
+    }
+
+    private static ByteBuffer toBuffer(int[] pixels) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(pixels.length * 4).order(ByteOrder.nativeOrder());
+        buffer.asIntBuffer().put(pixels);
+        return buffer;
+    }
+
+    //Whole mip chain of a width x height image, down to 1 pixel on the shorter side
+    private static void assertSameMipChain(int width, int height, IntSupplier pixelSource) {
+        int[] pixels = new int[width * height];
+        for(int i = 0; i < pixels.length; ++i) {
+            pixels[i] = pixelSource.getAsInt();
+        }
+
+        ByteBuffer src = toBuffer(pixels);
+        int avg = MipmapKernel.scanTransparency(MemoryUtil.memAddress(src), width, height);
+        int legacyAvg = legacyAverage(pixels, width, height);
+        assertEquals(legacyAvg, avg);
+
+        while(width > 1 && height > 1) {
+            width >>= 1;
+            height >>= 1;
+
+            ByteBuffer dst = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+            MipmapKernel.downsample(MemoryUtil.memAddress(src), MemoryUtil.memAddress(dst), width, height, avg);
+            pixels = legacyDownsample(pixels, width, height, legacyAvg);
+
+            int[] result = new int[width * height];
+            dst.asIntBuffer().get(result);
+            assertArrayEquals(pixels, result, "Level %dx%d differs".formatted(width, height));
+
+            src = dst;
+        }
+    }
+
+    @Test
+    void randomPixelsMatchLegacyBlend() {
+        Random random = new Random(42L);
+
+        assertSameMipChain(16, 16, random::nextInt);
+        assertSameMipChain(128, 32, random::nextInt);
+        //Large enough to be split in row bands
+        assertSameMipChain(1024, 512, random::nextInt);
+    }
+
+    @Test
+    void alphaCutoutMatchesLegacyBlend() {
+        Random random = new Random(42L);
+        //Transparent, under the cutoff and opaque pixels
+        int[] alphas = { 0, MipmapKernel.ALPHA_CUTOFF - 1, MipmapKernel.ALPHA_CUTOFF, 255 };
+        IntSupplier cutout = () -> alphas[random.nextInt(alphas.length)] << 24 | random.nextInt(1 << 24);
+
+        assertSameMipChain(16, 16, cutout);
+        assertSameMipChain(64, 128, cutout);
+        assertSameMipChain(1024, 512, cutout);
+    }
+
+    @Test
+    void opaqueImageSkipsAverage() {
+        Random random = new Random(42L);
+
+        assertSameMipChain(256, 256, () -> 0xFF000000 | random.nextInt(1 << 24));
+    }
+}
@@ -0,0 +1,44 @@
+package net.vulkanmod.render.util;
+
+import net.vulkanmod.render.profiling.AllocationBudget;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassGroupedPairsTest {
+
+    @Test
+    void groupsByClassInInsertionOrder() {
+        ClassGroupedPairs<Object, String> groups = new ClassGroupedPairs<>();
+        groups.add(1, "a");
+        groups.add("x", "b");
+        groups.add(2, "c");
+
+        assertEquals(2, groups.groupCount());
+        assertEquals(List.of(1, 2), groups.getFirsts(0));
+        assertEquals(List.of("a", "c"), groups.getSeconds(0));
+        assertEquals(List.of("x"), groups.getFirsts(1));
+        assertEquals(List.of("b"), groups.getSeconds(1));
+
+        //Groups survive clear so that known classes keep their lists
+        groups.clear();
+        assertEquals(2, groups.groupCount());
+        assertTrue(groups.getFirsts(0).isEmpty());
+        assertTrue(groups.getSeconds(1).isEmpty());
+    }
+
+    @Test
+    void refillDoesNotAllocate() {
+        ClassGroupedPairs<Object, String> groups = new ClassGroupedPairs<>();
+        Object[] elements = { 1, "x", 2L, 3, "y", 4.0 };
+
+        AllocationBudget.assertNoAllocation("ClassGroupedPairs", () -> {
+            groups.clear();
+            for(Object element : elements) {
+                groups.add(element, "source");
+            }
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package net.vulkanmod.render.vertex;
+
+import net.vulkanmod.render.profiling.AllocationBudget;
+import org.joml.Matrix3f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexUtilTest {
+
+    private static Matrix3f randomNormalMatrix(Random random) {
+        return new Matrix3f()
+                .rotateXYZ(random.nextFloat() * 6.3f, random.nextFloat() * 6.3f, random.nextFloat() * 6.3f)
+                .scale(0.5f + random.nextFloat());
+    }
+
+    @Test
+    void transformedNormalMatchesMatrixTransform() {
+        Random random = new Random(42L);
+
+        for(int i = 0; i < 10000; ++i) {
+            Matrix3f matrix = randomNormalMatrix(random);
+            Vector3f normal = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).normalize();
+
+            Vector3f transformed = matrix.transform(new Vector3f(normal));
+            int expected = VertexUtil.packNormal(transformed.x(), transformed.y(), transformed.z());
+
+            assertEquals(expected, VertexUtil.packNormal(matrix, normal));
+        }
+    }
+
+    @Test
+    void transformedNormalDoesNotAllocate() {
+        Matrix3f matrix = randomNormalMatrix(new Random(42L));
+        Vector3f normal = new Vector3f(0.0f, 1.0f, 0.0f);
+        int[] packed = new int[1];
+
+        AllocationBudget.assertNoAllocation("VertexUtil.packNormal", () -> packed[0] ^= VertexUtil.packNormal(matrix, normal));
+    }
+}
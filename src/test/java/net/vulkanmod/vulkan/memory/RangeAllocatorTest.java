@@ -0,0 +1,141 @@
+package net.vulkanmod.vulkan.memory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeAllocatorTest {
+
+    @Test
+    void alignsSizes() {
+        RangeAllocator allocator = new RangeAllocator(1024, 16);
+
+        assertEquals(0, allocator.allocate(10));
+        assertEquals(16, allocator.allocate(1));
+        assertEquals(32, allocator.getUsed());
+    }
+
+    @Test
+    void placesInBestFittingRange() {
+        RangeAllocator allocator = new RangeAllocator(1024, 16);
+
+        int a = allocator.allocate(128);
+        allocator.allocate(64);
+        int c = allocator.allocate(32);
+        allocator.allocate(64);
+
+        allocator.free(a, 128, 0);
+        allocator.free(c, 32, 0);
+        allocator.release(0);
+
+        //Holes of 128 and 32 bytes and the tail, the 32 bytes hole fits exactly
+        assertEquals(c, allocator.allocate(32));
+        //Smallest range able to hold 100 bytes is the 128 bytes hole
+        assertEquals(a, allocator.allocate(100));
+    }
+
+    @Test
+    void failsWhenNoRangeFits() {
+        RangeAllocator allocator = new RangeAllocator(256, 16);
+
+        assertEquals(0, allocator.allocate(256));
+        assertEquals(-1, allocator.allocate(16));
+    }
+
+    @Test
+    void coalescesNeighbours() {
+        RangeAllocator allocator = new RangeAllocator(1024, 16);
+
+        int[] offsets = new int[4];
+        for(int i = 0; i < offsets.length; ++i) {
+            offsets[i] = allocator.allocate(256);
+        }
+
+        allocator.free(offsets[2], 256, 0);
+        allocator.free(offsets[1], 256, 0);
+        allocator.release(0);
+
+        assertEquals(1, allocator.getFreeRangeCount());
+        assertEquals(512, allocator.getLargestFreeRange());
+        assertEquals(offsets[1], allocator.allocate(512));
+
+        allocator.free(offsets[0], 256, 1);
+        allocator.free(offsets[1], 512, 1);
+        allocator.free(offsets[3], 256, 1);
+        allocator.release(1);
+
+        assertEquals(1, allocator.getFreeRangeCount());
+        assertEquals(1024, allocator.getLargestFreeRange());
+    }
+
+    @Test
+    void reusesRangesOnlyAfterTheirFrame() {
+        RangeAllocator allocator = new RangeAllocator(512, 16);
+
+        int a = allocator.allocate(256);
+        int b = allocator.allocate(256);
+
+        allocator.free(a, 256, 3);
+        allocator.free(b, 256, 5);
+        assertEquals(512, allocator.getPendingBytes());
+
+        allocator.release(2);
+        assertEquals(-1, allocator.allocate(256));
+
+        allocator.release(4);
+        assertEquals(256, allocator.getPendingBytes());
+        assertEquals(a, allocator.allocate(256));
+        assertEquals(-1, allocator.allocate(256));
+
+        allocator.release(5);
+        assertEquals(0, allocator.getPendingBytes());
+        assertEquals(b, allocator.allocate(256));
+    }
+
+    @Test
+    void rejectsFreesOutOfFrameOrder() {
+        RangeAllocator allocator = new RangeAllocator(512, 16);
+
+        int a = allocator.allocate(64);
+        int b = allocator.allocate(64);
+
+        allocator.free(a, 64, 4);
+        assertThrows(IllegalArgumentException.class, () -> allocator.free(b, 64, 3));
+    }
+
+    @Test
+    void isNotEmptyWithPendingFrees() {
+        RangeAllocator allocator = new RangeAllocator(1024, 16);
+
+        int a = allocator.allocate(100);
+        assertFalse(allocator.isEmpty());
+
+        allocator.free(a, 100, 7);
+        assertEquals(0, allocator.getUsed());
+        assertFalse(allocator.isEmpty());
+
+        allocator.release(7);
+        assertTrue(allocator.isEmpty());
+        assertEquals(1, allocator.getFreeRangeCount());
+        assertEquals(1024, allocator.getLargestFreeRange());
+    }
+
+    @Test
+    void keepsPendingFreesAcrossManyFrames() {
+        RangeAllocator allocator = new RangeAllocator(4096, 16);
+
+        //More frees than the compaction threshold, released one frame behind
+        for(int frame = 0; frame < 200; ++frame) {
+            int offset = allocator.allocate(16);
+            assertNotEquals(-1, offset);
+
+            allocator.free(offset, 16, frame);
+            allocator.release(frame - 1);
+            assertEquals(16, allocator.getPendingBytes());
+        }
+
+        allocator.release(Long.MAX_VALUE);
+        assertTrue(allocator.isEmpty());
+        assertEquals(4096, allocator.getLargestFreeRange());
+    }
+}
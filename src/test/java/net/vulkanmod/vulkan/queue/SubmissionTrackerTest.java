@@ -0,0 +1,188 @@
+package net.vulkanmod.vulkan.queue;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.vulkanmod.render.profiling.AllocationBudget;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubmissionTrackerTest {
+
+    @Test
+    void retiresOnceValueIsReached() {
+        FakeTimeline timeline = new FakeTimeline();
+        SubmissionTracker<Integer> tracker = new SubmissionTracker<>(timeline);
+        IntArrayList retired = new IntArrayList();
+
+        tracker.add(1, 10);
+        tracker.add(2, 20);
+        tracker.add(3, 30);
+
+        tracker.retire(retired::add);
+        assertTrue(retired.isEmpty());
+
+        timeline.completed = 2;
+        tracker.retire(retired::add);
+        assertArrayEquals(new int[] {10, 20}, retired.toIntArray());
+        assertEquals(1, tracker.size());
+
+        timeline.completed = 5;
+        tracker.retire(retired::add);
+        assertArrayEquals(new int[] {10, 20, 30}, retired.toIntArray());
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    void queriesTimelineOncePerRetire() {
+        FakeTimeline timeline = new FakeTimeline();
+        SubmissionTracker<Integer> tracker = new SubmissionTracker<>(timeline);
+
+        tracker.retire(i -> {});
+        assertEquals(0, timeline.queries);
+
+        for(int i = 1; i <= 8; ++i) {
+            tracker.add(i, i);
+        }
+
+        timeline.completed = 8;
+        tracker.retire(i -> {});
+        assertEquals(1, timeline.queries);
+    }
+
+    @Test
+    void lateReleaseDoesNotWaitBehindHigherValues() {
+        FakeTimeline timeline = new FakeTimeline();
+        SubmissionTracker<Integer> tracker = new SubmissionTracker<>(timeline);
+        IntArrayList retired = new IntArrayList();
+
+        //The buffer submitted with value 2 is released after the ones of 3 and 6
+        tracker.add(3, 30);
+        tracker.add(6, 60);
+        tracker.add(2, 20);
+
+        timeline.completed = 3;
+        tracker.retire(retired::add);
+        assertArrayEquals(new int[] {20, 30}, retired.toIntArray());
+
+        timeline.completed = 6;
+        tracker.retire(retired::add);
+        assertArrayEquals(new int[] {20, 30, 60}, retired.toIntArray());
+    }
+
+    @Test
+    void keepsOrderWhenGrowingAndWrapping() {
+        FakeTimeline timeline = new FakeTimeline();
+        SubmissionTracker<Integer> tracker = new SubmissionTracker<>(timeline);
+        IntArrayList retired = new IntArrayList();
+
+        for(int i = 1; i <= 12; ++i) {
+            tracker.add(i, i);
+        }
+
+        timeline.completed = 10;
+        tracker.retire(retired::add);
+        assertEquals(10, retired.size());
+
+        //Wraps around the ring, then grows it, with an out of order value in between
+        for(int i = 13; i <= 40; ++i) {
+            tracker.add(i, i);
+
+            if(i == 30)
+                tracker.add(11, 11);
+        }
+        assertEquals(31, tracker.size());
+
+        retired.clear();
+        timeline.completed = 40;
+        tracker.retire(retired::add);
+
+        int[] expected = new int[31];
+        expected[0] = 11;
+        expected[1] = 11;
+        for(int i = 2; i < expected.length; ++i) {
+            expected[i] = i + 10;
+        }
+        assertArrayEquals(expected, retired.toIntArray());
+    }
+
+    @Test
+    void equalValuesRetireInAddOrder() {
+        FakeTimeline timeline = new FakeTimeline();
+        SubmissionTracker<Integer> tracker = new SubmissionTracker<>(timeline);
+        IntArrayList retired = new IntArrayList();
+
+        tracker.add(4, 1);
+        tracker.add(4, 2);
+        tracker.add(7, 4);
+        tracker.add(4, 3);
+
+        timeline.completed = 7;
+        tracker.retire(retired::add);
+        assertArrayEquals(new int[] {1, 2, 3, 4}, retired.toIntArray());
+    }
+
+    @Test
+    void retiresEachEntryOnceAtItsExactValue() {
+        FakeTimeline timeline = new FakeTimeline();
+        SubmissionTracker<Integer> tracker = new SubmissionTracker<>(timeline);
+        IntArrayList retired = new IntArrayList();
+
+        tracker.add(5, 50);
+        tracker.add(6, 60);
+
+        timeline.completed = 4;
+        tracker.retire(retired::add);
+        assertTrue(retired.isEmpty());
+
+        timeline.completed = 5;
+        tracker.retire(retired::add);
+        tracker.retire(retired::add);
+        assertArrayEquals(new int[] {50}, retired.toIntArray());
+
+        //Reaching a value does not retire anything until retire() is called
+        timeline.waitValue(6);
+        assertEquals(1, tracker.size());
+        tracker.retire(retired::add);
+        tracker.retire(retired::add);
+        assertArrayEquals(new int[] {50, 60}, retired.toIntArray());
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    void steadyStateDoesNotAllocate() {
+        FakeTimeline timeline = new FakeTimeline();
+        SubmissionTracker<Object> tracker = new SubmissionTracker<>(timeline);
+        Object item = new Object();
+        Consumer<Object> consumer = o -> {};
+
+        long[] value = new long[1];
+        AllocationBudget.assertNoAllocation("SubmissionTracker", () -> {
+            tracker.add(++value[0], item);
+            tracker.add(++value[0], item);
+
+            timeline.completed = value[0];
+            tracker.retire(consumer);
+        });
+
+        assertEquals(0, tracker.size());
+    }
+
+    //Completes values only when told to, waiting jumps straight to the value
+    private static class FakeTimeline implements Timeline {
+        long completed;
+        int queries;
+
+        @Override
+        public long getCompletedValue() {
+            this.queries++;
+            return this.completed;
+        }
+
+        @Override
+        public void waitValue(long value) {
+            this.completed = Math.max(this.completed, value);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package net.vulkanmod.vulkan.shader.descriptor;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.vulkanmod.render.profiling.AllocationBudget;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DescriptorSetCacheTest {
+    private static final long UBO = 1000;
+
+    //Key layout used by Pipeline: uniform buffer id, then view and sampler per image descriptor
+    private static long lookup(DescriptorSetCache cache, long ubo, long view, long sampler) {
+        long[] key = cache.getLookupKey();
+        key[0] = ubo;
+        key[1] = view;
+        key[2] = sampler;
+        return cache.get();
+    }
+
+    private long nextSet = 1;
+
+    private long bind(DescriptorSetCache cache, long ubo, long view, long sampler) {
+        long set = lookup(cache, ubo, view, sampler);
+        if(set == 0L) {
+            set = cache.pollFreeSet();
+            if(set == 0L)
+                set = this.nextSet++;
+
+            cache.put(set);
+        }
+        return set;
+    }
+
+    @Test
+    void repeatedStreamOnlyMissesOncePerKey() {
+        DescriptorSetCache cache = new DescriptorSetCache(3);
+
+        //8 textures drawn in the same order for 100 frames
+        for(int frame = 0; frame < 100; ++frame) {
+            for(long view = 1; view <= 8; ++view) {
+                bind(cache, UBO, view, 50);
+            }
+            cache.release();
+        }
+
+        assertEquals(8, cache.getMisses());
+        assertEquals(792, cache.getHits());
+        assertEquals(8, cache.size());
+        assertEquals(8, this.nextSet - 1);
+    }
+
+    @Test
+    void evictionOnlyDropsKeysUsingTheHandle() {
+        DescriptorSetCache cache = new DescriptorSetCache(3);
+
+        long set1 = bind(cache, UBO, 1, 50);
+        long set2 = bind(cache, UBO, 1, 51);
+        long set3 = bind(cache, UBO, 2, 50);
+
+        assertEquals(2, cache.evict(1));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getEvictions());
+
+        assertEquals(0, lookup(cache, UBO, 1, 50));
+        assertEquals(0, lookup(cache, UBO, 1, 51));
+        assertEquals(set3, lookup(cache, UBO, 2, 50));
+
+        //Evicted sets are not handed out before release
+        assertEquals(0, cache.pollFreeSet());
+        cache.release();
+
+        LongArrayList free = new LongArrayList();
+        for(long set; (set = cache.pollFreeSet()) != 0L; ) {
+            free.add(set);
+        }
+        free.sort(null);
+        assertEquals(LongArrayList.of(Math.min(set1, set2), Math.max(set1, set2)), free);
+    }
+
+    @Test
+    void evictingSharedHandleDropsEveryKey() {
+        DescriptorSetCache cache = new DescriptorSetCache(3);
+
+        for(long view = 1; view <= 5; ++view) {
+            bind(cache, UBO, view, 50);
+        }
+
+        assertEquals(5, cache.evict(50));
+        assertEquals(0, cache.size());
+
+        //Reverse index entries of the other handles went with the keys
+        assertEquals(0, cache.evict(UBO));
+        assertEquals(0, cache.evict(3));
+    }
+
+    @Test
+    void ignoresUnknownAndNullHandles() {
+        DescriptorSetCache cache = new DescriptorSetCache(3);
+        bind(cache, UBO, 1, 0);
+
+        assertEquals(0, cache.evict(0));
+        assertEquals(0, cache.evict(12345));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void dropsEverythingPastMaxEntries() {
+        DescriptorSetCache cache = new DescriptorSetCache(3);
+
+        for(long view = 1; view <= DescriptorSetCache.MAX_ENTRIES; ++view) {
+            bind(cache, UBO, view, 50);
+        }
+        assertEquals(DescriptorSetCache.MAX_ENTRIES, cache.size());
+
+        bind(cache, UBO, DescriptorSetCache.MAX_ENTRIES + 1, 50);
+        assertEquals(1, cache.size());
+        assertEquals(DescriptorSetCache.MAX_ENTRIES, cache.getEvictions());
+        assertEquals(0, cache.evict(1));
+    }
+
+    @Test
+    void matchesReferenceModelOnRandomStream() {
+        DescriptorSetCache cache = new DescriptorSetCache(3);
+        Map<List<Long>, Long> model = new HashMap<>();
+        Random random = new Random(7);
+
+        for(int i = 0; i < 20000; ++i) {
+            long ubo = UBO + random.nextInt(2);
+            long view = 1 + random.nextInt(40);
+            long sampler = 50 + random.nextInt(3);
+
+            if(random.nextInt(50) == 0) {
+                long handle = random.nextBoolean() ? view : ubo;
+                int expected = (int) model.keySet().stream().filter(k -> k.contains(handle)).count();
+
+                assertEquals(expected, cache.evict(handle));
+                model.keySet().removeIf(k -> k.contains(handle));
+                continue;
+            }
+
+            List<Long> key = List.of(ubo, view, sampler);
+            long set = bind(cache, ubo, view, sampler);
+
+            Long cached = model.putIfAbsent(key, set);
+            if(cached != null)
+                assertEquals((long) cached, set, "lookup of " + key);
+
+            if(random.nextInt(100) == 0)
+                cache.release();
+        }
+
+        assertEquals(model.size(), cache.size());
+        assertTrue(cache.getHits() > 0);
+    }
+
+    @Test
+    void hitsDoNotAllocate() {
+        DescriptorSetCache cache = new DescriptorSetCache(3);
+        for(long view = 1; view <= 8; ++view) {
+            bind(cache, UBO, view, 50);
+        }
+
+        long[] view = new long[1];
+        AllocationBudget.assertNoAllocation("DescriptorSetCache.get", () -> {
+            view[0] = view[0] % 8 + 1;
+            lookup(cache, UBO, view[0], 50);
+        });
+
+        assertEquals(8, cache.getMisses());
+    }
+}